@@ -2,18 +2,34 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import environment.Value;
+import ir.IrBuilder;
+import vm.BytecodeCompiler;
 
 /**
  * Represents an assignment expression.
+ * <p>
+ * The first time it runs, an assignment of the form x := x + c or x := x - c, where c is
+ * an int literal and x has a slot, specializes itself into an increment: it adds c to the
+ * slot directly. If x ever does not hold an int there, the assignment goes back to
+ * evaluating its right hand side for good.
  *
  * @author Agastya Ravuri
  * @version 3.22.2024
  */
-public class Assignment implements Statement
+public class Assignment implements Statement, HeapInterpreter.Step
 {
     private final Variable lhs;
     private final Expression rhs;
 
+    private static final int UNINITIALIZED = 0;
+    private static final int INCREMENT = 1;
+    private static final int GENERIC = 2;
+
+    private int state;
+    private int delta;
+    private boolean tail;
+
     /**
      * Constructor for an assignment statement
      * @param lhs the left hand side
@@ -28,7 +44,96 @@ public class Assignment implements Statement
     @Override
     public void exec(Environment env)
     {
-        env.setVariable(lhs, rhs.eval(env));
+        if (tail)
+        {
+            ((ProcedureCall) rhs).tailCall(env);
+            return;
+        }
+        if (state == INCREMENT)
+        {
+            int slot = lhs.getSlot();
+            long value = env.getSlot(slot);
+            if (Value.isInt(value))
+            {
+                env.setSlot(slot, Value.ofInt(Value.toInt(value) + delta));
+                return;
+            }
+            state = GENERIC;
+        }
+        else if (state == UNINITIALIZED)
+        {
+            specialize();
+            exec(env);
+            return;
+        }
+        lhs.assign(env, rhs.evalValue(env));
+    }
+
+    /**
+     * Chooses how to run this assignment: as an increment if it adds an int literal to its
+     * own variable, which has a slot, or else by evaluating the right hand side.
+     */
+    private void specialize()
+    {
+        state = GENERIC;
+        if (lhs.getSlot() < 0 || !(rhs instanceof BinOp b))
+            return;
+        boolean add = b.getOperation() == BinOp.ADD;
+        if (!add && b.getOperation() != BinOp.SUB)
+            return;
+
+        Expression other;
+        if (isLhs(b.getLhs()))
+            other = b.getRhs();
+        else if (add && isLhs(b.getRhs()))
+            other = b.getLhs();
+        else
+            return;
+        if (other instanceof Literal l && l.getValue() instanceof Integer c)
+        {
+            delta = add ? c : -c;
+            state = INCREMENT;
+        }
+    }
+
+    @Override
+    public void markTail(String result)
+    {
+        tail = rhs instanceof ProcedureCall && lhs.getName().equals(result);
+    }
+
+    /**
+     * Does one step of this assignment on the continuation stack of a HeapInterpreter. A
+     * call in tail position takes the place of the return of the procedure.
+     * @param h the interpreter.
+     * @param env the environment the assignment runs in.
+     * @param state EXEC to evaluate the right hand side, or 0 to assign its value.
+     */
+    @Override
+    public void step(HeapInterpreter h, Environment env, int state)
+    {
+        if (state == HeapInterpreter.EXEC)
+        {
+            if (tail && h.dropReturn())
+            {
+                h.eval(rhs, env);
+                return;
+            }
+            h.push(this, env, 0);
+            h.eval(rhs, env);
+        }
+        else
+            lhs.assign(env, h.pop());
+    }
+
+    /**
+     * Checks whether an expression reads the variable that this assignment sets.
+     * @param e the expression.
+     * @return true if it is that variable, in the same slot; false otherwise.
+     */
+    private boolean isLhs(Expression e)
+    {
+        return e instanceof Variable v && v.getSlot() == lhs.getSlot();
     }
 
     @Override
@@ -39,4 +144,42 @@ public class Assignment implements Statement
         e.emitStore("$v0", lhs.getName());
         e.emit("# ASSIGNMENT END:");
     }
+
+    @Override
+    public void compile(BytecodeCompiler c)
+    {
+        c.assign(lhs.getName(), rhs.compileValue(c));
+        c.endStatement();
+    }
+
+    @Override
+    public void lower(IrBuilder b)
+    {
+        b.assign(lhs.getName(), rhs.lowerValue(b));
+    }
+
+    @Override
+    public void write(AstWriter w)
+    {
+        w.writeTag(AstWriter.ASSIGNMENT);
+        lhs.write(w);
+        rhs.write(w);
+    }
+
+    @Override
+    public void resolve(Resolver r)
+    {
+        lhs.resolve(r);
+        rhs.resolve(r);
+        state = UNINITIALIZED;
+    }
+
+    @Override
+    public Statement optimize(Optimizer o)
+    {
+        o.count();
+        lhs.optimize(o);
+        Expression e = rhs.optimize(o);
+        return e == rhs ? this : new Assignment(lhs, e);
+    }
 }
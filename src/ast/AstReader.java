@@ -0,0 +1,208 @@
+package ast;
+
+import type.Type;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a Program written by AstWriter.
+ * <p>
+ * Usage:
+ * Program p = new AstReader(buffer).readProgram();
+ *
+ * @author Agastya Ravuri
+ * @version 4.23.2024
+ */
+public class AstReader
+{
+    private static final BinaryOperation[] OPERATIONS = BinOp.OPERATIONS;
+    private static final Type[] TYPES = Type.values();
+
+    private final ByteBuffer buf;
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Constructs a reader.
+     * @param buf the buffer to read from, starting at its position
+     */
+    public AstReader(ByteBuffer buf)
+    {
+        this.buf = buf;
+    }
+
+    /**
+     * Reads a program.
+     * @return the program
+     * @throws IllegalArgumentException if the buffer does not hold a program written by
+     *                                  this version of AstWriter.
+     */
+    public Program readProgram()
+    {
+        try
+        {
+            if (buf.getInt() != AstWriter.MAGIC || buf.getInt() != AstWriter.VERSION)
+                throw new IllegalArgumentException("Not a program, or written by another version");
+            Program p = Program.read(this);
+            if (buf.hasRemaining())
+                throw new IllegalArgumentException("Extra bytes after the program");
+            return p;
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException
+               | NullPointerException e)
+        {
+            throw new IllegalArgumentException("Corrupt program", e);
+        }
+    }
+
+    /**
+     * Reads a statement.
+     * @return the statement, or null if NONE was written
+     */
+    Statement readStatement()
+    {
+        int tag = readByte();
+        return switch (tag)
+        {
+            case AstWriter.ASSIGNMENT -> new Assignment(readVariable(), readExpression());
+            case AstWriter.BLOCK -> {
+                int count = readCount();
+                List<Statement> statements = new ArrayList<>(count);
+                for (int i = 0; i < count; i++)
+                    statements.add(readStatement());
+                yield new Block(statements);
+            }
+            case AstWriter.IF -> new If(readExpression(), readStatement(), readStatement());
+            case AstWriter.READLN -> new ReadLn(readVariable());
+            case AstWriter.WHILE -> new While(readExpression(), readStatement());
+            case AstWriter.FOR -> new For(readVariable(), readExpression(), readExpression(),
+                    readStatement());
+            case AstWriter.WRITELN -> new WriteLn(readExpression());
+            case AstWriter.PROCEDURE_CALL -> readProcedureCall();
+            case AstWriter.PROCEDURE_DECLARATION -> {
+                String name = readString();
+                int count = readCount();
+                List<Variable> args = new ArrayList<>(count);
+                for (int i = 0; i < count; i++)
+                    args.add(readVariable());
+                yield new ProcedureDeclaration(new Procedure(name, args, readStatement()));
+            }
+            case AstWriter.NONE -> null;
+            default -> throw new IllegalArgumentException("Not a statement: " + tag);
+        };
+    }
+
+    /**
+     * Reads an expression.
+     * @return the expression
+     */
+    Expression readExpression()
+    {
+        int tag = readByte();
+        return switch (tag)
+        {
+            case AstWriter.LITERAL -> {
+                Type type = TYPES[readByte()];
+                yield switch (readByte())
+                {
+                    case AstWriter.INT_LITERAL -> new Literal(readInt(), type);
+                    case AstWriter.BOOLEAN_LITERAL -> new Literal(readByte() != 0, type);
+                    default -> throw new IllegalArgumentException("Not a literal");
+                };
+            }
+            case AstWriter.VARIABLE -> new Variable(readString(), TYPES[readByte()]);
+            case AstWriter.BINOP -> BinOp.of(readExpression(), readExpression(), OPERATIONS[readByte()]);
+            case AstWriter.PROCEDURE_CALL -> readProcedureCall();
+            default -> throw new IllegalArgumentException("Not an expression: " + tag);
+        };
+    }
+
+    /**
+     * Reads a variable.
+     * @return the variable
+     */
+    private Variable readVariable()
+    {
+        return (Variable) readExpression();
+    }
+
+    /**
+     * Reads a procedure call, after its tag.
+     * @return the procedure call
+     */
+    private ProcedureCall readProcedureCall()
+    {
+        String name = readString();
+        int count = readCount();
+        List<Expression> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            args.add(readExpression());
+        return new ProcedureCall(name, args);
+    }
+
+    /**
+     * Reads a single byte.
+     * @return the byte, from 0 to 255
+     */
+    private int readByte()
+    {
+        return buf.get() & 0xFF;
+    }
+
+    /**
+     * Reads a zigzag variable-length integer.
+     * @return the int
+     */
+    int readInt()
+    {
+        int v = 0;
+        int shift = 0;
+        int b;
+        do
+        {
+            if (shift > 28)
+                throw new IllegalArgumentException("Integer too long");
+            b = buf.get();
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Reads the number of elements in a list, each of which takes at least one byte.
+     * @return the number of elements
+     */
+    private int readCount()
+    {
+        int count = readInt();
+        if (count < 0 || count > buf.remaining())
+            throw new IllegalArgumentException("Bad count: " + count);
+        return count;
+    }
+
+    /**
+     * Reads a string: either a new string, or the index of one that was already read.
+     * @return the string
+     */
+    String readString()
+    {
+        int index = readInt();
+        if (index < strings.size())
+            return strings.get(index);
+        if (index != strings.size())
+            throw new IllegalArgumentException("Bad string index: " + index);
+        int length = readInt();
+        if (length < 0 || length > buf.remaining())
+            throw new IllegalArgumentException("Bad string length: " + length);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = (char) readInt();
+        String s = new String(chars);
+        strings.add(s);
+        return s;
+    }
+}
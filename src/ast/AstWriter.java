@@ -0,0 +1,144 @@
+package ast;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a Program in a compact binary format, which AstReader reads back.
+ * <p>
+ * Every node is written as a one-byte tag followed by its fields, children first in
+ * source order. Integers are written as variable-length zigzag integers, and every
+ * distinct string (mostly identifiers) is written only once: later uses refer to it by
+ * its index.
+ * <p>
+ * Usage:
+ * byte[] bytes = new AstWriter().write(program);
+ *
+ * @author Agastya Ravuri
+ * @version 4.23.2024
+ */
+public class AstWriter
+{
+    /**
+     * The first bytes of every written program.
+     */
+    public static final int MAGIC = 0x41535431;
+
+    /**
+     * The version of the format; a program written with another version is not read.
+     */
+    public static final int VERSION = 2;
+
+    static final int ASSIGNMENT = 1;
+    static final int BLOCK = 2;
+    static final int IF = 3;
+    static final int LITERAL = 4;
+    static final int READLN = 5;
+    static final int VARIABLE = 6;
+    static final int WHILE = 7;
+    static final int WRITELN = 8;
+    static final int BINOP = 9;
+    static final int PROCEDURE_CALL = 10;
+    static final int PROCEDURE_DECLARATION = 11;
+    static final int NONE = 12;
+    static final int FOR = 13;
+
+    static final int INT_LITERAL = 0;
+    static final int BOOLEAN_LITERAL = 1;
+
+    private byte[] buf = new byte[1 << 12];
+    private int size;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    /**
+     * Writes a program.
+     * @param p the program
+     * @return the written program
+     */
+    public byte[] write(Program p)
+    {
+        writeRawInt(MAGIC);
+        writeRawInt(VERSION);
+        p.write(this);
+        return Arrays.copyOf(buf, size);
+    }
+
+    /**
+     * Writes the tag of a node.
+     * @param tag the tag
+     */
+    void writeTag(int tag)
+    {
+        writeByte(tag);
+    }
+
+    /**
+     * Writes a statement, or NONE if it is null.
+     * @param s the statement
+     */
+    void writeStatement(Statement s)
+    {
+        if (s == null)
+            writeTag(NONE);
+        else
+            s.write(this);
+    }
+
+    /**
+     * Writes a single byte.
+     * @param b the byte
+     */
+    void writeByte(int b)
+    {
+        if (size == buf.length)
+            buf = Arrays.copyOf(buf, size * 2);
+        buf[size++] = (byte) b;
+    }
+
+    /**
+     * Writes an int as a zigzag variable-length integer: seven bits per byte, lowest
+     * first, with the top bit set on every byte but the last.
+     * @param value the int
+     */
+    void writeInt(int value)
+    {
+        int v = (value << 1) ^ (value >> 31);
+        while ((v & ~0x7F) != 0)
+        {
+            writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        writeByte(v);
+    }
+
+    /**
+     * Writes an int as four bytes, highest first.
+     * @param value the int
+     */
+    private void writeRawInt(int value)
+    {
+        for (int shift = 24; shift >= 0; shift -= 8)
+            writeByte(value >>> shift);
+    }
+
+    /**
+     * Writes a string. The first time a string is written, its index is followed by its
+     * characters; after that, only its index is written.
+     * @param s the string
+     */
+    void writeString(String s)
+    {
+        Integer index = strings.get(s);
+        if (index != null)
+        {
+            writeInt(index);
+            return;
+        }
+        writeInt(strings.size());
+        strings.put(s, strings.size());
+        writeInt(s.length());
+        for (int i = 0; i < s.length(); i++)
+            writeInt(s.charAt(i));
+    }
+}
@@ -2,17 +2,27 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import environment.Value;
+import ir.Instruction;
+import ir.IrBuilder;
 import type.Type;
+import vm.Bytecode;
+import vm.BytecodeCompiler;
 
 import java.util.HashMap;
+import java.util.Objects;
 
 /**
  * Represents a binary operator expression within an ast.
+ * <p>
+ * Every operation has its own final subclass, whose evalInt() or evalBoolean() computes
+ * it directly, so that the JIT can inline a whole arithmetic expression. The Parser creates
+ * them with of(), which picks the subclass for an operation.
  *
  * @author Agastya Ravuri
  * @version 3.22.2024
  */
-public class BinOp implements Expression
+public abstract class BinOp implements Expression, HeapInterpreter.Step
 {
 
     /**
@@ -20,7 +30,7 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation ADD =
             new BinaryOperation(
-                    a -> b -> (Integer) a + (Integer) b,
+                    (a, b) -> (Integer) a + (Integer) b,
                     new HashMap<>(){{
                         put(Type.INT, "addu %1$s %2$s %3$s");
                     }},
@@ -32,7 +42,7 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation SUB =
             new BinaryOperation(
-                    a -> b -> (Integer) a - (Integer) b,
+                    (a, b) -> (Integer) a - (Integer) b,
                     new HashMap<>(){{
                         put(Type.INT, "subu %1$s %2$s %3$s");
                     }},
@@ -45,7 +55,7 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation MUL =
             new BinaryOperation(
-                    a -> b -> (Integer) a * (Integer) b,
+                    (a, b) -> (Integer) a * (Integer) b,
                     new HashMap<>(){{
                         put(Type.INT, "mul %1$s %2$s %3$s");
                     }},
@@ -59,7 +69,7 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation DIV =
             new BinaryOperation(
-                    a -> b -> (Integer) a / (Integer) b,
+                    (a, b) -> (Integer) a / (Integer) b,
                     new HashMap<>(){{
                         put(Type.INT, "div %1$s %2$s %3$s");
                     }},
@@ -71,7 +81,7 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation MOD =
             new BinaryOperation(
-                    a -> b -> (Integer) a % (Integer) b,
+                    (a, b) -> (Integer) a % (Integer) b,
                     new HashMap<>(){{
                         put(Type.INT,
                                 "div %2$s %3$s\n" +
@@ -85,7 +95,7 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation EQ =
             new BinaryOperation(
-                    a -> b -> a == b,
+                    (a, b) -> Objects.equals(a, b),
                     new HashMap<>(){{
                         put(Type.INT, "seq %1$s %2$s %3$s");
                     }},
@@ -97,7 +107,7 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation NEQ =
             new BinaryOperation(
-                    a -> b -> a != b,
+                    (a, b) -> !Objects.equals(a, b),
                     new HashMap<>(){{
                         put(Type.INT, "sne %1$s %2$s %3$s");
                     }},
@@ -109,7 +119,7 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation LT =
             new BinaryOperation(
-                    a -> b -> (Integer) a < (Integer) b,
+                    (a, b) -> (Integer) a < (Integer) b,
                     new HashMap<>(){{
                         put(Type.INT, "slt %1$s %2$s %3$s");
                     }},
@@ -121,7 +131,7 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation GT =
             new BinaryOperation(
-                    a -> b -> (Integer) a > (Integer) b,
+                    (a, b) -> (Integer) a > (Integer) b,
                     new HashMap<>(){{
                         put(Type.INT, "sgt %1$s %2$s %3$s");
                     }},
@@ -133,7 +143,7 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation LEQ =
             new BinaryOperation(
-                    a -> b -> (Integer) a <= (Integer) b,
+                    (a, b) -> (Integer) a <= (Integer) b,
                     new HashMap<>(){{
                         put(Type.INT, "sle %1$s %2$s %3$s");
                     }},
@@ -145,7 +155,7 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation GEQ =
             new BinaryOperation(
-                    a -> b -> (Integer) a >= (Integer) b,
+                    (a, b) -> (Integer) a >= (Integer) b,
                     new HashMap<>(){{
                         put(Type.INT, "sge %1$s %2$s %3$s");
                     }},
@@ -157,7 +167,7 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation AND =
             new BinaryOperation(
-                    a -> b -> (Boolean) a && (Boolean) b,
+                    (a, b) -> (Boolean) a && (Boolean) b,
                     new HashMap<>(){{
                         put(Type.INT, "and %1$s %2$s %3$s");
                     }},
@@ -169,13 +179,41 @@ public class BinOp implements Expression
      */
     public static final BinaryOperation OR =
             new BinaryOperation(
-                    a -> b -> (Boolean) a || (Boolean) b,
+                    (a, b) -> (Boolean) a || (Boolean) b,
                     new HashMap<>(){{
                         put(Type.INT, "or %1$s %2$s %3$s");
                     }},
                     Type.INT
             );
 
+    /**
+     * Every binary operation, in a fixed order, so that an operation can be written as its index.
+     */
+    static final BinaryOperation[] OPERATIONS = {
+            ADD, SUB, MUL, DIV, MOD, EQ, NEQ, LT, GT, LEQ, GEQ, AND, OR
+    };
+
+    /**
+     * The bytecode instruction of every operation, in the order of OPERATIONS.
+     */
+    private static final int[] OPCODES = {
+            Bytecode.ADD, Bytecode.SUB, Bytecode.MUL, Bytecode.DIV, Bytecode.MOD, Bytecode.EQ,
+            Bytecode.NEQ, Bytecode.LT, Bytecode.GT, Bytecode.LEQ, Bytecode.GEQ, Bytecode.AND,
+            Bytecode.OR
+    };
+
+    /**
+     * The instruction that jumps when a comparison is true, and when it is false, in the
+     * order of OPERATIONS from EQ to GEQ.
+     */
+    private static final int[] BRANCH_IF_TRUE = {
+            Bytecode.BEQ, Bytecode.BNE, Bytecode.BLT, Bytecode.BGT, Bytecode.BLE, Bytecode.BGE
+    };
+    private static final int[] BRANCH_IF_FALSE = {
+            Bytecode.BNE, Bytecode.BEQ, Bytecode.BGE, Bytecode.BLE, Bytecode.BGT, Bytecode.BLT
+    };
+    private static final int FIRST_COMPARISON = 5;
+
     private final Expression lhs;
     private final Expression rhs;
     private final BinaryOperation operation;
@@ -186,18 +224,112 @@ public class BinOp implements Expression
      * @param rhs the right hand side
      * @param operation the operation to apply.
      */
-    public BinOp(Expression lhs, Expression rhs,
-                 BinaryOperation operation)
+    private BinOp(Expression lhs, Expression rhs,
+                  BinaryOperation operation)
     {
         this.lhs = lhs;
         this.rhs = rhs;
         this.operation = operation;
     }
 
+    /**
+     * Creates the node for a binary operation.
+     * @param lhs the left hand side
+     * @param rhs the right hand side
+     * @param operation the operation to apply.
+     * @return a BinOp of the subclass for the operation, or one that applies it generically
+     *         if it is not one of OPERATIONS.
+     */
+    public static BinOp of(Expression lhs, Expression rhs, BinaryOperation operation)
+    {
+        return switch (indexOf(operation))
+        {
+            case 0 -> new Add(lhs, rhs);
+            case 1 -> new Sub(lhs, rhs);
+            case 2 -> new Mul(lhs, rhs);
+            case 3 -> new Div(lhs, rhs);
+            case 4 -> new Mod(lhs, rhs);
+            case 5 -> new Eq(lhs, rhs);
+            case 6 -> new Neq(lhs, rhs);
+            case 7 -> new Lt(lhs, rhs);
+            case 8 -> new Gt(lhs, rhs);
+            case 9 -> new Leq(lhs, rhs);
+            case 10 -> new Geq(lhs, rhs);
+            case 11 -> new And(lhs, rhs);
+            case 12 -> new Or(lhs, rhs);
+            default -> new Generic(lhs, rhs, operation);
+        };
+    }
+
+    /**
+     * Finds an operation in OPERATIONS.
+     * @param operation the operation.
+     * @return its index, or -1 if it is not one of OPERATIONS.
+     */
+    private static int indexOf(BinaryOperation operation)
+    {
+        for (int i = 0; i < OPERATIONS.length; i++)
+            if (OPERATIONS[i] == operation)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Gets the left hand side.
+     * @return the left hand side.
+     */
+    public Expression getLhs()
+    {
+        return lhs;
+    }
+
+    /**
+     * Gets the right hand side.
+     * @return the right hand side.
+     */
+    public Expression getRhs()
+    {
+        return rhs;
+    }
+
+    /**
+     * Gets the operation.
+     * @return the operation applied by this node.
+     */
+    public BinaryOperation getOperation()
+    {
+        return operation;
+    }
+
     @Override
     public Object eval(Environment env)
     {
-        return operation.apply(lhs.eval(env), rhs.eval(env));
+        return Value.box(evalValue(env));
+    }
+
+    /**
+     * Does one step of this operation on the continuation stack of a HeapInterpreter, for
+     * when a side contains a procedure call.
+     * @param h the interpreter.
+     * @param env the environment the operation is evaluated in.
+     * @param state EVAL to evaluate both sides, left first, or 0 to apply the operation
+     *              to their values.
+     */
+    @Override
+    public void step(HeapInterpreter h, Environment env, int state)
+    {
+        if (state == HeapInterpreter.EVAL)
+        {
+            h.push(this, env, 0);
+            h.eval(rhs, env);
+            h.eval(lhs, env);
+        }
+        else
+        {
+            long b = h.pop();
+            long a = h.pop();
+            h.value(Value.of(operation.apply(Value.box(a), Value.box(b))));
+        }
     }
 
     @Override
@@ -213,9 +345,614 @@ public class BinOp implements Expression
         e.emit("# BINOP END:");
     }
 
+    /**
+     * Compiles this operation. Adding or subtracting an int literal is compiled into a
+     * single ADDI.
+     * @param c the compiler of the function that contains this expression.
+     * @return the register that holds the value of the expression.
+     * @throws IllegalArgumentException if the operation is not one of OPERATIONS.
+     */
+    @Override
+    public int compileValue(BytecodeCompiler c)
+    {
+        int index = indexOf(operation);
+        if (index < 0)
+            throw new IllegalArgumentException("The virtual machine does not support this operation");
+        if ((operation == ADD || operation == SUB) && rhs instanceof Literal l
+                && l.getValue() instanceof Integer k)
+            return c.compute(Bytecode.ADDI, lhs.compileValue(c), operation == ADD ? k : -k);
+        if (operation == ADD && lhs instanceof Literal l && l.getValue() instanceof Integer k)
+            return c.compute(Bytecode.ADDI, rhs.compileValue(c), k);
+
+        int a = lhs.compileValue(c);
+        int mark = c.mark();
+        int b = rhs.compileValue(c);
+        return c.compute(OPCODES[index], c.stable(a, mark), b);
+    }
+
+    /**
+     * Compiles this operation into a jump. A comparison is compiled into a single
+     * instruction that compares and jumps.
+     * @param c the compiler of the function that contains this expression.
+     * @param when whether to jump when the expression is true, or when it is false.
+     * @param label the label to jump to.
+     */
+    @Override
+    public void compileBranch(BytecodeCompiler c, boolean when, int label)
+    {
+        int index = indexOf(operation) - FIRST_COMPARISON;
+        if (index < 0 || index >= BRANCH_IF_TRUE.length)
+        {
+            Expression.super.compileBranch(c, when, label);
+            return;
+        }
+        int a = lhs.compileValue(c);
+        int mark = c.mark();
+        int b = rhs.compileValue(c);
+        c.emit(when ? BRANCH_IF_TRUE[index] : BRANCH_IF_FALSE[index], c.stable(a, mark), b, label);
+    }
+
     @Override
     public Type getType()
     {
         return operation.getReturnType();
     }
+
+    @Override
+    public Instruction lowerValue(IrBuilder b)
+    {
+        Instruction a = lhs.lowerValue(b);
+        return b.binary(operation, a, rhs.lowerValue(b));
+    }
+
+    @Override
+    public void write(AstWriter w)
+    {
+        w.writeTag(AstWriter.BINOP);
+        lhs.write(w);
+        rhs.write(w);
+        w.writeByte(indexOf(operation));
+    }
+
+    @Override
+    public void resolve(Resolver r)
+    {
+        lhs.resolve(r);
+        rhs.resolve(r);
+    }
+
+    /**
+     * Optimizes both sides, then this operation. Folding replaces an operation on two
+     * literals with its value, unless it fails, as dividing by zero or adding booleans
+     * does, in which case it is left to fail at run time. Simplifying applies the
+     * identities of the Optimizer.
+     * @param o the optimizer.
+     * @return the expression to use in place of this one.
+     */
+    @Override
+    public Expression optimize(Optimizer o)
+    {
+        o.count();
+        Expression a = lhs.optimize(o);
+        Expression b = rhs.optimize(o);
+        if (o.folds() && a instanceof Literal x && b instanceof Literal y)
+        {
+            try
+            {
+                Object value = operation.apply(x.getValue(), y.getValue());
+                o.rewrote();
+                return new Literal(value, Type.INT);
+            }
+            catch (RuntimeException e)
+            {
+                // Left for the program to fail at run time.
+            }
+        }
+        if (o.simplifies())
+        {
+            Expression simple = simplify(a, b);
+            if (simple != null)
+            {
+                o.rewrote();
+                return simple;
+            }
+        }
+        return a == lhs && b == rhs ? this : of(a, b, operation);
+    }
+
+    /**
+     * Applies an identity to this operation, with its sides already optimized.
+     * @param a the left hand side.
+     * @param b the right hand side.
+     * @return the simpler expression, or null if no identity applies.
+     */
+    private Expression simplify(Expression a, Expression b)
+    {
+        if ((operation == ADD || operation == SUB) && isInt(b, 0) && isInt(a))
+            return a;
+        if ((operation == ADD && isInt(a, 0) || operation == MUL && isInt(a, 1)) && isInt(b))
+            return b;
+        if (operation == MUL && isInt(b, 1) && isInt(a))
+            return a;
+        if (operation == MUL && (isInt(a, 0) && isPure(b) || isInt(b, 0) && isPure(a)))
+            return new Literal(0, Type.INT);
+        return null;
+    }
+
+    /**
+     * Checks whether an expression is an int literal with a value.
+     * @param e the expression.
+     * @param value the value.
+     * @return true if it is, false otherwise.
+     */
+    private static boolean isInt(Expression e, int value)
+    {
+        return e instanceof Literal l && l.getValue() instanceof Integer k && k == value;
+    }
+
+    /**
+     * Checks whether evaluating an expression has no effect, cannot fail, and gives an
+     * int: an int literal, or a sum, difference or product of such expressions. Reading a
+     * variable is not pure, since it creates the variable if it does not exist yet.
+     * @param e the expression.
+     * @return true if it is, false otherwise.
+     */
+    private static boolean isPure(Expression e)
+    {
+        if (e instanceof Literal l)
+            return l.getValue() instanceof Integer;
+        return (e instanceof Add || e instanceof Sub || e instanceof Mul)
+                && isPure(((BinOp) e).lhs) && isPure(((BinOp) e).rhs);
+    }
+
+    /**
+     * Checks whether an expression always evaluates to an int, if it evaluates at all: an
+     * int literal, or an arithmetic operation. A variable may hold a boolean.
+     * @param e the expression.
+     * @return true if it does, false otherwise.
+     */
+    private static boolean isInt(Expression e)
+    {
+        if (e instanceof Literal l)
+            return l.getValue() instanceof Integer;
+        return e instanceof IntOp;
+    }
+
+    /**
+     * An operation whose value is an int.
+     */
+    private abstract static class IntOp extends BinOp
+    {
+        /**
+         * Constructor for an int operation.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         * @param operation the operation to apply.
+         */
+        IntOp(Expression lhs, Expression rhs, BinaryOperation operation)
+        {
+            super(lhs, rhs, operation);
+        }
+
+        @Override
+        public Object eval(Environment env)
+        {
+            return evalInt(env);
+        }
+
+        @Override
+        public long evalValue(Environment env)
+        {
+            return Value.ofInt(evalInt(env));
+        }
+
+        @Override
+        public abstract int evalInt(Environment env);
+    }
+
+    /**
+     * An operation whose value is a boolean.
+     */
+    private abstract static class BooleanOp extends BinOp
+    {
+        /**
+         * Constructor for a boolean operation.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         * @param operation the operation to apply.
+         */
+        BooleanOp(Expression lhs, Expression rhs, BinaryOperation operation)
+        {
+            super(lhs, rhs, operation);
+        }
+
+        @Override
+        public Object eval(Environment env)
+        {
+            return evalBoolean(env);
+        }
+
+        @Override
+        public long evalValue(Environment env)
+        {
+            return Value.ofBoolean(evalBoolean(env));
+        }
+
+        @Override
+        public abstract boolean evalBoolean(Environment env);
+    }
+
+    /**
+     * The sum of two ints.
+     */
+    private static final class Add extends IntOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for Add.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        Add(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, ADD);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public int evalInt(Environment env)
+        {
+            return lhs.evalInt(env) + rhs.evalInt(env);
+        }
+    }
+
+    /**
+     * The difference of two ints.
+     */
+    private static final class Sub extends IntOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for Sub.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        Sub(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, SUB);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public int evalInt(Environment env)
+        {
+            return lhs.evalInt(env) - rhs.evalInt(env);
+        }
+    }
+
+    /**
+     * The product of two ints.
+     */
+    private static final class Mul extends IntOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for Mul.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        Mul(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, MUL);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public int evalInt(Environment env)
+        {
+            return lhs.evalInt(env) * rhs.evalInt(env);
+        }
+    }
+
+    /**
+     * The quotient of two ints.
+     */
+    private static final class Div extends IntOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for Div.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        Div(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, DIV);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public int evalInt(Environment env)
+        {
+            return lhs.evalInt(env) / rhs.evalInt(env);
+        }
+    }
+
+    /**
+     * The remainder when one int is divided by another.
+     */
+    private static final class Mod extends IntOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for Mod.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        Mod(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, MOD);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public int evalInt(Environment env)
+        {
+            return lhs.evalInt(env) % rhs.evalInt(env);
+        }
+    }
+
+    /**
+     * Whether two values are equal.
+     */
+    private static final class Eq extends BooleanOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for Eq.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        Eq(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, EQ);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public boolean evalBoolean(Environment env)
+        {
+            return lhs.evalValue(env) == rhs.evalValue(env);
+        }
+    }
+
+    /**
+     * Whether two values are not equal.
+     */
+    private static final class Neq extends BooleanOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for Neq.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        Neq(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, NEQ);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public boolean evalBoolean(Environment env)
+        {
+            return lhs.evalValue(env) != rhs.evalValue(env);
+        }
+    }
+
+    /**
+     * Whether one int is less than another.
+     */
+    private static final class Lt extends BooleanOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for Lt.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        Lt(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, LT);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public boolean evalBoolean(Environment env)
+        {
+            return lhs.evalInt(env) < rhs.evalInt(env);
+        }
+    }
+
+    /**
+     * Whether one int is greater than another.
+     */
+    private static final class Gt extends BooleanOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for Gt.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        Gt(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, GT);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public boolean evalBoolean(Environment env)
+        {
+            return lhs.evalInt(env) > rhs.evalInt(env);
+        }
+    }
+
+    /**
+     * Whether one int is less than or equal to another.
+     */
+    private static final class Leq extends BooleanOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for Leq.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        Leq(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, LEQ);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public boolean evalBoolean(Environment env)
+        {
+            return lhs.evalInt(env) <= rhs.evalInt(env);
+        }
+    }
+
+    /**
+     * Whether one int is greater than or equal to another.
+     */
+    private static final class Geq extends BooleanOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for Geq.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        Geq(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, GEQ);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public boolean evalBoolean(Environment env)
+        {
+            return lhs.evalInt(env) >= rhs.evalInt(env);
+        }
+    }
+
+    /**
+     * The and of two booleans; both sides are always evaluated.
+     */
+    private static final class And extends BooleanOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for And.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        And(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, AND);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public boolean evalBoolean(Environment env)
+        {
+            return lhs.evalBoolean(env) & rhs.evalBoolean(env);
+        }
+    }
+
+    /**
+     * The or of two booleans; both sides are always evaluated.
+     */
+    private static final class Or extends BooleanOp
+    {
+        private final Expression lhs;
+        private final Expression rhs;
+
+        /**
+         * Constructor for Or.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         */
+        Or(Expression lhs, Expression rhs)
+        {
+            super(lhs, rhs, OR);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public boolean evalBoolean(Environment env)
+        {
+            return lhs.evalBoolean(env) | rhs.evalBoolean(env);
+        }
+    }
+
+    /**
+     * An operation that is not one of OPERATIONS, applied to boxed values.
+     */
+    private static final class Generic extends BinOp
+    {
+        /**
+         * Constructor for a generic operation.
+         * @param lhs the left hand side
+         * @param rhs the right hand side
+         * @param operation the operation to apply.
+         */
+        Generic(Expression lhs, Expression rhs, BinaryOperation operation)
+        {
+            super(lhs, rhs, operation);
+        }
+
+        @Override
+        public Object eval(Environment env)
+        {
+            return getOperation().apply(getLhs().eval(env), getRhs().eval(env));
+        }
+    }
 }
@@ -3,7 +3,7 @@ package ast;
 import type.Type;
 
 import java.util.Map;
-import java.util.function.Function;
+import java.util.function.BiFunction;
 
 /**
  * Wrapper for a binary operation function and its compile format.
@@ -13,10 +13,10 @@ public class BinaryOperation
 {
 
     private final Map<Type, String> compileFormat;
-    private final Function<Object, Function<Object, Object>> run;
+    private final BiFunction<Object, Object, Object> run;
     Type returnType;
 
-    public BinaryOperation(Function<Object, Function<Object, Object>> run, Map<Type, String> compileFormat, Type returnType)
+    public BinaryOperation(BiFunction<Object, Object, Object> run, Map<Type, String> compileFormat, Type returnType)
     {
         this.compileFormat = compileFormat;
         this.run = run;
@@ -34,6 +34,6 @@ public class BinaryOperation
 
     public Object apply(Object a, Object b)
     {
-        return run.apply(a).apply(b);
+        return run.apply(a, b);
     }
 }
@@ -2,7 +2,10 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import ir.IrBuilder;
+import vm.BytecodeCompiler;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -11,7 +14,7 @@ import java.util.List;
  * @author Agastya Ravuri
  * @version 3.22.2024
  */
-public class Block implements Statement
+public class Block implements Statement, HeapInterpreter.Step
 {
     private final List<Statement> statements;
 
@@ -36,9 +39,10 @@ public class Block implements Statement
     @Override
     public void exec(Environment env)
     {
-        for (Statement s : statements)
+        // By index, since an iterator would be allocated on every run.
+        for (int i = 0; i < statements.size(); i++)
         {
-            s.exec(env);
+            statements.get(i).exec(env);
         }
     }
 
@@ -49,4 +53,93 @@ public class Block implements Statement
             statement.compile(e);
         });
     }
+
+    @Override
+    public void compile(BytecodeCompiler c)
+    {
+        for (Statement s : statements)
+            s.compile(c);
+    }
+
+    @Override
+    public void lower(IrBuilder b)
+    {
+        for (Statement s : statements)
+            s.lower(b);
+    }
+
+    @Override
+    public void write(AstWriter w)
+    {
+        w.writeTag(AstWriter.BLOCK);
+        w.writeInt(statements.size());
+        for (Statement s : statements)
+            w.writeStatement(s);
+    }
+
+    /**
+     * Gets the statements in the block.
+     * @return the statements
+     */
+    List<Statement> getStatements()
+    {
+        return statements;
+    }
+
+    @Override
+    public void resolve(Resolver r)
+    {
+        for (Statement s : statements)
+            s.resolve(r);
+    }
+
+    /**
+     * Optimizes the statements in the block. Pruning drops the statements that are empty
+     * blocks.
+     * @param o the optimizer.
+     * @return the block to use in place of this one.
+     */
+    @Override
+    public Block optimize(Optimizer o)
+    {
+        o.count();
+        List<Statement> optimized = new ArrayList<>(statements.size());
+        boolean changed = false;
+        for (Statement s : statements)
+        {
+            Statement t = s.optimize(o);
+            changed |= t != s;
+            if (o.prunes() && t instanceof Block b && b.statements.isEmpty())
+            {
+                o.rewrote();
+                changed = true;
+            }
+            else
+                optimized.add(t);
+        }
+        return changed ? new Block(optimized) : this;
+    }
+
+    @Override
+    public void markTail(String result)
+    {
+        if (!statements.isEmpty())
+            statements.get(statements.size() - 1).markTail(result);
+    }
+
+    /**
+     * Does one step of this block on the continuation stack of a HeapInterpreter.
+     * @param h the interpreter.
+     * @param env the environment the block runs in.
+     * @param state EXEC to run the first statement, or else the index of the next one.
+     */
+    @Override
+    public void step(HeapInterpreter h, Environment env, int state)
+    {
+        int i = state == HeapInterpreter.EXEC ? 0 : state;
+        if (i + 1 < statements.size())
+            h.push(this, env, i + 1);
+        if (i < statements.size())
+            h.exec(statements.get(i), env);
+    }
 }
@@ -0,0 +1,284 @@
+package ast;
+
+import environment.Environment;
+import environment.FramePool;
+import environment.Scope;
+import environment.Value;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How to call a procedure that has been linked to a procedure table: the layout of its
+ * frame, the slots that its arguments and result go in, and its resolved body. A
+ * ProcedureCall keeps the plan of the procedure it last called, so that calling it again
+ * needs no lookup.
+ * <p>
+ * When the program runs with a Tiering, the plan also counts its calls, and once the
+ * procedure has been compiled, calls it with int arguments run the compiled code.
+ * <p>
+ * A body that ends with a call in tail position leaves it in its frame as a TailCall
+ * instead of making it, and the plan makes it in a loop, so tail calls do not grow the
+ * Java stack. A call made with frames nested more than MAX_DEPTH deep is handed over to
+ * the HeapInterpreter, which keeps its continuations on the heap.
+ * <p>
+ * Frames come from a FramePool of the plan, and are released when the call returns, so
+ * that a call allocates nothing once the pool holds enough frames. A frame that a tail
+ * call was made from is the parent of the frame of that call, and is released along with
+ * it. A call that ends with an exception leaves its frames to the garbage collector.
+ *
+ * @author Agastya Ravuri
+ * @version 4.26.2024
+ */
+final class CallPlan implements HeapInterpreter.Step
+{
+    /**
+     * How deeply frames can be nested before calls go to the HeapInterpreter: well below
+     * the depth at which the tree-walker runs out of Java stack.
+     */
+    static final int MAX_DEPTH = 256;
+
+    /**
+     * The state of a plan on the continuation stack, when its body has run. A plan with a
+     * call still to make has two more than the number of arguments as its state instead.
+     */
+    static final int RETURN = 0;
+
+    /**
+     * The state of a plan on the continuation stack, when its body has run and its frame,
+     * which the HeapInterpreter made, goes back to the pool.
+     */
+    static final int RELEASE = 1;
+
+    private final String name;
+    private final Map<String, Procedure> linkedTo;
+    private final int[] argSlots;
+    private final int resultSlot;
+    private final Statement body;
+    private final FramePool frames;
+
+    private int calls;
+    private MethodHandle compiled;
+
+    /**
+     * Constructor for a call plan.
+     * @param name the name of the procedure.
+     * @param linkedTo the procedure table that the body was resolved against.
+     * @param scope the layout of the procedure's frame.
+     * @param argSlots the slot of each argument.
+     * @param resultSlot the slot of the result.
+     * @param body the resolved body of the procedure.
+     */
+    CallPlan(String name, Map<String, Procedure> linkedTo, Scope scope, int[] argSlots,
+             int resultSlot, Statement body)
+    {
+        this.name = name;
+        this.linkedTo = linkedTo;
+        this.argSlots = argSlots;
+        this.resultSlot = resultSlot;
+        this.body = body;
+        frames = new FramePool(scope);
+    }
+
+    /**
+     * Checks whether this plan was made for a procedure table.
+     * @param procedures the procedure table.
+     * @return true if the body was resolved against exactly that table, false otherwise.
+     */
+    boolean isLinkedTo(Map<String, Procedure> procedures)
+    {
+        return linkedTo == procedures;
+    }
+
+    /**
+     * Calls the procedure.
+     * @param env the environment of the caller, in which the arguments are evaluated.
+     * @param args the arguments.
+     * @return the result of the procedure, encoded by Value.
+     */
+    long invoke(Environment env, List<Expression> args)
+    {
+        Tiering t = env.getTiering();
+        if (t != null)
+            return invokeTiered(env, args, t);
+        return run(frame(env, args));
+    }
+
+    /**
+     * Makes the frame of a call.
+     * @param env the environment of the caller, in which the arguments are evaluated.
+     * @param args the arguments.
+     * @return the frame, with its arguments set and its result 0.
+     */
+    Environment frame(Environment env, List<Expression> args)
+    {
+        Environment frame = frames.acquire(env);
+        for (int i = 0; i < args.size(); i++)
+            frame.setSlot(argSlots[i], args.get(i).evalValue(env));
+        frame.setSlot(resultSlot, Value.ofInt(0));
+        return frame;
+    }
+
+    /**
+     * Makes the frame of a call.
+     * @param env the environment of the caller.
+     * @param values the values of the arguments, encoded by Value.
+     * @return the frame, with its arguments set and its result 0.
+     */
+    Environment frame(Environment env, long[] values)
+    {
+        Environment frame = frames.acquire(env);
+        for (int i = 0; i < values.length; i++)
+            frame.setSlot(argSlots[i], values[i]);
+        frame.setSlot(resultSlot, Value.ofInt(0));
+        return frame;
+    }
+
+    /**
+     * Runs the body of the procedure in its frame, then any tail calls it ends with, and
+     * releases the frames.
+     * @param frame the frame.
+     * @return the result of the procedure, or of the last tail call, encoded by Value.
+     */
+    private long run(Environment frame)
+    {
+        Environment first = frame;
+        CallPlan p = this;
+        long result;
+        while (true)
+        {
+            if (frame.getDepth() > MAX_DEPTH)
+            {
+                result = HeapInterpreter.run(p, frame);
+                break;
+            }
+            p.body.exec(frame);
+            TailCall call = frame.takeTailCall();
+            if (call == null)
+            {
+                result = frame.getSlot(p.resultSlot);
+                break;
+            }
+            p = call.getPlan();
+            frame = call.getFrame();
+        }
+        // Each tail call's frame is a child of the one before, back to the first.
+        while (frame != first)
+        {
+            Environment parent = frame.getParent();
+            frame.release();
+            frame = parent;
+        }
+        first.release();
+        return result;
+    }
+
+    /**
+     * Starts a call on the continuation stack of a HeapInterpreter: pushes the return,
+     * then the body.
+     * @param h the interpreter.
+     * @param frame the frame of the call.
+     * @param state RETURN if the caller releases the frame, or RELEASE if the return does.
+     */
+    void enter(HeapInterpreter h, Environment frame, int state)
+    {
+        h.push(this, frame, state);
+        h.exec(body, frame);
+    }
+
+    /**
+     * Makes a call on the continuation stack of a HeapInterpreter: pushes the call, then
+     * the arguments, so that they are evaluated first, from left to right.
+     * @param h the interpreter.
+     * @param env the environment of the caller, in which the arguments are evaluated.
+     * @param args the arguments.
+     */
+    void call(HeapInterpreter h, Environment env, List<Expression> args)
+    {
+        h.push(this, env, args.size() + 2);
+        for (int i = args.size() - 1; i >= 0; i--)
+            h.eval(args.get(i), env);
+    }
+
+    /**
+     * Does one step of a call on the continuation stack: once the arguments have been
+     * evaluated, enters the body in a new frame; once the body has run, pushes the result.
+     * @param h the interpreter.
+     * @param env the environment of the caller when the call is still to be made, or the
+     *            frame of the call when it returns.
+     * @param state two more than the number of arguments, or RETURN or RELEASE.
+     */
+    @Override
+    public void step(HeapInterpreter h, Environment env, int state)
+    {
+        if (state == RETURN || state == RELEASE)
+        {
+            h.value(env.getSlot(resultSlot));
+            if (state == RELEASE)
+                env.release();
+            return;
+        }
+        Environment frame = frames.acquire(env);
+        for (int i = state - 3; i >= 0; i--)
+            frame.setSlot(argSlots[i], h.pop());
+        frame.setSlot(resultSlot, Value.ofInt(0));
+        enter(h, frame, RELEASE);
+    }
+
+    /**
+     * Calls the procedure under tiered execution: counts the call, compiles the procedure
+     * once it is hot, and runs the compiled code if it can.
+     * @param env the environment of the caller, in which the arguments are evaluated.
+     * @param args the arguments.
+     * @param t the Tiering the program runs with.
+     * @return the result of the procedure, encoded by Value.
+     */
+    private long invokeTiered(Environment env, List<Expression> args, Tiering t)
+    {
+        long[] values = new long[args.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = args.get(i).evalValue(env);
+
+        // The compiled code calls the procedures it was linked to, so it can only be used
+        // as long as no procedure has been declared since.
+        if (env.proceduresChanged())
+            return interpret(env, values);
+        if (++calls == t.getCallThreshold())
+            compiled = t.compileProcedure(name, linkedTo);
+        MethodHandle m = compiled;
+        if (m == null || values.length != argSlots.length)
+            return interpret(env, values);
+        int[] ints = new int[values.length];
+        for (int i = 0; i < values.length; i++)
+        {
+            if (!Value.isInt(values[i]))
+                return interpret(env, values);
+            ints[i] = (int) values[i];
+        }
+        t.compiledCall();
+        try
+        {
+            return Value.ofInt((int) m.invokeExact(ints));
+        }
+        catch (RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Runs the body of the procedure in a new frame.
+     * @param env the environment of the caller.
+     * @param values the values of the arguments, encoded by Value.
+     * @return the result of the procedure, encoded by Value.
+     */
+    private long interpret(Environment env, long[] values)
+    {
+        return run(frame(env, values));
+    }
+}
@@ -2,7 +2,12 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import environment.Value;
+import ir.IrBuilder;
+import ir.Instruction;
 import type.Type;
+import vm.Bytecode;
+import vm.BytecodeCompiler;
 
 /**
  * Represents an abstract expression.
@@ -19,15 +24,92 @@ public interface Expression
      */
     Object eval(Environment env);
 
+    /**
+     * Evaluates the expression without boxing its value.
+     * @param env The environment in which to evaluate this expression.
+     * @return the value of the evaluated expression, encoded by Value.
+     */
+    default long evalValue(Environment env)
+    {
+        return Value.of(eval(env));
+    }
+
+    /**
+     * Evaluates an expression whose value is an int, without boxing it.
+     * @param env The environment in which to evaluate this expression.
+     * @return the value of the evaluated expression.
+     * @throws ClassCastException if the value is not an int.
+     */
+    default int evalInt(Environment env)
+    {
+        return Value.toInt(evalValue(env));
+    }
+
+    /**
+     * Evaluates an expression whose value is a boolean, without boxing it.
+     * @param env The environment in which to evaluate this expression.
+     * @return the value of the evaluated expression.
+     * @throws ClassCastException if the value is not a boolean.
+     */
+    default boolean evalBoolean(Environment env)
+    {
+        return Value.toBoolean(evalValue(env));
+    }
+
     /**
      * Compiles this expression into MIPS assembly, storing the return value into $v0.
      * @param e the emitter containing the file to write to.
      */
     void compile(Emitter e);
 
+    /**
+     * Compiles this expression into bytecode for the virtual machine.
+     * @param c the compiler of the function that contains this expression.
+     * @return the register that holds the value of the expression.
+     */
+    int compileValue(BytecodeCompiler c);
+
+    /**
+     * Compiles this expression, which must be a boolean, into a jump.
+     * @param c the compiler of the function that contains this expression.
+     * @param when whether to jump when the expression is true, or when it is false.
+     * @param label the label to jump to.
+     */
+    default void compileBranch(BytecodeCompiler c, boolean when, int label)
+    {
+        c.emit(when ? Bytecode.JUMP_IF_TRUE : Bytecode.JUMP_IF_FALSE, compileValue(c), label);
+    }
+
+    /**
+     * Lowers this expression into IR.
+     * @param b the builder of the function that contains this expression.
+     * @return the instruction that defines the value of the expression.
+     */
+    Instruction lowerValue(IrBuilder b);
+
     /**
      * Gets the type of this expression
      * @return a Class, the type of this expression.
      */
     Type getType();
+
+    /**
+     * Writes this expression in binary, for AstReader to read back.
+     * @param w the writer to write to.
+     */
+    void write(AstWriter w);
+
+    /**
+     * Resolves the variables and procedure calls in this expression, before it runs.
+     * @param r the resolver of the code that contains this expression.
+     */
+    void resolve(Resolver r);
+
+    /**
+     * Optimizes this expression for one pass of an Optimizer.
+     * @param o the optimizer.
+     * @return the expression to use in place of this one, which is this expression if the
+     *         pass could not change it.
+     */
+    Expression optimize(Optimizer o);
 }
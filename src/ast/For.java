@@ -1,15 +1,49 @@
 package ast;
 
+import emitter.Emitter;
+import environment.Environment;
+import environment.Value;
+import ir.BasicBlock;
+import ir.Instruction;
+import ir.IrBuilder;
 import type.Type;
+import vm.Bytecode;
+import vm.BytecodeCompiler;
 
 /**
- * Represents a for loop statement.
+ * Represents a for loop statement: a counted loop that runs its body once for each value
+ * of the loop variable from the first bound up to the last.
+ * <p>
+ * Both bounds are evaluated once, before the loop starts, and must be ints. The loop
+ * variable is an ordinary variable: it is set to the first bound, read again before every
+ * check against the last bound, and incremented in place after every iteration, so the
+ * body can read and change it; when the loop ends it is one past the last bound.
+ * <p>
+ * When the program runs with a Tiering, a loop of the main program counts its
+ * iterations, and once it is hot, goes on in compiled code from the next check, like a
+ * While loop.
  *
  * @author Agastya Ravuri
- * @version 3.22.2024
+ * @version 5.2.2024
  */
-public class For extends Block
+public class For implements Statement, HeapInterpreter.Step
 {
+    /**
+     * The name of the variable that holds the last bound in the compiled rest of a loop.
+     * No variable of a program can have it.
+     */
+    static final String BOUND = "$bound";
+
+    private static final int START = 0;
+    private static final int NEXT = 1;
+
+    private final Variable loopVar;
+    private final Expression from;
+    private final Expression to;
+    private final Statement body;
+
+    private int iterations;
+    private While rest;
 
     /**
      * Constructor for a for loop.
@@ -20,17 +54,245 @@ public class For extends Block
      */
     public For(Variable loopVar, Expression from, Expression to, Statement body)
     {
-        super(
-                new Assignment(loopVar, from),
-                new While(new BinOp(loopVar, to, BinOp.LEQ),
-                        new Block(
-                                body,
-                                new Assignment(
-                                        loopVar,
-                                        new BinOp(loopVar, new Literal(1, Type.INT), BinOp.ADD)
-                                )
-                        )
-                )
-        );
+        this.loopVar = loopVar;
+        this.from = from;
+        this.to = to;
+        this.body = body;
+    }
+
+    @Override
+    public void exec(Environment env)
+    {
+        long first = from.evalValue(env);
+        int last = to.evalInt(env);
+        loopVar.assign(env, first);
+        Tiering t = env.getTiering();
+        if (t == null || !env.isRoot())
+        {
+            while (current(env) <= last)
+            {
+                body.exec(env);
+                increment(env);
+            }
+            return;
+        }
+        while (current(env) <= last)
+        {
+            body.exec(env);
+            increment(env);
+            if (++iterations >= t.getLoopThreshold())
+            {
+                if (rest().enterCompiled(env, t, last))
+                    return;
+                iterations = 0;
+            }
+        }
+    }
+
+    /**
+     * Gets the value of the loop variable.
+     * @param env the environment the loop runs in.
+     * @return the value.
+     * @throws ClassCastException if the variable does not hold an int.
+     */
+    private int current(Environment env)
+    {
+        return Value.toInt(loopVar.evalValue(env));
+    }
+
+    /**
+     * Adds one to the loop variable.
+     * @param env the environment the loop runs in.
+     * @throws ClassCastException if the variable does not hold an int.
+     */
+    private void increment(Environment env)
+    {
+        loopVar.assign(env, Value.ofInt(current(env) + 1));
+    }
+
+    /**
+     * Gets the rest of this loop from its next check, as a While loop over the variable
+     * BOUND, for the Tiering to compile.
+     * @return the loop.
+     */
+    private While rest()
+    {
+        if (rest == null)
+        {
+            Variable v = new Variable(loopVar.getName(), Type.INT);
+            rest = new While(BinOp.of(v, new Variable(BOUND, Type.INT), BinOp.LEQ),
+                    new Block(body, new Assignment(v,
+                            BinOp.of(v, new Literal(1, Type.INT), BinOp.ADD))));
+        }
+        return rest;
+    }
+
+    /**
+     * Compiles the loop with the last bound in a saved register (or, nested more than
+     * eight deep, in a word of memory), and its check at the bottom, so that each
+     * iteration ends with one compare and branch.
+     * @param e the emitter.
+     */
+    @Override
+    public void compile(Emitter e)
+    {
+        String bodyLabel = e.genLabel();
+        String checkLabel = e.genLabel();
+
+        e.emit("# FOR START:");
+        from.compile(e);
+        e.emitPush("$v0");
+        to.compile(e);
+        String bound = e.beginLoopRegister();
+        e.emitSetLoopBound(bound, "$v0");
+        e.emitPop("$v0");
+        e.emitStore("$v0", loopVar.getName());
+        e.emitFormat("j %s", checkLabel);
+
+        e.emitFormat("%s:", bodyLabel);
+        body.compile(e);
+        e.emitRetrieve("$v0", loopVar.getName());
+        e.emit("addu $v0 $v0 1");
+        e.emitStore("$v0", loopVar.getName());
+        e.emitFormat("%s:", checkLabel);
+        e.emitFormat("ble $v0 %s %s", e.emitGetLoopBound(bound), bodyLabel);
+        e.emit("# FOR END:");
+        e.endLoopRegister();
+    }
+
+    /**
+     * Compiles the loop with the last bound in a register of its own, and its check at
+     * the bottom as a single BLE.
+     * @param c the compiler of the function that contains this statement.
+     */
+    @Override
+    public void compile(BytecodeCompiler c)
+    {
+        int first = from.compileValue(c);
+        int mark = c.mark();
+        int last = to.compileValue(c);
+        int bound = c.hidden();
+        c.emit(Bytecode.MOVE, bound, last);
+        c.assign(loopVar.getName(), c.stable(first, mark));
+        c.endStatement();
+
+        int bodyLabel = c.newLabel();
+        int checkLabel = c.newLabel();
+        c.emit(Bytecode.JUMP, checkLabel);
+        c.bind(bodyLabel);
+        body.compile(c);
+        c.assign(loopVar.getName(), c.compute(Bytecode.ADDI, c.variable(loopVar.getName()), 1));
+        c.endStatement();
+        c.bind(checkLabel);
+        c.emit(Bytecode.BLE, c.variable(loopVar.getName()), bound, bodyLabel);
+        c.endStatement();
+    }
+
+    /**
+     * Lowers the loop like a While loop over the loop variable, which checks it against
+     * the last bound, evaluated once, and increments it after the body.
+     * @param b the builder of the function that contains this statement.
+     */
+    @Override
+    public void lower(IrBuilder b)
+    {
+        Instruction first = from.lowerValue(b);
+        Instruction last = to.lowerValue(b);
+        b.assign(loopVar.getName(), first);
+
+        BasicBlock header = b.newBlock();
+        BasicBlock loop = b.newBlock();
+        BasicBlock exit = b.newBlock();
+        b.jump(header);
+        b.start(header);
+        b.branch(b.binary(BinOp.LEQ, b.variable(loopVar.getName()), last), loop, exit);
+
+        b.seal(loop);
+        b.start(loop);
+        body.lower(b);
+        b.assign(loopVar.getName(), b.binary(BinOp.ADD, b.variable(loopVar.getName()),
+                b.constant(Value.ofInt(1))));
+        b.jump(header);
+        b.seal(header);
+        b.seal(exit);
+        b.start(exit);
+    }
+
+    @Override
+    public void write(AstWriter w)
+    {
+        w.writeTag(AstWriter.FOR);
+        loopVar.write(w);
+        from.write(w);
+        to.write(w);
+        body.write(w);
+    }
+
+    @Override
+    public void resolve(Resolver r)
+    {
+        loopVar.resolve(r);
+        from.resolve(r);
+        to.resolve(r);
+        body.resolve(r);
+        iterations = 0;
+        rest = null;
+    }
+
+    /**
+     * Optimizes the bounds and the body. Pruning replaces a loop whose bounds are int
+     * literals with an empty range by the assignment of the first bound to the loop
+     * variable, which is all that the loop does.
+     * @param o the optimizer.
+     * @return the statement to use in place of this one.
+     */
+    @Override
+    public Statement optimize(Optimizer o)
+    {
+        o.count();
+        loopVar.optimize(o);
+        Expression f = from.optimize(o);
+        Expression t = to.optimize(o);
+        Statement b = body.optimize(o);
+        if (o.prunes() && f instanceof Literal first && first.getValue() instanceof Integer i
+                && t instanceof Literal last && last.getValue() instanceof Integer j && i > j)
+        {
+            o.rewrote();
+            return new Assignment(loopVar, f);
+        }
+        if (f == from && t == to && b == body)
+            return this;
+        return new For(loopVar, f, t, b);
+    }
+
+    /**
+     * Does one step of this loop on the continuation stack of a HeapInterpreter. While
+     * the loop runs, the last bound stays on the value stack.
+     * @param h the interpreter.
+     * @param env the environment the loop runs in.
+     * @param state EXEC to evaluate the bounds, START to set the loop variable, or NEXT to
+     *              increment it; each but EXEC then runs the body if the loop goes on.
+     */
+    @Override
+    public void step(HeapInterpreter h, Environment env, int state)
+    {
+        if (state == HeapInterpreter.EXEC)
+        {
+            h.push(this, env, START);
+            h.eval(to, env);
+            h.eval(from, env);
+            return;
+        }
+        int last = Value.toInt(h.pop());
+        if (state == START)
+            loopVar.assign(env, h.pop());
+        else
+            increment(env);
+        if (current(env) <= last)
+        {
+            h.value(Value.ofInt(last));
+            h.push(this, env, NEXT);
+            h.exec(body, env);
+        }
     }
 }
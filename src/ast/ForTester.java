@@ -0,0 +1,191 @@
+package ast;
+
+import emitter.Emitter;
+import emitter.MipsSimulator;
+import vm.BytecodeCompiler;
+import vm.JvmCompiler;
+import vm.TestHarness;
+import vm.VirtualMachine;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Tests FOR loops on every engine: the interpreter, the interpreter with tiered
+ * execution and low thresholds, the virtual machine, the JVM backend (when it accepts the
+ * program), and the interpreter after a round trip through AstWriter and AstReader. Each
+ * must print what the program should. Loops nested deeper than the Emitter has registers
+ * for are also compiled to MIPS and run on the MipsSimulator. Then times a FOR-heavy
+ * program on each engine.
+ *
+ * @author Agastya Ravuri
+ * @version 5.2.2024
+ */
+public class ForTester
+{
+    private static final String[][] CASES = {
+            {"BEGIN\n    FOR i := 1 TO 5 DO WRITELN(i);\n    WRITELN(i);\nEND;\n",
+                    "1\n2\n3\n4\n5\n6"},
+            // An empty range leaves the variable at the first bound.
+            {"BEGIN\n    FOR i := 5 TO 1 DO WRITELN(i);\n    WRITELN(i);\nEND;\n", "5"},
+            // The last bound is evaluated once.
+            {"BEGIN\n    n := 3;\n    FOR i := 1 TO n DO n := n + 1;\n    WRITELN(n);\nEND;\n",
+                    "6"},
+            // The body can change the loop variable.
+            {"BEGIN\n    FOR i := 1 TO 10 DO\n    BEGIN\n        WRITELN(i);\n"
+                    + "        i := i + 2;\n    END;\n    WRITELN(i);\nEND;\n", "1\n4\n7\n10\n13"},
+            // Nested loops that call a procedure with a loop of its own.
+            {"PROCEDURE sum(n);\nBEGIN\n    sum := 0;\n    FOR k := 1 TO n DO sum := sum + k;\nEND;\n"
+                    + "BEGIN\n    FOR i := 1 TO 3 DO\n        FOR j := i TO 3 DO WRITELN(sum(i * j));\n"
+                    + "END;\n", "1\n3\n6\n10\n21\n45"},
+            // A loop over an argument of a procedure.
+            {"PROCEDURE f(n, i);\nBEGIN\n    f := 0;\n    FOR i := 1 TO n DO f := f + i * i;\nEND;\n"
+                    + "BEGIN\n    WRITELN(f(10, 0));\nEND;\n", "385"},
+            // A loop over an argument that is not passed, which is the variable of the caller.
+            {"PROCEDURE f(n, i);\nBEGIN\n    f := 0;\n    FOR i := 1 TO n DO f := f + i;\nEND;\n"
+                    + "BEGIN\n    i := 7;\n    WRITELN(f(3));\n    WRITELN(i);\nEND;\n", "6\n4"},
+            // Bounds that are not ints.
+            {"BEGIN\n    FOR i := 1 TO 1 < 2 DO WRITELN(i);\nEND;\n", "ClassCastException"},
+            {"BEGIN\n    FOR i := 1 < 2 TO 3 DO WRITELN(i);\nEND;\n", "ClassCastException"},
+            // Deep recursion through the body of a loop.
+            {"PROCEDURE d(n);\nBEGIN\n    d := 0;\n"
+                    + "    IF n > 0 THEN FOR i := 1 TO 1 DO d := d(n - 1) + 1;\nEND;\n"
+                    + "BEGIN\n    WRITELN(d(5000));\nEND;\n", "5000"},
+            // A hot loop, which is entered in compiled code in the middle.
+            {"BEGIN\n    s := 0;\n    FOR i := 1 TO 100 DO s := s + i;\n    WRITELN(s);\n"
+                    + "    WRITELN(i);\nEND;\n", "5050\n101"},
+    };
+
+    /**
+     * Loops nested 9 deep, one more than the Emitter has registers for, around a call to a
+     * procedure with a loop of its own. The variables are assigned first, since the
+     * Emitter pushes a variable where it is first assigned.
+     */
+    private static final String NESTED = nested(9);
+
+    private static final String TIMED = "BEGIN\n    s := 0;\n    FOR i := 1 TO 1000 DO\n"
+            + "        FOR j := 1 TO 3000 DO s := s + (i * j) mod 7;\n    WRITELN(s);\nEND;\n";
+
+    /**
+     * Tests FOR loops.
+     * @param args not used
+     */
+    public static void main(String[] args)
+    {
+        for (int i = 0; i < CASES.length; i++)
+        {
+            StringBuilder result = new StringBuilder();
+            for (String engine : new String[] {"interpreter", "tiered", "vm", "jvm", "read"})
+            {
+                String output = run(CASES[i][0], engine);
+                if (!output.equals(CASES[i][1]) && !output.startsWith("rejected"))
+                    result.append("\n--- ").append(engine).append(":\n").append(output);
+            }
+            System.out.println("case " + i + ": "
+                    + (result.length() == 0 ? "ok" : "WRONG" + result));
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (String engine : new String[] {"interpreter", "tiered", "vm", "jvm", "read", "mips"})
+        {
+            String output = run(NESTED, engine);
+            if (!output.equals("1536") && !output.startsWith("rejected"))
+                result.append("\n--- ").append(engine).append(":\n").append(output);
+        }
+        System.out.println("nested 9 deep: " + (result.length() == 0 ? "ok" : "WRONG" + result));
+
+        for (String engine : new String[] {"interpreter", "tiered", "vm", "jvm"})
+        {
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < 10; i++)
+            {
+                long start = System.nanoTime();
+                run(TIMED, engine);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("%s: %.1f ms%n", engine, best);
+        }
+    }
+
+    /**
+     * Parses a program and runs it on an engine, capturing what it prints.
+     * @param source the source of the program
+     * @param engine the engine
+     * @return the output, followed by the class of the exception it ended with, if any;
+     *         or "rejected" if the JVM backend does not accept the program
+     */
+    private static String run(String source, String engine)
+    {
+        Program p = TestHarness.parse(source);
+        Runnable run;
+        switch (engine)
+        {
+            case "tiered" -> run = () -> p.run(new Tiering(3, 5));
+            case "vm" -> run = () -> new VirtualMachine().run(new BytecodeCompiler().compile(p));
+            case "jvm" ->
+            {
+                try
+                {
+                    run = new JvmCompiler().compile(p)::run;
+                }
+                catch (IllegalArgumentException e)
+                {
+                    return "rejected";
+                }
+            }
+            case "mips" -> run = () -> runMips(p);
+            case "read" -> run = new AstReader(ByteBuffer.wrap(new AstWriter().write(p)))
+                    .readProgram()::run;
+            default -> run = p::run;
+        }
+
+        return TestHarness.capture(run);
+    }
+
+    /**
+     * Compiles a program to MIPS with the Emitter and runs it on the MipsSimulator.
+     * @param p the program
+     */
+    private static void runMips(Program p)
+    {
+        try
+        {
+            File f = File.createTempFile("compiled", ".asm");
+            try
+            {
+                p.compile(new Emitter(f.getPath()));
+                new MipsSimulator(new FileInputStream(f))
+                        .run(new ByteArrayInputStream(new byte[0]), System.out);
+            }
+            finally
+            {
+                f.delete();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Generates loops from 1 to 2 nested inside each other, whose body adds sum(2) = 3 to
+     * s, and prints s, which is 3 * 2^depth.
+     * @param depth the number of loops
+     * @return the source of the program
+     */
+    private static String nested(int depth)
+    {
+        StringBuilder sb = new StringBuilder("PROCEDURE sum(n);\nBEGIN\n    sum := 0;\n"
+                + "    FOR k := 1 TO n DO sum := sum + k;\nEND;\nBEGIN\n    s := 0;\n");
+        for (int i = 0; i < depth; i++)
+            sb.append("    v").append(i).append(" := 0;\n");
+        for (int i = 0; i < depth; i++)
+            sb.append("    FOR v").append(i).append(" := 1 TO 2 DO\n");
+        sb.append("        s := s + sum(2);\n    WRITELN(s);\nEND;\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package ast;
+
+import parser.Parser;
+import scanner.Scanner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures what call-heavy programs allocate on the interpreter: for each program, the
+ * best time of several runs, the bytes allocated per procedure call, and the number of
+ * garbage collections and the time they took over all runs.
+ *
+ * @author Agastya Ravuri
+ * @version 5.1.2024
+ */
+public class FrameBenchmark
+{
+    private static final int RUNS = 20;
+
+    private static final String[][] PROGRAMS = {
+            // 242785 calls.
+            {"fib(25)", "242785", "PROCEDURE fib(n);\nBEGIN\n    IF n < 2 THEN fib := n;\n"
+                    + "    ELSE fib := fib(n - 1) + fib(n - 2);\nEND;\n"
+                    + "BEGIN\n    WRITELN(fib(25));\nEND;\n"},
+            // 200000 calls of a leaf procedure from a loop.
+            {"leaf calls", "200000", "PROCEDURE sq(n);\n    sq := n * n mod 1000;\n"
+                    + "BEGIN\n    sum := 0;\n    FOR i := 1 TO 200000 DO sum := sum + sq(i);\n"
+                    + "    WRITELN(sum);\nEND;\n"},
+            // 1000 tail-recursive calls 200 deep.
+            {"tail calls", "201000", "PROCEDURE count(n, acc);\nBEGIN\n"
+                    + "    IF n = 0 THEN count := acc;\n    ELSE count := count(n - 1, acc + 1);\nEND;\n"
+                    + "BEGIN\n    FOR i := 1 TO 1000 DO x := count(200, 0);\n    WRITELN(x);\nEND;\n"},
+            // 200 tail-recursive calls 1000 deep, which go past CallPlan.MAX_DEPTH.
+            {"deep tail calls", "200200", "PROCEDURE count(n, acc);\nBEGIN\n"
+                    + "    IF n = 0 THEN count := acc;\n    ELSE count := count(n - 1, acc + 1);\nEND;\n"
+                    + "BEGIN\n    FOR i := 1 TO 200 DO x := count(1000, 0);\n    WRITELN(x);\nEND;\n"},
+    };
+
+    /**
+     * Runs the benchmark.
+     * @param args not used
+     */
+    public static void main(String[] args)
+    {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (String[] program : PROGRAMS)
+        {
+            Program p = new Parser(new Scanner(program[2])).parseProgram();
+            // Warm up, so that the JIT has compiled the interpreter.
+            for (int i = 0; i < RUNS; i++)
+                run(p);
+
+            long collections = collections(false);
+            long pauses = collections(true);
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < RUNS; i++)
+            {
+                long start = System.nanoTime();
+                run(p);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+            long calls = Long.parseLong(program[1]) * RUNS;
+            System.out.printf("%s: %.1f ms, %.1f bytes per call, %d collections (%d ms)%n",
+                    program[0], best, (double) allocated / calls,
+                    collections(false) - collections, collections(true) - pauses);
+        }
+    }
+
+    /**
+     * Runs a program, throwing away what it prints.
+     * @param p the program
+     */
+    private static void run(Program p)
+    {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        try
+        {
+            p.run();
+        }
+        finally
+        {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * Adds up the garbage collections so far over all collectors.
+     * @param time true for the time they took, false for their number
+     * @return the time in milliseconds, or the number of collections
+     */
+    private static long collections(boolean time)
+    {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(time ? gc.getCollectionTime() : gc.getCollectionCount(), 0);
+        return total;
+    }
+}
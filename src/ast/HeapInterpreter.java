@@ -0,0 +1,161 @@
+package ast;
+
+import environment.Environment;
+
+import java.util.Arrays;
+
+/**
+ * Runs a procedure call with its continuation stack on the heap, so that the depth of a
+ * recursion is limited by memory rather than by the Java stack. CallPlan hands a call
+ * over to it once the frames of the program are nested MAX_DEPTH deep.
+ * <p>
+ * The continuation stack holds what is left to do, as a node, the environment it runs
+ * in, and a state that says where the node is. A node that can contain a procedure
+ * call is a Step, and does one step each time it comes off the stack: it pushes back
+ * what it still has to do, then the children it needs first. Any other node is run or
+ * evaluated in one go. Values go on a separate stack.
+ * <p>
+ * A procedure call in tail position does not grow the stack at all: the return of its
+ * caller is replaced with its own.
+ *
+ * @author Agastya Ravuri
+ * @version 4.30.2024
+ */
+final class HeapInterpreter
+{
+    /**
+     * The state of a node that is to be run as a statement.
+     */
+    static final int EXEC = -1;
+
+    /**
+     * The state of a node that is to be evaluated as an expression.
+     */
+    static final int EVAL = -2;
+
+    /**
+     * A node that runs step by step on the continuation stack.
+     */
+    interface Step
+    {
+        /**
+         * Does one step of the node.
+         * @param h the interpreter.
+         * @param env the environment the node runs in.
+         * @param state EXEC or EVAL for the first step; afterwards, whatever the node
+         *              pushed itself back with.
+         */
+        void step(HeapInterpreter h, Environment env, int state);
+    }
+
+    private Object[] nodes = new Object[64];
+    private Environment[] envs = new Environment[64];
+    private int[] states = new int[64];
+    private int top;
+    private long[] values = new long[64];
+    private int count;
+
+    /**
+     * Runs a procedure call.
+     * @param plan the plan of the procedure.
+     * @param frame the frame of the call, with its arguments and result set.
+     * @return the result of the procedure, encoded by Value.
+     */
+    static long run(CallPlan plan, Environment frame)
+    {
+        HeapInterpreter h = new HeapInterpreter();
+        plan.enter(h, frame, CallPlan.RETURN);
+        while (h.top > 0)
+        {
+            int i = --h.top;
+            Object node = h.nodes[i];
+            Environment env = h.envs[i];
+            h.nodes[i] = null;
+            h.envs[i] = null;
+            if (node instanceof Step s)
+                s.step(h, env, h.states[i]);
+            else if (h.states[i] == EXEC)
+                ((Statement) node).exec(env);
+            else
+                h.value(((Expression) node).evalValue(env));
+        }
+        return h.pop();
+    }
+
+    /**
+     * Pushes a node onto the continuation stack.
+     * @param node the node.
+     * @param env the environment it runs in.
+     * @param state where the node is.
+     */
+    void push(Object node, Environment env, int state)
+    {
+        if (top == nodes.length)
+        {
+            nodes = Arrays.copyOf(nodes, top * 2);
+            envs = Arrays.copyOf(envs, top * 2);
+            states = Arrays.copyOf(states, top * 2);
+        }
+        nodes[top] = node;
+        envs[top] = env;
+        states[top] = state;
+        top++;
+    }
+
+    /**
+     * Pushes a statement to run.
+     * @param s the statement.
+     * @param env the environment it runs in.
+     */
+    void exec(Statement s, Environment env)
+    {
+        push(s, env, EXEC);
+    }
+
+    /**
+     * Pushes an expression to evaluate; its value goes on the value stack.
+     * @param e the expression.
+     * @param env the environment it is evaluated in.
+     */
+    void eval(Expression e, Environment env)
+    {
+        push(e, env, EVAL);
+    }
+
+    /**
+     * Removes the return of a procedure from the top of the continuation stack, so that a
+     * call in tail position can return straight to its caller's caller. The frame of the
+     * return is not released, since it is the parent of the frame of that call.
+     * @return true if the top of the stack was a return, and was removed; false otherwise.
+     */
+    boolean dropReturn()
+    {
+        if (top == 0 || !(nodes[top - 1] instanceof CallPlan)
+                || states[top - 1] != CallPlan.RETURN && states[top - 1] != CallPlan.RELEASE)
+            return false;
+        top--;
+        nodes[top] = null;
+        envs[top] = null;
+        return true;
+    }
+
+    /**
+     * Pushes a value.
+     * @param value the value, encoded by Value.
+     */
+    void value(long value)
+    {
+        if (count == values.length)
+            values = Arrays.copyOf(values, count * 2);
+        values[count++] = value;
+    }
+
+    /**
+     * Pops a value.
+     * @return the value, encoded by Value.
+     */
+    long pop()
+    {
+        return values[--count];
+    }
+}
@@ -2,6 +2,12 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import environment.Value;
+import ir.BasicBlock;
+import ir.Instruction;
+import ir.IrBuilder;
+import vm.Bytecode;
+import vm.BytecodeCompiler;
 
 /**
  * Represents an if statement.
@@ -9,7 +15,7 @@ import environment.Environment;
  * @author Agastya Ravuri
  * @version 3.22.2024
  */
-public class If implements Statement
+public class If implements Statement, HeapInterpreter.Step
 {
 
     private final Expression condition;
@@ -42,7 +48,7 @@ public class If implements Statement
     @Override
     public void exec(Environment env)
     {
-        if ((Boolean) condition.eval(env))
+        if (condition.evalBoolean(env))
         {
             trueBranch.exec(env);
         }
@@ -97,4 +103,123 @@ public class If implements Statement
             e.emitFormat("%s: #ENDIF:", exitLabel);
         }
     }
+
+    @Override
+    public void compile(BytecodeCompiler c)
+    {
+        int falseLabel = c.newLabel();
+        condition.compileBranch(c, false, falseLabel);
+        c.endStatement();
+        trueBranch.compile(c);
+        if (falseBranch == null)
+        {
+            c.bind(falseLabel);
+            return;
+        }
+        int exitLabel = c.newLabel();
+        c.emit(Bytecode.JUMP, exitLabel);
+        c.bind(falseLabel);
+        falseBranch.compile(c);
+        c.bind(exitLabel);
+    }
+
+    /**
+     * Lowers the IF into a branch to a block for each branch, which both jump to the
+     * block after the IF.
+     * @param b the builder of the function that contains this statement.
+     */
+    @Override
+    public void lower(IrBuilder b)
+    {
+        Instruction c = condition.lowerValue(b);
+        BasicBlock ifTrue = b.newBlock();
+        BasicBlock ifFalse = falseBranch == null ? null : b.newBlock();
+        BasicBlock exit = b.newBlock();
+        b.branch(c, ifTrue, ifFalse == null ? exit : ifFalse);
+
+        b.seal(ifTrue);
+        b.start(ifTrue);
+        trueBranch.lower(b);
+        b.jump(exit);
+        if (ifFalse != null)
+        {
+            b.seal(ifFalse);
+            b.start(ifFalse);
+            falseBranch.lower(b);
+            b.jump(exit);
+        }
+        b.seal(exit);
+        b.start(exit);
+    }
+
+    @Override
+    public void write(AstWriter w)
+    {
+        w.writeTag(AstWriter.IF);
+        condition.write(w);
+        trueBranch.write(w);
+        w.writeStatement(falseBranch);
+    }
+
+    @Override
+    public void resolve(Resolver r)
+    {
+        condition.resolve(r);
+        trueBranch.resolve(r);
+        if (falseBranch != null)
+            falseBranch.resolve(r);
+    }
+
+    /**
+     * Optimizes the condition and the branches. Pruning replaces an IF whose condition is
+     * a boolean literal with the branch it takes, or an empty block if it takes none.
+     * @param o the optimizer.
+     * @return the statement to use in place of this one.
+     */
+    @Override
+    public Statement optimize(Optimizer o)
+    {
+        o.count();
+        Expression c = condition.optimize(o);
+        Statement t = trueBranch.optimize(o);
+        Statement f = falseBranch == null ? null : falseBranch.optimize(o);
+        if (o.prunes() && c instanceof Literal l && l.getValue() instanceof Boolean b)
+        {
+            o.rewrote();
+            if (b)
+                return t;
+            return f == null ? new Block() : f;
+        }
+        if (c == condition && t == trueBranch && f == falseBranch)
+            return this;
+        return new If(c, t, f);
+    }
+
+    @Override
+    public void markTail(String result)
+    {
+        trueBranch.markTail(result);
+        if (falseBranch != null)
+            falseBranch.markTail(result);
+    }
+
+    /**
+     * Does one step of this if statement on the continuation stack of a HeapInterpreter.
+     * @param h the interpreter.
+     * @param env the environment the statement runs in.
+     * @param state EXEC to evaluate the condition, or 0 to take a branch on its value.
+     */
+    @Override
+    public void step(HeapInterpreter h, Environment env, int state)
+    {
+        if (state == HeapInterpreter.EXEC)
+        {
+            h.push(this, env, 0);
+            h.eval(condition, env);
+        }
+        else if (Value.toBoolean(h.pop()))
+            h.exec(trueBranch, env);
+        else if (falseBranch != null)
+            h.exec(falseBranch, env);
+    }
 }
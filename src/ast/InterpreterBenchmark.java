@@ -0,0 +1,112 @@
+package ast;
+
+import parser.Parser;
+import scanner.Scanner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures how long the interpreter takes to run a few loop- and call-heavy programs, the
+ * first time and at best (after its nodes have specialized and the JIT has compiled them),
+ * and how many bytes it allocates while running each one. The loop program runs a million
+ * iterations, so any allocation per iteration shows up as megabytes.
+ *
+ * @author Agastya Ravuri
+ * @version 4.24.2024
+ */
+public class InterpreterBenchmark
+{
+    private static final int ITERATIONS = 10;
+
+    /**
+     * The programs to run, by name.
+     */
+    private static final String[][] PROGRAMS = {
+            {"loop",
+                    "BEGIN\n" +
+                    "    x := 0;\n" +
+                    "    sum := 0;\n" +
+                    "    WHILE x < 1000000 DO\n" +
+                    "    BEGIN\n" +
+                    "        sum := sum + x * 3 - (x mod 7);\n" +
+                    "        x := x + 1;\n" +
+                    "    END;\n" +
+                    "    WRITELN(sum);\n" +
+                    "END;\n"},
+            {"fact",
+                    "PROCEDURE fact(n);\n" +
+                    "BEGIN\n" +
+                    "    IF n < 1 THEN fact := 1;\n" +
+                    "    ELSE fact := fact(n - 1) * n;\n" +
+                    "END;\n" +
+                    "BEGIN\n" +
+                    "    FOR i := 1 TO 20000 DO x := fact(12);\n" +
+                    "    WRITELN(x);\n" +
+                    "END;\n"},
+            {"fib",
+                    "PROCEDURE fib(n);\n" +
+                    "BEGIN\n" +
+                    "    IF n < 2 THEN fib := n;\n" +
+                    "    ELSE fib := fib(n - 1) + fib(n - 2);\n" +
+                    "END;\n" +
+                    "BEGIN\n" +
+                    "    WRITELN(fib(24));\n" +
+                    "END;\n"},
+            {"globals",
+                    "PROCEDURE step(n);\n" +
+                    "BEGIN\n" +
+                    "    total := total + n;\n" +
+                    "    step := total;\n" +
+                    "END;\n" +
+                    "BEGIN\n" +
+                    "    total := 0;\n" +
+                    "    FOR i := 1 TO 200000 DO x := step(i mod 10);\n" +
+                    "    WRITELN(total);\n" +
+                    "END;\n"},
+    };
+
+    /**
+     * Runs the benchmark.
+     * @param args not used
+     */
+    public static void main(String[] args)
+    {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (String[] program : PROGRAMS)
+        {
+            Program p = new Parser(new Scanner(program[1])).parseProgram();
+            double first = 0;
+            double best = Double.MAX_VALUE;
+            long allocated = Long.MAX_VALUE;
+            String output = null;
+            for (int i = 0; i < ITERATIONS; i++)
+            {
+                PrintStream out = System.out;
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                System.setOut(new PrintStream(bytes));
+                long before = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                try
+                {
+                    p.run();
+                }
+                finally
+                {
+                    System.setOut(out);
+                }
+                double time = (System.nanoTime() - start) / 1e6;
+                if (i == 0)
+                    first = time;
+                best = Math.min(best, time);
+                allocated = Math.min(allocated, threads.getThreadAllocatedBytes(thread) - before);
+                output = bytes.toString().trim();
+            }
+            System.out.printf("%s: first %.1f ms, best %.1f ms, %.1f KB allocated (%s)%n",
+                    program[0], first, best, allocated / 1e3, output);
+        }
+    }
+}
@@ -2,7 +2,11 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import environment.Value;
+import ir.Instruction;
+import ir.IrBuilder;
 import type.Type;
+import vm.BytecodeCompiler;
 
 /**
  * Represents a literal expression.
@@ -14,6 +18,7 @@ public class Literal implements Expression
 {
     private final Object value;
     private final Type type;
+    private final long word;
 
     /**
      * Constructor for a literal expression.
@@ -23,6 +28,7 @@ public class Literal implements Expression
     {
         this.value = value;
         this.type = type;
+        this.word = Value.of(value);
     }
 
     @Override
@@ -31,10 +37,34 @@ public class Literal implements Expression
         return value;
     }
 
+    @Override
+    public long evalValue(Environment env)
+    {
+        return word;
+    }
+
     @Override
     public void compile(Emitter e)
     {
-        e.emit(String.format("li $v0 %d", (int) value));
+        if (value instanceof Boolean b)
+            e.emit(String.format("li $v0 %d", b ? 1 : 0));
+        else
+            e.emit(String.format("li $v0 %d", (int) value));
+    }
+
+    @Override
+    public int compileValue(BytecodeCompiler c)
+    {
+        return c.constant(word);
+    }
+
+    /**
+     * Gets the value of the literal.
+     * @return an Integer or a Boolean, the value.
+     */
+    public Object getValue()
+    {
+        return value;
     }
 
     @Override
@@ -42,4 +72,39 @@ public class Literal implements Expression
     {
         return type;
     }
+
+    @Override
+    public Instruction lowerValue(IrBuilder b)
+    {
+        return b.constant(word);
+    }
+
+    @Override
+    public void write(AstWriter w)
+    {
+        w.writeTag(AstWriter.LITERAL);
+        w.writeByte(type.ordinal());
+        if (value instanceof Boolean b)
+        {
+            w.writeByte(AstWriter.BOOLEAN_LITERAL);
+            w.writeByte(b ? 1 : 0);
+        }
+        else
+        {
+            w.writeByte(AstWriter.INT_LITERAL);
+            w.writeInt((Integer) value);
+        }
+    }
+
+    @Override
+    public void resolve(Resolver r)
+    {
+    }
+
+    @Override
+    public Expression optimize(Optimizer o)
+    {
+        o.count();
+        return this;
+    }
 }
@@ -0,0 +1,197 @@
+package ast;
+
+/**
+ * Optimizes a Program before it runs or is compiled, by rewriting its tree. Like the
+ * Resolver, it is driven by the nodes: each node optimizes its children, then itself, and
+ * returns the node to use in its place. It runs three passes, over and over until a
+ * round of them changes nothing:
+ * <p>
+ * FOLD computes every operation on two literals that cannot fail at run time.
+ * <p>
+ * SIMPLIFY applies identities: x + 0, 0 + x, x - 0, x * 1 and 1 * x become x, and
+ * x * 0 and 0 * x become 0. Values are typed only at run time, so an identity is only
+ * applied where it cannot hide an error: x must be sure to be an int for x + 0 to become
+ * x, and x * 0 only becomes 0 if evaluating x has no effect and cannot fail.
+ * <p>
+ * PRUNE removes the branch of an IF that a literal condition never takes, a WHILE whose
+ * condition is the literal False, the body of a FOR whose bounds are literals with an
+ * empty range, and empty blocks.
+ * <p>
+ * The Optimizer counts the nodes of the program after every pass, and reports how many
+ * nodes each pass removed in total, and how many rewrites it made.
+ * <p>
+ * Usage:
+ * Optimizer o = new Optimizer();
+ * program = o.optimize(program);
+ * System.out.println(o);
+ *
+ * @author Agastya Ravuri
+ * @version 5.3.2024
+ */
+public class Optimizer
+{
+    /**
+     * The pass that folds constants.
+     */
+    public static final int FOLD = 0;
+
+    /**
+     * The pass that applies algebraic identities.
+     */
+    public static final int SIMPLIFY = 1;
+
+    /**
+     * The pass that removes dead branches and loops.
+     */
+    public static final int PRUNE = 2;
+
+    private static final int COUNT = -1;
+    private static final String[] NAMES = {
+            "constant folding", "algebraic simplification", "dead-branch elimination"
+    };
+
+    private int pass = COUNT;
+    private int nodes;
+    private int before;
+    private int after;
+    private int rounds;
+    private final int[] removed = new int[NAMES.length];
+    private final int[] rewrites = new int[NAMES.length];
+
+    /**
+     * Optimizes a program.
+     * @param p the program.
+     * @return the optimized program, which is p if nothing could be optimized.
+     */
+    public Program optimize(Program p)
+    {
+        before = count(p);
+        int size = before;
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            rounds++;
+            for (int i = 0; i < NAMES.length; i++)
+            {
+                pass = i;
+                Program q = p.optimize(this);
+                pass = COUNT;
+                if (q != p)
+                {
+                    changed = true;
+                    int now = count(q);
+                    removed[i] += size - now;
+                    size = now;
+                    p = q;
+                }
+            }
+        }
+        after = size;
+        return p;
+    }
+
+    /**
+     * Counts the nodes of a program, by running it through optimize() with no pass.
+     * @param p the program.
+     * @return the number of nodes.
+     */
+    private int count(Program p)
+    {
+        nodes = 0;
+        p.optimize(this);
+        return nodes;
+    }
+
+    /**
+     * Counts a node. Called by every node when it is optimized.
+     */
+    void count()
+    {
+        nodes++;
+    }
+
+    /**
+     * Counts a rewrite made by the current pass.
+     */
+    void rewrote()
+    {
+        rewrites[pass]++;
+    }
+
+    /**
+     * Checks whether the current pass folds constants.
+     * @return true if it does, false otherwise.
+     */
+    boolean folds()
+    {
+        return pass == FOLD;
+    }
+
+    /**
+     * Checks whether the current pass applies algebraic identities.
+     * @return true if it does, false otherwise.
+     */
+    boolean simplifies()
+    {
+        return pass == SIMPLIFY;
+    }
+
+    /**
+     * Checks whether the current pass removes dead branches and loops.
+     * @return true if it does, false otherwise.
+     */
+    boolean prunes()
+    {
+        return pass == PRUNE;
+    }
+
+    /**
+     * Gets the number of nodes that a pass removed, over all rounds.
+     * @param pass FOLD, SIMPLIFY or PRUNE.
+     * @return the number of nodes.
+     */
+    public int getRemoved(int pass)
+    {
+        return removed[pass];
+    }
+
+    /**
+     * Gets the number of rewrites that a pass made, over all rounds.
+     * @param pass FOLD, SIMPLIFY or PRUNE.
+     * @return the number of rewrites.
+     */
+    public int getRewrites(int pass)
+    {
+        return rewrites[pass];
+    }
+
+    /**
+     * Gets the number of nodes of the last program optimized, before optimizing it.
+     * @return the number of nodes.
+     */
+    public int getNodesBefore()
+    {
+        return before;
+    }
+
+    /**
+     * Gets the number of nodes of the last program optimized, after optimizing it.
+     * @return the number of nodes.
+     */
+    public int getNodesAfter()
+    {
+        return after;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(String.format("%d nodes, %d after optimizing "
+                + "(%d rounds)", before, after, rounds));
+        for (int i = 0; i < NAMES.length; i++)
+            sb.append(String.format("%n    %s: %d nodes removed, %d rewrites", NAMES[i],
+                    removed[i], rewrites[i]));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,121 @@
+package ast;
+
+import emitter.Emitter;
+import vm.BytecodeCompiler;
+import vm.TestHarness;
+import vm.VirtualMachine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests the Optimizer: every program must print the same output and end with the same
+ * exception, if any, with and without optimizing it, on the interpreter and on the virtual
+ * machine. Prints the report of the Optimizer for each program, and how many lines of MIPS
+ * it compiles into before and after.
+ *
+ * @author Agastya Ravuri
+ * @version 5.3.2024
+ */
+public class OptimizerTester
+{
+    private static final String[] FILES = {
+            "ParserTest.txt", "fact.txt", "parserTest4.txt", "parserTest6.txt", "parserTest7.txt",
+            "parserTest8.txt", "parserTest8_5.txt"
+    };
+
+    private static final String[] CASES = {
+            // Negation, identities and constant conditions.
+            "BEGIN\n    x := 5;\n    WRITELN(-x);\n    WRITELN(-3 * 2 + 0);\n"
+                    + "    WRITELN((x + 1) * 1 + 0);\n    IF 1 = 1 THEN WRITELN(1); ELSE WRITELN(2);\n"
+                    + "    IF 2 < 1 THEN WRITELN(3);\n    WHILE 1 > 2 DO WRITELN(4);\n"
+                    + "    FOR i := 5 TO 1 DO WRITELN(i);\n    WRITELN(i);\nEND;\n",
+            // Constants in a procedure body, with a dead branch around a tail call.
+            "PROCEDURE count(n, acc);\nBEGIN\n    IF 1 < 0 THEN WRITELN(0);\n"
+                    + "    IF n = 0 THEN count := acc + 0;\n"
+                    + "    ELSE count := count(n - (2 - 1), acc + 2 * 3 mod 4);\nEND;\n"
+                    + "BEGIN\n    WRITELN(count(1000, 0));\nEND;\n",
+            // Identities that must not apply: x may not hold an int, and reading it creates it.
+            "BEGIN\n    b := 1 < 2;\n    WRITELN(y * 0);\n    WRITELN(y);\n    WRITELN(b + 0);\nEND;\n",
+            "BEGIN\n    b := True;\n    WRITELN(b * 1);\nEND;\n",
+            // Operations that fail are left to fail at run time.
+            "BEGIN\n    WRITELN(1);\n    WRITELN(1 / 0);\nEND;\n",
+            "BEGIN\n    WRITELN(1);\n    WRITELN((1 < 2) + 1);\nEND;\n",
+            "BEGIN\n    IF 1 THEN WRITELN(1);\nEND;\n",
+            // A loop that never runs, in a branch that is always taken.
+            "BEGIN\n    IF True THEN WHILE False DO WRITELN(1);\n    WRITELN(2 * 3 = 6);\nEND;\n",
+    };
+
+    /**
+     * Tests the Optimizer.
+     * @param args not used
+     * @throws IOException if a file cannot be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        for (String file : FILES)
+            test(file, Files.readString(Path.of(file)));
+        for (int i = 0; i < CASES.length; i++)
+            test("case " + i, CASES[i]);
+    }
+
+    /**
+     * Checks that a program prints the same with and without optimizing it, and prints the
+     * report of the Optimizer.
+     * @param name the name of the program
+     * @param source the source of the program
+     */
+    private static void test(String name, String source)
+    {
+        Optimizer o = new Optimizer();
+        Program optimized = o.optimize(TestHarness.parse(source));
+        StringBuilder result = new StringBuilder();
+        for (boolean vm : new boolean[] {false, true})
+        {
+            String expected = run(TestHarness.parse(source), vm);
+            String output = run(optimized, vm);
+            if (!output.equals(expected))
+                result.append("\n--- ").append(vm ? "vm" : "interpreter").append(", expected:\n")
+                        .append(expected).append("\n--- printed:\n").append(output);
+        }
+        System.out.printf("%s: %s, %d lines of MIPS, %d after%n    %s%n", name,
+                result.length() == 0 ? "ok" : "WRONG" + result, mips(TestHarness.parse(source)),
+                mips(optimized), o.toString().replace("\n", "\n    "));
+    }
+
+    /**
+     * Compiles a program into MIPS assembly, and counts its lines.
+     * @param p the program
+     * @return the number of lines
+     */
+    private static long mips(Program p)
+    {
+        try
+        {
+            File f = File.createTempFile("optimized", ".asm");
+            f.deleteOnExit();
+            p.compile(new Emitter(f.getPath()));
+            return Files.readAllLines(f.toPath()).size();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Runs a program, capturing what it prints.
+     * @param p the program
+     * @param vm true to run it on the virtual machine, false to interpret it
+     * @return the output, followed by the class of the exception it ended with, if any
+     */
+    private static String run(Program p, boolean vm)
+    {
+        if (vm)
+            return TestHarness.capture(() ->
+                    new VirtualMachine().run(new BytecodeCompiler().compile(p)));
+        return TestHarness.capture(p::run);
+    }
+}
@@ -1,6 +1,13 @@
 package ast;
 
+import environment.Environment;
+import environment.Scope;
+
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Represents a procedure.
@@ -13,7 +20,10 @@ public class Procedure
 
     private final String name;
     private final List<Variable> args;
-    private final Statement run;
+    private volatile Statement run;
+    private Supplier<Statement> parse;
+
+    private CallPlan plan;
 
     /**
      * Constructor for a procedure.
@@ -29,6 +39,20 @@ public class Procedure
         this.run = run;
     }
 
+    /**
+     * Constructor for a procedure whose body is only parsed the first time it is needed.
+     *
+     * @param name the name of the procedure.
+     * @param args the arguments of the procedure.
+     * @param parse parses the body of the procedure; called at most once.
+     */
+    public Procedure(String name, List<Variable> args, Supplier<Statement> parse)
+    {
+        this.name = name;
+        this.args = args;
+        this.parse = parse;
+    }
+
     /**
      * Gets the name of the procedure.
      * @return a String, the name of the procedure.
@@ -48,11 +72,66 @@ public class Procedure
     }
 
     /**
-     * Gets the body of the procedure.
+     * Gets the body of the procedure, parsing it first if it has not been parsed yet.
      * @return a Statement, the body of the procedure.
+     * @throws IllegalArgumentException if the body does not parse.
      */
     public Statement getBody() {
-        return run;
+        Statement body = run;
+        if (body != null)
+            return body;
+        synchronized (this)
+        {
+            if (run == null)
+            {
+                run = parse.get();
+                parse = null;
+            }
+            return run;
+        }
+    }
+
+    /**
+     * Calls the procedure.
+     * @param env the environment of the caller, in which the arguments are evaluated.
+     * @param args the arguments.
+     * @return the result of the procedure, encoded by Value.
+     */
+    long call(Environment env, List<Expression> args)
+    {
+        return link(env.linkProcedures()).invoke(env, args);
+    }
+
+    /**
+     * Resolves the body of the procedure, unless it has already been resolved against the
+     * same procedures. The arguments get the first slots, then the result; the slot of an
+     * argument that a call does not pass stays empty, and the variable is found in the
+     * callers instead.
+     * @param procedures the procedures declared in the main program, by name.
+     * @return the plan for calling the procedure.
+     */
+    CallPlan link(Map<String, Procedure> procedures)
+    {
+        CallPlan p = plan;
+        if (p != null && p.isLinkedTo(procedures))
+            return p;
+        Scope s = new Scope();
+        Set<String> locals = new HashSet<>();
+        int[] slots = new int[args.size()];
+        for (int i = 0; i < slots.length; i++)
+        {
+            slots[i] = s.declare(args.get(i).getName());
+            locals.add(args.get(i).getName());
+        }
+        int result = s.declare(name);
+        locals.add(name);
+        Statement body = getBody();
+        body.resolve(new Resolver(s, locals, procedures));
+        body.markTail(name);
+
+        p = new CallPlan(name, procedures, s, slots, result, body);
+        plan = p;
+        return p;
     }
 
     @Override
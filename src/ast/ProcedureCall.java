@@ -2,20 +2,38 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import environment.Value;
+import ir.Instruction;
+import ir.IrBuilder;
 import type.Type;
+import vm.BytecodeCompiler;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Represents a procedure call.
+ * <p>
+ * The call keeps an inline cache: the plan of the procedure it called last, which it
+ * calls again directly as long as no procedure has been declared since the procedures
+ * were linked. Once one has, procedure names can mean different things in different
+ * environments, so the call falls back to looking its procedure up on every call.
  *
  * @author Agastya Ravuri
  * @version 3.25.2024
  */
-public class ProcedureCall implements Expression, Statement
+public class ProcedureCall implements Expression, Statement, HeapInterpreter.Step
 {
+    /**
+     * The state of a call statement on the continuation stack, when the call has returned
+     * and its result is to be thrown away.
+     */
+    private static final int DISCARD = 0;
+
     private final String name;
     private final List<Expression> args;
+    private Procedure procedure;
+    private CallPlan plan;
 
     /**
      * Constructor for a procedure call.
@@ -32,33 +50,109 @@ public class ProcedureCall implements Expression, Statement
     @Override
     public Object eval(Environment env)
     {
-        Procedure p = env.getProcedure(name);
-        Environment scope = new Environment(env);
-        List<Variable> vars = p.getArgs();
-        for (int i = 0; i < args.size(); i++)
+        return Value.box(evalValue(env));
+    }
+
+    @Override
+    public long evalValue(Environment env)
+    {
+        return plan(env).invoke(env, args);
+    }
+
+    /**
+     * Gets the plan of the procedure to call: the cached one if it can be used, or else
+     * that of the procedure looked up, which is cached if the procedures have not changed.
+     * @param env the environment of the caller.
+     * @return the plan.
+     */
+    private CallPlan plan(Environment env)
+    {
+        CallPlan p = plan;
+        if (p != null && !env.proceduresChanged() && p.isLinkedTo(env.linkProcedures()))
+            return p;
+        if (env.proceduresChanged())
         {
-            scope.declareVariable(vars.get(i), args.get(i).eval(env));
+            plan = null;
+            return env.getProcedure(name).link(env.linkProcedures());
         }
-        scope.declareVariable(new Variable(p.getName(), Type.INT), 0);
-        p.getBody().exec(scope);
-        return scope.getVariable(new Variable(p.getName(), Type.INT));
+        Procedure proc = procedure;
+        if (proc == null)
+            proc = env.getProcedure(name);
+        p = proc.link(env.linkProcedures());
+        plan = p;
+        return p;
+    }
+
+    /**
+     * Makes this call in tail position: evaluates the arguments, and leaves the call in
+     * the environment for the procedure that is returning to make.
+     * @param env the environment of the caller.
+     */
+    void tailCall(Environment env)
+    {
+        CallPlan p = plan(env);
+        env.setTailCall(new TailCall(p, p.frame(env, args)));
+    }
+
+    /**
+     * Does one step of this call on the continuation stack of a HeapInterpreter.
+     * @param h the interpreter.
+     * @param env the environment of the caller.
+     * @param state EXEC or EVAL to make the call, or DISCARD to throw its result away.
+     */
+    @Override
+    public void step(HeapInterpreter h, Environment env, int state)
+    {
+        if (state == DISCARD)
+        {
+            h.pop();
+            return;
+        }
+        if (state == HeapInterpreter.EXEC)
+            h.push(this, env, DISCARD);
+        plan(env).call(h, env, args);
     }
 
     @Override
     public void exec(Environment env)
     {
-        eval(env);
+        evalValue(env);
     }
 
     @Override
     public void compile(Emitter e)
     {
+        e.emitSaveLoopRegisters();
         for (Expression arg : args)
         {
             arg.compile(e);
             e.emitPushArg("$v0");
         }
         e.emitFormat("jal %s", e.genProcedureLabel(name));
+        e.emitRestoreLoopRegisters();
+    }
+
+    @Override
+    public void compile(BytecodeCompiler c)
+    {
+        compileValue(c);
+        c.endStatement();
+    }
+
+    @Override
+    public int compileValue(BytecodeCompiler c)
+    {
+        int[] registers = new int[args.size()];
+        int[] marks = new int[args.size()];
+        for (int i = 0; i < registers.length; i++)
+        {
+            registers[i] = args.get(i).compileValue(c);
+            marks[i] = c.mark();
+        }
+        // From the last argument back, since stable() can insert code at a mark.
+        for (int i = registers.length - 1; i >= 0; i--)
+            registers[i] = c.stable(registers[i], marks[i]);
+        return c.call(name, registers);
     }
 
     @Override
@@ -66,4 +160,53 @@ public class ProcedureCall implements Expression, Statement
     {
         return Type.INT;
     }
+
+    @Override
+    public Instruction lowerValue(IrBuilder b)
+    {
+        List<Instruction> values = new ArrayList<>(args.size());
+        for (Expression arg : args)
+            values.add(arg.lowerValue(b));
+        return b.call(name, values);
+    }
+
+    @Override
+    public void lower(IrBuilder b)
+    {
+        lowerValue(b);
+    }
+
+    @Override
+    public void write(AstWriter w)
+    {
+        w.writeTag(AstWriter.PROCEDURE_CALL);
+        w.writeString(name);
+        w.writeInt(args.size());
+        for (Expression arg : args)
+            arg.write(w);
+    }
+
+    @Override
+    public void resolve(Resolver r)
+    {
+        procedure = r.getProcedure(name);
+        plan = null;
+        for (Expression arg : args)
+            arg.resolve(r);
+    }
+
+    @Override
+    public ProcedureCall optimize(Optimizer o)
+    {
+        o.count();
+        List<Expression> optimized = new ArrayList<>(args.size());
+        boolean changed = false;
+        for (Expression arg : args)
+        {
+            Expression e = arg.optimize(o);
+            changed |= e != arg;
+            optimized.add(e);
+        }
+        return changed ? new ProcedureCall(name, optimized) : this;
+    }
 }
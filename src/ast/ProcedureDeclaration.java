@@ -2,6 +2,8 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import ir.IrBuilder;
+import vm.BytecodeCompiler;
 
 /**
  * Represents the declaration of a procedure.
@@ -44,4 +46,73 @@ public class ProcedureDeclaration implements Statement
         e.emitFreeScope();
         e.emit("jr $ra");
     }
+
+    /**
+     * Procedures declared in the main program are compiled by Program; the virtual machine
+     * does not support declaring one anywhere else.
+     * @param c the compiler of the function that contains this statement.
+     * @throws IllegalArgumentException always.
+     */
+    @Override
+    public void compile(BytecodeCompiler c)
+    {
+        throw new IllegalArgumentException("The virtual machine only supports procedures "
+                + "declared in the main program: " + procedure.getName());
+    }
+
+    /**
+     * Gets the procedure that is declared.
+     * @return the procedure.
+     */
+    public Procedure getProcedure()
+    {
+        return procedure;
+    }
+
+    /**
+     * Procedures declared in the main program are lowered by Program; the IR does not
+     * support declaring one anywhere else.
+     * @param b the builder of the function that contains this statement.
+     * @throws IllegalArgumentException always.
+     */
+    @Override
+    public void lower(IrBuilder b)
+    {
+        throw new IllegalArgumentException("The IR only supports procedures declared in "
+                + "the main program: " + procedure.getName());
+    }
+
+    @Override
+    public void write(AstWriter w)
+    {
+        w.writeTag(AstWriter.PROCEDURE_DECLARATION);
+        w.writeString(procedure.getName());
+        w.writeInt(procedure.getArgs().size());
+        for (Variable arg : procedure.getArgs())
+            arg.write(w);
+        procedure.getBody().write(w);
+    }
+
+    @Override
+    public void resolve(Resolver r)
+    {
+        // The body is resolved when the procedure is first called.
+    }
+
+    /**
+     * Optimizes the body of the procedure, parsing it first if it has not been parsed yet.
+     * @param o the optimizer.
+     * @return the declaration to use in place of this one.
+     */
+    @Override
+    public ProcedureDeclaration optimize(Optimizer o)
+    {
+        o.count();
+        Statement body = procedure.getBody();
+        Statement optimized = body.optimize(o);
+        if (optimized == body)
+            return this;
+        return new ProcedureDeclaration(new Procedure(procedure.getName(), procedure.getArgs(),
+                optimized));
+    }
 }
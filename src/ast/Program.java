@@ -2,6 +2,9 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import environment.Scope;
+import ir.IrBuilder;
+import vm.BytecodeCompiler;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -32,11 +35,24 @@ public class Program
     }
 
     /**
-     * Runs the program.
+     * Runs the program. The main statement is resolved first, after the procedures are
+     * declared, so that its calls can be linked to them.
      */
     public void run() {
-        Environment e = new Environment();
+        run(null);
+    }
+
+    /**
+     * Runs the program with tiered execution: hot procedures and loops are compiled to
+     * JVM bytecode while it runs.
+     * @param tiering the Tiering to run with, or null to only interpret the program.
+     */
+    public void run(Tiering tiering) {
+        Scope scope = new Scope();
+        Environment e = new Environment(null, scope);
+        e.setTiering(tiering);
         procedures.exec(e);
+        run.resolve(new Resolver(scope, null, e.linkProcedures()));
         run.exec(e);
     }
 
@@ -62,4 +78,72 @@ public class Program
 
         e.close();
     }
+
+    /**
+     * Compiles the program into bytecode for the virtual machine: declares its procedures
+     * and sets its main statement. Called by BytecodeCompiler.compile().
+     *
+     * @param c the compiler.
+     */
+    public void compile(BytecodeCompiler c)
+    {
+        for (Statement s : procedures.getStatements())
+            c.declareProcedure(((ProcedureDeclaration) s).getProcedure());
+        c.setMain(run);
+    }
+
+    /**
+     * Lowers the program into IR: declares its procedures and sets its main statement.
+     * Called by IrBuilder.lower().
+     *
+     * @param b the builder.
+     */
+    public void lower(IrBuilder b)
+    {
+        for (Statement s : procedures.getStatements())
+            b.declareProcedure(((ProcedureDeclaration) s).getProcedure());
+        b.setMain(run);
+    }
+
+    /**
+     * Optimizes the procedures and the main statement for one pass of an Optimizer.
+     * Called by Optimizer.optimize().
+     *
+     * @param o the optimizer.
+     * @return the optimized program, or this program if the pass could not change it.
+     */
+    Program optimize(Optimizer o)
+    {
+        Block p = procedures.optimize(o);
+        Statement r = run.optimize(o);
+        if (p == procedures && r == run)
+            return this;
+        List<ProcedureDeclaration> declarations = new ArrayList<>();
+        for (Statement s : p.getStatements())
+            declarations.add((ProcedureDeclaration) s);
+        return new Program(declarations, r);
+    }
+
+    /**
+     * Writes the program in binary, for AstReader to read back.
+     * @param w the writer to write to.
+     */
+    void write(AstWriter w)
+    {
+        procedures.write(w);
+        run.write(w);
+    }
+
+    /**
+     * Reads a program written by write().
+     * @param r the reader to read from.
+     * @return the program.
+     */
+    static Program read(AstReader r)
+    {
+        List<ProcedureDeclaration> procedures = new ArrayList<>();
+        for (Statement s : ((Block) r.readStatement()).getStatements())
+            procedures.add((ProcedureDeclaration) s);
+        return new Program(procedures, r.readStatement());
+    }
 }
@@ -2,6 +2,10 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import environment.Value;
+import ir.IrBuilder;
+import vm.Bytecode;
+import vm.BytecodeCompiler;
 
 import java.util.Scanner;
 
@@ -29,7 +33,7 @@ public class ReadLn implements Statement
     @Override
     public void exec(Environment env)
     {
-        env.setVariable(var, sc.nextInt());
+        var.assign(env, Value.ofInt(sc.nextInt()));
     }
 
     @Override
@@ -37,4 +41,40 @@ public class ReadLn implements Statement
     {
         throw new RuntimeException(":/");
     }
+
+    @Override
+    public void compile(BytecodeCompiler c)
+    {
+        int t = c.temporary();
+        c.emit(Bytecode.READ, t);
+        c.assign(var.getName(), t);
+        c.endStatement();
+    }
+
+    @Override
+    public void lower(IrBuilder b)
+    {
+        b.assign(var.getName(), b.readInt());
+    }
+
+    @Override
+    public void write(AstWriter w)
+    {
+        w.writeTag(AstWriter.READLN);
+        var.write(w);
+    }
+
+    @Override
+    public void resolve(Resolver r)
+    {
+        var.resolve(r);
+    }
+
+    @Override
+    public Statement optimize(Optimizer o)
+    {
+        o.count();
+        var.optimize(o);
+        return this;
+    }
 }
@@ -0,0 +1,112 @@
+package ast;
+
+import vm.TestHarness;
+
+/**
+ * Tests deep recursion: programs that recurse far deeper than the Java stack allows, with
+ * and without tail calls, must run to the end on the interpreter, print what they should,
+ * and still end with the same exceptions as before, also with tiering, where a procedure
+ * hot enough to be compiled must still recurse on the heap. Then times a shallow recursion, to
+ * show that calls that never reach MAX_DEPTH do not pay for the HeapInterpreter.
+ *
+ * @author Agastya Ravuri
+ * @version 4.30.2024
+ */
+public class RecursionTester
+{
+    private static final String[][] CASES = {
+            // Deep recursion that is not a tail call.
+            {"PROCEDURE down(n);\nBEGIN\n    IF n = 0 THEN down := 0;\n"
+                    + "    ELSE down := down(n - 1) + 1;\nEND;\n"
+                    + "BEGIN\n    WRITELN(down(100000));\nEND;\n", "100000"},
+            // A tail-recursive accumulator.
+            {"PROCEDURE fact(n, acc);\nBEGIN\n    IF n = 0 THEN fact := acc;\n"
+                    + "    ELSE fact := fact(n - 1, (acc * n) mod 10007);\nEND;\n"
+                    + "BEGIN\n    WRITELN(fact(100000, 1));\nEND;\n", null},
+            // Mutual recursion in tail position.
+            {"PROCEDURE even(n);\nBEGIN\n    IF n = 0 THEN even := 1;\n"
+                    + "    ELSE even := odd(n - 1);\nEND;\n"
+                    + "PROCEDURE odd(n);\nBEGIN\n    IF n = 0 THEN odd := 0;\n"
+                    + "    ELSE odd := even(n - 1);\nEND;\n"
+                    + "BEGIN\n    WRITELN(even(200001));\n    WRITELN(odd(200001));\nEND;\n",
+                    "0\n1"},
+            // Deep recursion that prints on the way down and up, with calls as statements
+            // and in loops.
+            {"PROCEDURE walk(n);\nBEGIN\n    IF n > 0 THEN\n    BEGIN\n"
+                    + "        IF n mod 25000 = 0 THEN WRITELN(n);\n        x := walk(n - 1);\n"
+                    + "        i := 0;\n        WHILE i < 1 DO\n        BEGIN\n"
+                    + "            IF n mod 25000 = 0 THEN WRITELN(walk(0) - n);\n"
+                    + "            i := i + 1;\n        END;\n    END;\nEND;\n"
+                    + "BEGIN\n    walk(50000);\nEND;\n", "50000\n25000\n-25000\n-50000"},
+            // Dynamic scoping across frames on the heap: the deepest call reads a variable
+            // of the main program and one of its caller.
+            {"PROCEDURE deep(n, seen);\nBEGIN\n    IF n = 0 THEN deep := seen + base;\n"
+                    + "    ELSE deep := deep(n - 1, n) + 0;\nEND;\n"
+                    + "BEGIN\n    base := 1000;\n    WRITELN(deep(5000, 0));\nEND;\n", "1001"},
+            // An argument that is not passed is found in the deepest caller that has it.
+            {"PROCEDURE deep(n, seen);\nBEGIN\n    IF n = 0 THEN deep := seen;\n"
+                    + "    ELSE deep := deep(n - 1);\nEND;\n"
+                    + "BEGIN\n    seen := 1000;\n    WRITELN(deep(3000, 1));\nEND;\n", "1"},
+            // Errors deep in the recursion.
+            {"PROCEDURE d(n);\nBEGIN\n    IF n = 0 THEN d := 1 / n;\n"
+                    + "    ELSE d := d(n - 1) + 1;\nEND;\n"
+                    + "BEGIN\n    WRITELN(d(3000));\nEND;\n", "ArithmeticException"},
+            {"PROCEDURE b(n);\nBEGIN\n    IF n = 0 THEN b := 1 < 2;\n"
+                    + "    ELSE b := b(n - 1) + 1;\nEND;\n"
+                    + "BEGIN\n    WRITELN(b(3000));\nEND;\n", "ClassCastException"},
+    };
+
+    // A procedure that is hot enough to be compiled, then recurses deeply, with tiering.
+    private static final String TIERED = "PROCEDURE rec(n);\nBEGIN\n"
+            + "    IF n > 0 THEN rec := rec(n - 1) + 1;\nEND;\n"
+            + "BEGIN\n    FOR i := 1 TO 1200 DO x := rec(3);\n    WRITELN(rec(200000));\nEND;\n";
+
+    private static final String FIB = "PROCEDURE fib(n);\nBEGIN\n    IF n < 2 THEN fib := n;\n"
+            + "    ELSE fib := fib(n - 1) + fib(n - 2);\nEND;\n"
+            + "BEGIN\n    WRITELN(fib(25));\nEND;\n";
+
+    /**
+     * Tests deep recursion.
+     * @param args not used
+     */
+    public static void main(String[] args)
+    {
+        // The tail-recursive factorial, computed directly.
+        long fact = 1;
+        for (int n = 100000; n > 0; n--)
+            fact = fact * n % 10007;
+        CASES[1][1] = String.valueOf(fact);
+
+        for (int i = 0; i < CASES.length; i++)
+        {
+            String output = capture(CASES[i][0]);
+            System.out.println("case " + i + ": " + (output.equals(CASES[i][1]) ? "ok"
+                    : "WRONG\n--- expected:\n" + CASES[i][1] + "\n--- printed:\n" + output));
+        }
+
+        Tiering t = new Tiering();
+        String tiered = TestHarness.capture(() -> TestHarness.parse(TIERED).run(t));
+        System.out.println("tiered: " + (tiered.equals("200000") ? "ok"
+                : "WRONG\n--- expected:\n200000\n--- printed:\n" + tiered));
+        System.out.println("    " + t.toString().replace("\n", "\n    "));
+
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < 10; i++)
+        {
+            long start = System.nanoTime();
+            capture(FIB);
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        System.out.printf("fib(25): %.1f ms%n", best);
+    }
+
+    /**
+     * Parses and runs a program, and captures what it prints.
+     * @param source the source of the program
+     * @return the output, followed by the class of the exception it ended with, if any
+     */
+    private static String capture(String source)
+    {
+        return TestHarness.capture(TestHarness.parse(source)::run);
+    }
+}
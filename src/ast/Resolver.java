@@ -0,0 +1,64 @@
+package ast;
+
+import environment.Scope;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the variables and procedure calls in a piece of code (the main program, or the
+ * body of a procedure) before it runs.
+ * <p>
+ * Procedures are dynamically scoped: a variable that a procedure does not declare is
+ * looked up in whichever procedure called it. So only the variables that are always in
+ * the code's own environment get a slot: every variable of the main program (whose
+ * environment has no parent), and the arguments and result of a procedure. Every other
+ * variable is still looked up by name. Procedure calls are linked to the procedures
+ * declared in the main program.
+ *
+ * @author Agastya Ravuri
+ * @version 4.24.2024
+ */
+public class Resolver
+{
+    private final Scope scope;
+    private final Set<String> locals;
+    private final Map<String, Procedure> procedures;
+
+    /**
+     * Constructs a resolver.
+     * @param scope the scope of the code's environment.
+     * @param locals the names of the variables that are always in the code's environment,
+     *               or null if every variable is.
+     * @param procedures the procedures declared in the main program, by name.
+     */
+    public Resolver(Scope scope, Set<String> locals, Map<String, Procedure> procedures)
+    {
+        this.scope = scope;
+        this.locals = locals;
+        this.procedures = procedures;
+    }
+
+    /**
+     * Gets the slot of a variable.
+     * @param name the name of the variable.
+     * @return the slot of the variable in the code's environment, or -1 if it must be
+     *         looked up by name.
+     */
+    int slotOf(String name)
+    {
+        if (locals == null || locals.contains(name))
+            return scope.declare(name);
+        return -1;
+    }
+
+    /**
+     * Gets the procedure that a call links to.
+     * @param name the name of the procedure.
+     * @return the procedure declared in the main program, or null if there is none.
+     */
+    Procedure getProcedure(String name)
+    {
+        return procedures.get(name);
+    }
+}
@@ -2,6 +2,8 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import ir.IrBuilder;
+import vm.BytecodeCompiler;
 
 /**
  * Represents an abstract statement.
@@ -23,4 +25,45 @@ public interface Statement
      * @param e the emitter containing the file to write to.
      */
     void compile(Emitter e);
+
+    /**
+     * Compiles this statement into bytecode for the virtual machine.
+     * @param c the compiler of the function that contains this statement.
+     */
+    void compile(BytecodeCompiler c);
+
+    /**
+     * Lowers this statement into IR.
+     * @param b the builder of the function that contains this statement.
+     */
+    void lower(IrBuilder b);
+
+    /**
+     * Writes this statement in binary, for AstReader to read back.
+     * @param w the writer to write to.
+     */
+    void write(AstWriter w);
+
+    /**
+     * Resolves the variables and procedure calls in this statement, before it runs.
+     * @param r the resolver of the code that contains this statement.
+     */
+    void resolve(Resolver r);
+
+    /**
+     * Optimizes this statement for one pass of an Optimizer.
+     * @param o the optimizer.
+     * @return the statement to use in place of this one, which is this statement if the
+     *         pass could not change it.
+     */
+    Statement optimize(Optimizer o);
+
+    /**
+     * Marks the procedure calls that this statement makes in tail position, when it is the
+     * last statement of a procedure body: an assignment of a call to the result.
+     * @param result the name of the procedure, which is also the name of its result.
+     */
+    default void markTail(String result)
+    {
+    }
 }
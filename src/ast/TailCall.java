@@ -0,0 +1,45 @@
+package ast;
+
+import environment.Environment;
+
+/**
+ * A procedure call in tail position, which a procedure body leaves in its frame for
+ * CallPlan to make once the body is done, instead of making it on the Java stack.
+ *
+ * @author Agastya Ravuri
+ * @version 4.30.2024
+ */
+public final class TailCall
+{
+    private final CallPlan plan;
+    private final Environment frame;
+
+    /**
+     * Constructor for a tail call.
+     * @param plan the plan of the procedure called.
+     * @param frame the frame of the call, with its arguments set.
+     */
+    TailCall(CallPlan plan, Environment frame)
+    {
+        this.plan = plan;
+        this.frame = frame;
+    }
+
+    /**
+     * Gets the plan of the procedure called.
+     * @return the plan.
+     */
+    CallPlan getPlan()
+    {
+        return plan;
+    }
+
+    /**
+     * Gets the frame of the call.
+     * @return the frame.
+     */
+    Environment getFrame()
+    {
+        return frame;
+    }
+}
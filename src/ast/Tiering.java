@@ -0,0 +1,224 @@
+package ast;
+
+import vm.JvmCompiler;
+import vm.JvmLoop;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tiered execution for the interpreter. A program run with a Tiering starts out
+ * interpreted, while each procedure counts its calls and each loop of the main program
+ * counts its iterations. Once a procedure has been called callThreshold times, it is
+ * compiled to JVM bytecode by JvmCompiler, and later calls with int arguments run the
+ * compiled code. Once a loop of the main program has run loopThreshold iterations, it is
+ * compiled too, and the program jumps into the compiled loop in the middle of the
+ * interpreted one (on-stack replacement), as long as all of its variables hold ints.
+ * <p>
+ * Only code that JvmCompiler accepts gets compiled; everything else stays interpreted.
+ * The Tiering keeps count of what was compiled and what was not, and of how often the
+ * compiled code ran, and keeps a log of every tier transition.
+ * <p>
+ * Usage:
+ * Tiering t = new Tiering();
+ * program.run(t);
+ * System.out.println(t);
+ *
+ * @author Agastya Ravuri
+ * @version 4.29.2024
+ */
+public class Tiering
+{
+    private final int callThreshold;
+    private final int loopThreshold;
+
+    private int promotions;
+    private int rejections;
+    private long compiledCalls;
+    private long loopEntries;
+    private int loops;
+    private final List<String> events = new ArrayList<>();
+
+    /**
+     * Constructor for a Tiering with the default thresholds: 1000 calls of a procedure,
+     * or 10000 iterations of a loop.
+     */
+    public Tiering()
+    {
+        this(1000, 10000);
+    }
+
+    /**
+     * Constructor for a Tiering.
+     * @param callThreshold the number of calls after which a procedure is compiled.
+     * @param loopThreshold the number of iterations after which a loop is compiled.
+     */
+    public Tiering(int callThreshold, int loopThreshold)
+    {
+        if (callThreshold < 1 || loopThreshold < 1)
+            throw new IllegalArgumentException("Thresholds must be positive");
+        this.callThreshold = callThreshold;
+        this.loopThreshold = loopThreshold;
+    }
+
+    /**
+     * Gets the number of calls after which a procedure is compiled.
+     * @return the threshold.
+     */
+    public int getCallThreshold()
+    {
+        return callThreshold;
+    }
+
+    /**
+     * Gets the number of iterations after which a loop of the main program is compiled.
+     * @return the threshold.
+     */
+    public int getLoopThreshold()
+    {
+        return loopThreshold;
+    }
+
+    /**
+     * Gets the number of procedures and loops that were compiled.
+     * @return the number of promotions.
+     */
+    public int getPromotions()
+    {
+        return promotions;
+    }
+
+    /**
+     * Gets the number of procedures and loops that reached their threshold but could not
+     * be compiled, and stayed interpreted.
+     * @return the number of rejections.
+     */
+    public int getRejections()
+    {
+        return rejections;
+    }
+
+    /**
+     * Gets the number of calls that ran compiled code.
+     * @return the number of compiled calls.
+     */
+    public long getCompiledCalls()
+    {
+        return compiledCalls;
+    }
+
+    /**
+     * Gets the number of times the program jumped into a compiled loop.
+     * @return the number of loop entries.
+     */
+    public long getLoopEntries()
+    {
+        return loopEntries;
+    }
+
+    /**
+     * Gets the log of tier transitions, in the order they happened.
+     * @return one line per procedure or loop that was compiled or rejected.
+     */
+    public List<String> getEvents()
+    {
+        return new ArrayList<>(events);
+    }
+
+    /**
+     * Compiles a procedure that has reached the call threshold.
+     * @param name the name of the procedure.
+     * @param procedures the procedures it was linked to.
+     * @return the method of the procedure, which takes its arguments in an int[], or null
+     *         if it cannot be compiled.
+     */
+    MethodHandle compileProcedure(String name, Map<String, Procedure> procedures)
+    {
+        long start = System.nanoTime();
+        try
+        {
+            MethodHandle m = new JvmCompiler().compileProcedure(procedures, name);
+            promoted(name + ": compiled after " + callThreshold + " calls", start);
+            return m;
+        }
+        catch (IllegalArgumentException e)
+        {
+            rejected(name + ": stays interpreted after " + callThreshold + " calls", e);
+            return null;
+        }
+    }
+
+    /**
+     * Compiles a loop of the main program that has reached the loop threshold.
+     * @param loop the loop.
+     * @param procedures the procedures the program was linked to.
+     * @return the compiled loop, or null if it cannot be compiled.
+     */
+    JvmLoop compileLoop(While loop, Map<String, Procedure> procedures)
+    {
+        long start = System.nanoTime();
+        String name = "loop " + ++loops;
+        try
+        {
+            JvmLoop l = new JvmCompiler().compileLoop(loop, procedures);
+            promoted(name + ": compiled after " + loopThreshold + " iterations", start);
+            return l;
+        }
+        catch (IllegalArgumentException e)
+        {
+            rejected(name + ": stays interpreted after " + loopThreshold + " iterations", e);
+            return null;
+        }
+    }
+
+    /**
+     * Counts a call that ran compiled code.
+     */
+    void compiledCall()
+    {
+        compiledCalls++;
+    }
+
+    /**
+     * Counts a jump into a compiled loop.
+     */
+    void loopEntered()
+    {
+        loopEntries++;
+    }
+
+    /**
+     * Logs a procedure or loop that was compiled.
+     * @param event what was compiled.
+     * @param start when compiling started, from System.nanoTime().
+     */
+    private void promoted(String event, long start)
+    {
+        promotions++;
+        events.add(String.format("%s (%.2f ms)", event, (System.nanoTime() - start) / 1e6));
+    }
+
+    /**
+     * Logs a procedure or loop that could not be compiled.
+     * @param event what could not be compiled.
+     * @param e why not.
+     */
+    private void rejected(String event, IllegalArgumentException e)
+    {
+        rejections++;
+        events.add(event + ": " + e.getMessage());
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(String.format(
+                "%d compiled, %d rejected, %d compiled calls, %d compiled loop entries",
+                promotions, rejections, compiledCalls, loopEntries));
+        for (String event : events)
+            sb.append("\n    ").append(event);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package ast;
+
+import vm.TestHarness;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests tiered execution against the interpreter: with thresholds low enough that every
+ * procedure and loop that can be compiled is, every program must print the same output
+ * and end with the same exception, if any. Prints what was compiled for each program,
+ * then times a few programs with the default thresholds.
+ *
+ * @author Agastya Ravuri
+ * @version 4.29.2024
+ */
+public class TieringTester
+{
+    private static final String[] FILES = {
+            "ParserTest.txt", "fact.txt", "parserTest4.txt", "parserTest6.txt", "parserTest7.txt",
+            "parserTest8.txt", "parserTest8_5.txt"
+    };
+
+    private static final String[] CASES = {
+            // A hot loop that calls a hot procedure; the loop is entered in the middle.
+            "PROCEDURE sq(n);\n    sq := n * n;\nBEGIN\n    x := 0;\n    sum := 0;\n"
+                    + "    WHILE x < 50 DO\n    BEGIN\n        sum := sum + sq(x);\n"
+                    + "        x := x + 1;\n    END;\n    WRITELN(sum);\n    WRITELN(x);\nEND;\n",
+            // Nested loops: the inner one is compiled first, then the outer one.
+            "BEGIN\n    FOR i := 1 TO 20 DO\n        FOR j := 1 TO i DO\n"
+                    + "            s := s + i * j;\n    WRITELN(s);\n    WRITELN(i + j);\nEND;\n",
+            // A procedure that reads a variable of its caller stays interpreted, and so does
+            // a loop that calls it.
+            "PROCEDURE step(n);\n    total := total + n;\nBEGIN\n    total := 0;\n"
+                    + "    FOR i := 1 TO 30 DO x := step(i);\n    WRITELN(total);\nEND;\n",
+            // A loop whose variable holds a boolean cannot be entered, and goes on
+            // interpreted.
+            "BEGIN\n    b := 1 < 2;\n    x := 0;\n    WHILE x < 30 DO\n    BEGIN\n"
+                    + "        IF x = 20 THEN b := 0;\n        x := x + 1;\n    END;\n"
+                    + "    WRITELN(x);\n    WRITELN(b);\nEND;\n",
+            // A variable that a compiled loop never assigns keeps its value.
+            "BEGIN\n    x := 0;\n    y := 7;\n    WHILE x < 30 DO\n    BEGIN\n"
+                    + "        IF x > 100 THEN y := 0;\n        x := x + 1;\n    END;\n"
+                    + "    WRITELN(y);\nEND;\n",
+            // Calls with a boolean or too few arguments, after the procedure is compiled.
+            "PROCEDURE f(a, b);\n    f := a + b;\nPROCEDURE g(a);\n    g := a;\n"
+                    + "BEGIN\n    FOR i := 1 TO 10 DO x := f(i, i);\n    WRITELN(x);\n"
+                    + "    WRITELN(g(1 < 2));\n    WRITELN(f(1));\nEND;\n",
+            // Errors in compiled code.
+            "PROCEDURE d(n);\n    d := 100 / (5 - n);\nBEGIN\n"
+                    + "    FOR i := 1 TO 6 DO WRITELN(d(i));\nEND;\n",
+            "BEGIN\n    x := 10;\n    WHILE x > -10 DO\n    BEGIN\n        WRITELN(100 / x);\n"
+                    + "        x := x - 1;\n    END;\nEND;\n",
+    };
+
+    private static final String[][] TIMED = {
+            {"loop", "BEGIN\n    x := 0;\n    sum := 0;\n    WHILE x < 3000000 DO\n    BEGIN\n"
+                    + "        sum := sum + x * 3 - (x mod 7);\n        x := x + 1;\n    END;\n"
+                    + "    WRITELN(sum);\nEND;\n"},
+            {"fib", "PROCEDURE fib(n);\nBEGIN\n    IF n < 2 THEN fib := n;\n"
+                    + "    ELSE fib := fib(n - 1) + fib(n - 2);\nEND;\n"
+                    + "BEGIN\n    WRITELN(fib(25));\nEND;\n"},
+            {"one-shot", "PROCEDURE f(n);\n    f := n + 1;\nBEGIN\n    WRITELN(f(1));\nEND;\n"},
+    };
+
+    /**
+     * Tests tiered execution.
+     * @param args not used
+     * @throws IOException when a file cannot be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        for (String file : FILES)
+            System.out.println(file + ": " + compare(Files.readString(Path.of(file))));
+        for (int i = 0; i < CASES.length; i++)
+            System.out.println("case " + i + ": " + compare(CASES[i]));
+
+        for (String[] timed : TIMED)
+        {
+            Program p = TestHarness.parse(timed[1]);
+            double interpreted = Double.MAX_VALUE;
+            double tiered = Double.MAX_VALUE;
+            Tiering t = null;
+            for (int i = 0; i < 10; i++)
+            {
+                long start = System.nanoTime();
+                capture(p, null);
+                interpreted = Math.min(interpreted, (System.nanoTime() - start) / 1e6);
+                // A new parse each time, so that nothing stays compiled between runs.
+                Program fresh = TestHarness.parse(timed[1]);
+                t = new Tiering();
+                start = System.nanoTime();
+                capture(fresh, t);
+                tiered = Math.min(tiered, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("%s: interpreter: %.1f ms, tiered: %.1f ms%n    %s%n", timed[0],
+                    interpreted, tiered, t.toString().replace("\n", "\n    "));
+        }
+    }
+
+    /**
+     * Runs a program interpreted, and again with tiered execution and low thresholds.
+     * @param source the source of the program
+     * @return "same" if both printed the same output, or else both outputs; followed by
+     *         what was compiled
+     */
+    private static String compare(String source)
+    {
+        String interpreted = capture(TestHarness.parse(source), null);
+        Tiering t = new Tiering(3, 5);
+        String tiered = capture(TestHarness.parse(source), t);
+        String result = interpreted.equals(tiered) ? "same" : "DIFFERENT\n--- interpreter:\n"
+                + interpreted + "\n--- tiered:\n" + tiered;
+        return result + "\n    " + t.toString().replace("\n", "\n    ");
+    }
+
+    /**
+     * Runs a program and captures what it prints.
+     * @param p the program
+     * @param t the Tiering to run it with, or null to only interpret it
+     * @return the output, followed by the class of the exception it ended with, if any
+     */
+    private static String capture(Program p, Tiering t)
+    {
+        return TestHarness.capture(() -> p.run(t));
+    }
+}
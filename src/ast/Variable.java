@@ -2,7 +2,11 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import environment.Value;
+import ir.Instruction;
+import ir.IrBuilder;
 import type.Type;
+import vm.BytecodeCompiler;
 
 /**
  * Represents a variable.
@@ -15,6 +19,7 @@ public class Variable implements Expression
 
     private final String name;
     private final Type type;
+    private int slot = -1;
 
     /**
      * Constructor for a variable.
@@ -43,9 +48,46 @@ public class Variable implements Expression
     @Override
     public Object eval(Environment env)
     {
-        if (env.getVariable(this) == null)
-            env.setVariable(this, 0);
-        return env.getVariable(this);
+        return Value.box(evalValue(env));
+    }
+
+    /**
+     * Gets the value of this variable. A slot that is still empty, such as that of an
+     * argument that was not passed, does not hold the variable yet, so it is looked up in
+     * the callers; a variable that none of them has either is created as 0.
+     * @param env the environment in which to read it.
+     * @return the value, encoded by Value.
+     */
+    @Override
+    public long evalValue(Environment env)
+    {
+        if (slot >= 0)
+        {
+            long value = env.getSlot(slot);
+            if (value != Value.EMPTY)
+                return value;
+        }
+        long value = env.getVariable(this);
+        if (value == Value.EMPTY)
+        {
+            value = Value.ofInt(0);
+            env.setVariable(this, value);
+        }
+        return value;
+    }
+
+    /**
+     * Sets the value of this variable. While its slot is still empty, the variable of a
+     * caller with the same name is set instead, if there is one.
+     * @param env the environment in which to set it.
+     * @param value the value to set the variable to, encoded by Value.
+     */
+    void assign(Environment env, long value)
+    {
+        if (slot >= 0 && env.getSlot(slot) != Value.EMPTY)
+            env.setSlot(slot, value);
+        else
+            env.setVariable(this, value);
     }
 
     @Override
@@ -54,6 +96,12 @@ public class Variable implements Expression
         e.emitRetrieve("$v0", name);
     }
 
+    @Override
+    public int compileValue(BytecodeCompiler c)
+    {
+        return c.variable(name);
+    }
+
     @Override
     public Type getType()
     {
@@ -64,4 +112,40 @@ public class Variable implements Expression
     {
         return name;
     }
+
+    /**
+     * Gets the slot that the Resolver gave this variable.
+     * @return the slot, or -1 if the variable is looked up by name.
+     */
+    int getSlot()
+    {
+        return slot;
+    }
+
+    @Override
+    public Instruction lowerValue(IrBuilder b)
+    {
+        return b.variable(name);
+    }
+
+    @Override
+    public void write(AstWriter w)
+    {
+        w.writeTag(AstWriter.VARIABLE);
+        w.writeString(name);
+        w.writeByte(type.ordinal());
+    }
+
+    @Override
+    public void resolve(Resolver r)
+    {
+        slot = r.slotOf(name);
+    }
+
+    @Override
+    public Expression optimize(Optimizer o)
+    {
+        o.count();
+        return this;
+    }
 }
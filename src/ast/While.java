@@ -2,18 +2,36 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import environment.Value;
+import ir.BasicBlock;
+import ir.IrBuilder;
+import type.Type;
+import vm.Bytecode;
+import vm.BytecodeCompiler;
+import vm.JvmLoop;
+
+import java.util.Map;
 
 /**
  * Represents a while loop statement.
+ * <p>
+ * When the program runs with a Tiering, a loop of the main program counts its
+ * iterations, and once it is hot, goes on in compiled code from the next check of its
+ * condition.
  *
  * @author Agastya Ravuri
  * @version 3.22.2024
  */
-public class While implements Statement
+public class While implements Statement, HeapInterpreter.Step
 {
     private final Expression condition;
     private final Statement body;
 
+    private int iterations;
+    private JvmLoop compiled;
+    private Map<String, Procedure> compiledWith;
+    private boolean rejected;
+
     /**
      * Constructor for a while loop statement
      * @param condition the condition.
@@ -28,10 +46,77 @@ public class While implements Statement
     @Override
     public void exec(Environment env)
     {
-        while ((Boolean) condition.eval(env))
+        Tiering t = env.getTiering();
+        if (t == null || !env.isRoot())
+        {
+            while (condition.evalBoolean(env))
+            {
+                body.exec(env);
+            }
+            return;
+        }
+        while (condition.evalBoolean(env))
         {
             body.exec(env);
+            if (++iterations >= t.getLoopThreshold() && enterCompiled(env, t, 0))
+                return;
+        }
+    }
+
+    /**
+     * Goes on with the loop in compiled code, compiling it first if it has not been.
+     * Every variable of the loop must hold an int; if one does not, the loop goes on
+     * interpreted, and tries again after another loopThreshold iterations. Variables
+     * that the compiler made up, whose names start with $, are not in the environment:
+     * For.BOUND gets the bound of the For loop that this loop is the rest of, and the
+     * others are set by the loop before they are read.
+     * @param env the environment of the main program.
+     * @param t the Tiering the program runs with.
+     * @param bound the value of For.BOUND.
+     * @return true if the loop ran to the end in compiled code, false if it did not run.
+     */
+    boolean enterCompiled(Environment env, Tiering t, int bound)
+    {
+        // The compiled loop calls the procedures it was linked to.
+        if (rejected || env.proceduresChanged())
+            return false;
+        Map<String, Procedure> procedures = env.linkProcedures();
+        if (compiled == null || compiledWith != procedures)
+        {
+            compiled = t.compileLoop(this, procedures);
+            compiledWith = procedures;
+            if (compiled == null)
+            {
+                rejected = true;
+                return false;
+            }
+        }
+
+        String[] names = compiled.getVariables();
+        Variable[] variables = new Variable[names.length];
+        int[] values = new int[names.length];
+        for (int i = 0; i < names.length; i++)
+        {
+            if (names[i].startsWith("$"))
+            {
+                values[i] = names[i].equals(For.BOUND) ? bound : 0;
+                continue;
+            }
+            variables[i] = new Variable(names[i], Type.INT);
+            long value = env.getVariable(variables[i]);
+            if (!Value.isInt(value))
+            {
+                iterations = 0;
+                return false;
+            }
+            values[i] = (int) value;
         }
+        t.loopEntered();
+        compiled.run(values);
+        for (int i = 0; i < names.length; i++)
+            if (variables[i] != null)
+                env.setVariable(variables[i], Value.ofInt(values[i]));
+        return true;
     }
 
     @Override
@@ -43,4 +128,102 @@ public class While implements Statement
         condition.compile(e);
         e.emitFormat("bnez $v0 %s", startLabel);
     }
+
+    /**
+     * Compiles the loop with its condition at the bottom, so that each iteration takes
+     * a single jump.
+     * @param c the compiler of the function that contains this statement.
+     */
+    @Override
+    public void compile(BytecodeCompiler c)
+    {
+        int bodyLabel = c.newLabel();
+        int conditionLabel = c.newLabel();
+        c.emit(Bytecode.JUMP, conditionLabel);
+        c.bind(bodyLabel);
+        body.compile(c);
+        c.bind(conditionLabel);
+        condition.compileBranch(c, true, bodyLabel);
+        c.endStatement();
+    }
+
+    /**
+     * Lowers the loop into a header block that checks the condition, and the body, which
+     * jumps back to the header. The header is sealed once the body has jumped back.
+     * @param b the builder of the function that contains this statement.
+     */
+    @Override
+    public void lower(IrBuilder b)
+    {
+        BasicBlock header = b.newBlock();
+        BasicBlock loop = b.newBlock();
+        BasicBlock exit = b.newBlock();
+        b.jump(header);
+        b.start(header);
+        b.branch(condition.lowerValue(b), loop, exit);
+
+        b.seal(loop);
+        b.start(loop);
+        body.lower(b);
+        b.jump(header);
+        b.seal(header);
+        b.seal(exit);
+        b.start(exit);
+    }
+
+    @Override
+    public void write(AstWriter w)
+    {
+        w.writeTag(AstWriter.WHILE);
+        condition.write(w);
+        body.write(w);
+    }
+
+    @Override
+    public void resolve(Resolver r)
+    {
+        condition.resolve(r);
+        body.resolve(r);
+    }
+
+    /**
+     * Optimizes the condition and the body. Pruning replaces a loop whose condition is the
+     * literal False with an empty block.
+     * @param o the optimizer.
+     * @return the statement to use in place of this one.
+     */
+    @Override
+    public Statement optimize(Optimizer o)
+    {
+        o.count();
+        Expression c = condition.optimize(o);
+        Statement b = body.optimize(o);
+        if (o.prunes() && c instanceof Literal l && Boolean.FALSE.equals(l.getValue()))
+        {
+            o.rewrote();
+            return new Block();
+        }
+        return c == condition && b == body ? this : new While(c, b);
+    }
+
+    /**
+     * Does one step of this loop on the continuation stack of a HeapInterpreter.
+     * @param h the interpreter.
+     * @param env the environment the loop runs in.
+     * @param state EXEC to evaluate the condition, or 0 to run the body if it holds.
+     */
+    @Override
+    public void step(HeapInterpreter h, Environment env, int state)
+    {
+        if (state == HeapInterpreter.EXEC)
+        {
+            h.push(this, env, 0);
+            h.eval(condition, env);
+        }
+        else if (Value.toBoolean(h.pop()))
+        {
+            h.push(this, env, HeapInterpreter.EXEC);
+            h.exec(body, env);
+        }
+    }
 }
@@ -2,6 +2,10 @@ package ast;
 
 import emitter.Emitter;
 import environment.Environment;
+import environment.Value;
+import ir.IrBuilder;
+import vm.Bytecode;
+import vm.BytecodeCompiler;
 
 /**
  * Represents a WriteLn statement.
@@ -9,7 +13,7 @@ import environment.Environment;
  * @author Agastya Ravuri
  * @version 3.22.2024
  */
-public class WriteLn implements Statement
+public class WriteLn implements Statement, HeapInterpreter.Step
 {
     private final Expression expr;
 
@@ -25,7 +29,37 @@ public class WriteLn implements Statement
     @Override
     public void exec(Environment env)
     {
-        System.out.println(expr.eval(env));
+        print(expr.evalValue(env));
+    }
+
+    /**
+     * Prints a value on its own line.
+     * @param value the value, encoded by Value.
+     */
+    private static void print(long value)
+    {
+        if (Value.isInt(value))
+            System.out.println(Value.toInt(value));
+        else
+            System.out.println(Value.box(value));
+    }
+
+    /**
+     * Does one step of this statement on the continuation stack of a HeapInterpreter.
+     * @param h the interpreter.
+     * @param env the environment the statement runs in.
+     * @param state EXEC to evaluate the expression, or 0 to print its value.
+     */
+    @Override
+    public void step(HeapInterpreter h, Environment env, int state)
+    {
+        if (state == HeapInterpreter.EXEC)
+        {
+            h.push(this, env, 0);
+            h.eval(expr, env);
+        }
+        else
+            print(h.pop());
     }
 
     @Override
@@ -42,4 +76,38 @@ public class WriteLn implements Statement
         e.emit("syscall");
         e.emit("# WRITELN END:");
     }
+
+    @Override
+    public void compile(BytecodeCompiler c)
+    {
+        c.emit(Bytecode.WRITE, expr.compileValue(c));
+        c.endStatement();
+    }
+
+    @Override
+    public void lower(IrBuilder b)
+    {
+        b.writeLine(expr.lowerValue(b));
+    }
+
+    @Override
+    public void write(AstWriter w)
+    {
+        w.writeTag(AstWriter.WRITELN);
+        expr.write(w);
+    }
+
+    @Override
+    public void resolve(Resolver r)
+    {
+        expr.resolve(r);
+    }
+
+    @Override
+    public Statement optimize(Optimizer o)
+    {
+        o.count();
+        Expression e = expr.optimize(o);
+        return e == expr ? this : new WriteLn(e);
+    }
 }
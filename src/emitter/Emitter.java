@@ -7,12 +7,16 @@ import java.util.*;
 
 public class Emitter
 {
+	private static final int LOOP_REGISTERS = 8;
+
 	private PrintWriter out;
 	private Map<String, Integer> offsetMap;
 	private Stack<List<String>> scopes;
 
 	private int bytesPushed;
 	private int nextLabelID;
+	private int loopRegisters;
+	private int loopWords;
 
 	//creates an emitter for writing to a new file with given name
 	public Emitter(String outputFileName)
@@ -150,6 +154,104 @@ public class Emitter
 		}
 	}
 
+	/**
+	 * Reserves a place for the bound of a FOR loop while the loop runs: $s0 for the
+	 * outermost loop, $s1 for one inside it, and so on through $s7. A loop nested deeper
+	 * than that keeps its bound in a word of memory of its own, written out by close().
+	 * @return the register, or the label of the word.
+	 */
+	public String beginLoopRegister()
+	{
+		int depth = loopRegisters++;
+		if (depth < LOOP_REGISTERS)
+			return "$s" + depth;
+		loopWords = Math.max(loopWords, depth - LOOP_REGISTERS + 1);
+		return loopWord(depth);
+	}
+
+	/**
+	 * Frees the register, or word, of the innermost FOR loop.
+	 */
+	public void endLoopRegister()
+	{
+		loopRegisters--;
+	}
+
+	/**
+	 * Sets the bound of a FOR loop.
+	 * @param bound the register or word from beginLoopRegister().
+	 * @param reg the register that holds the bound; not $t0.
+	 */
+	public void emitSetLoopBound(String bound, String reg)
+	{
+		if (bound.startsWith("$"))
+		{
+			emitFormat("move %s %s", bound, reg);
+			return;
+		}
+		emitFormat("la $t0 %s", bound);
+		emitFormat("sw %s ($t0)", reg);
+	}
+
+	/**
+	 * Gets the bound of a FOR loop into a register.
+	 * @param bound the register or word from beginLoopRegister().
+	 * @return the bound's own register, or $t0 if the bound is in memory.
+	 */
+	public String emitGetLoopBound(String bound)
+	{
+		if (bound.startsWith("$"))
+			return bound;
+		emitFormat("la $t0 %s", bound);
+		emit("lw $t0 ($t0)");
+		return "$t0";
+	}
+
+	/**
+	 * Pushes the registers and words of the FOR loops around a procedure call, since the
+	 * procedure may run FOR loops of its own in the same registers and words.
+	 */
+	public void emitSaveLoopRegisters()
+	{
+		for (int i = 0; i < loopRegisters; i++)
+		{
+			if (i < LOOP_REGISTERS)
+				emitPush("$s" + i);
+			else
+				emitPush(emitGetLoopBound(loopWord(i)));
+		}
+	}
+
+	/**
+	 * Pops the registers and words of the FOR loops after a procedure call. The result in
+	 * $v0 is kept.
+	 */
+	public void emitRestoreLoopRegisters()
+	{
+		for (int i = loopRegisters - 1; i >= 0; i--)
+		{
+			if (i < LOOP_REGISTERS)
+				emitPop("$s" + i);
+			else
+			{
+				emitPop("$t1");
+				emitFormat("la $t0 %s", loopWord(i));
+				emit("sw $t1 ($t0)");
+			}
+		}
+	}
+
+	/**
+	 * Gets the label of the word that holds the bound of a FOR loop nested too deep for
+	 * a register.
+	 * @param depth the number of loops around the loop.
+	 * @return the label.
+	 */
+	private static String loopWord(int depth)
+	{
+		return "loopBound" + depth;
+	}
+
 	public String genLabel()
 	{
 		return "label" + (nextLabelID++);
@@ -162,6 +264,12 @@ public class Emitter
 	//closes the file.  should be called after all calls to emit.
 	public void close()
 	{
+		if (loopWords > 0)
+		{
+			emit(".data");
+			for (int i = 0; i < loopWords; i++)
+				emitFormat("%s:\t.word 0", loopWord(LOOP_REGISTERS + i));
+		}
 		out.close();
 	}
 }
\ No newline at end of file
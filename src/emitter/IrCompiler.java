@@ -0,0 +1,439 @@
+package emitter;
+
+import environment.Value;
+import ir.BasicBlock;
+import ir.Instruction;
+import ir.IrFunction;
+import ir.IrProgram;
+import type.Type;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a program in IR into MIPS assembly, with an Emitter to write it.
+ * <p>
+ * Every function has a frame, addressed from $fp, which points where $sp was when the
+ * function was called, just above its arguments:
+ * <pre>
+ *   4 * i($fp)   argument i, pushed by the caller
+ *   -4($fp)      $ra
+ *   -8($fp)      $fp of the caller, which is 0 in the main program
+ *   -12($fp)     the address of the name table of the function
+ *   below        a slot for each variable name of the frame, then one for each SSA
+ *                value, then scratch slots for copying PHIs
+ * </pre>
+ * The name table gives the number of names, then the index and the slot of each. LOAD and
+ * STORE call runtimeLoad and runtimeStore, which look a name up through the frames of the
+ * callers, as the interpreter does. A slot that holds EMPTY (0x80000000, which MIPS words
+ * cannot tell from the int -2147483648) is a variable that does not exist in that frame.
+ * <p>
+ * Every SSA value is kept in its slot, and loaded into $t0 and $t1 to be used. A PHI gets
+ * its value on the edge that enters its block: before the JUMP of the predecessor, or on
+ * a path of its own after a BRANCH.
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public class IrCompiler
+{
+	private static final int EMPTY = Integer.MIN_VALUE;
+	private static final int HEADER = 12;
+
+	private final Emitter e;
+	private final Map<String, Integer> nameIds = new HashMap<>();
+	private boolean lookups;
+
+	private IrFunction function;
+	private Map<String, Integer> nameSlots;
+	private int[] slots;
+	private int scratch;
+	private int frameSize;
+	private Map<BasicBlock, String> labels;
+
+	/**
+	 * Constructor for a compiler.
+	 * @param e the emitter to write the assembly with.
+	 */
+	public IrCompiler(Emitter e)
+	{
+		this.e = e;
+	}
+
+	/**
+	 * Compiles a program, and closes the emitter.
+	 * @param p the program.
+	 */
+	public void compile(IrProgram p)
+	{
+		e.emit(".data");
+		emitNameTable(p.getMain());
+		for (IrFunction f : p.getProcedures())
+			emitNameTable(f);
+
+		e.emit(".text");
+		e.emit(".globl main");
+		e.emit("main:");
+		e.emit("li $fp 0");
+		compile(p.getMain(), "main");
+		for (IrFunction f : p.getProcedures())
+		{
+			e.emitFormat("%s:", e.genProcedureLabel(f.getName()));
+			compile(f, f.getName());
+		}
+		if (lookups)
+			emitRuntime();
+		e.close();
+	}
+
+	/**
+	 * Writes the name table of a function into the data segment.
+	 * @param f the function.
+	 */
+	private void emitNameTable(IrFunction f)
+	{
+		List<String> names = f.getFrameNames();
+		StringBuilder words = new StringBuilder(".word ").append(names.size());
+		for (int j = 0; j < names.size(); j++)
+		{
+			int id = nameIds.computeIfAbsent(names.get(j), n -> nameIds.size());
+			words.append(", ").append(id).append(", ").append(-HEADER - 4 - 4 * j);
+		}
+		e.emitFormat("%s:", tableLabel(f));
+		e.emit(words.toString());
+	}
+
+	/**
+	 * Gets the label of the name table of a function.
+	 * @param f the function.
+	 * @return the label.
+	 */
+	private static String tableLabel(IrFunction f)
+	{
+		return "names" + (f.getName() == null ? "" : "_" + f.getName());
+	}
+
+	/**
+	 * Compiles a function: lays out its frame, then compiles its blocks in order.
+	 * @param f the function.
+	 * @param name the name to label its blocks with.
+	 */
+	private void compile(IrFunction f, String name)
+	{
+		function = f;
+		nameSlots = new HashMap<>();
+		List<String> names = f.getFrameNames();
+		for (int j = 0; j < names.size(); j++)
+			nameSlots.put(names.get(j), -HEADER - 4 - 4 * j);
+
+		slots = new int[f.getInstructionCount()];
+		int offset = -HEADER - 4 * names.size();
+		int phis = 0;
+		labels = new HashMap<>();
+		for (BasicBlock b : f.getBlocks())
+		{
+			labels.put(b, e.genLabel());
+			phis = Math.max(phis, b.getPhis().size());
+			for (Instruction i : b.getInstructions())
+				if (i.hasValue())
+					slots[i.getId()] = offset -= 4;
+		}
+		scratch = offset - 4;
+		frameSize = -(offset - 4 * phis);
+
+		e.emitFormat("subu $sp $sp %d", frameSize);
+		e.emitFormat("sw $ra %d($sp)", frameSize - 4);
+		e.emitFormat("sw $fp %d($sp)", frameSize - 8);
+		e.emitFormat("addu $fp $sp %d", frameSize);
+		e.emitFormat("la $t0 %s", tableLabel(f));
+		e.emit("sw $t0 -12($fp)");
+		if (!names.isEmpty())
+		{
+			e.emitFormat("li $t0 %d", EMPTY);
+			for (String n : names)
+				e.emitFormat("sw $t0 %d($fp)", nameSlots.get(n));
+		}
+
+		List<BasicBlock> blocks = f.getBlocks();
+		for (int k = 0; k < blocks.size(); k++)
+		{
+			BasicBlock b = blocks.get(k);
+			e.emitFormat("# %s %s", name, b);
+			e.emitFormat("%s:", labels.get(b));
+			BasicBlock next = k + 1 < blocks.size() ? blocks.get(k + 1) : null;
+			for (Instruction i : b.getInstructions())
+				if (i.getOpcode() != Instruction.PHI)
+					compile(b, i, next);
+		}
+	}
+
+	/**
+	 * Compiles an instruction.
+	 * @param b the block of the instruction.
+	 * @param i the instruction.
+	 * @param next the block laid out after b, or null if it is the last.
+	 */
+	private void compile(BasicBlock b, Instruction i, BasicBlock next)
+	{
+		List<Instruction> ops = i.getOperands();
+		switch (i.getOpcode())
+		{
+			case Instruction.PARAM ->
+			{
+				e.emitFormat("lw $t0 %d($fp)", 4 * i.getIndex());
+				store("$t0", i);
+			}
+			case Instruction.BINARY ->
+			{
+				load("$t0", ops.get(0));
+				load("$t1", ops.get(1));
+				for (String line : i.getOperation().format(Type.INT, "$t0", "$t0", "$t1").split("\n"))
+					e.emit(line);
+				store("$t0", i);
+			}
+			case Instruction.OR_ZERO ->
+			{
+				String defined = e.genLabel();
+				load("$t0", ops.get(0));
+				e.emitFormat("li $t1 %d", EMPTY);
+				e.emitFormat("bne $t0 $t1 %s", defined);
+				e.emit("li $t0 0");
+				e.emitFormat("%s:", defined);
+				store("$t0", i);
+			}
+			case Instruction.CALL ->
+			{
+				if (!ops.isEmpty())
+					e.emitFormat("subu $sp $sp %d", 4 * ops.size());
+				for (int k = 0; k < ops.size(); k++)
+				{
+					load("$t0", ops.get(k));
+					e.emitFormat("sw $t0 %d($sp)", 4 * k);
+				}
+				e.emitFormat("jal %s", e.genProcedureLabel(i.getName()));
+				if (!ops.isEmpty())
+					e.emitFormat("addu $sp $sp %d", 4 * ops.size());
+				store("$v0", i);
+			}
+			case Instruction.PUT ->
+			{
+				load("$t0", ops.get(0));
+				e.emitFormat("sw $t0 %d($fp)", nameSlots.get(i.getName()));
+			}
+			case Instruction.GET ->
+			{
+				e.emitFormat("lw $t0 %d($fp)", nameSlots.get(i.getName()));
+				store("$t0", i);
+			}
+			case Instruction.LOAD ->
+			{
+				lookups = true;
+				e.emitFormat("li $a0 %d", nameIds.get(i.getName()));
+				e.emitFormat("addu $a1 $fp %d", nameSlots.get(i.getName()));
+				e.emit("jal runtimeLoad");
+				store("$v0", i);
+			}
+			case Instruction.STORE ->
+			{
+				lookups = true;
+				e.emitFormat("li $a0 %d", nameIds.get(i.getName()));
+				e.emitFormat("addu $a1 $fp %d", nameSlots.get(i.getName()));
+				load("$a2", ops.get(0));
+				e.emit("jal runtimeStore");
+			}
+			case Instruction.WRITE ->
+			{
+				load("$a0", ops.get(0));
+				e.emit("li $v0 1");
+				e.emit("syscall");
+				e.emit("li $v0 11");
+				e.emit("li $a0 10");
+				e.emit("syscall");
+			}
+			case Instruction.READ ->
+			{
+				e.emit("li $v0 5");
+				e.emit("syscall");
+				store("$v0", i);
+			}
+			case Instruction.JUMP ->
+			{
+				emitCopies(b, i.getTargets()[0]);
+				emitJump(i.getTargets()[0], next);
+			}
+			case Instruction.BRANCH ->
+			{
+				BasicBlock ifTrue = i.getTargets()[0];
+				BasicBlock ifFalse = i.getTargets()[1];
+				load("$t0", ops.get(0));
+				if (ifFalse.getPhis().isEmpty())
+				{
+					e.emitFormat("beqz $t0 %s", labels.get(ifFalse));
+					emitCopies(b, ifTrue);
+					emitJump(ifTrue, next);
+				}
+				else
+				{
+					String edge = e.genLabel();
+					e.emitFormat("beqz $t0 %s", edge);
+					emitCopies(b, ifTrue);
+					emitJump(ifTrue, null);
+					e.emitFormat("%s:", edge);
+					emitCopies(b, ifFalse);
+					emitJump(ifFalse, next);
+				}
+			}
+			case Instruction.RETURN ->
+			{
+				if (function.getName() == null)
+				{
+					e.emit("li $v0 10");
+					e.emit("syscall");
+					return;
+				}
+				load("$v0", ops.get(0));
+				e.emit("lw $ra -4($fp)");
+				e.emit("lw $t0 -8($fp)");
+				e.emit("move $sp $fp");
+				e.emit("move $fp $t0");
+				e.emit("jr $ra");
+			}
+			default -> throw new IllegalArgumentException("Cannot compile " + i);
+		}
+	}
+
+	/**
+	 * Gives the PHIs of a block the values they take when it is entered from another.
+	 * With more than one PHI, every value is copied to a scratch slot first, since a PHI
+	 * may take the value of another PHI of the block from before the edge.
+	 * @param from the block that jumps.
+	 * @param to the block it jumps to.
+	 */
+	private void emitCopies(BasicBlock from, BasicBlock to)
+	{
+		List<Instruction> phis = to.getPhis();
+		int k = to.getPredecessors().indexOf(from);
+		if (phis.size() == 1)
+		{
+			load("$t0", phis.get(0).getOperand(k));
+			store("$t0", phis.get(0));
+			return;
+		}
+		for (int j = 0; j < phis.size(); j++)
+		{
+			load("$t0", phis.get(j).getOperand(k));
+			e.emitFormat("sw $t0 %d($fp)", scratch - 4 * j);
+		}
+		for (int j = 0; j < phis.size(); j++)
+		{
+			e.emitFormat("lw $t0 %d($fp)", scratch - 4 * j);
+			store("$t0", phis.get(j));
+		}
+	}
+
+	/**
+	 * Jumps to a block, unless it is laid out next.
+	 * @param target the block.
+	 * @param next the block laid out next, or null.
+	 */
+	private void emitJump(BasicBlock target, BasicBlock next)
+	{
+		if (target != next)
+			e.emitFormat("j %s", labels.get(target));
+	}
+
+	/**
+	 * Loads a value into a register.
+	 * @param reg the register.
+	 * @param v the instruction that defines the value.
+	 */
+	private void load(String reg, Instruction v)
+	{
+		if (v.getOpcode() == Instruction.CONST)
+			e.emitFormat("li %s %d", reg, word(v.getValue()));
+		else
+			e.emitFormat("lw %s %d($fp)", reg, slots[v.getId()]);
+	}
+
+	/**
+	 * Stores a register into the slot of a value.
+	 * @param reg the register.
+	 * @param v the instruction that defines the value.
+	 */
+	private void store(String reg, Instruction v)
+	{
+		e.emitFormat("sw %s %d($fp)", reg, slots[v.getId()]);
+	}
+
+	/**
+	 * Gets the MIPS word for a value: an int is itself, true and false are 1 and 0.
+	 * @param value the value, encoded by environment.Value.
+	 * @return the word.
+	 */
+	private static int word(long value)
+	{
+		if (value == Value.EMPTY)
+			return EMPTY;
+		if (Value.isInt(value))
+			return Value.toInt(value);
+		return Value.toBoolean(value) ? 1 : 0;
+	}
+
+	/**
+	 * Writes the routines that LOAD and STORE call. runtimeLookup takes the index of a
+	 * name in $a0, and gives in $v0 the address of its slot in the closest frame where it
+	 * is not EMPTY, or 0. runtimeLoad gives its value in $v0, or creates it as 0 in the
+	 * slot at $a1 and gives 0. runtimeStore stores $a2 into it, or into the slot at $a1.
+	 */
+	private void emitRuntime()
+	{
+		e.emit("runtimeLookup:");
+		e.emit("move $t8 $fp");
+		e.emit("runtimeLookupFrame:");
+		e.emit("beqz $t8 runtimeLookupMissing");
+		e.emit("lw $t9 -12($t8)");
+		e.emit("lw $t7 0($t9)");
+		e.emit("runtimeLookupName:");
+		e.emit("beqz $t7 runtimeLookupNext");
+		e.emit("lw $t6 4($t9)");
+		e.emit("beq $t6 $a0 runtimeLookupFound");
+		e.emit("addu $t9 $t9 8");
+		e.emit("subu $t7 $t7 1");
+		e.emit("j runtimeLookupName");
+		e.emit("runtimeLookupFound:");
+		e.emit("lw $t6 8($t9)");
+		e.emit("addu $v0 $t8 $t6");
+		e.emit("lw $t6 0($v0)");
+		e.emitFormat("li $t7 %d", EMPTY);
+		e.emit("bne $t6 $t7 runtimeLookupReturn");
+		e.emit("runtimeLookupNext:");
+		e.emit("lw $t8 -8($t8)");
+		e.emit("j runtimeLookupFrame");
+		e.emit("runtimeLookupMissing:");
+		e.emit("li $v0 0");
+		e.emit("runtimeLookupReturn:");
+		e.emit("jr $ra");
+
+		e.emit("runtimeLoad:");
+		e.emit("move $t5 $ra");
+		e.emit("jal runtimeLookup");
+		e.emit("move $ra $t5");
+		e.emit("beqz $v0 runtimeLoadMissing");
+		e.emit("lw $v0 0($v0)");
+		e.emit("jr $ra");
+		e.emit("runtimeLoadMissing:");
+		e.emit("sw $zero 0($a1)");
+		e.emit("jr $ra");
+
+		e.emit("runtimeStore:");
+		e.emit("move $t5 $ra");
+		e.emit("jal runtimeLookup");
+		e.emit("move $ra $t5");
+		e.emit("bnez $v0 runtimeStoreFound");
+		e.emit("move $v0 $a1");
+		e.emit("runtimeStoreFound:");
+		e.emit("sw $a2 0($v0)");
+		e.emit("jr $ra");
+	}
+}
@@ -0,0 +1,258 @@
+package emitter;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Runs the MIPS assembly that the compilers write, for testing them where SPIM is not
+ * installed. It knows only what they emit: .data with .word, .text, labels, the
+ * instructions li, la, lw, sw, move, addu, subu, mul, div, mfhi, mflo, seq, sne, slt,
+ * sgt, sle, sge, and, or, beq, bne, blt, bgt, ble, bge, beqz, bnez, j, jal and jr, and
+ * the syscalls that print an int (1), read an int (5), exit (10) and print a character
+ * (11).
+ * <p>
+ * Usage:
+ * new MipsSimulator(new FileInputStream("compiled.txt")).run(System.in, System.out);
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public class MipsSimulator
+{
+	private static final int DATA = 0x10010000;
+	private static final int STACK = 0x7fffeffc;
+	private static final long MAX_STEPS = 100_000_000L;
+	private static final List<String> REGISTERS = List.of(
+			"zero", "at", "v0", "v1", "a0", "a1", "a2", "a3",
+			"t0", "t1", "t2", "t3", "t4", "t5", "t6", "t7",
+			"s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7",
+			"t8", "t9", "k0", "k1", "gp", "sp", "fp", "ra");
+
+	private final List<String[]> text = new ArrayList<>();
+	private final Map<String, Integer> labels = new HashMap<>();
+	private final Map<Integer, Integer> memory = new HashMap<>();
+	private final int[] reg = new int[32];
+	private int hi;
+	private int lo;
+	private long steps;
+
+	/**
+	 * Constructor for a simulator, which assembles a program.
+	 * @param source the assembly.
+	 * @throws IllegalArgumentException if it uses what the simulator does not know.
+	 */
+	public MipsSimulator(InputStream source)
+	{
+		BufferedReader in = new BufferedReader(new InputStreamReader(source));
+		List<String> lines = in.lines().toList();
+		boolean data = false;
+		int address = DATA;
+		for (String line : lines)
+		{
+			int comment = line.indexOf('#');
+			if (comment >= 0)
+				line = line.substring(0, comment);
+			line = line.trim();
+			int colon = line.indexOf(':');
+			if (colon >= 0)
+			{
+				labels.put(line.substring(0, colon).trim(), data ? address : text.size());
+				line = line.substring(colon + 1).trim();
+			}
+			if (line.isEmpty() || line.startsWith(".globl"))
+				continue;
+			if (line.equals(".data") || line.equals(".text"))
+			{
+				data = line.equals(".data");
+				continue;
+			}
+			if (line.startsWith(".word"))
+			{
+				for (String word : line.substring(5).split(","))
+				{
+					memory.put(address, Integer.parseInt(word.trim()));
+					address += 4;
+				}
+				continue;
+			}
+			if (data)
+				throw new IllegalArgumentException("Cannot assemble data " + line);
+			text.add(line.split("[\\s,]+"));
+		}
+	}
+
+	/**
+	 * Runs the program from the label main until it exits.
+	 * @param input where syscall 5 reads ints from.
+	 * @param output where syscalls 1 and 11 print to.
+	 * @return the number of instructions run.
+	 * @throws IllegalStateException if the program goes wrong, or runs for too long.
+	 */
+	public long run(InputStream input, PrintStream output)
+	{
+		Scanner sc = null;
+		reg[29] = STACK;
+		int pc = label("main");
+		while (true)
+		{
+			if (pc < 0 || pc >= text.size())
+				throw new IllegalStateException("Ran off the program at " + pc);
+			if (++steps > MAX_STEPS)
+				throw new IllegalStateException("Ran for more than " + MAX_STEPS + " steps");
+			String[] t = text.get(pc++);
+			switch (t[0])
+			{
+				case "li" -> set(t[1], Integer.parseInt(t[2]));
+				case "la" -> set(t[1], label(t[2]));
+				case "lw" -> set(t[1], load(address(t, 2)));
+				case "sw" -> memory.put(address(t, 2), get(t[1]));
+				case "move" -> set(t[1], get(t[2]));
+				case "addu" -> set(t[1], get(t[2]) + operand(t[3]));
+				case "subu" -> set(t[1], get(t[2]) - operand(t[3]));
+				case "mul" -> set(t[1], get(t[2]) * operand(t[3]));
+				case "div" ->
+				{
+					int a = get(t[t.length - 2]);
+					int b = operand(t[t.length - 1]);
+					if (b == 0)
+						throw new IllegalStateException("Division by zero");
+					lo = a / b;
+					hi = a % b;
+					if (t.length == 4)
+						set(t[1], lo);
+				}
+				case "mfhi" -> set(t[1], hi);
+				case "mflo" -> set(t[1], lo);
+				case "seq" -> set(t[1], get(t[2]) == operand(t[3]) ? 1 : 0);
+				case "sne" -> set(t[1], get(t[2]) != operand(t[3]) ? 1 : 0);
+				case "slt" -> set(t[1], get(t[2]) < operand(t[3]) ? 1 : 0);
+				case "sgt" -> set(t[1], get(t[2]) > operand(t[3]) ? 1 : 0);
+				case "sle" -> set(t[1], get(t[2]) <= operand(t[3]) ? 1 : 0);
+				case "sge" -> set(t[1], get(t[2]) >= operand(t[3]) ? 1 : 0);
+				case "and" -> set(t[1], get(t[2]) & operand(t[3]));
+				case "or" -> set(t[1], get(t[2]) | operand(t[3]));
+				case "beq" -> pc = get(t[1]) == operand(t[2]) ? label(t[3]) : pc;
+				case "bne" -> pc = get(t[1]) != operand(t[2]) ? label(t[3]) : pc;
+				case "blt" -> pc = get(t[1]) < operand(t[2]) ? label(t[3]) : pc;
+				case "bgt" -> pc = get(t[1]) > operand(t[2]) ? label(t[3]) : pc;
+				case "ble" -> pc = get(t[1]) <= operand(t[2]) ? label(t[3]) : pc;
+				case "bge" -> pc = get(t[1]) >= operand(t[2]) ? label(t[3]) : pc;
+				case "beqz" -> pc = get(t[1]) == 0 ? label(t[2]) : pc;
+				case "bnez" -> pc = get(t[1]) != 0 ? label(t[2]) : pc;
+				case "j" -> pc = label(t[1]);
+				case "jal" ->
+				{
+					reg[31] = pc;
+					pc = label(t[1]);
+				}
+				case "jr" -> pc = get(t[1]);
+				case "syscall" ->
+				{
+					switch (reg[2])
+					{
+						case 1 -> output.print(reg[4]);
+						case 5 ->
+						{
+							if (sc == null)
+								sc = new Scanner(input);
+							reg[2] = sc.nextInt();
+						}
+						case 10 ->
+						{
+							output.flush();
+							return steps;
+						}
+						case 11 -> output.print((char) reg[4]);
+						default -> throw new IllegalStateException("Unknown syscall " + reg[2]);
+					}
+				}
+				default -> throw new IllegalStateException("Unknown instruction " + t[0]);
+			}
+		}
+	}
+
+	/**
+	 * Gets the place of a label.
+	 * @param name the label.
+	 * @return the index of its instruction, or its address in the data segment.
+	 */
+	private int label(String name)
+	{
+		Integer place = labels.get(name);
+		if (place == null)
+			throw new IllegalStateException("Unknown label " + name);
+		return place;
+	}
+
+	/**
+	 * Gets the address of an operand such as 8($sp) or ($sp).
+	 * @param t the tokens of the instruction.
+	 * @param k the index of the operand.
+	 * @return the address.
+	 */
+	private int address(String[] t, int k)
+	{
+		String operand = t[k];
+		int open = operand.indexOf('(');
+		int offset = open == 0 ? 0 : Integer.parseInt(operand.substring(0, open));
+		int address = get(operand.substring(open + 1, operand.length() - 1)) + offset;
+		if (address % 4 != 0)
+			throw new IllegalStateException("Unaligned address " + address);
+		return address;
+	}
+
+	/**
+	 * Loads a word of memory, which is 0 if nothing was stored there.
+	 * @param address the address.
+	 * @return the word.
+	 */
+	private int load(int address)
+	{
+		return memory.getOrDefault(address, 0);
+	}
+
+	/**
+	 * Gets the value of a register, or of an immediate.
+	 * @param operand a register such as $t0, or an int.
+	 * @return its value.
+	 */
+	private int operand(String operand)
+	{
+		return operand.startsWith("$") ? get(operand) : Integer.parseInt(operand);
+	}
+
+	/**
+	 * Gets the value of a register.
+	 * @param name the register, such as $t0.
+	 * @return its value.
+	 */
+	private int get(String name)
+	{
+		return reg[number(name)];
+	}
+
+	/**
+	 * Sets a register. Setting $zero does nothing.
+	 * @param name the register, such as $t0.
+	 * @param value the value.
+	 */
+	private void set(String name, int value)
+	{
+		int n = number(name);
+		if (n != 0)
+			reg[n] = value;
+	}
+
+	/**
+	 * Gets the number of a register.
+	 * @param name the register, such as $t0.
+	 * @return its number.
+	 */
+	private static int number(String name)
+	{
+		int n = REGISTERS.indexOf(name.substring(1));
+		if (n < 0)
+			throw new IllegalStateException("Unknown register " + name);
+		return n;
+	}
+}
@@ -1,14 +1,25 @@
 package environment;
 
 import ast.Procedure;
-import ast.Statement;
+import ast.TailCall;
+import ast.Tiering;
 import ast.Variable;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Represents an environment in which to run a program.
+ * <p>
+ * The values of the variables are kept in an array, at the slots given by the environment's
+ * Scope. A variable that the Resolver has given a slot is read and written directly with
+ * getSlot() and setSlot(); any other variable is found by name, by searching this
+ * environment and then its parents. Values are kept unboxed, encoded by Value; an empty
+ * slot means that the variable does not exist in this environment (yet).
+ * <p>
+ * The frames of procedure calls come from a FramePool, and go back to it when the call
+ * returns, to be used again by a later call.
  *
  * @author Agastya Ravuri
  * @version 3.22.2024
@@ -16,21 +27,88 @@ import java.util.Map;
 public class Environment
 {
 
-    private final Environment parent;
-    private final Map<Variable, Object> varTable;
-    private final Map<String, Procedure> procedureTable;
+    private Environment parent;
+    private Environment root;
+    private int depth;
+    private final Scope scope;
+    private final FramePool pool;
+    private long[] slots;
+    private Map<String, Procedure> procedureTable;
+
+    private boolean linked;
+    private boolean proceduresChanged;
+    private Tiering tiering;
+    private TailCall tailCall;
 
     /**
      * Constructs an environment.
      *
      * @param parent the parent of this environment, which will be searched
      *               when a variable is not found in the current scope.
+     * @param scope the layout of the variables in this environment.
      */
-    public Environment(Environment parent)
+    public Environment(Environment parent, Scope scope)
+    {
+        this(parent, scope, null);
+    }
+
+    /**
+     * Constructs an environment that belongs to a FramePool.
+     *
+     * @param parent the parent of this environment.
+     * @param scope the layout of the variables in this environment.
+     * @param pool the pool that the environment goes back to when it is released, or null.
+     */
+    Environment(Environment parent, Scope scope, FramePool pool)
+    {
+        attach(parent);
+        this.scope = scope;
+        this.pool = pool;
+        this.slots = new long[Math.max(scope.size(), 1)];
+    }
+
+    /**
+     * Gives this environment a parent.
+     * @param parent the parent, or null if this is the environment of the main program.
+     */
+    void attach(Environment parent)
     {
         this.parent = parent;
-        this.varTable = new HashMap<>();
-        this.procedureTable = new HashMap<>();
+        this.root = parent == null ? this : parent.root;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+    }
+
+    /**
+     * Empties this environment: removes its variables, procedures, tail call and parent.
+     */
+    void clear()
+    {
+        Arrays.fill(slots, Value.EMPTY);
+        procedureTable = null;
+        tailCall = null;
+        parent = null;
+        root = null;
+    }
+
+    /**
+     * Gives this environment back to the FramePool it came from, if any, once nothing
+     * refers to it anymore: it may become the frame of any later call.
+     */
+    public void release()
+    {
+        if (pool != null)
+            pool.release(this);
+    }
+
+    /**
+     * Constructs an environment.
+     *
+     * @param parent the parent of this environment, which will be searched
+     *               when a variable is not found in the current scope.
+     */
+    public Environment(Environment parent)
+    {
+        this(parent, new Scope());
     }
 
     /**
@@ -42,47 +120,79 @@ public class Environment
     }
 
     /**
-     * Sets the value of a variable; searches parent environments if necessary.
-     * @param var the variable to set the value of.
-     * @param value the value to set the variable to.
+     * Gets the value in a slot of this environment.
+     * @param slot the slot.
+     * @return the value, encoded by Value, or Value.EMPTY if the variable in the slot does
+     *         not exist yet.
      */
-    public void setVariable(Variable var, Object value)
+    public long getSlot(int slot)
+    {
+        return slot < slots.length ? slots[slot] : Value.EMPTY;
+    }
+
+    /**
+     * Sets the value in a slot of this environment.
+     * @param slot the slot.
+     * @param value the value to set the slot to, encoded by Value.
+     */
+    public void setSlot(int slot, long value)
+    {
+        if (slot >= slots.length)
+            slots = Arrays.copyOf(slots, Math.max(slot + 1, slots.length * 2));
+        slots[slot] = value;
+    }
+
+    /**
+     * Finds the environment in which a variable exists, searching parent environments
+     * if necessary.
+     * @param name the name of the variable.
+     * @return the environment, or null if the variable does not exist.
+     */
+    private Environment find(String name)
     {
         Environment e = this;
         while (e != null)
         {
-            if (e.varTable.containsKey(var))
-            {
-                e.varTable.put(var, value);
-                return;
-            }
+            int slot = e.scope.slotOf(name);
+            if (slot >= 0 && e.getSlot(slot) != Value.EMPTY)
+                return e;
             e = e.parent;
         }
-        varTable.put(var, value);
+        return null;
+    }
+
+    /**
+     * Sets the value of a variable; searches parent environments if necessary.
+     * @param var the variable to set the value of.
+     * @param value the value to set the variable to, encoded by Value.
+     */
+    public void setVariable(Variable var, long value)
+    {
+        Environment e = find(var.getName());
+        if (e == null)
+            e = this;
+        e.setSlot(e.scope.declare(var.getName()), value);
     }
 
     /**
      * Sets the value of a variable in the current environment.
      * @param var the variable to set the value of.
-     * @param value the value to set the variable to.
+     * @param value the value to set the variable to, encoded by Value.
      */
-    public void declareVariable(Variable var, Object value)
+    public void declareVariable(Variable var, long value)
     {
-        varTable.put(var, value);
+        setSlot(scope.declare(var.getName()), value);
     }
 
     /**
      * Gets the value of a variable; searches parent environments if necessary.
      * @param var the variable.
-     * @return the value of the variable.
+     * @return the value of the variable, encoded by Value, or Value.EMPTY if it does not exist.
      */
-    public Object getVariable(Variable var)
+    public long getVariable(Variable var)
     {
-        if (varTable.containsKey(var))
-            return varTable.get(var);
-        if (parent == null)
-            return null;
-        return parent.getVariable(var);
+        Environment e = find(var.getName());
+        return e == null ? Value.EMPTY : e.getSlot(e.scope.slotOf(var.getName()));
     }
 
     /**
@@ -92,6 +202,10 @@ public class Environment
      */
     public void setProcedure(String name, Procedure run)
     {
+        if (this != root || root.linked)
+            root.proceduresChanged = true;
+        if (procedureTable == null)
+            procedureTable = new HashMap<>();
         procedureTable.put(name, run);
     }
 
@@ -102,10 +216,103 @@ public class Environment
      */
     public Procedure getProcedure(String name)
     {
-        if (procedureTable.containsKey(name))
-            return procedureTable.get(name);
-        if (parent == null)
-            return null;
-        return parent.getProcedure(name);
+        Environment e = this;
+        while (e != null)
+        {
+            if (e.procedureTable != null && e.procedureTable.containsKey(name))
+                return e.procedureTable.get(name);
+            e = e.parent;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the procedures declared in the root environment, so that procedure calls can be
+     * linked to them. Declaring a procedure anywhere after this (or in any environment but
+     * the root) makes proceduresChanged() true.
+     * @return the procedures declared in the root environment, by name.
+     */
+    public Map<String, Procedure> linkProcedures()
+    {
+        root.linked = true;
+        if (root.procedureTable == null)
+            root.procedureTable = new HashMap<>();
+        return root.procedureTable;
+    }
+
+    /**
+     * Checks whether a procedure call that was linked may now call a different procedure.
+     * @return true if a procedure has been declared since the procedures were linked, or
+     *         in an environment other than the root; false otherwise.
+     */
+    public boolean proceduresChanged()
+    {
+        return root.proceduresChanged;
+    }
+
+    /**
+     * Checks whether this is the environment of the main program.
+     * @return true if this environment has no parent, false otherwise.
+     */
+    public boolean isRoot()
+    {
+        return this == root;
+    }
+
+    /**
+     * Gets the tiered execution that the program runs with.
+     * @return the Tiering, or null if the program is only interpreted.
+     */
+    public Tiering getTiering()
+    {
+        return root.tiering;
+    }
+
+    /**
+     * Sets the tiered execution that the program runs with.
+     * @param tiering the Tiering, or null to only interpret the program.
+     */
+    public void setTiering(Tiering tiering)
+    {
+        root.tiering = tiering;
+    }
+
+    /**
+     * Gets the parent of this environment.
+     * @return the parent, or null if this is the environment of the main program.
+     */
+    public Environment getParent()
+    {
+        return parent;
+    }
+
+    /**
+     * Gets how deeply this environment is nested.
+     * @return the number of parents it has.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Leaves a tail call in this environment, for the procedure call that it is the frame
+     * of to make.
+     * @param call the tail call.
+     */
+    public void setTailCall(TailCall call)
+    {
+        tailCall = call;
+    }
+
+    /**
+     * Takes the tail call left in this environment, if any.
+     * @return the tail call, or null if there is none.
+     */
+    public TailCall takeTailCall()
+    {
+        TailCall call = tailCall;
+        tailCall = null;
+        return call;
     }
 }
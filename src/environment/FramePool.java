@@ -0,0 +1,89 @@
+package environment;
+
+/**
+ * A pool of environments that all have the same Scope, to be used as the frames of calls
+ * of one procedure. A frame is acquired for a call and released when the call returns,
+ * emptied, so that later calls reuse it instead of allocating a new one. Recursive calls
+ * take one frame for each level; at most CAPACITY of them are kept once they are released.
+ *
+ * @author Agastya Ravuri
+ * @version 5.1.2024
+ */
+public final class FramePool
+{
+    /**
+     * The most frames that the pool keeps.
+     */
+    public static final int CAPACITY = 256;
+
+    private final Scope scope;
+    private Environment[] free = new Environment[4];
+    private int count;
+
+    private long created;
+    private long reused;
+
+    /**
+     * Constructor for a frame pool.
+     * @param scope the layout of the variables in every frame.
+     */
+    public FramePool(Scope scope)
+    {
+        this.scope = scope;
+    }
+
+    /**
+     * Gets an empty frame: a released one if there is any, or else a new one.
+     * @param parent the parent of the frame.
+     * @return the frame.
+     */
+    public Environment acquire(Environment parent)
+    {
+        if (count == 0)
+        {
+            created++;
+            return new Environment(parent, scope, this);
+        }
+        reused++;
+        Environment frame = free[--count];
+        free[count] = null;
+        frame.attach(parent);
+        return frame;
+    }
+
+    /**
+     * Empties a frame and keeps it for a later call, unless the pool is full.
+     * @param frame the frame, which came from this pool and is no longer used.
+     */
+    void release(Environment frame)
+    {
+        frame.clear();
+        if (count == free.length)
+        {
+            if (count == CAPACITY)
+                return;
+            Environment[] grown = new Environment[count * 2];
+            System.arraycopy(free, 0, grown, 0, count);
+            free = grown;
+        }
+        free[count++] = frame;
+    }
+
+    /**
+     * Gets the number of frames that the pool has allocated.
+     * @return the number of new frames.
+     */
+    public long getCreated()
+    {
+        return created;
+    }
+
+    /**
+     * Gets the number of times that a released frame was used again.
+     * @return the number of reused frames.
+     */
+    public long getReused()
+    {
+        return reused;
+    }
+}
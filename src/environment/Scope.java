@@ -0,0 +1,51 @@
+package environment;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents the layout of the variables in an Environment: the slot of each variable name.
+ * Every Environment for the same code (the main program, or a call of one procedure)
+ * shares the same Scope.
+ *
+ * @author Agastya Ravuri
+ * @version 4.24.2024
+ */
+public class Scope
+{
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * Gets the slot of a variable.
+     * @param name the name of the variable.
+     * @return the slot of the variable, or -1 if it has none.
+     */
+    public int slotOf(String name)
+    {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Gives a variable a slot, if it does not have one already.
+     * @param name the name of the variable.
+     * @return the slot of the variable.
+     */
+    public int declare(String name)
+    {
+        Integer slot = slots.get(name);
+        if (slot != null)
+            return slot;
+        slots.put(name, slots.size());
+        return slots.size() - 1;
+    }
+
+    /**
+     * Gets the number of slots.
+     * @return the number of variables with a slot.
+     */
+    public int size()
+    {
+        return slots.size();
+    }
+}
@@ -0,0 +1,137 @@
+package environment;
+
+/**
+ * Encodes the value of a variable or expression, an int or a boolean, in a long, so that
+ * it can be stored and passed around without boxing.
+ * <p>
+ * The low 32 bits hold the int (or 1 or 0 for a boolean), and the bits above them say
+ * which kind of value it is. The long 0 (EMPTY) is no value at all: a variable that does
+ * not exist yet. Two values are equal exactly when their longs are equal.
+ *
+ * @author Agastya Ravuri
+ * @version 4.25.2024
+ */
+public final class Value
+{
+    /**
+     * No value.
+     */
+    public static final long EMPTY = 0;
+
+    private static final long INT = 1L << 32;
+    private static final long BOOLEAN = 2L << 32;
+    private static final long KIND = 3L << 32;
+
+    /**
+     * Not constructed.
+     */
+    private Value()
+    {
+    }
+
+    /**
+     * Encodes an int.
+     * @param value the int.
+     * @return the encoded value.
+     */
+    public static long ofInt(int value)
+    {
+        return INT | (value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Encodes a boolean.
+     * @param value the boolean.
+     * @return the encoded value.
+     */
+    public static long ofBoolean(boolean value)
+    {
+        return value ? BOOLEAN | 1 : BOOLEAN;
+    }
+
+    /**
+     * Encodes a boxed Integer or Boolean.
+     * @param value the boxed value, or null for no value.
+     * @return the encoded value.
+     */
+    public static long of(Object value)
+    {
+        if (value == null)
+            return EMPTY;
+        if (value instanceof Integer i)
+            return ofInt(i);
+        if (value instanceof Boolean b)
+            return ofBoolean(b);
+        throw new IllegalArgumentException("Not an int or a boolean: " + value);
+    }
+
+    /**
+     * Checks whether a value is an int.
+     * @param value the encoded value.
+     * @return true if it is an int, false otherwise.
+     */
+    public static boolean isInt(long value)
+    {
+        return (value & KIND) == INT;
+    }
+
+    /**
+     * Checks whether a value is a boolean.
+     * @param value the encoded value.
+     * @return true if it is a boolean, false otherwise.
+     */
+    public static boolean isBoolean(long value)
+    {
+        return (value & KIND) == BOOLEAN;
+    }
+
+    /**
+     * Decodes an int.
+     * @param value the encoded value.
+     * @return the int.
+     * @throws ClassCastException if the value is not an int.
+     */
+    public static int toInt(long value)
+    {
+        if (!isInt(value))
+            throw new ClassCastException(describe(value) + " cannot be used as an int");
+        return (int) value;
+    }
+
+    /**
+     * Decodes a boolean.
+     * @param value the encoded value.
+     * @return the boolean.
+     * @throws ClassCastException if the value is not a boolean.
+     */
+    public static boolean toBoolean(long value)
+    {
+        if (!isBoolean(value))
+            throw new ClassCastException(describe(value) + " cannot be used as a boolean");
+        return (int) value != 0;
+    }
+
+    /**
+     * Boxes a value.
+     * @param value the encoded value.
+     * @return an Integer or a Boolean, or null for no value.
+     */
+    public static Object box(long value)
+    {
+        if (isInt(value))
+            return (int) value;
+        if (isBoolean(value))
+            return (int) value != 0;
+        return null;
+    }
+
+    /**
+     * Describes a value, for error messages.
+     * @param value the encoded value.
+     * @return the value as a String.
+     */
+    private static String describe(long value)
+    {
+        return value == EMPTY ? "no value" : String.valueOf(box(value));
+    }
+}
@@ -0,0 +1,115 @@
+package ir;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds which variables a call may use from the frames of its callers. Procedures are
+ * dynamically scoped, so what a call does to a variable it LOADs or STOREs by name
+ * depends on whether a caller has it, and the analyses of a function need to know which
+ * names each call may touch.
+ * <p>
+ * A variable is read if some function LOADs it, or GETs it back from its frame after a
+ * call. A procedure accesses every read variable that it, or a procedure it calls, LOADs
+ * or STOREs, found with a worklist over the calls. A variable that is never read is
+ * unused: storing it changes nothing that the program can see.
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public final class Accesses
+{
+    private final Set<String> read = new HashSet<>();
+    private final Map<String, Set<String>> accessed = new HashMap<>();
+
+    /**
+     * Finds the accesses of every procedure of a program.
+     * @param p the program.
+     */
+    public Accesses(IrProgram p)
+    {
+        Map<String, Set<String>> callers = new HashMap<>();
+        Map<String, Set<String>> direct = new HashMap<>();
+        for (IrFunction f : p.getProcedures())
+        {
+            callers.put(f.getName(), new HashSet<>());
+            direct.put(f.getName(), new HashSet<>());
+        }
+        scan(p.getMain(), callers, direct);
+        for (IrFunction f : p.getProcedures())
+            scan(f, callers, direct);
+
+        Set<String> worklist = new LinkedHashSet<>();
+        for (IrFunction f : p.getProcedures())
+        {
+            Set<String> names = new HashSet<>(direct.get(f.getName()));
+            names.retainAll(read);
+            accessed.put(f.getName(), names);
+            worklist.add(f.getName());
+        }
+        while (!worklist.isEmpty())
+        {
+            String callee = worklist.iterator().next();
+            worklist.remove(callee);
+            for (String caller : callers.get(callee))
+                if (accessed.get(caller).addAll(accessed.get(callee)))
+                    worklist.add(caller);
+        }
+    }
+
+    /**
+     * Finds the names that a function reads, and LOADs or STOREs, and the procedures it
+     * calls.
+     * @param f the function.
+     * @param callers the callers of each procedure, to add to.
+     * @param direct the names that each procedure LOADs or STOREs itself, to add to.
+     */
+    private void scan(IrFunction f, Map<String, Set<String>> callers,
+            Map<String, Set<String>> direct)
+    {
+        for (BasicBlock b : f.getBlocks())
+            for (Instruction i : b.getInstructions())
+            {
+                int op = i.getOpcode();
+                if (op == Instruction.LOAD || op == Instruction.GET)
+                    read.add(i.getName());
+                if (f.getName() != null && (op == Instruction.LOAD || op == Instruction.STORE))
+                    direct.get(f.getName()).add(i.getName());
+                if (op == Instruction.CALL && f.getName() != null)
+                    callers.get(i.getName()).add(f.getName());
+            }
+    }
+
+    /**
+     * Checks whether a variable is read anywhere in the program.
+     * @param name the name of the variable.
+     * @return true if it is read, false if it is unused.
+     */
+    public boolean isRead(String name)
+    {
+        return read.contains(name);
+    }
+
+    /**
+     * Gets the variables that are read anywhere in the program, which a procedure must
+     * leave behind when it returns.
+     * @return the names, which must not be changed.
+     */
+    public Set<String> getRead()
+    {
+        return read;
+    }
+
+    /**
+     * Gets the read variables that a call of a procedure may LOAD or STORE.
+     * @param procedure the name of the procedure.
+     * @return the names, which must not be changed.
+     */
+    public Set<String> getAccessed(String procedure)
+    {
+        return accessed.get(procedure);
+    }
+}
@@ -0,0 +1,131 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A basic block of the IR: PHIs first, then instructions that run in order, then one
+ * JUMP, BRANCH or RETURN, which gives the successors of the block.
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public final class BasicBlock
+{
+    private final List<Instruction> instructions = new ArrayList<>();
+    private final List<BasicBlock> predecessors = new ArrayList<>();
+    int id;
+
+    /**
+     * Constructor for an empty block.
+     * @param id the number of the block in its function.
+     */
+    BasicBlock(int id)
+    {
+        this.id = id;
+    }
+
+    /**
+     * Gets the number of the block in its function. The entry block is 0.
+     * @return the number.
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Gets the instructions of the block.
+     * @return the instructions, in order, which must not be changed.
+     */
+    public List<Instruction> getInstructions()
+    {
+        return instructions;
+    }
+
+    /**
+     * Gets the PHIs at the start of the block.
+     * @return the PHIs, in order.
+     */
+    public List<Instruction> getPhis()
+    {
+        int n = 0;
+        while (n < instructions.size() && instructions.get(n).getOpcode() == Instruction.PHI)
+            n++;
+        return instructions.subList(0, n);
+    }
+
+    /**
+     * Gets the blocks that jump to this one, in the order of the operands of its PHIs.
+     * @return the predecessors, which must not be changed.
+     */
+    public List<BasicBlock> getPredecessors()
+    {
+        return predecessors;
+    }
+
+    /**
+     * Gets the instruction that ends the block.
+     * @return the JUMP, BRANCH or RETURN, or null if the block is not finished yet.
+     */
+    public Instruction getTerminator()
+    {
+        if (instructions.isEmpty())
+            return null;
+        Instruction last = instructions.get(instructions.size() - 1);
+        return last.isTerminator() ? last : null;
+    }
+
+    /**
+     * Gets the blocks that this one can jump to.
+     * @return the successors, in the order of the targets of its terminator.
+     */
+    public List<BasicBlock> getSuccessors()
+    {
+        Instruction t = getTerminator();
+        return t == null ? List.of() : Arrays.asList(t.getTargets());
+    }
+
+    /**
+     * Adds an instruction at the end of the block, or at the end of its PHIs if it is one.
+     * @param i the instruction.
+     * @return the instruction.
+     */
+    Instruction add(Instruction i)
+    {
+        i.setBlock(this);
+        if (i.getOpcode() == Instruction.PHI)
+            instructions.add(getPhis().size(), i);
+        else
+            instructions.add(i);
+        return i;
+    }
+
+    /**
+     * Adds a predecessor.
+     * @param b the block that jumps to this one.
+     */
+    void addPredecessor(BasicBlock b)
+    {
+        predecessors.add(b);
+    }
+
+    /**
+     * Removes a predecessor, and its operand from every PHI.
+     * @param b the block that no longer jumps to this one.
+     */
+    void removePredecessor(BasicBlock b)
+    {
+        int i = predecessors.indexOf(b);
+        predecessors.remove(i);
+        for (Instruction phi : getPhis())
+            phi.removeOperand(i);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "b" + id;
+    }
+}
@@ -0,0 +1,237 @@
+package ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A dataflow analysis over the blocks of a function, solved with a worklist. A subclass
+ * gives the values the analysis works with, and how each instruction changes them; the
+ * value at the start of a block is then the meet of the values that flow into it, which
+ * is computed again whenever one of them changes, until none does.
+ * <p>
+ * A forward analysis flows from the entry, along the edges; a backward one flows from
+ * the blocks that RETURN, against them. Either way, getIn gives the value at the start of
+ * a block and getOut the value at its end. Values must not be changed once made: transfer
+ * and meet return new ones.
+ * <p>
+ * Usage:
+ * Liveness live = new Liveness(f, accesses);
+ * live.solve();
+ * live.getOut(block);
+ *
+ * @param <T> the type of the values.
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public abstract class Dataflow<T>
+{
+    private final IrFunction f;
+    private final boolean forward;
+    private final List<T> in = new ArrayList<>();
+    private final List<T> out = new ArrayList<>();
+    private int visits;
+
+    /**
+     * Constructor for an analysis of a function.
+     * @param f the function, whose blocks are numbered in reverse postorder.
+     * @param forward true if the analysis is forward, false if it is backward.
+     */
+    protected Dataflow(IrFunction f, boolean forward)
+    {
+        this.f = f;
+        this.forward = forward;
+    }
+
+    /**
+     * Gets the value where the analysis starts: at the start of the entry block, or at
+     * the end of a block that RETURNs.
+     * @return the value.
+     */
+    protected abstract T boundary();
+
+    /**
+     * Gets the value that everything starts with, which the meet of it and any value is
+     * that value.
+     * @return the value.
+     */
+    protected abstract T top();
+
+    /**
+     * Combines the values that flow into a block from different edges.
+     * @param a one value.
+     * @param b another value.
+     * @return the combined value.
+     */
+    protected abstract T meet(T a, T b);
+
+    /**
+     * Gets the value after an instruction, in the direction of the analysis.
+     * @param i the instruction.
+     * @param value the value before it.
+     * @return the value after it.
+     */
+    protected abstract T transfer(Instruction i, T value);
+
+    /**
+     * Gets the value that flows along an edge, which is the value that leaves the block
+     * it comes from unless a subclass changes it, for PHIs for example.
+     * @param from the block where the edge starts.
+     * @param to the block where it ends.
+     * @param value the value that leaves the block that it comes from, in the direction of
+     *              the analysis.
+     * @return the value that enters the other block.
+     */
+    protected T edge(BasicBlock from, BasicBlock to, T value)
+    {
+        return value;
+    }
+
+    /**
+     * Gets the function.
+     * @return the function.
+     */
+    protected IrFunction getFunction()
+    {
+        return f;
+    }
+
+    /**
+     * Solves the analysis. The blocks start in the worklist in reverse postorder for a
+     * forward analysis and in postorder for a backward one, so that most of them see the
+     * values that flow into them before they are first visited.
+     */
+    public void solve()
+    {
+        List<BasicBlock> blocks = f.getBlocks();
+        int n = blocks.size();
+        in.clear();
+        out.clear();
+        for (int b = 0; b < n; b++)
+        {
+            in.add(top());
+            out.add(top());
+        }
+        Deque<BasicBlock> worklist = new ArrayDeque<>();
+        boolean[] queued = new boolean[n];
+        for (int b = 0; b < n; b++)
+        {
+            worklist.add(blocks.get(forward ? b : n - 1 - b));
+            queued[b] = true;
+        }
+
+        while (!worklist.isEmpty())
+        {
+            BasicBlock b = worklist.poll();
+            queued[b.getId()] = false;
+            visits++;
+            List<BasicBlock> sources = forward ? b.getPredecessors() : b.getSuccessors();
+            T value = sources.isEmpty() ? boundary() : top();
+            for (BasicBlock s : sources)
+                value = meet(value, forward ? edge(s, b, out.get(s.getId()))
+                        : edge(b, s, in.get(s.getId())));
+            (forward ? in : out).set(b.getId(), value);
+
+            T result = transfer(b, value);
+            List<T> results = forward ? out : in;
+            if (result.equals(results.get(b.getId())))
+                continue;
+            results.set(b.getId(), result);
+            for (BasicBlock next : forward ? b.getSuccessors() : b.getPredecessors())
+                if (!queued[next.getId()])
+                {
+                    queued[next.getId()] = true;
+                    worklist.add(next);
+                }
+        }
+    }
+
+    /**
+     * Gets the value through a whole block.
+     * @param b the block.
+     * @param value the value where the block starts, in the direction of the analysis.
+     * @return the value where it ends.
+     */
+    private T transfer(BasicBlock b, T value)
+    {
+        List<Instruction> instructions = b.getInstructions();
+        for (int k = 0; k < instructions.size(); k++)
+            value = transfer(instructions.get(forward ? k : instructions.size() - 1 - k), value);
+        return value;
+    }
+
+    /**
+     * Gets the value at the start of a block.
+     * @param b the block.
+     * @return the value.
+     */
+    public T getIn(BasicBlock b)
+    {
+        return in.get(b.getId());
+    }
+
+    /**
+     * Gets the value at the end of a block.
+     * @param b the block.
+     * @return the value.
+     */
+    public T getOut(BasicBlock b)
+    {
+        return out.get(b.getId());
+    }
+
+    /**
+     * Gets the value just before an instruction.
+     * @param i the instruction.
+     * @return the value.
+     */
+    public T getBefore(Instruction i)
+    {
+        return at(i, false);
+    }
+
+    /**
+     * Gets the value just after an instruction.
+     * @param i the instruction.
+     * @return the value.
+     */
+    public T getAfter(Instruction i)
+    {
+        return at(i, true);
+    }
+
+    /**
+     * Gets the value next to an instruction, by going through its block up to it.
+     * @param i the instruction.
+     * @param after true for the value after it, false for the value before it.
+     * @return the value.
+     */
+    private T at(Instruction i, boolean after)
+    {
+        BasicBlock b = i.getBlock();
+        List<Instruction> instructions = b.getInstructions();
+        int index = instructions.indexOf(i);
+        if (forward)
+        {
+            T value = getIn(b);
+            for (int k = 0; k < index + (after ? 1 : 0); k++)
+                value = transfer(instructions.get(k), value);
+            return value;
+        }
+        T value = getOut(b);
+        for (int k = instructions.size() - 1; k > index - (after ? 0 : 1); k--)
+            value = transfer(instructions.get(k), value);
+        return value;
+    }
+
+    /**
+     * Gets how many times a block has been visited, which shows how fast the analysis
+     * converged: each block is visited at least once.
+     * @return the number of visits.
+     */
+    public int getVisits()
+    {
+        return visits;
+    }
+}
@@ -0,0 +1,300 @@
+package ir;
+
+import ast.BinOp;
+import ast.BinaryOperation;
+import environment.Value;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Removes the stores of a program in IR that nothing reads, and the variables that are
+ * never used, with the dataflow analyses. It runs three steps on every function, over and
+ * over until a round of them changes nothing:
+ * <p>
+ * Forwarding replaces a LOAD or GET that only one STORE or PUT reaches with the value
+ * that was stored, as ReachingDefinitions finds. A variable of main that a call does not
+ * access is then no longer read back after it. A LOAD of an argument that a procedure
+ * PUT when it started is not forwarded, since the argument may not have been passed.
+ * <p>
+ * Dead-store elimination removes a STORE or PUT of a variable that is not live after it,
+ * as Liveness finds; a variable that the program never reads is never live, so every
+ * store of it goes.
+ * <p>
+ * Dead-value elimination removes the instructions whose values are never used, and which
+ * have no effect and cannot fail: PARAMs, PHIs, OR_ZEROs, GETs, and operations whose
+ * operands are sure to have the right types, which may leave more stores dead. A PHI
+ * that forwarding has left with only one value, besides itself, is replaced by it.
+ * <p>
+ * Once a variable is neither stored nor read, it no longer has a slot in its frame.
+ * <p>
+ * Usage:
+ * DeadStoreElimination d = new DeadStoreElimination();
+ * d.run(irProgram);
+ * System.out.println(d);
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public class DeadStoreElimination
+{
+    private int rounds;
+    private int forwarded;
+    private int stores;
+    private int values;
+    private int visits;
+    private int namesBefore;
+    private int namesAfter;
+    private int instructionsBefore;
+    private int instructionsAfter;
+
+    /**
+     * Removes the dead stores and unused variables of a program, which is verified after.
+     * @param p the program.
+     */
+    public void run(IrProgram p)
+    {
+        List<IrFunction> functions = new ArrayList<>();
+        functions.add(p.getMain());
+        functions.addAll(p.getProcedures());
+        for (IrFunction f : functions)
+        {
+            namesBefore += f.getFrameNames().size();
+            instructionsBefore += count(f);
+        }
+
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            rounds++;
+            for (IrFunction f : functions)
+            {
+                // Every step changes what the program accesses.
+                changed |= forward(f, new Accesses(p));
+                changed |= removeDeadStores(f, new Accesses(p));
+                changed |= removeDeadValues(f);
+                f.number();
+            }
+        }
+
+        for (IrFunction f : functions)
+        {
+            namesAfter += f.getFrameNames().size();
+            instructionsAfter += count(f);
+        }
+        Verifier.verify(p);
+    }
+
+    /**
+     * Replaces every LOAD or GET of a function that only one STORE or PUT reaches with the
+     * value that it stored.
+     * @param f the function.
+     * @param accesses the accesses of the program.
+     * @return true if something was replaced, false otherwise.
+     */
+    private boolean forward(IrFunction f, Accesses accesses)
+    {
+        ReachingDefinitions reaching = new ReachingDefinitions(f, accesses);
+        reaching.solve();
+        visits += reaching.getVisits();
+        List<Instruction> uses = new ArrayList<>();
+        List<Instruction> sources = new ArrayList<>();
+        for (BasicBlock b : f.getBlocks())
+            for (Instruction i : b.getInstructions())
+            {
+                if (i.getOpcode() != Instruction.LOAD && i.getOpcode() != Instruction.GET)
+                    continue;
+                Set<Instruction> definitions = reaching.getDefinitions(i);
+                if (definitions.size() != 1 || definitions.contains(null))
+                    continue;
+                Instruction d = definitions.iterator().next();
+                if (d.getOpcode() == Instruction.CALL || (i.getOpcode() == Instruction.LOAD
+                        && isArgument(d)))
+                    continue;
+                uses.add(i);
+                sources.add(d);
+            }
+        // A stored value may itself be one of the uses, which its replacement updates.
+        for (int k = 0; k < uses.size(); k++)
+        {
+            uses.get(k).replaceAllUsesWith(sources.get(k).getOperand(0));
+            uses.get(k).remove();
+        }
+        forwarded += uses.size();
+        return !uses.isEmpty();
+    }
+
+    /**
+     * Removes every STORE or PUT of a function whose variable is not live after it. The
+     * PUT of an argument stays if the program reads the variable, since it decides whether
+     * a later STORE writes the frame or a caller's.
+     * @param f the function.
+     * @param accesses the accesses of the program.
+     * @return true if something was removed, false otherwise.
+     */
+    private boolean removeDeadStores(IrFunction f, Accesses accesses)
+    {
+        Liveness live = new Liveness(f, accesses);
+        live.solve();
+        visits += live.getVisits();
+        List<Instruction> dead = new ArrayList<>();
+        for (BasicBlock b : f.getBlocks())
+            for (Instruction i : b.getInstructions())
+                if ((i.getOpcode() == Instruction.STORE || i.getOpcode() == Instruction.PUT)
+                        && !live.isLiveAfter(i.getName(), i)
+                        && !(isArgument(i) && accesses.isRead(i.getName())))
+                    dead.add(i);
+        for (Instruction i : dead)
+            i.remove();
+        stores += dead.size();
+        return !dead.isEmpty();
+    }
+
+    /**
+     * Removes every instruction of a function that can be removed and whose value nothing
+     * uses, even through other such instructions, as PHIs of a loop use each other.
+     * @param f the function.
+     * @return true if something was removed, false otherwise.
+     */
+    private boolean removeDeadValues(IrFunction f)
+    {
+        int trivial = 0;
+        for (BasicBlock b : f.getBlocks())
+            for (Instruction phi : b.getPhis())
+            {
+                Instruction same = null;
+                for (Instruction op : phi.getOperands())
+                    if (op != phi && op != same)
+                        same = same == null ? op : phi;
+                if (same != null && same != phi)
+                {
+                    phi.replaceAllUsesWith(same);
+                    trivial++;
+                }
+            }
+
+        Set<Instruction> used = new HashSet<>();
+        Deque<Instruction> worklist = new ArrayDeque<>();
+        for (BasicBlock b : f.getBlocks())
+            for (Instruction i : b.getInstructions())
+                if (!isRemovable(i))
+                {
+                    used.add(i);
+                    worklist.add(i);
+                }
+        while (!worklist.isEmpty())
+            for (Instruction op : worklist.poll().getOperands())
+                if (used.add(op))
+                    worklist.add(op);
+
+        List<Instruction> dead = new ArrayList<>();
+        for (BasicBlock b : f.getBlocks())
+            for (Instruction i : b.getInstructions())
+                if (!used.contains(i))
+                    dead.add(i);
+        // The dead instructions only use each other, so they can go in any order.
+        for (Instruction i : dead)
+            i.remove();
+        values += dead.size();
+        return trivial > 0 || !dead.isEmpty();
+    }
+
+    /**
+     * Checks whether a PUT is that of an argument that a procedure does not own, which may
+     * be empty if a call does not pass it, so that a LOAD looks past it to the callers.
+     * @param i the STORE or PUT.
+     * @return true if it PUTs a PARAM.
+     */
+    private static boolean isArgument(Instruction i)
+    {
+        return i.getOpcode() == Instruction.PUT
+                && i.getOperand(0).getOpcode() == Instruction.PARAM;
+    }
+
+    /**
+     * Checks whether an instruction can be removed if its value is not used.
+     * @param i the instruction.
+     * @return true if it only defines its value, and cannot fail.
+     */
+    private static boolean isRemovable(Instruction i)
+    {
+        if (i.getOpcode() == Instruction.BINARY)
+            return !canFail(i);
+        return i.hasValue() && !i.hasEffect();
+    }
+
+    /**
+     * Checks whether an operation may fail at run time: on operands of the wrong type, or
+     * by dividing by zero. Values are typed only at run time, so an operand is only sure
+     * to be an int or a boolean if it is a CONST or an operation that gives one.
+     * @param i the BINARY instruction.
+     * @return true if it may fail, false if it cannot.
+     */
+    private static boolean canFail(Instruction i)
+    {
+        BinaryOperation op = i.getOperation();
+        Instruction a = i.getOperand(0);
+        Instruction b = i.getOperand(1);
+        if (op == BinOp.EQ || op == BinOp.NEQ)
+            return false;
+        if (op == BinOp.AND || op == BinOp.OR)
+            return !isBoolean(a) || !isBoolean(b);
+        if (op == BinOp.DIV || op == BinOp.MOD)
+            return !isInt(a) || b.getOpcode() != Instruction.CONST || !Value.isInt(b.getValue())
+                    || Value.toInt(b.getValue()) == 0;
+        return !isInt(a) || !isInt(b);
+    }
+
+    /**
+     * Checks whether a value is sure to be an int.
+     * @param v the instruction that defines the value.
+     * @return true if it is an int CONST, or an arithmetic operation.
+     */
+    private static boolean isInt(Instruction v)
+    {
+        if (v.getOpcode() == Instruction.CONST)
+            return Value.isInt(v.getValue());
+        return v.getOpcode() == Instruction.BINARY
+                && IrBuilder.indexOf(v.getOperation()) <= IrBuilder.indexOf(BinOp.MOD);
+    }
+
+    /**
+     * Checks whether a value is sure to be a boolean.
+     * @param v the instruction that defines the value.
+     * @return true if it is a boolean CONST, or a comparison or logical operation.
+     */
+    private static boolean isBoolean(Instruction v)
+    {
+        if (v.getOpcode() == Instruction.CONST)
+            return v.getValue() != Value.EMPTY && !Value.isInt(v.getValue());
+        return v.getOpcode() == Instruction.BINARY && !isInt(v);
+    }
+
+    /**
+     * Counts the instructions in the blocks of a function.
+     * @param f the function.
+     * @return the number of instructions.
+     */
+    private static int count(IrFunction f)
+    {
+        int n = 0;
+        for (BasicBlock b : f.getBlocks())
+            n += b.getInstructions().size();
+        return n;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d instructions, %d after removing dead stores (%d rounds, %d "
+                        + "blocks visited)%n    %d loads forwarded, %d stores removed, %d values "
+                        + "removed%n    %d frame variables, %d after",
+                instructionsBefore, instructionsAfter, rounds, visits, forwarded, stores, values,
+                namesBefore, namesAfter);
+    }
+}
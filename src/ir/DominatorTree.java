@@ -0,0 +1,190 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The dominator tree of a function: block a dominates block b if every path from the
+ * entry to b goes through a. Computed with the iterative algorithm of Cooper, Harvey and
+ * Kennedy, "A Simple, Fast Dominance Algorithm" (2001), over the blocks in reverse
+ * postorder, which IrFunction keeps them in.
+ * <p>
+ * The tree also gives the dominance frontier of every block: the blocks where its
+ * dominance ends, which are where a value defined in it may need a PHI.
+ * <p>
+ * The tree is computed once, and does not follow later changes to the function.
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public final class DominatorTree
+{
+    private final List<BasicBlock> blocks;
+    private final int[] idom;
+    private final int[] depth;
+    private final List<List<BasicBlock>> children = new ArrayList<>();
+    private final List<List<BasicBlock>> frontiers = new ArrayList<>();
+
+    /**
+     * Computes the dominator tree of a function.
+     * @param f the function, whose blocks are in reverse postorder and numbered in that
+     *          order, as IrFunction.order() leaves them.
+     */
+    public DominatorTree(IrFunction f)
+    {
+        blocks = f.getBlocks();
+        int n = blocks.size();
+        idom = new int[n];
+        depth = new int[n];
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            for (int b = 1; b < n; b++)
+            {
+                int newIdom = -1;
+                for (BasicBlock p : blocks.get(b).getPredecessors())
+                {
+                    int pred = p.getId();
+                    if (idom[pred] < 0)
+                        continue;
+                    newIdom = newIdom < 0 ? pred : intersect(pred, newIdom);
+                }
+                if (newIdom != idom[b])
+                {
+                    idom[b] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+
+        for (int b = 0; b < n; b++)
+        {
+            children.add(new ArrayList<>());
+            frontiers.add(new ArrayList<>());
+        }
+        for (int b = 1; b < n; b++)
+        {
+            children.get(idom[b]).add(blocks.get(b));
+            depth[b] = depth[idom[b]] + 1;
+        }
+
+        for (int b = 0; b < n; b++)
+        {
+            List<BasicBlock> preds = blocks.get(b).getPredecessors();
+            if (preds.size() < 2)
+                continue;
+            for (BasicBlock p : preds)
+            {
+                int runner = p.getId();
+                while (runner != idom[b])
+                {
+                    if (!frontiers.get(runner).contains(blocks.get(b)))
+                        frontiers.get(runner).add(blocks.get(b));
+                    runner = idom[runner];
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the closest common dominator of two blocks, as far as it is known yet.
+     * @param a the number of a block.
+     * @param b the number of another block.
+     * @return the number of the common dominator.
+     */
+    private int intersect(int a, int b)
+    {
+        while (a != b)
+        {
+            while (a > b)
+                a = idom[a];
+            while (b > a)
+                b = idom[b];
+        }
+        return a;
+    }
+
+    /**
+     * Gets the immediate dominator of a block.
+     * @param b the block.
+     * @return the closest block that strictly dominates it, or null for the entry.
+     */
+    public BasicBlock getIdom(BasicBlock b)
+    {
+        return b.getId() == 0 ? null : blocks.get(idom[b.getId()]);
+    }
+
+    /**
+     * Gets the blocks that a block immediately dominates.
+     * @param b the block.
+     * @return its children in the tree.
+     */
+    public List<BasicBlock> getChildren(BasicBlock b)
+    {
+        return children.get(b.getId());
+    }
+
+    /**
+     * Gets the dominance frontier of a block: the blocks that it does not strictly
+     * dominate, but that have a predecessor that it dominates.
+     * @param b the block.
+     * @return the frontier.
+     */
+    public List<BasicBlock> getFrontier(BasicBlock b)
+    {
+        return frontiers.get(b.getId());
+    }
+
+    /**
+     * Gets the depth of a block in the tree.
+     * @param b the block.
+     * @return the number of blocks that strictly dominate it.
+     */
+    public int getDepth(BasicBlock b)
+    {
+        return depth[b.getId()];
+    }
+
+    /**
+     * Checks whether one block dominates another. Every block dominates itself.
+     * @param a the block that may dominate.
+     * @param b the block that may be dominated.
+     * @return true if a dominates b, false otherwise.
+     */
+    public boolean dominates(BasicBlock a, BasicBlock b)
+    {
+        int x = b.getId();
+        while (depth[x] > depth[a.getId()])
+            x = idom[x];
+        return x == a.getId();
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        append(sb, blocks.get(0));
+        return sb.toString();
+    }
+
+    /**
+     * Writes a block and the blocks it dominates, each indented by its depth.
+     * @param sb the builder to write to.
+     * @param b the block.
+     */
+    private void append(StringBuilder sb, BasicBlock b)
+    {
+        sb.append("  ".repeat(getDepth(b))).append(b);
+        if (!getFrontier(b).isEmpty())
+            sb.append("  ; frontier ").append(getFrontier(b).toString()
+                    .replaceAll("[\\[\\]]", ""));
+        sb.append('\n');
+        for (BasicBlock child : getChildren(b))
+            append(sb, child);
+    }
+}
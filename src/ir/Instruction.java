@@ -0,0 +1,347 @@
+package ir;
+
+import ast.BinaryOperation;
+import environment.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An instruction of the IR, which is also the SSA value that it defines, if any.
+ * <p>
+ * Variables follow the interpreter's dynamic scoping. The variables that a function owns
+ * (every variable of the main program, and the result of a procedure and the arguments
+ * that every call passes it) are SSA values: assigning one defines a new value, and where control flow merges, a PHI
+ * picks the value that reached it. Since a procedure can read and change the variables of
+ * its callers, the values of the owned variables are PUT into the frame before every
+ * CALL, and read back with GET after it. Any other variable of a procedure lives in the
+ * frames, and is read with LOAD and written with STORE, which look it up by name.
+ * <p>
+ * Values are longs encoded by environment.Value. Constants belong to no block: each
+ * function has one CONST for each value it uses, which every block can use. An owned
+ * variable of the main program is the constant Value.EMPTY until it is assigned, and
+ * reading it must go through OR_ZERO, which makes an empty value 0, as reading an empty
+ * variable does in the interpreter.
+ * <p>
+ * JUMP, BRANCH and RETURN end a basic block, and no other instruction can.
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public final class Instruction
+{
+    /** A constant value. */
+    public static final int CONST = 0;
+    /** The value of an argument of the procedure, when it was called. */
+    public static final int PARAM = 1;
+    /** The operand that corresponds to the predecessor the block was entered from. */
+    public static final int PHI = 2;
+    /** A binary operation of the two operands. */
+    public static final int BINARY = 3;
+    /** The operand, or 0 if it is empty. */
+    public static final int OR_ZERO = 4;
+    /** Calls a procedure with the operands as its arguments; its value is the result. */
+    public static final int CALL = 5;
+    /** Stores the operand into the slot of an owned variable in the frame. */
+    public static final int PUT = 6;
+    /** Reads the slot of an owned variable in the frame, which a call may have changed. */
+    public static final int GET = 7;
+    /** Reads a variable looked up by name, creating it as 0 in the frame if it is empty. */
+    public static final int LOAD = 8;
+    /** Assigns the operand to a variable looked up by name, or created in the frame. */
+    public static final int STORE = 9;
+    /** Prints the operand on its own line. */
+    public static final int WRITE = 10;
+    /** An int read from the standard input. */
+    public static final int READ = 11;
+    /** Jumps to the only successor. */
+    public static final int JUMP = 12;
+    /** Jumps to the first successor if the operand is true, the second if it is false. */
+    public static final int BRANCH = 13;
+    /** Returns from the function, with the operand as the result of a procedure. */
+    public static final int RETURN = 14;
+
+    /**
+     * The name of every instruction, indexed by opcode.
+     */
+    static final String[] NAMES = {
+            "const", "param", "phi", "binary", "or_zero", "call", "put", "get", "load",
+            "store", "write", "read", "jump", "branch", "return"
+    };
+
+    /**
+     * The names of the binary operations, in the order of IrBuilder.OPERATIONS.
+     */
+    private static final String[] OPERATION_NAMES = {
+            "add", "sub", "mul", "div", "mod", "eq", "neq", "lt", "gt", "leq", "geq", "and", "or"
+    };
+
+    private final int opcode;
+    private final List<Instruction> operands = new ArrayList<>();
+    private final List<Instruction> users = new ArrayList<>();
+    private final long value;
+    private final String name;
+    private final BinaryOperation operation;
+    private BasicBlock block;
+    private BasicBlock[] targets = new BasicBlock[0];
+    int id = -1;
+
+    /**
+     * Constructor for an instruction.
+     * @param opcode the instruction.
+     * @param value the constant of a CONST, or the index of the argument of a PARAM.
+     * @param name the name of the variable or procedure, if the instruction has one.
+     * @param operation the operation of a BINARY.
+     * @param operands the operands.
+     */
+    Instruction(int opcode, long value, String name, BinaryOperation operation,
+                Instruction... operands)
+    {
+        this.opcode = opcode;
+        this.value = value;
+        this.name = name;
+        this.operation = operation;
+        for (Instruction operand : operands)
+            addOperand(operand);
+    }
+
+    /**
+     * Gets the opcode.
+     * @return the instruction, one of the constants of this class.
+     */
+    public int getOpcode()
+    {
+        return opcode;
+    }
+
+    /**
+     * Gets the operands.
+     * @return the operands, which must not be changed.
+     */
+    public List<Instruction> getOperands()
+    {
+        return operands;
+    }
+
+    /**
+     * Gets an operand.
+     * @param i the index of the operand.
+     * @return the operand.
+     */
+    public Instruction getOperand(int i)
+    {
+        return operands.get(i);
+    }
+
+    /**
+     * Gets the instructions that have this one as an operand, once for each time they do.
+     * @return the users, which must not be changed.
+     */
+    public List<Instruction> getUsers()
+    {
+        return users;
+    }
+
+    /**
+     * Gets the constant of a CONST.
+     * @return the constant, encoded by environment.Value.
+     */
+    public long getValue()
+    {
+        return value;
+    }
+
+    /**
+     * Gets the index of the argument of a PARAM.
+     * @return the index.
+     */
+    public int getIndex()
+    {
+        return (int) value;
+    }
+
+    /**
+     * Gets the name of the variable of a PUT, GET, LOAD or STORE, or of the procedure of
+     * a CALL.
+     * @return the name, or null if the instruction has none.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Gets the operation of a BINARY.
+     * @return the operation, or null if the instruction is not a BINARY.
+     */
+    public BinaryOperation getOperation()
+    {
+        return operation;
+    }
+
+    /**
+     * Gets the block that contains this instruction.
+     * @return the block, or null if the instruction is a CONST or has been removed.
+     */
+    public BasicBlock getBlock()
+    {
+        return block;
+    }
+
+    /**
+     * Gets the blocks that a JUMP or BRANCH goes to.
+     * @return the targets, which must not be changed; empty for any other instruction.
+     */
+    public BasicBlock[] getTargets()
+    {
+        return targets;
+    }
+
+    /**
+     * Gets the number of this instruction in its function, which IrFunction.number() gives.
+     * @return the number.
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Checks whether this instruction ends a basic block.
+     * @return true if it is a JUMP, BRANCH or RETURN.
+     */
+    public boolean isTerminator()
+    {
+        return opcode == JUMP || opcode == BRANCH || opcode == RETURN;
+    }
+
+    /**
+     * Checks whether this instruction defines a value that other instructions can use.
+     * @return true if it does, false otherwise.
+     */
+    public boolean hasValue()
+    {
+        return opcode <= CALL || opcode == GET || opcode == LOAD || opcode == READ;
+    }
+
+    /**
+     * Checks whether this instruction does anything besides defining its value, or can
+     * fail, so that it must run even if its value is never used.
+     * @return true if it must run, false otherwise.
+     */
+    public boolean hasEffect()
+    {
+        return opcode == BINARY || opcode == CALL || opcode == PUT || opcode == LOAD
+                || opcode == STORE || opcode == WRITE || opcode == READ || isTerminator();
+    }
+
+    /**
+     * Sets the block that contains this instruction.
+     * @param block the block.
+     */
+    void setBlock(BasicBlock block)
+    {
+        this.block = block;
+    }
+
+    /**
+     * Sets the blocks that a JUMP or BRANCH goes to.
+     * @param targets the targets.
+     */
+    void setTargets(BasicBlock... targets)
+    {
+        this.targets = targets;
+    }
+
+    /**
+     * Adds an operand.
+     * @param operand the operand.
+     */
+    void addOperand(Instruction operand)
+    {
+        operands.add(operand);
+        operand.users.add(this);
+    }
+
+    /**
+     * Replaces an operand.
+     * @param i the index of the operand.
+     * @param operand the new operand.
+     */
+    void setOperand(int i, Instruction operand)
+    {
+        operands.get(i).users.remove(this);
+        operands.set(i, operand);
+        operand.users.add(this);
+    }
+
+    /**
+     * Removes an operand.
+     * @param i the index of the operand.
+     */
+    void removeOperand(int i)
+    {
+        operands.remove(i).users.remove(this);
+    }
+
+    /**
+     * Makes every user of this instruction use another instead.
+     * @param other the other instruction.
+     */
+    void replaceAllUsesWith(Instruction other)
+    {
+        for (Instruction user : new ArrayList<>(users))
+        {
+            List<Instruction> ops = user.operands;
+            for (int i = 0; i < ops.size(); i++)
+                if (ops.get(i) == this)
+                    user.setOperand(i, other);
+        }
+    }
+
+    /**
+     * Removes this instruction from its block and from the users of its operands. It must
+     * have no users left.
+     */
+    void remove()
+    {
+        for (Instruction operand : operands)
+            operand.users.remove(this);
+        operands.clear();
+        block.getInstructions().remove(this);
+        block = null;
+    }
+
+    /**
+     * Gets how this instruction appears as an operand.
+     * @return "v" followed by the number of the instruction, or the constant of a CONST.
+     */
+    String reference()
+    {
+        if (opcode != CONST)
+            return "v" + id;
+        return value == Value.EMPTY ? "empty" : String.valueOf(Value.box(value));
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        if (hasValue())
+            sb.append(reference()).append(" = ");
+        sb.append(opcode == BINARY ? OPERATION_NAMES[IrBuilder.indexOf(operation)] : NAMES[opcode]);
+        if (opcode == PARAM)
+            sb.append(' ').append(value);
+        if (name != null)
+            sb.append(' ').append(name);
+        for (int i = 0; i < operands.size(); i++)
+        {
+            sb.append(' ').append(operands.get(i).reference());
+            if (opcode == PHI)
+                sb.append(" (").append(block.getPredecessors().get(i)).append(')');
+        }
+        for (BasicBlock target : targets)
+            sb.append(' ').append(target);
+        return sb.toString();
+    }
+}
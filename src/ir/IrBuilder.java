@@ -0,0 +1,515 @@
+package ir;
+
+import ast.BinOp;
+import ast.BinaryOperation;
+import ast.Procedure;
+import ast.Program;
+import ast.Statement;
+import ast.Variable;
+import environment.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lowers a Program into IR. Like the BytecodeCompiler, it is driven by the nodes of the
+ * program: each node lowers itself by calling the methods here, which add instructions
+ * to the current block, or start new blocks and jump between them.
+ * <p>
+ * The IR is built in SSA form directly, with the algorithm of Braun et al., "Simple and
+ * Efficient Construction of Static Single Assignment Form" (2013): the builder keeps the
+ * value that each owned variable has at the end of each block, and a block whose
+ * predecessors are not all known yet is not sealed. Reading a variable in a block that
+ * does not define it asks its predecessors, adding a PHI where they disagree, or where
+ * the block is not sealed yet; a PHI whose operands turn out to be all the same value
+ * is removed again.
+ * <p>
+ * The main program is lowered twice: the first time only finds the names of its
+ * variables, which every call must PUT and GET, including the ones that are assigned
+ * after the call in a loop.
+ * <p>
+ * A procedure may be called with fewer arguments than it declares, which leaves the
+ * others empty: as in the interpreter, such an argument is not a variable of the
+ * procedure, and is looked up in its callers. A procedure only owns the arguments that
+ * every call passes; it PUTs the others into its frame when it starts, and LOADs and
+ * STOREs them by name, which looks past them while they are empty. The procedures are
+ * lowered again until no call passes fewer arguments than they were lowered for.
+ * <p>
+ * Usage:
+ * IrProgram p = new IrBuilder().lower(program);
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public class IrBuilder
+{
+    /**
+     * Every binary operation that the IR supports, in a fixed order.
+     */
+    static final BinaryOperation[] OPERATIONS = {
+            BinOp.ADD, BinOp.SUB, BinOp.MUL, BinOp.DIV, BinOp.MOD, BinOp.EQ, BinOp.NEQ,
+            BinOp.LT, BinOp.GT, BinOp.LEQ, BinOp.GEQ, BinOp.AND, BinOp.OR
+    };
+
+    private final Map<String, Procedure> procedures = new LinkedHashMap<>();
+    private final Map<String, Integer> fewest = new HashMap<>();
+    private Statement main;
+
+    private IrFunction function;
+    private BasicBlock current;
+    private boolean ownsAll;
+    private Set<String> owned;
+    private Set<String> names;
+    private Map<String, Map<BasicBlock, Instruction>> definitions;
+    private Set<BasicBlock> sealed;
+    private Map<BasicBlock, Map<String, Instruction>> incomplete;
+
+    /**
+     * Lowers a program.
+     * @param program the program.
+     * @return the program in IR, which has been verified.
+     * @throws IllegalArgumentException if the program declares a procedure inside a
+     *                                  statement, or calls a procedure that it does not
+     *                                  declare, or with too many arguments.
+     */
+    public IrProgram lower(Program program)
+    {
+        program.lower(this);
+
+        // The first time only finds the names.
+        Set<String> mainNames = new LinkedHashSet<>();
+        begin(null, List.of(), null, mainNames);
+        main.lower(this);
+        begin(null, List.of(), null, new LinkedHashSet<>(mainNames));
+        main.lower(this);
+        IrFunction mainFunction = finish(null);
+
+        Map<String, IrFunction> functions = new LinkedHashMap<>();
+        Map<String, Integer> lowered = null;
+        while (!fewest.equals(lowered))
+        {
+            lowered = new HashMap<>(fewest);
+            for (Procedure p : procedures.values())
+                functions.put(p.getName(), lower(p));
+        }
+        IrProgram ir = new IrProgram(mainFunction, functions);
+        Verifier.verify(ir);
+        return ir;
+    }
+
+    /**
+     * Lowers a procedure, for the fewest arguments that a call passes to it so far.
+     * @param p the procedure.
+     * @return the function.
+     */
+    private IrFunction lower(Procedure p)
+    {
+        List<String> args = new ArrayList<>();
+        for (Variable arg : p.getArgs())
+            args.add(arg.getName());
+        int passed = Math.min(args.size(), fewest.getOrDefault(p.getName(), args.size()));
+        Set<String> own = new LinkedHashSet<>(args.subList(0, passed));
+        own.add(p.getName());
+        begin(p.getName(), args, own, own);
+        p.getBody().lower(this);
+        return finish(p.getName());
+    }
+
+    /**
+     * Declares a procedure of the main program. A procedure declared again with the same
+     * name replaces the first one, as in the interpreter.
+     * @param p the procedure.
+     */
+    public void declareProcedure(Procedure p)
+    {
+        procedures.put(p.getName(), p);
+    }
+
+    /**
+     * Sets the main statement of the program.
+     * @param run the main statement.
+     */
+    public void setMain(Statement run)
+    {
+        main = run;
+    }
+
+    /**
+     * Gets the CONST for a value.
+     * @param value the value, encoded by environment.Value.
+     * @return the instruction.
+     */
+    public Instruction constant(long value)
+    {
+        return function.constant(value);
+    }
+
+    /**
+     * Reads a variable. A variable of the main program that may still be empty is read
+     * through an OR_ZERO, which then becomes its value, as reading it sets it to 0 in the
+     * interpreter.
+     * @param name the name of the variable.
+     * @return the value.
+     */
+    public Instruction variable(String name)
+    {
+        if (!isOwned(name))
+            return add(new Instruction(Instruction.LOAD, 0, name, null));
+        Instruction v = read(name, current);
+        if (v.getOpcode() == Instruction.CONST && v.getValue() == Value.EMPTY)
+            v = constant(Value.ofInt(0));
+        else if (mayBeEmpty(v))
+            v = add(new Instruction(Instruction.OR_ZERO, 0, null, null, v));
+        else
+            return v;
+        write(name, current, v);
+        return v;
+    }
+
+    /**
+     * Checks whether a value of an owned variable may be empty, when it is not a CONST.
+     * Only the main program has such values: a procedure owns its result and the arguments
+     * that every call passes, which are never empty.
+     * @param v the value.
+     * @return true if it may be empty, false if it is certainly not.
+     */
+    private boolean mayBeEmpty(Instruction v)
+    {
+        boolean merged = v.getOpcode() == Instruction.PHI || v.getOpcode() == Instruction.GET;
+        return merged && ownsAll;
+    }
+
+    /**
+     * Assigns a value to a variable.
+     * @param name the name of the variable.
+     * @param value the value.
+     */
+    public void assign(String name, Instruction value)
+    {
+        if (isOwned(name))
+            write(name, current, value);
+        else
+            add(new Instruction(Instruction.STORE, 0, name, null, value));
+    }
+
+    /**
+     * Applies a binary operation.
+     * @param operation the operation.
+     * @param a the left hand side.
+     * @param b the right hand side.
+     * @return the value.
+     * @throws IllegalArgumentException if the operation is not one of OPERATIONS.
+     */
+    public Instruction binary(BinaryOperation operation, Instruction a, Instruction b)
+    {
+        if (indexOf(operation) < 0)
+            throw new IllegalArgumentException("The IR does not support this operation");
+        return add(new Instruction(Instruction.BINARY, 0, null, operation, a, b));
+    }
+
+    /**
+     * Calls a procedure. The owned variables are PUT into the frame before the call, and
+     * read back after it, unless they are still empty. The arguments that are not passed
+     * are empty.
+     * @param name the name of the procedure.
+     * @param args the values of the arguments.
+     * @return the result.
+     * @throws IllegalArgumentException if the program does not declare the procedure, or
+     *                                  it takes fewer arguments.
+     */
+    public Instruction call(String name, List<Instruction> args)
+    {
+        Procedure p = procedures.get(name);
+        if (p == null)
+            throw new IllegalArgumentException("Undeclared procedure " + name);
+        if (p.getArgs().size() < args.size())
+            throw new IllegalArgumentException("Too many arguments to " + name);
+        fewest.merge(name, args.size(), Math::min);
+        List<Instruction> actuals = new ArrayList<>(args);
+        while (actuals.size() < p.getArgs().size())
+            actuals.add(constant(Value.EMPTY));
+
+        List<String> put = new ArrayList<>();
+        for (String n : owned == null ? names : owned)
+        {
+            Instruction v = read(n, current);
+            if (v.getOpcode() == Instruction.CONST && v.getValue() == Value.EMPTY)
+                continue;
+            add(new Instruction(Instruction.PUT, 0, n, null, v));
+            put.add(n);
+        }
+        Instruction result = add(new Instruction(Instruction.CALL, 0, name, null,
+                actuals.toArray(new Instruction[0])));
+        for (String n : put)
+            write(n, current, add(new Instruction(Instruction.GET, 0, n, null)));
+        return result;
+    }
+
+    /**
+     * Prints a value on its own line.
+     * @param value the value.
+     */
+    public void writeLine(Instruction value)
+    {
+        add(new Instruction(Instruction.WRITE, 0, null, null, value));
+    }
+
+    /**
+     * Reads an int from the standard input.
+     * @return the value.
+     */
+    public Instruction readInt()
+    {
+        return add(new Instruction(Instruction.READ, 0, null, null));
+    }
+
+    /**
+     * Creates a block, which jumps can go to before it is started.
+     * @return the block.
+     */
+    public BasicBlock newBlock()
+    {
+        return function.newBlock();
+    }
+
+    /**
+     * Makes a block the current one, to which instructions are added.
+     * @param b the block.
+     */
+    public void start(BasicBlock b)
+    {
+        current = b;
+    }
+
+    /**
+     * Seals a block: every block that jumps to it has done so already.
+     * @param b the block.
+     */
+    public void seal(BasicBlock b)
+    {
+        Map<String, Instruction> phis = incomplete.remove(b);
+        sealed.add(b);
+        if (phis != null)
+            for (Map.Entry<String, Instruction> phi : phis.entrySet())
+                addPhiOperands(phi.getKey(), phi.getValue());
+    }
+
+    /**
+     * Ends the current block with a jump.
+     * @param target the block to jump to.
+     */
+    public void jump(BasicBlock target)
+    {
+        terminate(new Instruction(Instruction.JUMP, 0, null, null), target);
+    }
+
+    /**
+     * Ends the current block with a branch on a boolean.
+     * @param condition the boolean.
+     * @param ifTrue the block to go to if it is true.
+     * @param ifFalse the block to go to if it is false.
+     */
+    public void branch(Instruction condition, BasicBlock ifTrue, BasicBlock ifFalse)
+    {
+        terminate(new Instruction(Instruction.BRANCH, 0, null, null, condition), ifTrue, ifFalse);
+    }
+
+    /**
+     * Finds an operation in OPERATIONS.
+     * @param operation the operation.
+     * @return its index, or -1 if it is not one of OPERATIONS.
+     */
+    static int indexOf(BinaryOperation operation)
+    {
+        for (int i = 0; i < OPERATIONS.length; i++)
+            if (OPERATIONS[i] == operation)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Starts lowering a function. The arguments of a procedure are its PARAMs, and its
+     * result is 0, when it starts. An argument that it does not own is PUT into its frame.
+     * @param name the name of the procedure, or null for the main program.
+     * @param args the names of the arguments.
+     * @param owned the names of the variables the function owns, or null if it owns all.
+     * @param names the names to PUT and GET around calls; the main program adds the names
+     *              of its variables as they appear.
+     */
+    private void begin(String name, List<String> args, Set<String> owned, Set<String> names)
+    {
+        function = new IrFunction(name, args, new ArrayList<>(owned == null ? names : owned));
+        current = function.getEntry();
+        ownsAll = owned == null;
+        this.owned = owned;
+        this.names = names;
+        definitions = new HashMap<>();
+        sealed = new HashSet<>();
+        incomplete = new HashMap<>();
+        seal(current);
+        for (int i = 0; i < args.size(); i++)
+        {
+            Instruction param = add(new Instruction(Instruction.PARAM, i, null, null));
+            if (isOwned(args.get(i)))
+                write(args.get(i), current, param);
+            else
+                add(new Instruction(Instruction.PUT, 0, args.get(i), null, param));
+        }
+        if (name != null)
+            write(name, current, constant(Value.ofInt(0)));
+    }
+
+    /**
+     * Finishes the function being lowered: returns from it, and orders its blocks.
+     * @param name the name of the procedure, whose value is its result, or null for the
+     *             main program.
+     * @return the function.
+     */
+    private IrFunction finish(String name)
+    {
+        if (name == null)
+            add(new Instruction(Instruction.RETURN, 0, null, null));
+        else
+            add(new Instruction(Instruction.RETURN, 0, null, null, read(name, current)));
+        function.order();
+        return function;
+    }
+
+    /**
+     * Checks whether the function being lowered owns a variable.
+     * @param name the name of the variable.
+     * @return true if it does, false if the variable is looked up by name.
+     */
+    private boolean isOwned(String name)
+    {
+        if (ownsAll)
+        {
+            names.add(name);
+            return true;
+        }
+        return owned.contains(name);
+    }
+
+    /**
+     * Adds an instruction to the current block.
+     * @param i the instruction.
+     * @return the instruction.
+     */
+    private Instruction add(Instruction i)
+    {
+        return current.add(i);
+    }
+
+    /**
+     * Ends the current block.
+     * @param terminator the JUMP or BRANCH.
+     * @param targets the blocks it goes to.
+     */
+    private void terminate(Instruction terminator, BasicBlock... targets)
+    {
+        terminator.setTargets(targets);
+        add(terminator);
+        for (BasicBlock target : targets)
+            target.addPredecessor(current);
+    }
+
+    /**
+     * Sets the value of an owned variable at the end of a block.
+     * @param name the name of the variable.
+     * @param b the block.
+     * @param value the value.
+     */
+    private void write(String name, BasicBlock b, Instruction value)
+    {
+        definitions.computeIfAbsent(name, n -> new HashMap<>()).put(b, value);
+    }
+
+    /**
+     * Gets the value of an owned variable at the end of a block, as it is so far.
+     * @param name the name of the variable.
+     * @param b the block.
+     * @return the value.
+     */
+    private Instruction read(String name, BasicBlock b)
+    {
+        Map<BasicBlock, Instruction> d = definitions.get(name);
+        Instruction v = d == null ? null : d.get(b);
+        if (v != null)
+            return v;
+
+        if (!sealed.contains(b))
+        {
+            v = b.add(new Instruction(Instruction.PHI, 0, null, null));
+            incomplete.computeIfAbsent(b, k -> new LinkedHashMap<>()).put(name, v);
+        }
+        else if (b.getPredecessors().isEmpty())
+            v = constant(Value.EMPTY);
+        else if (b.getPredecessors().size() == 1)
+            v = read(name, b.getPredecessors().get(0));
+        else
+        {
+            // Written first, so that a loop back to this block finds the PHI.
+            v = b.add(new Instruction(Instruction.PHI, 0, null, null));
+            write(name, b, v);
+            v = addPhiOperands(name, v);
+        }
+        write(name, b, v);
+        return v;
+    }
+
+    /**
+     * Gives a PHI an operand for each predecessor of its block.
+     * @param name the name of the variable that the PHI merges.
+     * @param phi the PHI.
+     * @return the value to use for the PHI, which may no longer be the PHI.
+     */
+    private Instruction addPhiOperands(String name, Instruction phi)
+    {
+        for (BasicBlock pred : phi.getBlock().getPredecessors())
+            phi.addOperand(read(name, pred));
+        return removeTrivialPhi(phi);
+    }
+
+    /**
+     * Removes a PHI whose operands are all the same value or the PHI itself, and then any
+     * PHI that this makes trivial.
+     * @param phi the PHI.
+     * @return the value to use for the PHI, which is the PHI if it is not trivial.
+     */
+    private Instruction removeTrivialPhi(Instruction phi)
+    {
+        // A PHI of a block that is not sealed yet does not have its operands yet.
+        if (!sealed.contains(phi.getBlock()))
+            return phi;
+        Instruction same = null;
+        for (Instruction op : phi.getOperands())
+        {
+            if (op == same || op == phi)
+                continue;
+            if (same != null)
+                return phi;
+            same = op;
+        }
+        if (same == null)
+            same = constant(Value.EMPTY);
+
+        List<Instruction> users = new ArrayList<>(phi.getUsers());
+        phi.replaceAllUsesWith(same);
+        for (Map<BasicBlock, Instruction> d : definitions.values())
+            for (Map.Entry<BasicBlock, Instruction> e : d.entrySet())
+                if (e.getValue() == phi)
+                    e.setValue(same);
+        phi.remove();
+
+        for (Instruction user : users)
+            if (user.getOpcode() == Instruction.PHI && user.getBlock() != null)
+                removeTrivialPhi(user);
+        return same;
+    }
+}
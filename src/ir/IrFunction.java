@@ -0,0 +1,227 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The control-flow graph of one procedure, or of the main program, in SSA form.
+ * <p>
+ * Its blocks are kept in reverse postorder, the entry block first, so that every block
+ * comes before the blocks it dominates, and a loop header before the body of the loop.
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public final class IrFunction
+{
+    private final String name;
+    private final List<String> args;
+    private final List<String> owned;
+    private List<BasicBlock> blocks = new ArrayList<>();
+    private final Map<Long, Instruction> constants = new HashMap<>();
+    private int instructionCount;
+
+    /**
+     * Constructor for a function with only an entry block.
+     * @param name the name of the procedure, or null for the main program.
+     * @param args the names of the arguments of the procedure.
+     * @param owned the names of the variables that the function owns.
+     */
+    IrFunction(String name, List<String> args, List<String> owned)
+    {
+        this.name = name;
+        this.args = args;
+        this.owned = owned;
+        newBlock();
+    }
+
+    /**
+     * Gets the name of the procedure.
+     * @return the name, or null for the main program.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Gets the names of the arguments of the procedure, in order.
+     * @return the names, which must not be changed.
+     */
+    public List<String> getArgs()
+    {
+        return args;
+    }
+
+    /**
+     * Gets the names of the variables that the function owns: every variable of the main
+     * program, or the arguments and the result of a procedure.
+     * @return the names, which must not be changed.
+     */
+    public List<String> getOwned()
+    {
+        return owned;
+    }
+
+    /**
+     * Gets every variable name that can have a slot in the frame of the function: the
+     * ones it PUTs, GETs, LOADs or STOREs, in the order they first appear. An owned
+     * variable that is never PUT stays in SSA values, and needs no slot.
+     * @return the names.
+     */
+    public List<String> getFrameNames()
+    {
+        Set<String> names = new LinkedHashSet<>();
+        for (BasicBlock b : blocks)
+            for (Instruction i : b.getInstructions())
+                if (i.getOpcode() >= Instruction.PUT && i.getOpcode() <= Instruction.STORE)
+                    names.add(i.getName());
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Gets the entry block.
+     * @return the block, which has no predecessors.
+     */
+    public BasicBlock getEntry()
+    {
+        return blocks.get(0);
+    }
+
+    /**
+     * Gets the blocks, in reverse postorder once the function is built.
+     * @return the blocks, which must not be changed.
+     */
+    public List<BasicBlock> getBlocks()
+    {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * Gets the constants that the function uses.
+     * @return the CONST instructions, which belong to no block.
+     */
+    public List<Instruction> getConstants()
+    {
+        return new ArrayList<>(constants.values());
+    }
+
+    /**
+     * Gets the CONST for a value, creating it if the function has none yet.
+     * @param value the value, encoded by environment.Value.
+     * @return the instruction.
+     */
+    public Instruction constant(long value)
+    {
+        return constants.computeIfAbsent(value, v -> new Instruction(Instruction.CONST, v,
+                null, null));
+    }
+
+    /**
+     * Adds an empty block to the function.
+     * @return the block.
+     */
+    BasicBlock newBlock()
+    {
+        BasicBlock b = new BasicBlock(blocks.size());
+        blocks.add(b);
+        return b;
+    }
+
+    /**
+     * Gets the number of instructions, constants included, that number() has numbered.
+     * @return the number, which is one more than the greatest id of an instruction.
+     */
+    public int getInstructionCount()
+    {
+        return instructionCount;
+    }
+
+    /**
+     * Numbers the instructions and the blocks, in order. Analyses and backends can then
+     * keep what they know about instructions and blocks in arrays.
+     */
+    public void number()
+    {
+        int n = 0;
+        for (Instruction c : constants.values())
+            c.id = n++;
+        for (int i = 0; i < blocks.size(); i++)
+        {
+            blocks.get(i).id = i;
+            for (Instruction instruction : blocks.get(i).getInstructions())
+                instruction.id = n++;
+        }
+        instructionCount = n;
+    }
+
+    /**
+     * Removes the blocks that cannot be reached from the entry, and puts the others in
+     * reverse postorder, then numbers everything again. Must be called whenever the
+     * edges of the graph change.
+     */
+    public void order()
+    {
+        List<BasicBlock> postorder = new ArrayList<>();
+        Set<BasicBlock> seen = new HashSet<>();
+        visit(getEntry(), seen, postorder);
+        for (BasicBlock b : blocks)
+        {
+            if (seen.contains(b))
+                continue;
+            // A dead block can still be a predecessor of a live one.
+            for (BasicBlock s : b.getSuccessors())
+                if (seen.contains(s))
+                    s.removePredecessor(b);
+            for (Instruction i : new ArrayList<>(b.getInstructions()))
+            {
+                i.replaceAllUsesWith(constant(0));
+                i.remove();
+            }
+        }
+        Collections.reverse(postorder);
+        blocks = postorder;
+        number();
+    }
+
+    /**
+     * Adds a block and its successors to a postorder, depth first.
+     * @param b the block.
+     * @param seen the blocks already visited.
+     * @param postorder the postorder.
+     */
+    private static void visit(BasicBlock b, Set<BasicBlock> seen, List<BasicBlock> postorder)
+    {
+        if (!seen.add(b))
+            return;
+        List<BasicBlock> successors = b.getSuccessors();
+        // Visiting the last successor first puts the first one first in reverse postorder.
+        for (int i = successors.size() - 1; i >= 0; i--)
+            visit(successors.get(i), seen, postorder);
+        postorder.add(b);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(name == null ? "main" : name);
+        sb.append('(').append(String.join(", ", args)).append(")\n");
+        for (BasicBlock b : blocks)
+        {
+            sb.append(b).append(':');
+            if (!b.getPredecessors().isEmpty())
+                sb.append("  ; from ").append(b.getPredecessors().toString()
+                        .replaceAll("[\\[\\]]", ""));
+            sb.append('\n');
+            for (Instruction i : b.getInstructions())
+                sb.append("    ").append(i).append('\n');
+        }
+        return sb.toString();
+    }
+}
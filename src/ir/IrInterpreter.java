@@ -0,0 +1,162 @@
+package ir;
+
+import ast.Variable;
+import environment.Environment;
+import environment.Scope;
+import environment.Value;
+import type.Type;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * Runs a program in IR directly, as the reference for what the IR means: a backend, or
+ * a pass over the IR, must do what this does. Each call has an Environment, as in the
+ * ast interpreter, which holds the variables that are PUT, LOADed and STOREd, and looks
+ * them up through the frames of its callers; SSA values live in an array of the call.
+ * <p>
+ * Usage:
+ * new IrInterpreter(new IrBuilder().lower(program)).run();
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public class IrInterpreter
+{
+    private final IrProgram program;
+    private final Map<IrFunction, Scope> scopes = new HashMap<>();
+    private final Map<String, Variable> variables = new HashMap<>();
+    private Scanner in;
+
+    /**
+     * Constructor for an interpreter.
+     * @param program the program to run.
+     */
+    public IrInterpreter(IrProgram program)
+    {
+        this.program = program;
+    }
+
+    /**
+     * Runs the program.
+     */
+    public void run()
+    {
+        call(program.getMain(), null, new long[0]);
+    }
+
+    /**
+     * Calls a function.
+     * @param f the function.
+     * @param caller the environment of the caller, or null for the main program.
+     * @param args the values of the arguments.
+     * @return the result, or Value.EMPTY for the main program.
+     */
+    private long call(IrFunction f, Environment caller, long[] args)
+    {
+        Scope scope = scopes.computeIfAbsent(f, k -> new Scope());
+        Environment env = new Environment(caller, scope);
+        long[] values = new long[f.getInstructionCount()];
+        for (Instruction c : f.getConstants())
+            values[c.getId()] = c.getValue();
+
+        BasicBlock block = f.getEntry();
+        BasicBlock from = null;
+        while (true)
+        {
+            List<Instruction> instructions = block.getInstructions();
+            List<Instruction> phis = block.getPhis();
+            if (from != null && !phis.isEmpty())
+            {
+                // Every PHI reads its operand before any of them is set.
+                int k = block.getPredecessors().indexOf(from);
+                long[] merged = new long[phis.size()];
+                for (int i = 0; i < merged.length; i++)
+                    merged[i] = values[phis.get(i).getOperand(k).getId()];
+                for (int i = 0; i < merged.length; i++)
+                    values[phis.get(i).getId()] = merged[i];
+            }
+
+            for (int n = phis.size(); n < instructions.size(); n++)
+            {
+                Instruction i = instructions.get(n);
+                List<Instruction> ops = i.getOperands();
+                long a = ops.isEmpty() ? Value.EMPTY : values[ops.get(0).getId()];
+                switch (i.getOpcode())
+                {
+                    case Instruction.PARAM -> values[i.getId()] = args[i.getIndex()];
+                    case Instruction.BINARY -> values[i.getId()] = Value.of(i.getOperation()
+                            .apply(Value.box(a), Value.box(values[ops.get(1).getId()])));
+                    case Instruction.OR_ZERO ->
+                            values[i.getId()] = a == Value.EMPTY ? Value.ofInt(0) : a;
+                    case Instruction.CALL ->
+                    {
+                        long[] actuals = new long[ops.size()];
+                        for (int k = 0; k < actuals.length; k++)
+                            actuals[k] = values[ops.get(k).getId()];
+                        values[i.getId()] = call(program.getProcedure(i.getName()), env, actuals);
+                    }
+                    case Instruction.PUT -> env.declareVariable(variable(i.getName()), a);
+                    case Instruction.GET ->
+                    {
+                        int slot = scope.slotOf(i.getName());
+                        values[i.getId()] = slot < 0 ? Value.EMPTY : env.getSlot(slot);
+                    }
+                    case Instruction.LOAD ->
+                    {
+                        Variable v = variable(i.getName());
+                        long value = env.getVariable(v);
+                        if (value == Value.EMPTY)
+                        {
+                            value = Value.ofInt(0);
+                            env.setVariable(v, value);
+                        }
+                        values[i.getId()] = value;
+                    }
+                    case Instruction.STORE -> env.setVariable(variable(i.getName()), a);
+                    case Instruction.WRITE -> System.out.println(Value.isInt(a)
+                            ? String.valueOf(Value.toInt(a)) : String.valueOf(Value.box(a)));
+                    case Instruction.READ -> values[i.getId()] = Value.ofInt(input().nextInt());
+                    case Instruction.JUMP ->
+                    {
+                        from = block;
+                        block = i.getTargets()[0];
+                    }
+                    case Instruction.BRANCH ->
+                    {
+                        from = block;
+                        block = i.getTargets()[Value.toBoolean(a) ? 0 : 1];
+                    }
+                    case Instruction.RETURN ->
+                    {
+                        return a;
+                    }
+                    default -> throw new IllegalStateException("Cannot run " + i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the Variable that the Environment knows a variable name by.
+     * @param name the name.
+     * @return the variable.
+     */
+    private Variable variable(String name)
+    {
+        return variables.computeIfAbsent(name, n -> new Variable(n, Type.INT));
+    }
+
+    /**
+     * Gets the scanner of the standard input, creating it the first time it is needed.
+     * @return the scanner.
+     */
+    private Scanner input()
+    {
+        if (in == null)
+            in = new Scanner(System.in);
+        return in;
+    }
+}
@@ -0,0 +1,65 @@
+package ir;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A program in IR: the function of the main program, and one for each procedure it
+ * declares.
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public final class IrProgram
+{
+    private final IrFunction main;
+    private final Map<String, IrFunction> procedures;
+
+    /**
+     * Constructor for a program.
+     * @param main the main program.
+     * @param procedures the procedures, by name.
+     */
+    IrProgram(IrFunction main, Map<String, IrFunction> procedures)
+    {
+        this.main = main;
+        this.procedures = procedures;
+    }
+
+    /**
+     * Gets the function of the main program.
+     * @return the function.
+     */
+    public IrFunction getMain()
+    {
+        return main;
+    }
+
+    /**
+     * Gets the function of a procedure.
+     * @param name the name of the procedure.
+     * @return the function, or null if the program declares no such procedure.
+     */
+    public IrFunction getProcedure(String name)
+    {
+        return procedures.get(name);
+    }
+
+    /**
+     * Gets the functions of the procedures.
+     * @return the functions, in the order they were declared.
+     */
+    public Collection<IrFunction> getProcedures()
+    {
+        return procedures.values();
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(main.toString());
+        for (IrFunction f : procedures.values())
+            sb.append('\n').append(f);
+        return sb.toString();
+    }
+}
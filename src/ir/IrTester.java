@@ -0,0 +1,216 @@
+package ir;
+
+import ast.Program;
+import emitter.Emitter;
+import emitter.IrCompiler;
+import emitter.MipsSimulator;
+import vm.TestHarness;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Tests the IR: every program is lowered into SSA form and verified, then must print the
+ * same output and end with the same exception, if any, on the IrInterpreter as on the ast
+ * interpreter. Its MIPS, compiled by the IrCompiler, must print the same too, with true
+ * and false printed as 1 and 0, up to where the interpreter ends with an exception, since
+ * MIPS does not check types. All of it again after the DeadStoreElimination, whose report
+ * is printed with how much MIPS it saves. The MIPS that the ast Emitter writes is run
+ * too, and the start of what it prints is shown where it differs: the Emitter has always
+ * run the body of a WHILE loop before its first check, and has no dynamic scoping, so
+ * only simpler programs print the same with it. Then prints the IR and dominator tree of
+ * a sample program, and its IR without dead stores.
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public class IrTester
+{
+    private static final String[] FILES = {
+            "ParserTest.txt", "fact.txt", "parserTest4.txt", "parserTest6.txt", "parserTest7.txt",
+            "parserTest8.txt", "parserTest8_5.txt"
+    };
+
+    private static final String[] CASES = {
+            // A procedure sees the variables of its callers, and creates its own otherwise.
+            "PROCEDURE f(a);\nBEGIN\n    t := t + a;\n    u := u + 1;\n    f := u;\nEND;\n"
+                    + "BEGIN\n    t := 10;\n    WRITELN(f(1));\n    WRITELN(f(2));\n    WRITELN(t);\n"
+                    + "    WRITELN(u);\nEND;\n",
+            // A callee changes an argument of its caller; its caller read it before the call.
+            "PROCEDURE g(b);\n    a := a + b;\nPROCEDURE f(a);\n    f := a + g(5) + a;\n"
+                    + "BEGIN\n    WRITELN(f(1));\n    x := 1;\n    WRITELN(x + g(2) * x);\nEND;\n",
+            // An empty variable is read as 0, and becomes visible to procedures when read.
+            "PROCEDURE h(a);\n    y := y + a;\nBEGIN\n    WRITELN(y + h(3));\n    WRITELN(y);\nEND;\n",
+            // Booleans, comparisons of every kind and loops.
+            "BEGIN\n    x := 0;\n    WHILE x < 5 && x <> 3 DO x := x + 1;\n    WRITELN(x);\n"
+                    + "    WRITELN(x = 3);\n    WRITELN(TRUE || (x >= 4));\n    IF x <= 2 THEN WRITELN(1);"
+                    + " ELSE WRITELN(2);\n    FOR i := 1 TO 3 DO WRITELN(i * -i mod 4);\n"
+                    + "    WRITELN(100000 = 100000);\nEND;\n",
+            // A procedure whose argument has its own name, and one called with too few.
+            "PROCEDURE f(f);\n    f := f + 1;\nPROCEDURE g(a, b);\n    g := a + b;\n"
+                    + "BEGIN\n    WRITELN(f(5));\n    WRITELN(g(1));\nEND;\n",
+            // An argument that is not passed is the variable of the caller, which it changes.
+            "PROCEDURE g(a, b);\nBEGIN\n    b := b + a;\n    g := b;\nEND;\n"
+                    + "PROCEDURE h(b);\n    h := g(2) + g(3, 1) + b;\n"
+                    + "BEGIN\n    b := 4;\n    WRITELN(g(1));\n    WRITELN(h(10));\n    WRITELN(b);\nEND;\n",
+            // A callee of a procedure finds the caller's variable past an argument not passed.
+            "PROCEDURE foo(y);\nBEGIN\n    WRITELN(y);\n    ignore := bar();\n    y := y + 1;\nEND;\n"
+                    + "PROCEDURE bar();\n    WRITELN(y + 2);\n"
+                    + "BEGIN\n    y := 5;\n    ignore := foo();\n    WRITELN(y);\nEND;\n",
+            // What an argument that some call does not pass reads, and where it is written.
+            "PROCEDURE show(y);\n    WRITELN(y);\nPROCEDURE set(y);\n    y := 7;\n"
+                    + "BEGIN\n    y := 5;\n    x := show();\n    x := show(3);\n    x := set(1);\n"
+                    + "    WRITELN(y);\n    x := set();\n    WRITELN(y);\nEND;\n",
+            // Variables swapped around a loop need PHIs that read each other.
+            "BEGIN\n    a := 1;\n    b := 2;\n    FOR i := 1 TO 5 DO\n    BEGIN\n        t := a;\n"
+                    + "        a := b;\n        b := t + b;\n    END;\n    WRITELN(a);\n    WRITELN(b);\n"
+                    + "    WRITELN(i);\nEND;\n",
+            // Nested loops and branches, with a variable only assigned in one branch.
+            "BEGIN\n    n := 0;\n    WHILE n < 4 DO\n    BEGIN\n        IF n mod 2 = 0 THEN m := n * 10;\n"
+                    + "        j := 0;\n        WHILE j < n DO j := j + 1;\n        WRITELN(m + j);\n"
+                    + "        n := n + 1;\n    END;\nEND;\n",
+            // A procedure that recurses, and one that changes a variable of main.
+            "PROCEDURE fib(n);\nBEGIN\n    IF n < 2 THEN fib := n;\n"
+                    + "    ELSE fib := fib(n - 1) + fib(n - 2);\nEND;\n"
+                    + "PROCEDURE bump(d);\n    total := total + d;\n"
+                    + "BEGIN\n    total := 1;\n    FOR k := 1 TO 10 DO x := bump(fib(k));\n"
+                    + "    WRITELN(total);\n    WRITELN(x);\nEND;\n",
+            // Stores that are overwritten, or never read, and loads of what was just stored.
+            "PROCEDURE p(n);\nBEGIN\n    tmp := n * 2;\n    tmp := n + 1;\n    unused := tmp;\n"
+                    + "    p := tmp * tmp;\nEND;\nBEGIN\n    junk := 0;\n    FOR i := 1 TO 5 DO\n"
+                    + "    BEGIN\n        junk := junk + i;\n        WRITELN(p(i));\n    END;\nEND;\n",
+            // Errors.
+            "BEGIN\n    WRITELN(1);\n    WRITELN(1 / 0);\nEND;\n",
+            "BEGIN\n    IF 1 THEN WRITELN(1);\nEND;\n",
+            "BEGIN\n    WRITELN(1 + TRUE);\nEND;\n",
+    };
+
+    private static final String SAMPLE =
+            "PROCEDURE gcd(a, b);\nBEGIN\n    WHILE b <> 0 DO\n    BEGIN\n        t := b;\n"
+                    + "        b := a mod b;\n        a := t;\n    END;\n    gcd := a;\nEND;\n"
+                    + "BEGIN\n    x := 0;\n    FOR i := 1 TO 10 DO\n"
+                    + "        IF i mod 3 = 0 THEN x := x + gcd(i, 12);\n    WRITELN(x);\nEND;\n";
+
+    private static long lines;
+    private static long steps;
+
+    /**
+     * Tests the IR.
+     * @param args not used
+     * @throws IOException when a file cannot be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        for (String file : FILES)
+            System.out.println(file + ": " + compare(Files.readString(Path.of(file))));
+        for (int i = 0; i < CASES.length; i++)
+            System.out.println("case " + i + ": " + compare(CASES[i]));
+
+        IrProgram sample = new IrBuilder().lower(TestHarness.parse(SAMPLE));
+        System.out.println("\nsample:\n" + sample);
+        System.out.println("dominators of main:\n" + new DominatorTree(sample.getMain()));
+        System.out.println("dominators of gcd:\n"
+                + new DominatorTree(sample.getProcedure("gcd")));
+        new DeadStoreElimination().run(sample);
+        System.out.println("sample without dead stores:\n" + sample);
+    }
+
+    /**
+     * Runs a program with the ast interpreter, with the IrInterpreter and the IrCompiler
+     * before and after removing its dead stores, and with the Emitter.
+     * @param source the source of the program
+     * @return "same" if all printed the same output, or else the outputs, followed by
+     *         the lines of MIPS and the instructions run before and after, the report
+     *         of the DeadStoreElimination, and what the MIPS of the Emitter printed
+     */
+    private static String compare(String source)
+    {
+        String expected = TestHarness.capture(TestHarness.parse(source)::run);
+        String printed = expected.replaceAll("\\s*[A-Za-z]+Exception$", "");
+        boolean failed = !printed.equals(expected);
+        printed = printed.replaceAll("(?m)^true$", "1").replaceAll("(?m)^false$", "0");
+
+        String result = "";
+        long[] size = new long[4];
+        DeadStoreElimination d = new DeadStoreElimination();
+        for (int k = 0; k < 2; k++)
+        {
+            IrProgram ir = new IrBuilder().lower(TestHarness.parse(source));
+            if (k == 1)
+                d.run(ir);
+            String which = k == 0 ? "" : " without dead stores";
+            String interpreted = capture(ir, false);
+            String mips = capture(ir, true);
+            size[k] = lines;
+            size[k + 2] = steps;
+            if (!interpreted.equals(expected))
+                result += "\n--- ir" + which + ":\n" + interpreted;
+            if (failed ? !mips.startsWith(printed) : !mips.equals(printed))
+                result += "\n--- mips" + which + ":\n" + mips;
+        }
+
+        Program p = TestHarness.parse(source);
+        String emitted = mips(p::compile);
+        if (failed ? emitted.startsWith(printed) : emitted.equals(printed))
+            emitted = "same";
+        else
+        {
+            String[] out = emitted.split("\n");
+            emitted = "DIFFERENT";
+            for (int i = 0; i < Math.min(out.length, 5); i++)
+                emitted += "\n" + out[i];
+            if (out.length > 5)
+                emitted += "\n...\n" + out[out.length - 1];
+        }
+        return String.format("%s, %d lines of MIPS, %d after; %d instructions run, %d after%n"
+                        + "    %s%n    emitter: %s", result.isEmpty() ? "same"
+                        : "DIFFERENT\n--- interpreter:\n" + expected + result, size[0], size[1],
+                size[2], size[3], d.toString().replace("\n", "\n    "),
+                emitted.replace("\n", "\n        "));
+    }
+
+    /**
+     * Runs a program in IR and captures what it prints. Compiling it sets lines and steps.
+     * @param p the program
+     * @param mips true to compile it into MIPS and simulate that, false to interpret it
+     * @return the output, followed by the class of the exception it ended with, if any
+     */
+    private static String capture(IrProgram p, boolean mips)
+    {
+        if (!mips)
+            return TestHarness.capture(() -> new IrInterpreter(p).run());
+        return mips(e -> new IrCompiler(e).compile(p));
+    }
+
+    /**
+     * Compiles a program into MIPS, simulates it and captures what it prints. Sets lines
+     * and steps.
+     * @param compiler what compiles the program with an Emitter
+     * @return the output, followed by the class of the exception it ended with, if any
+     */
+    private static String mips(Consumer<Emitter> compiler)
+    {
+        return TestHarness.capture(() ->
+        {
+            try
+            {
+                File f = File.createTempFile("compiled", ".asm");
+                f.deleteOnExit();
+                compiler.accept(new Emitter(f.getPath()));
+                lines = Files.readAllLines(f.toPath()).size();
+                MipsSimulator simulator = new MipsSimulator(new FileInputStream(f));
+                steps = 0;
+                steps = simulator.run(new ByteArrayInputStream(new byte[0]), System.out);
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+}
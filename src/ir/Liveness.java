@@ -0,0 +1,95 @@
+package ir;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Finds the variables of a function's frame that are live at each point: those whose
+ * value may still be read after it, by a LOAD or GET of the function, or by a call, or by
+ * a caller after a procedure returns. A STORE or PUT of a variable that is not live after
+ * it is dead.
+ * <p>
+ * A LOAD or GET reads its variable, and a STORE or PUT overwrites it. A call may read
+ * every variable that it accesses, and overwrites none for certain. When a procedure
+ * returns, every variable that the program reads is live, since it may belong to a caller.
+ * SSA values are not tracked: a value is live while it has users.
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public final class Liveness extends Dataflow<Set<String>>
+{
+    private final Accesses accesses;
+
+    /**
+     * Constructor for the liveness of a function.
+     * @param f the function.
+     * @param accesses the accesses of the program that contains it.
+     */
+    public Liveness(IrFunction f, Accesses accesses)
+    {
+        super(f, false);
+        this.accesses = accesses;
+    }
+
+    @Override
+    protected Set<String> boundary()
+    {
+        return getFunction().getName() == null ? Set.of() : accesses.getRead();
+    }
+
+    @Override
+    protected Set<String> top()
+    {
+        return Set.of();
+    }
+
+    @Override
+    protected Set<String> meet(Set<String> a, Set<String> b)
+    {
+        if (a.containsAll(b))
+            return a;
+        Set<String> union = new HashSet<>(a);
+        union.addAll(b);
+        return union;
+    }
+
+    @Override
+    protected Set<String> transfer(Instruction i, Set<String> live)
+    {
+        switch (i.getOpcode())
+        {
+            case Instruction.LOAD, Instruction.GET ->
+            {
+                return meet(live, Set.of(i.getName()));
+            }
+            case Instruction.STORE, Instruction.PUT ->
+            {
+                if (!live.contains(i.getName()))
+                    return live;
+                Set<String> killed = new HashSet<>(live);
+                killed.remove(i.getName());
+                return killed;
+            }
+            case Instruction.CALL ->
+            {
+                return meet(live, accesses.getAccessed(i.getName()));
+            }
+            default ->
+            {
+                return live;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a variable is live just after an instruction.
+     * @param name the name of the variable.
+     * @param i the instruction.
+     * @return true if its value may be read later, false otherwise.
+     */
+    public boolean isLiveAfter(String name, Instruction i)
+    {
+        return getAfter(i).contains(name);
+    }
+}
@@ -0,0 +1,134 @@
+package ir;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the definitions of the variables of a function's frame that reach each point:
+ * the STOREs, PUTs and calls whose value a variable may still have there. A STORE or PUT
+ * defines its variable, and hides every earlier definition of it. A call may define every
+ * variable that it accesses, but hides nothing, since it may not. Where the function
+ * starts, every variable has the value it was entered with, whose definition is null.
+ * <p>
+ * A LOAD or GET that only one STORE or PUT reaches reads the value that it wrote, which
+ * dominates it, since every path to it goes through that STORE or PUT.
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public final class ReachingDefinitions extends Dataflow<Map<String, Set<Instruction>>>
+{
+    private final Accesses accesses;
+    private final Set<String> names = new LinkedHashSet<>();
+
+    /**
+     * Constructor for the reaching definitions of a function.
+     * @param f the function.
+     * @param accesses the accesses of the program that contains it.
+     */
+    public ReachingDefinitions(IrFunction f, Accesses accesses)
+    {
+        super(f, true);
+        this.accesses = accesses;
+        for (BasicBlock b : f.getBlocks())
+            for (Instruction i : b.getInstructions())
+                if (isDefinition(i) || isUse(i))
+                    names.add(i.getName());
+    }
+
+    @Override
+    protected Map<String, Set<Instruction>> boundary()
+    {
+        Map<String, Set<Instruction>> entry = new HashMap<>();
+        for (String name : names)
+            entry.put(name, Collections.singleton(null));
+        return entry;
+    }
+
+    @Override
+    protected Map<String, Set<Instruction>> top()
+    {
+        return Map.of();
+    }
+
+    @Override
+    protected Map<String, Set<Instruction>> meet(Map<String, Set<Instruction>> a,
+            Map<String, Set<Instruction>> b)
+    {
+        Map<String, Set<Instruction>> union = new HashMap<>(a);
+        for (Map.Entry<String, Set<Instruction>> e : b.entrySet())
+            union.merge(e.getKey(), e.getValue(), ReachingDefinitions::union);
+        return union;
+    }
+
+    @Override
+    protected Map<String, Set<Instruction>> transfer(Instruction i,
+            Map<String, Set<Instruction>> reaching)
+    {
+        if (isDefinition(i))
+        {
+            Map<String, Set<Instruction>> defined = new HashMap<>(reaching);
+            defined.put(i.getName(), Collections.singleton(i));
+            return defined;
+        }
+        if (i.getOpcode() != Instruction.CALL)
+            return reaching;
+        Map<String, Set<Instruction>> called = new HashMap<>(reaching);
+        for (String name : accesses.getAccessed(i.getName()))
+            if (names.contains(name))
+                called.merge(name, Collections.singleton(i), ReachingDefinitions::union);
+        return called;
+    }
+
+    /**
+     * Gets the definitions that reach a LOAD or GET.
+     * @param use the LOAD or GET.
+     * @return the STOREs, PUTs and calls that may have defined the value it reads, and
+     *         null if it may be the value that the function was entered with.
+     */
+    public Set<Instruction> getDefinitions(Instruction use)
+    {
+        return getBefore(use).getOrDefault(use.getName(), Set.of());
+    }
+
+    /**
+     * Checks whether an instruction defines a variable of the frame.
+     * @param i the instruction.
+     * @return true if it is a STORE or PUT.
+     */
+    private static boolean isDefinition(Instruction i)
+    {
+        return i.getOpcode() == Instruction.STORE || i.getOpcode() == Instruction.PUT;
+    }
+
+    /**
+     * Checks whether an instruction reads a variable of the frame.
+     * @param i the instruction.
+     * @return true if it is a LOAD or GET.
+     */
+    private static boolean isUse(Instruction i)
+    {
+        return i.getOpcode() == Instruction.LOAD || i.getOpcode() == Instruction.GET;
+    }
+
+    /**
+     * Gets the union of two sets of definitions.
+     * @param a one set.
+     * @param b another set.
+     * @return the union, which is one of them if it contains the other.
+     */
+    private static Set<Instruction> union(Set<Instruction> a, Set<Instruction> b)
+    {
+        if (a.containsAll(b))
+            return a;
+        if (b.containsAll(a))
+            return b;
+        Set<Instruction> union = new HashSet<>(a);
+        union.addAll(b);
+        return union;
+    }
+}
@@ -0,0 +1,198 @@
+package ir;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks that a program in IR is well formed, so that a pass that breaks it is caught
+ * where it does, not in a backend later:
+ * <p>
+ * Every block ends with exactly one JUMP, BRANCH or RETURN, and starts with its PHIs,
+ * which have one operand for each predecessor. The predecessors of a block are the blocks
+ * whose terminators go to it, and every block can be reached from the entry, which has
+ * none. Every instruction has the operands its opcode takes, and appears among the users
+ * of each of them.
+ * <p>
+ * Every value dominates its uses: it is a CONST of the function, or it is defined before
+ * its use in the same block, or in a block that dominates the block of the use. The
+ * operand of a PHI for a predecessor must be available at the end of that predecessor.
+ *
+ * @author Agastya Ravuri
+ * @version 5.4.2024
+ */
+public final class Verifier
+{
+    private final IrFunction f;
+    private final DominatorTree dominators;
+    private final Set<Instruction> constants;
+
+    /**
+     * Constructor for the verifier of a function.
+     * @param f the function.
+     */
+    private Verifier(IrFunction f)
+    {
+        this.f = f;
+        this.dominators = new DominatorTree(f);
+        this.constants = new HashSet<>(f.getConstants());
+    }
+
+    /**
+     * Verifies every function of a program.
+     * @param p the program.
+     * @throws IllegalStateException if a function is not well formed.
+     */
+    public static void verify(IrProgram p)
+    {
+        verify(p.getMain());
+        for (IrFunction f : p.getProcedures())
+            verify(f);
+    }
+
+    /**
+     * Verifies a function.
+     * @param f the function.
+     * @throws IllegalStateException if it is not well formed.
+     */
+    public static void verify(IrFunction f)
+    {
+        checkGraph(f);
+        new Verifier(f).checkInstructions();
+    }
+
+    /**
+     * Checks the blocks and the edges between them.
+     * @param f the function.
+     * @throws IllegalStateException if they are not well formed.
+     */
+    private static void checkGraph(IrFunction f)
+    {
+        List<BasicBlock> blocks = f.getBlocks();
+        Set<BasicBlock> reached = new HashSet<>();
+        reached.add(f.getEntry());
+        for (int i = 0; i < blocks.size(); i++)
+        {
+            BasicBlock b = blocks.get(i);
+            if (b.getId() != i)
+                fail(f, b, null, "is numbered out of order");
+            if (b.getTerminator() == null)
+                fail(f, b, null, "does not end with a JUMP, BRANCH or RETURN");
+            for (BasicBlock s : b.getSuccessors())
+            {
+                if (!blocks.contains(s))
+                    fail(f, b, null, "jumps to " + s + ", which is not in the function");
+                if (!s.getPredecessors().contains(b))
+                    fail(f, b, null, "jumps to " + s + ", which does not list it");
+                reached.add(s);
+            }
+            for (BasicBlock p : b.getPredecessors())
+                if (!p.getSuccessors().contains(b) || !blocks.contains(p))
+                    fail(f, b, null, "lists " + p + ", which does not jump to it");
+        }
+        if (!f.getEntry().getPredecessors().isEmpty())
+            fail(f, f.getEntry(), null, "is the entry, but has predecessors");
+        for (BasicBlock b : blocks)
+            if (!reached.contains(b))
+                fail(f, b, null, "cannot be reached");
+    }
+
+    /**
+     * Checks the instructions of every block.
+     * @throws IllegalStateException if they are not well formed.
+     */
+    private void checkInstructions()
+    {
+        for (BasicBlock b : f.getBlocks())
+        {
+            List<Instruction> instructions = b.getInstructions();
+            int phis = b.getPhis().size();
+            Set<Instruction> defined = new HashSet<>();
+            for (int n = 0; n < instructions.size(); n++)
+            {
+                Instruction i = instructions.get(n);
+                if (i.getBlock() != b)
+                    fail(f, b, i, "belongs to another block");
+                if (i.getOpcode() == Instruction.PHI && n >= phis)
+                    fail(f, b, i, "comes after an instruction that is not a PHI");
+                if (i.isTerminator() != (n == instructions.size() - 1))
+                    fail(f, b, i, i.isTerminator() ? "ends the block in the middle"
+                            : "is last, but does not end the block");
+                checkOperands(b, i);
+
+                for (int k = 0; k < i.getOperands().size(); k++)
+                {
+                    Instruction op = i.getOperand(k);
+                    if (!op.getUsers().contains(i))
+                        fail(f, b, i, "is not a user of its operand " + op.reference());
+                    if (constants.contains(op))
+                        continue;
+                    if (op.getBlock() == null || !f.getBlocks().contains(op.getBlock()))
+                        fail(f, b, i, "uses " + op.reference() + ", which is not in a block");
+                    if (!op.hasValue())
+                        fail(f, b, i, "uses " + op.reference() + ", which has no value");
+                    if (i.getOpcode() == Instruction.PHI)
+                    {
+                        BasicBlock pred = b.getPredecessors().get(k);
+                        if (!dominators.dominates(op.getBlock(), pred))
+                            fail(f, b, i, "takes " + op.reference() + " from " + pred
+                                    + ", which it does not dominate");
+                    }
+                    else if (op.getBlock() == b ? !defined.contains(op)
+                            : !dominators.dominates(op.getBlock(), b))
+                        fail(f, b, i, "uses " + op.reference() + " where it does not dominate");
+                }
+                defined.add(i);
+            }
+        }
+    }
+
+    /**
+     * Checks the number of operands and targets of an instruction.
+     * @param b the block of the instruction.
+     * @param i the instruction.
+     * @throws IllegalStateException if it has the wrong number.
+     */
+    private void checkOperands(BasicBlock b, Instruction i)
+    {
+        int operands = switch (i.getOpcode())
+        {
+            case Instruction.CONST, Instruction.PARAM, Instruction.GET, Instruction.LOAD,
+                    Instruction.READ, Instruction.JUMP -> 0;
+            case Instruction.OR_ZERO, Instruction.PUT, Instruction.STORE, Instruction.WRITE,
+                    Instruction.BRANCH -> 1;
+            case Instruction.BINARY -> 2;
+            case Instruction.PHI -> b.getPredecessors().size();
+            case Instruction.RETURN -> f.getName() == null ? 0 : 1;
+            default -> i.getOperands().size();
+        };
+        if (i.getOpcode() == Instruction.CONST)
+            fail(f, b, i, "is a CONST in a block");
+        if (i.getOperands().size() != operands)
+            fail(f, b, i, "has " + i.getOperands().size() + " operands, not " + operands);
+        int targets = i.getOpcode() == Instruction.JUMP ? 1
+                : i.getOpcode() == Instruction.BRANCH ? 2 : 0;
+        if (i.getTargets().length != targets)
+            fail(f, b, i, "has " + i.getTargets().length + " targets, not " + targets);
+        if (i.getOpcode() == Instruction.PARAM && (b != f.getEntry()
+                || i.getIndex() < 0 || i.getIndex() >= f.getArgs().size()))
+            fail(f, b, i, "is not the PARAM of an argument in the entry block");
+        if (i.getOpcode() == Instruction.BINARY && IrBuilder.indexOf(i.getOperation()) < 0)
+            fail(f, b, i, "applies an operation that the IR does not support");
+    }
+
+    /**
+     * Reports a function that is not well formed.
+     * @param f the function.
+     * @param b the block where the problem is.
+     * @param i the instruction where it is, or null if it is in the block itself.
+     * @param problem what is wrong.
+     * @throws IllegalStateException always.
+     */
+    private static void fail(IrFunction f, BasicBlock b, Instruction i, String problem)
+    {
+        String where = (f.getName() == null ? "main" : f.getName()) + ", " + b
+                + (i == null ? "" : ", " + i);
+        throw new IllegalStateException("Malformed IR in " + where + ": " + problem);
+    }
+}
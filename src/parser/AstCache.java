@@ -0,0 +1,186 @@
+package parser;
+
+import ast.AstReader;
+import ast.AstWriter;
+import ast.Program;
+import scanner.Scanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+/**
+ * AstCache keeps the parsed Program of every source file it has seen in a directory, so
+ * that running an unchanged file again skips scanning and parsing.
+ * <p>
+ * Each entry is named after the SHA-256 hash of the source, so an edited file simply has
+ * a different entry. It holds the program written by AstWriter, followed by a CRC-32 of
+ * it. Loading maps the entry, checks the CRC, and rebuilds the program with AstReader. If
+ * an entry is missing, truncated, corrupt or from another version of the format, the
+ * source is parsed normally and the entry is written again.
+ * <p>
+ * Usage:
+ * Program p = new AstCache(Path.of(".astcache")).load(Path.of("program.txt"));
+ *
+ * @author Agastya Ravuri
+ * @version 4.23.2024
+ */
+public class AstCache
+{
+    private static final String SUFFIX = ".ast";
+
+    private final Path directory;
+    private int hits;
+    private int misses;
+
+    /**
+     * Constructs a cache that keeps its entries in a directory.
+     * @param directory the directory, which is created if it does not exist
+     */
+    public AstCache(Path directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Loads the program in a source file, from the cache if possible.
+     *
+     * @param source the source file
+     * @return the program
+     * @throws IOException if the source cannot be read
+     * @throws IllegalArgumentException if the source is parsed and cannot be parsed
+     */
+    public Program load(Path source) throws IOException
+    {
+        byte[] bytes = Files.readAllBytes(source);
+        Path entry = directory.resolve(hash(bytes) + SUFFIX);
+
+        Program p = read(entry);
+        if (p != null)
+        {
+            hits++;
+            return p;
+        }
+        misses++;
+
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        p = new Parser(new Scanner(text)).parseProgram();
+        try
+        {
+            write(entry, p);
+        }
+        catch (IOException e)
+        {
+            // The cache is only an optimization; the program was still parsed.
+        }
+        return p;
+    }
+
+    /**
+     * Reads a cache entry.
+     * @param entry the entry
+     * @return the program in the entry, or null if it is missing or cannot be read
+     */
+    private static Program read(Path entry)
+    {
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size < Integer.BYTES || size > Integer.MAX_VALUE)
+                return null;
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            ByteBuffer program = buf.slice(0, (int) size - Integer.BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(program.duplicate());
+            if ((int) crc.getValue() != buf.getInt((int) size - Integer.BYTES))
+                return null;
+            return new AstReader(program).readProgram();
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a cache entry. The entry is written to a temporary file and then moved into
+     * place, so that a reader never sees a partly written entry.
+     * @param entry the entry
+     * @param p the program to write
+     * @throws IOException if the entry cannot be written
+     */
+    private void write(Path entry, Program p) throws IOException
+    {
+        byte[] program = new AstWriter().write(p);
+        CRC32 crc = new CRC32();
+        crc.update(program);
+        ByteBuffer checksum = ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue());
+
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "entry", ".tmp");
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE))
+            {
+                ByteBuffer[] buffers = {ByteBuffer.wrap(program), checksum.flip()};
+                while (checksum.hasRemaining())
+                    channel.write(buffers);
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Hashes a source file.
+     * @param bytes the contents of the file
+     * @return the SHA-256 hash of the contents, in hexadecimal
+     */
+    private static String hash(byte[] bytes)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest)
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the number of programs loaded from the cache.
+     * @return the number of hits
+     */
+    public int getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Gets the number of programs that had to be parsed.
+     * @return the number of misses
+     */
+    public int getMisses()
+    {
+        return misses;
+    }
+}
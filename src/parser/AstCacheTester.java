@@ -0,0 +1,102 @@
+package parser;
+
+import scanner.Scanner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Tests the AstCache class: programs loaded from the cache must compile to the same code as
+ * freshly parsed ones, and corrupt entries must be parsed again. Also measures how much
+ * faster loading is than parsing.
+ *
+ * @author Agastya Ravuri
+ * @version 4.23.2024
+ */
+public class AstCacheTester
+{
+    private static final int ITERATIONS = 5;
+
+    /**
+     * Tests the cache.
+     * @param args optionally, the number of procedures in the timed program (default 20000).
+     * @throws IOException when a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Path directory = Files.createTempDirectory("astcache");
+        AstCache cache = new AstCache(directory);
+
+        String[] files = {"ParserTest.txt", "fact.txt", "parserTest4.txt", "parserTest6.txt",
+                "parserTest7.txt", "parserTest8.txt", "parserTest8_5.txt"};
+        for (String file : files)
+        {
+            Path path = Path.of(file);
+            String expected = TestCompiler.compile(
+                    new Parser(new Scanner(Files.readString(path))).parseProgram());
+            boolean same = expected.equals(TestCompiler.compile(cache.load(path)));
+            same &= expected.equals(TestCompiler.compile(cache.load(path)));
+            System.out.println(file + ": " + (same ? "same" : "DIFFERENT"));
+        }
+        System.out.printf("hits: %d, misses: %d%n", cache.getHits(), cache.getMisses());
+
+        // Corrupt every entry in a different way; each must be parsed again.
+        int misses = cache.getMisses();
+        int i = 0;
+        try (Stream<Path> entries = Files.list(directory))
+        {
+            for (Path entry : entries.toList())
+            {
+                byte[] bytes = Files.readAllBytes(entry);
+                switch (i++ % 3)
+                {
+                    case 0 -> bytes[bytes.length / 2] ^= 0x55;
+                    case 1 -> bytes = Arrays.copyOf(bytes, bytes.length / 2);
+                    default -> bytes[5] ^= 1;
+                }
+                Files.write(entry, bytes);
+            }
+        }
+        for (String file : files)
+        {
+            Path path = Path.of(file);
+            String expected = TestCompiler.compile(
+                    new Parser(new Scanner(Files.readString(path))).parseProgram());
+            System.out.println(file + " (corrupt): "
+                    + (expected.equals(TestCompiler.compile(cache.load(path))) ? "same" : "DIFFERENT"));
+        }
+        System.out.printf("parsed again: %d of %d%n", cache.getMisses() - misses, files.length);
+
+        int procedures = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        Path source = directory.resolve("generated.txt");
+        Files.writeString(source, ParserBenchmark.generate(procedures));
+        cache.load(source);
+        long entrySize;
+        try (Stream<Path> entries = Files.list(directory))
+        {
+            entrySize = entries.filter(p -> !p.equals(source)).mapToLong(p -> p.toFile().length()).max().orElse(0);
+        }
+        System.out.printf("%d procedures, %.1f MB source, %.1f MB entry%n", procedures,
+                Files.size(source) / 1e6, entrySize / 1e6);
+        for (int round = 0; round < ITERATIONS; round++)
+        {
+            long start = System.nanoTime();
+            new Parser(new Scanner(Files.readString(source))).parseProgram();
+            double parse = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            cache.load(source);
+            double load = (System.nanoTime() - start) / 1e6;
+            System.out.printf("parse: %.1f ms, load: %.1f ms, %.2fx%n", parse, load, parse / load);
+        }
+
+        try (Stream<Path> entries = Files.list(directory))
+        {
+            for (Path entry : entries.toList())
+                Files.delete(entry);
+        }
+        Files.delete(directory);
+    }
+}
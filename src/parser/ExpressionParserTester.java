@@ -0,0 +1,150 @@
+package parser;
+
+import ast.BinaryOperation;
+import scanner.Scanner;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests how the Parser groups expressions. Random expressions are written twice: with
+ * only the parentheses that precedence and left associativity need, and with every
+ * operation in parentheses. Both must compile to the same MIPS, since parentheses leave
+ * no trace in the AST. So must a chain of additions and subtractions nested 500
+ * parentheses deep and the same chain without parentheses.
+ *
+ * @author Agastya Ravuri
+ * @version 4.20.2024
+ */
+public class ExpressionParserTester
+{
+    private static final int EXPRESSIONS = 3000;
+    private static final int DEPTH = 500;
+
+    private static final String[] OPERATORS = {
+            "*", "/", "mod", "+", "-", "=", "<>", "<", ">", "<=", ">=", "&&", "||"
+    };
+
+    /**
+     * Tests the expression parser.
+     * @param args optionally, the seed of the random expressions (default 2024).
+     * @throws IOException when the compiled programs cannot be compared
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 2024);
+        StringBuilder minimal = new StringBuilder("BEGIN\n");
+        StringBuilder full = new StringBuilder("BEGIN\n");
+        for (int i = 0; i < EXPRESSIONS; i++)
+        {
+            Node e = generate(6, random);
+            minimal.append("    x := ").append(e.write(false)).append(";\n");
+            full.append("    x := ").append(e.write(true)).append(";\n");
+        }
+        minimal.append("END;\n");
+        full.append("END;\n");
+        System.out.println(EXPRESSIONS + " random expressions: " + compare(minimal, full));
+
+        StringBuilder chain = new StringBuilder("x");
+        StringBuilder nested = new StringBuilder("(".repeat(DEPTH)).append('x');
+        for (int i = 0; i < DEPTH; i++)
+        {
+            String operator = i % 2 == 0 ? "+" : "-";
+            chain.append(' ').append(operator).append(' ').append(i);
+            nested.append(' ').append(operator).append(' ').append(i).append(')');
+        }
+        System.out.println(DEPTH + " parentheses deep: " + compare(
+                new StringBuilder("BEGIN\n    x := ").append(chain).append(";\nEND;\n"),
+                new StringBuilder("BEGIN\n    x := ").append(nested).append(";\nEND;\n")));
+    }
+
+    /**
+     * Parses two programs and compiles them to MIPS.
+     * @param a the first program
+     * @param b the second program
+     * @return "same" if both compile to the same code, or "DIFFERENT" otherwise.
+     * @throws IOException when the compiled programs cannot be compared
+     */
+    private static String compare(CharSequence a, CharSequence b) throws IOException
+    {
+        String first = TestCompiler.compile(new Parser(new Scanner(a.toString())).parseProgram());
+        String second = TestCompiler.compile(new Parser(new Scanner(b.toString())).parseProgram());
+        return first.equals(second) ? "same" : "DIFFERENT";
+    }
+
+    /**
+     * Generates a random expression.
+     * @param depth the maximum depth of the expression
+     * @param random the random number generator
+     * @return the expression
+     */
+    private static Node generate(int depth, Random random)
+    {
+        int kind = depth == 0 ? 0 : random.nextInt(10);
+        if (kind < 2)
+        {
+            if (random.nextBoolean())
+                return new Node(String.valueOf((char) ('a' + random.nextInt(26))), null, null);
+            return new Node(String.valueOf(random.nextInt(1000)), null, null);
+        }
+        if (kind == 2)
+            return new Node("-", null, generate(depth - 1, random));
+        return new Node(OPERATORS[random.nextInt(OPERATORS.length)],
+                generate(depth - 1, random), generate(depth - 1, random));
+    }
+
+    /**
+     * The precedence level of an operator, as in Parser.binaryOperators: lower binds tighter.
+     * @param operator the operator
+     * @return the level
+     */
+    private static int level(String operator)
+    {
+        for (Map.Entry<Integer, Map<String, BinaryOperation>> level : Parser.binaryOperators.entrySet())
+        {
+            if (level.getValue().containsKey(operator))
+                return level.getKey();
+        }
+        throw new IllegalArgumentException("Not a binary operator: " + operator);
+    }
+
+    /**
+     * An expression: a variable or literal (with no operands), a unary minus (with only a
+     * right operand), or a binary operation.
+     *
+     * @param text the variable, literal or operator
+     * @param left the left operand, or null
+     * @param right the right operand, or null
+     */
+    private record Node(String text, Node left, Node right)
+    {
+        /**
+         * Writes the expression.
+         * @param parenthesize true to put every operation in parentheses, false to only
+         *                     use the parentheses that the grouping needs
+         * @return the source of the expression
+         */
+        String write(boolean parenthesize)
+        {
+            if (right == null)
+                return text;
+            if (left == null)
+            {
+                // A unary minus applies to the factor right after it.
+                String operand = right.write(parenthesize);
+                return parenthesize || right.left != null ? "-(" + operand + ")" : "- " + operand;
+            }
+            String l = left.write(parenthesize);
+            String r = right.write(parenthesize);
+            if (parenthesize)
+                return "(" + l + " " + text + " " + r + ")";
+            int level = level(text);
+            if (left.left != null && level(left.text) > level)
+                l = "(" + l + ")";
+            if (right.left != null && level(right.text) >= level)
+                r = "(" + r + ")";
+            return l + " " + text + " " + r;
+        }
+    }
+}
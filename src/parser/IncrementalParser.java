@@ -0,0 +1,191 @@
+package parser;
+
+import ast.ProcedureDeclaration;
+import ast.Program;
+import ast.Statement;
+import scanner.IncrementalScanner;
+import scanner.ScanErrorException;
+import scanner.Symbol;
+import scanner.TokenBuffer;
+import scanner.TokenCursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * IncrementalParser keeps the Program for a source text up to date as the text is edited.
+ * <p>
+ * A program is a list of top-level units: the procedure declarations, then the main
+ * statement. For each unit, the parser remembers the range of tokens it was parsed from.
+ * After an edit, the IncrementalScanner reports which tokens changed, and only the units
+ * whose tokens (including the one token of lookahead after them) changed are parsed again.
+ * Parsing stops as soon as a unit ends where an unchanged old unit starts; every unit
+ * after that is reused as it is.
+ * <p>
+ * Usage:
+ * IncrementalParser p = new IncrementalParser(text);
+ * Program program = p.edit(offset, removedLength, insertedText);
+ *
+ * @author Agastya Ravuri
+ * @version 4.19.2024
+ */
+public class IncrementalParser
+{
+    private final IncrementalScanner sc;
+
+    private List<Statement> units;
+    private int[] starts;
+    private int[] ends;
+    private Program program;
+    private boolean valid;
+
+    /**
+     * Constructs an incremental parser and parses the whole text.
+     * @param text the text to parse
+     * @throws ScanErrorException if the text cannot be scanned
+     * @throws IllegalArgumentException if the text cannot be parsed
+     */
+    public IncrementalParser(String text) throws ScanErrorException
+    {
+        sc = new IncrementalScanner(text);
+        reparseFrom(0, 0, 0, 0, null);
+    }
+
+    /**
+     * Gets the current program.
+     * @return the program parsed from the current text
+     */
+    public Program getProgram()
+    {
+        return program;
+    }
+
+    /**
+     * Replaces part of the text, and updates the program.
+     *
+     * @param offset the index of the first character to replace
+     * @param removed the number of characters to remove
+     * @param inserted the text to insert in their place
+     * @return the program parsed from the new text
+     * @throws ScanErrorException if the new text cannot be scanned
+     * @throws IllegalArgumentException if the new text cannot be parsed; the next edit then
+     *                                  parses everything again.
+     */
+    public Program edit(int offset, int removed, String inserted) throws ScanErrorException
+    {
+        try
+        {
+            sc.edit(offset, removed, inserted);
+        }
+        catch (ScanErrorException e)
+        {
+            valid = false;
+            throw e;
+        }
+        if (!valid)
+        {
+            reparseFrom(0, 0, 0, 0, null);
+            return program;
+        }
+
+        int damageStart = sc.getDamageStart();
+        int damageOldEnd = sc.getDamageOldEnd();
+        int delta = sc.getDamageNewEnd() - damageOldEnd;
+
+        // The first unit that depends on a changed token.
+        int first = 0;
+        while (first < units.size() && ends[first] < damageStart)
+            first++;
+        if (first == units.size())
+            return program;
+
+        reparseFrom(first, starts[first], damageOldEnd, delta, units);
+        return program;
+    }
+
+    /**
+     * Parses units from a token onwards, reusing old units once the changed tokens have
+     * been passed.
+     *
+     * @param unit the index of the first unit to parse
+     * @param start the index of the token that unit starts at
+     * @param damageOldEnd the index after the last changed token, before the edit
+     * @param delta the change in the number of tokens
+     * @param old the units before the edit, or null to parse everything
+     */
+    private void reparseFrom(int unit, int start, int damageOldEnd, int delta, List<Statement> old)
+    {
+        int[] oldStarts = starts;
+        int[] oldEnds = ends;
+        int oldSize = old == null ? 0 : old.size();
+        List<Statement> newUnits = new ArrayList<>(oldSize + 1);
+        int[] newStarts = new int[oldSize + 1];
+        int[] newEnds = new int[oldSize + 1];
+        if (unit > 0)
+        {
+            newUnits.addAll(old.subList(0, unit));
+            System.arraycopy(oldStarts, 0, newStarts, 0, unit);
+            System.arraycopy(oldEnds, 0, newEnds, 0, unit);
+        }
+
+        valid = false;
+        TokenBuffer tokens = sc.getTokens();
+        TokenCursor cursor = new TokenCursor(tokens, start);
+        Parser parser = new Parser(cursor);
+        int pos = start;
+        int size = unit;
+        while (true)
+        {
+            boolean procedure = pos < tokens.size() && tokens.getSymbol(pos) == Symbol.PROCEDURE;
+            Statement s = parser.parseStatement();
+            int end = cursor.index() - 1;
+            if (size == newStarts.length)
+            {
+                newStarts = Arrays.copyOf(newStarts, size * 2);
+                newEnds = Arrays.copyOf(newEnds, size * 2);
+            }
+            newUnits.add(s);
+            newStarts[size] = pos;
+            newEnds[size] = end;
+            size++;
+            if (!procedure)
+                break;
+            pos = end;
+
+            // Reuse the rest of the old units if one of them starts here, after the changes.
+            int oldPos = pos - delta;
+            if (old != null && oldPos >= damageOldEnd)
+            {
+                int match = Arrays.binarySearch(oldStarts, 0, oldSize, oldPos);
+                if (match >= 0)
+                {
+                    int reused = oldSize - match;
+                    if (size + reused > newStarts.length)
+                    {
+                        newStarts = Arrays.copyOf(newStarts, size + reused);
+                        newEnds = Arrays.copyOf(newEnds, size + reused);
+                    }
+                    newUnits.addAll(old.subList(match, oldSize));
+                    for (int i = 0; i < reused; i++)
+                    {
+                        newStarts[size + i] = oldStarts[match + i] + delta;
+                        newEnds[size + i] = oldEnds[match + i] + delta;
+                    }
+                    size += reused;
+                    break;
+                }
+            }
+        }
+
+        units = newUnits;
+        starts = newStarts;
+        ends = newEnds;
+
+        List<ProcedureDeclaration> procedures = new ArrayList<>();
+        for (int i = 0; i < units.size() - 1; i++)
+            procedures.add((ProcedureDeclaration) units.get(i));
+        program = new Program(procedures, units.get(units.size() - 1));
+        valid = true;
+    }
+}
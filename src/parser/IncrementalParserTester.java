@@ -0,0 +1,197 @@
+package parser;
+
+import ast.Program;
+import scanner.IncrementalScanner;
+import scanner.ScanErrorException;
+import scanner.Scanner;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Tests the IncrementalParser class against parsing from scratch, and measures how long
+ * an edit takes on a large program.
+ *
+ * @author Agastya Ravuri
+ * @version 4.19.2024
+ */
+public class IncrementalParserTester
+{
+    private static final int EDITS = 500;
+
+    /**
+     * Tests the incremental parser.
+     * @param args optionally, the number of procedures in the timed program (default 7000,
+     *             which is about 50,000 lines).
+     * @throws IOException when the compiled programs cannot be compared
+     * @throws ScanErrorException when there is a scanning error
+     */
+    public static void main(String[] args) throws IOException, ScanErrorException
+    {
+        Random random = new Random(2024);
+
+        // Random edits on a small program, compared against a parse from scratch.
+        String text = ParserBenchmark.generate(40);
+        IncrementalParser incremental = new IncrementalParser(text);
+        int same = 0;
+        int valid = 0;
+        for (int i = 0; i < EDITS; i++)
+        {
+            Edit edit = Edit.random(text, random);
+            String edited = edit.apply(text);
+            Program expected;
+            try
+            {
+                // Scan first, since the Parser only prints scanning errors.
+                new IncrementalScanner(edited);
+                expected = new Parser(new Scanner(edited)).parseProgram();
+            }
+            catch (IllegalArgumentException | ScanErrorException e)
+            {
+                expected = null;
+            }
+            Program actual;
+            try
+            {
+                actual = incremental.edit(edit.offset, edit.removed, edit.inserted);
+            }
+            catch (IllegalArgumentException | ScanErrorException e)
+            {
+                actual = null;
+            }
+            if (expected == null)
+            {
+                // Undo edits that break the program, so that most edits are of valid programs.
+                if (actual == null)
+                    same++;
+                Edit undo = edit.inverse(text);
+                incremental.edit(undo.offset, undo.removed, undo.inserted);
+                continue;
+            }
+            text = edited;
+            valid++;
+            if (actual != null
+                    && TestCompiler.compile(expected).equals(TestCompiler.compile(actual)))
+                same++;
+        }
+        System.out.printf("%d/%d edits match a full parse (%d valid programs)%n", same, EDITS, valid);
+
+        // Timing on a large program.
+        int procedures = args.length > 0 ? Integer.parseInt(args[0]) : 7000;
+        text = ParserBenchmark.generate(procedures);
+        System.out.printf("%d lines%n", text.split("\n").length);
+
+        long start = System.nanoTime();
+        new Parser(new Scanner(text)).parseProgram();
+        System.out.printf("full parse: %.2f ms%n", (System.nanoTime() - start) / 1e6);
+
+        incremental = new IncrementalParser(text);
+        for (int round = 0; round < 5; round++)
+        {
+            long nanos = 0;
+            for (int i = 0; i < EDITS; i++)
+            {
+                int offset = text.indexOf(" - 3)", random.nextInt(text.length() - 10));
+                if (offset < 0)
+                    offset = text.indexOf(" - 3)");
+                start = System.nanoTime();
+                incremental.edit(offset + 3, 1, "4");
+                incremental.edit(offset + 3, 1, "3");
+                nanos += System.nanoTime() - start;
+            }
+            System.out.printf("incremental edit: %.3f ms%n", nanos / 1e6 / (2 * EDITS));
+        }
+    }
+
+    /**
+     * An edit of a source text.
+     */
+    private static class Edit
+    {
+        private static final String[] INSERTIONS = {
+                "WRITELN(a);\n", "x := x + 1;\n", "/* ", " */", "// ", "\n",
+                "PROCEDURE q(a);\nBEGIN\n    q := a;\nEND;\n", "7", "b", "END;\n", " mod 2", "(", ")"
+        };
+
+        private final int offset;
+        private final int removed;
+        private final String inserted;
+
+        /**
+         * Constructs an edit.
+         * @param offset the index of the first character to replace
+         * @param removed the number of characters to remove
+         * @param inserted the text to insert in their place
+         */
+        Edit(int offset, int removed, String inserted)
+        {
+            this.offset = offset;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        /**
+         * Chooses a random edit. Most edits keep the program valid: they change a number,
+         * add a statement, or add or remove a procedure. The rest insert or remove text
+         * anywhere, which usually makes it invalid.
+         * @param text the text to edit
+         * @param random the random number generator
+         * @return the edit
+         */
+        static Edit random(String text, Random random)
+        {
+            int offset = random.nextInt(text.length());
+            switch (random.nextInt(6))
+            {
+                case 0:
+                    for (int i = offset; i < text.length(); i++)
+                    {
+                        if (Scanner.isDigit(text.charAt(i)))
+                            return new Edit(i, 1, String.valueOf(1 + random.nextInt(99)));
+                    }
+                    break;
+                case 1:
+                    int begin = text.indexOf("BEGIN\n", offset);
+                    if (begin >= 0)
+                        return new Edit(begin + 6, 0, "    x := x + 1;\n");
+                    break;
+                case 2:
+                    int procedure = text.indexOf("PROCEDURE", offset);
+                    if (procedure >= 0)
+                        return new Edit(procedure, 0, "PROCEDURE q(a);\nBEGIN\n    q := a;\nEND;\n");
+                    break;
+                case 3:
+                    int from = text.indexOf("PROCEDURE", offset);
+                    int to = from < 0 ? -1 : text.indexOf("PROCEDURE", from + 1);
+                    if (to >= 0)
+                        return new Edit(from, to - from, "");
+                    break;
+                default:
+                    break;
+            }
+            int removed = random.nextInt(3) == 0 ? Math.min(random.nextInt(20), text.length() - offset) : 0;
+            String inserted = random.nextInt(4) == 0 ? "" : INSERTIONS[random.nextInt(INSERTIONS.length)];
+            return new Edit(offset, removed, inserted);
+        }
+
+        /**
+         * Applies the edit to a text.
+         * @param text the text
+         * @return the edited text
+         */
+        String apply(String text)
+        {
+            return text.substring(0, offset) + inserted + text.substring(offset + removed);
+        }
+
+        /**
+         * Gets the edit that undoes this one.
+         * @param text the text before this edit
+         * @return the inverse edit
+         */
+        Edit inverse(String text)
+        {
+            return new Edit(offset, inserted.length(), text.substring(offset, offset + removed));
+        }
+    }
+}
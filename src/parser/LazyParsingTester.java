@@ -0,0 +1,139 @@
+package parser;
+
+import ast.Program;
+import scanner.IncrementalScanner;
+import scanner.ScanErrorException;
+import scanner.TokenBuffer;
+import scanner.TokenCursor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests parsing procedure bodies lazily against parsing them eagerly, and measures how much
+ * it saves on a large library of which only a few procedures are called.
+ *
+ * @author Agastya Ravuri
+ * @version 4.22.2024
+ */
+public class LazyParsingTester
+{
+    private static final int ITERATIONS = 5;
+
+    /**
+     * Tests lazy parsing.
+     * @param args optionally, the number of procedures in the library (default 20000).
+     * @throws IOException when a file cannot be read
+     * @throws ScanErrorException when there is a scanning error
+     */
+    public static void main(String[] args) throws IOException, ScanErrorException
+    {
+        String[] files = {"ParserTest.txt", "fact.txt", "parserTest6.txt", "parserTest7.txt", "parserTest8.txt"};
+        for (String file : files)
+        {
+            TokenBuffer tokens = new IncrementalScanner(Files.readString(Path.of(file))).getTokens();
+            boolean same = TestCompiler.compile(parse(tokens, false))
+                    .equals(TestCompiler.compile(parse(tokens, true)));
+            System.out.println(file + ": " + (same ? "same" : "DIFFERENT"));
+        }
+
+        TokenBuffer library = new IncrementalScanner(library(1000)).getTokens();
+        boolean same = run(parse(library, false)).equals(run(parse(library, true)))
+                && TestCompiler.compile(parse(library, false))
+                        .equals(TestCompiler.compile(parse(library, true)));
+        System.out.println("library: " + (same ? "same" : "DIFFERENT"));
+
+        TokenBuffer broken = new IncrementalScanner(
+                "PROCEDURE f(a);\nBEGIN\n    f := ;\nEND;\nWRITELN(1);\n").getTokens();
+        Program lazy = parse(broken, true);
+        System.out.print("broken, not called: " + run(lazy));
+        try
+        {
+            TestCompiler.compile(new Parser(new TokenCursor(broken, 0), true).parseProgram());
+            System.out.println("broken, compiled: NO ERROR");
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.out.println("broken, compiled: " + e.getMessage());
+        }
+
+        int procedures = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        library = new IncrementalScanner(library(procedures)).getTokens();
+        System.out.printf("%d procedures, %d tokens%n", procedures, library.size());
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            long start = System.nanoTime();
+            run(parse(library, false));
+            double eager = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            run(parse(library, true));
+            double lazily = (System.nanoTime() - start) / 1e6;
+            System.out.printf("eager: %.1f ms, lazy: %.1f ms%n", eager, lazily);
+        }
+    }
+
+    /**
+     * Generates a library of procedures, of which the main block only calls three.
+     * @param procedures the number of procedures
+     * @return the source of the program
+     */
+    private static String library(int procedures)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < procedures; i++)
+        {
+            sb.append("PROCEDURE p").append(i).append("(a, b);\n")
+                    .append("BEGIN\n")
+                    .append("    x := (a + b * 3 - 1) mod 7;\n")
+                    .append("    IF x <= a * (b + 2) THEN\n")
+                    .append("    BEGIN\n")
+                    .append("        x := x + 1;\n")
+                    .append("    END;\n")
+                    .append("    ELSE x := x - (b * 2);\n")
+                    .append("    FOR i := 1 TO b DO x := x + i * (a - b);\n")
+                    .append("    p").append(i).append(" := x;\n")
+                    .append("END;\n");
+        }
+        sb.append("BEGIN\n")
+                .append("    WRITELN(p0(1, 2));\n")
+                .append("    WRITELN(p").append(procedures / 2).append("(3, 4));\n")
+                .append("    WRITELN(p").append(procedures - 1).append("(5, 6));\n")
+                .append("END;\n");
+        return sb.toString();
+    }
+
+    /**
+     * Parses a program.
+     * @param tokens the tokens of the program
+     * @param lazy true to parse procedure bodies lazily, false otherwise
+     * @return the program
+     */
+    private static Program parse(TokenBuffer tokens, boolean lazy)
+    {
+        return new Parser(new TokenCursor(tokens, 0), lazy).parseProgram();
+    }
+
+    /**
+     * Runs a program.
+     * @param p the program
+     * @return what the program wrote
+     */
+    private static String run(Program p)
+    {
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes));
+        try
+        {
+            p.run();
+        }
+        finally
+        {
+            System.setOut(out);
+        }
+        return bytes.toString();
+    }
+}
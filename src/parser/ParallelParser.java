@@ -0,0 +1,206 @@
+package parser;
+
+import ast.ProcedureDeclaration;
+import ast.Program;
+import ast.Statement;
+import scanner.ParallelScanner;
+import scanner.ScanErrorException;
+import scanner.Symbol;
+import scanner.TokenBuffer;
+import scanner.TokenCursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * ParallelParser parses a large program on several threads, producing the same Program
+ * that a single Parser would.
+ * <p>
+ * The buffer is scanned with a ParallelScanner. Then a quick pass over the tokens finds
+ * every PROCEDURE that is not between a BEGIN and its END; each of those starts a
+ * top-level procedure declaration, which ends where the next one starts. The declarations
+ * are split into groups, and every group is parsed on a ForkJoinPool with its own
+ * TokenCursor. The last group also parses the main statement.
+ * <p>
+ * If a group does not parse, or a declaration does not end exactly where the next one
+ * starts (which a PROCEDURE outside of a BEGIN block in a body can cause), the whole
+ * program is parsed again by a single Parser, so errors are the ones it would throw.
+ * <p>
+ * Usage:
+ * Program p = new ParallelParser(chars, 0, chars.length).parseProgram();
+ *
+ * @author Agastya Ravuri
+ * @version 4.21.2024
+ */
+public class ParallelParser
+{
+    /**
+     * The smallest number of procedure declarations that is worth parsing as a separate group.
+     */
+    public static final int MIN_GROUP = 64;
+
+    private final char[] buf;
+    private final int offset;
+    private final int length;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a parallel parser that parses a slice of a buffer on the common pool.
+     *
+     * @param buf the buffer to parse
+     * @param offset the index of the first character to parse
+     * @param length the number of characters to parse
+     */
+    public ParallelParser(char[] buf, int offset, int length)
+    {
+        this(buf, offset, length, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a parallel parser that parses a slice of a buffer.
+     *
+     * @param buf the buffer to parse
+     * @param offset the index of the first character to parse
+     * @param length the number of characters to parse
+     * @param pool the pool to scan and parse on
+     */
+    public ParallelParser(char[] buf, int offset, int length, ForkJoinPool pool)
+    {
+        this.buf = buf;
+        this.offset = offset;
+        this.length = length;
+        this.pool = pool;
+    }
+
+    /**
+     * Parses the whole program.
+     *
+     * @return a Program, the program parsed.
+     * @throws ScanErrorException if the input cannot be scanned
+     * @throws IllegalArgumentException if the input cannot be parsed; the error is the one
+     *                                  a single Parser would have thrown.
+     */
+    public Program parseProgram() throws ScanErrorException
+    {
+        TokenBuffer tokens = new ParallelScanner(buf, offset, length, pool).scan();
+        int[] starts = findProcedures(tokens);
+        if (starts.length == 0 || starts[0] != 0)
+            return new Parser(new TokenCursor(tokens, 0)).parseProgram();
+
+        int groupCount = Math.max(1, Math.min(pool.getParallelism() * 4, starts.length / MIN_GROUP));
+        List<Callable<List<Statement>>> tasks = new ArrayList<>();
+        for (int i = 0; i < groupCount; i++)
+        {
+            int from = (int) ((long) starts.length * i / groupCount);
+            int to = (int) ((long) starts.length * (i + 1) / groupCount);
+            tasks.add(() -> parseGroup(tokens, starts, from, to));
+        }
+
+        List<ProcedureDeclaration> procedures = new ArrayList<>(starts.length);
+        Statement run = null;
+        for (Future<List<Statement>> f : pool.invokeAll(tasks))
+        {
+            List<Statement> group;
+            try
+            {
+                group = f.get();
+            }
+            catch (Exception e)
+            {
+                throw new RuntimeException(e);
+            }
+            if (group == null)
+                return new Parser(new TokenCursor(tokens, 0)).parseProgram();
+            for (Statement s : group)
+            {
+                if (s instanceof ProcedureDeclaration)
+                    procedures.add((ProcedureDeclaration) s);
+                else
+                    run = s;
+            }
+        }
+        return new Program(procedures, run);
+    }
+
+    /**
+     * Finds the start of every top-level procedure declaration: every PROCEDURE token that
+     * is not between a BEGIN and its END.
+     *
+     * @param tokens the tokens of the program
+     * @return the index of every such PROCEDURE token, in order
+     */
+    private static int[] findProcedures(TokenBuffer tokens)
+    {
+        int[] starts = new int[16];
+        int count = 0;
+        int depth = 0;
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            switch (tokens.getSymbol(i))
+            {
+                case Symbol.BEGIN -> depth++;
+                case Symbol.END -> depth--;
+                case Symbol.PROCEDURE ->
+                {
+                    if (depth == 0)
+                    {
+                        if (count == starts.length)
+                            starts = Arrays.copyOf(starts, count * 2);
+                        starts[count++] = i;
+                    }
+                }
+                default -> { }
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * Parses a group of procedure declarations, each of which must end exactly where the
+     * next one starts. The last group also parses everything after its last declaration,
+     * as Parser.parseProgram() would: any more declarations, then the main statement.
+     *
+     * @param tokens the tokens of the program
+     * @param starts the start of every top-level procedure declaration
+     * @param from the index in starts of the first declaration to parse
+     * @param to the index in starts after the last declaration to parse
+     * @return the statements parsed, or null if they did not parse as expected
+     */
+    private static List<Statement> parseGroup(TokenBuffer tokens, int[] starts, int from, int to)
+    {
+        boolean last = to == starts.length;
+        List<Statement> ret = new ArrayList<>(to - from + 1);
+        TokenCursor cursor = last ? new TokenCursor(tokens, starts[from])
+                : new TokenCursor(tokens, starts[from], starts[to]);
+        Parser parser = new Parser(cursor);
+        try
+        {
+            for (int i = from; i < to; i++)
+            {
+                // The parser has read one token ahead: the first token of the declaration.
+                if (cursor.index() - 1 != starts[i])
+                    return null;
+                ret.add(parser.parseStatement());
+            }
+            if (!last)
+                return cursor.index() - 1 == starts[to] ? ret : null;
+
+            int next = cursor.index() - 1;
+            while (next < tokens.size() && tokens.getSymbol(next) == Symbol.PROCEDURE)
+            {
+                ret.add(parser.parseStatement());
+                next = cursor.index() - 1;
+            }
+            ret.add(parser.parseStatement());
+            return ret;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package parser;
+
+import ast.Program;
+import scanner.ScanErrorException;
+import scanner.Scanner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests the ParallelParser class against a single Parser, and measures how it scales.
+ *
+ * @author Agastya Ravuri
+ * @version 4.21.2024
+ */
+public class ParallelParserTester
+{
+    private static final String[] CASES = {
+            // No procedures.
+            "BEGIN\n    WRITELN(1);\nEND;\n",
+            // A body that is not a block, and a nested declaration in a block.
+            "PROCEDURE f(a);\n    f := a * 2;\nPROCEDURE g(a);\nBEGIN\n    PROCEDURE h(b); h := b;\n"
+                    + "    g := f(a);\nEND;\nWRITELN(g(3));\n",
+            // A declaration as the body of another one, outside of any block.
+            "PROCEDURE f(a);\nPROCEDURE g(b);\n    g := b;\nWRITELN(g(3));\n",
+            // The main statement ends the program, so the last declaration is never parsed.
+            "PROCEDURE f(a);\n    f := a;\nWRITELN(f(1));\nPROCEDURE g(a);\n    g := a;\n",
+            // Parse errors in the first and in the last declaration.
+            "PROCEDURE f(a)\n    f := a;\nPROCEDURE g(a);\n    g := a;\nWRITELN(1);\n",
+            "PROCEDURE f(a);\n    f := a;\nPROCEDURE g(a);\n    g := ;\nWRITELN(1);\n",
+    };
+
+    /**
+     * Tests the parallel parser.
+     * @param args optionally, the number of procedures in the timed program (default 20000).
+     * @throws IOException when a file cannot be read
+     * @throws ScanErrorException when there is a scanning error
+     */
+    public static void main(String[] args) throws IOException, ScanErrorException
+    {
+        String[] files = {"ParserTest.txt", "fact.txt", "parserTest6.txt", "parserTest7.txt", "parserTest8.txt"};
+        for (String file : files)
+            System.out.println(file + ": " + compare(Files.readString(Path.of(file))));
+        for (int i = 0; i < CASES.length; i++)
+            System.out.println("case " + i + ": " + compare(CASES[i]));
+        System.out.println("generated: " + compare(ParserBenchmark.generate(1000)));
+
+        int procedures = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        char[] source = ParserBenchmark.generate(procedures).toCharArray();
+        System.out.printf("%d procedures, %.1f MB%n", procedures, source.length / 1e6);
+        for (int round = 0; round < 3; round++)
+        {
+            long start = System.nanoTime();
+            new Parser(new Scanner(source, 0, source.length)).parseProgram();
+            double serial = (System.nanoTime() - start) / 1e6;
+            System.out.printf("serial: %.1f ms%n", serial);
+
+            int cores = Runtime.getRuntime().availableProcessors();
+            for (int threads = 1; threads <= cores; threads *= 2)
+            {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                start = System.nanoTime();
+                new ParallelParser(source, 0, source.length, pool).parseProgram();
+                double parallel = (System.nanoTime() - start) / 1e6;
+                System.out.printf("%d threads: %.1f ms, %.2fx serial%n", threads, parallel, serial / parallel);
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Parses a program with a single Parser and with parallel parsers of different sizes,
+     * and compares the results.
+     * @param text the program
+     * @return "same" if every parse compiles to the same code, or fails with the same message
+     * @throws IOException when the compiled programs cannot be compared
+     * @throws ScanErrorException when there is a scanning error
+     */
+    private static String compare(String text) throws IOException, ScanErrorException
+    {
+        char[] chars = text.toCharArray();
+        String expected = compileOrError(() -> new Parser(new Scanner(chars, 0, chars.length)).parseProgram());
+        for (int threads = 1; threads <= 8; threads++)
+        {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            String actual = compileOrError(() -> new ParallelParser(chars, 0, chars.length, pool).parseProgram());
+            pool.shutdown();
+            if (!expected.equals(actual))
+                return "DIFFERENT with " + threads + " threads";
+        }
+        return "same";
+    }
+
+    /**
+     * Parses and compiles a program to MIPS.
+     * @param parse the parse to run
+     * @return the compiled program, or the message of the parse error
+     * @throws IOException when the temporary file cannot be used
+     * @throws ScanErrorException when there is a scanning error
+     */
+    private static String compileOrError(Parse parse) throws IOException, ScanErrorException
+    {
+        Program p;
+        try
+        {
+            p = parse.parse();
+        }
+        catch (IllegalArgumentException e)
+        {
+            return e.getMessage();
+        }
+        return TestCompiler.compile(p);
+    }
+
+    /**
+     * A parse of a program.
+     */
+    private interface Parse
+    {
+        /**
+         * Parses the program.
+         * @return the program
+         * @throws ScanErrorException when there is a scanning error
+         */
+        Program parse() throws ScanErrorException;
+    }
+}
@@ -2,9 +2,12 @@ package parser;
 
 import ast.*;
 import scanner.ScanErrorException;
-import scanner.Scanner;
+import scanner.Symbol;
 import scanner.Token;
 import scanner.Token.TokenType;
+import scanner.TokenBuffer;
+import scanner.TokenCursor;
+import scanner.TokenSource;
 import type.Type;
 
 import java.util.*;
@@ -55,17 +58,78 @@ public class Parser
      */
     public static final int maxPrecedence = binaryOperators.keySet().stream().reduce(Integer::max).get();
 
-    private final Scanner sc;
+    /**
+     * The binding power of each binary operator, by symbol ID: higher binds tighter, and 0
+     * means that the symbol is not a binary operator.
+     */
+    private static final int[] bindingPower = new int[Symbol.COUNT];
+
+    /**
+     * The operation of each binary operator, by symbol ID.
+     */
+    private static final BinaryOperation[] operations = new BinaryOperation[Symbol.COUNT];
+
+    static
+    {
+        for (Map.Entry<Integer, Map<String, BinaryOperation>> level : binaryOperators.entrySet())
+        {
+            for (Map.Entry<String, BinaryOperation> operator : level.getValue().entrySet())
+            {
+                int symbol = Symbol.of(operator.getKey());
+                bindingPower[symbol] = maxPrecedence - level.getKey() + 1;
+                operations[symbol] = operator.getValue();
+            }
+        }
+    }
+
+    /**
+     * Marks a unary minus on the operator stack; every other entry is a symbol ID.
+     */
+    private static final int NEGATE = -1;
+
+    private final TokenSource sc;
+    private final TokenCursor lazy;
 
     private Token currentToken;
 
+    private Expression[] operands = new Expression[16];
+    private int operandCount;
+    private int[] operators = new int[16];
+    private int operatorCount;
+
+    /**
+     * Constructs a parser.
+     * To scan on a separate thread while parsing, pass a scanner.PipelinedScanner, and close
+     * it once parsing ends (with try-with-resources, so that it is closed on errors too).
+     * @param sc the scanner to use.
+     */
+    public Parser(TokenSource sc)
+    {
+        this(sc, null);
+    }
+
+    /**
+     * Constructs a parser over tokens that have already been scanned, which may parse
+     * procedure bodies lazily. A lazy body is only parsed the first time that it is needed;
+     * until then its tokens are only checked for matching BEGIN and END, so any other error
+     * in it is reported when it is first called (or compiled).
+     * @param cursor the tokens to parse.
+     * @param lazy true to parse procedure bodies that are blocks lazily, false otherwise.
+     */
+    public Parser(TokenCursor cursor, boolean lazy)
+    {
+        this(cursor, lazy ? cursor : null);
+    }
+
     /**
      * Constructs a parser.
      * @param sc the scanner to use.
+     * @param lazy the scanner again, if procedure bodies are parsed lazily, or null otherwise.
      */
-    public Parser(Scanner sc)
+    private Parser(TokenSource sc, TokenCursor lazy)
     {
         this.sc = sc;
+        this.lazy = lazy;
         try
         {
             currentToken = sc.nextToken();
@@ -77,38 +141,47 @@ public class Parser
     }
 
     /**
-     * Gets the next char, safely.
+     * Moves on to the next token.
      *
-     * @param expected the expected current token.
-     * @throws IllegalArgumentException, when the current token is not the expected token.
      * @postcondition The next token is in currentToken.
      */
-    private void eat(Token expected)
+    private void advance()
     {
-        if (currentToken.equals(expected))
+        try
         {
-            try
-            {
-                currentToken = sc.nextToken();
-            }
-            catch (ScanErrorException e)
-            {
-                e.printStackTrace();
-            }
+            currentToken = sc.nextToken();
         }
-        else
+        catch (ScanErrorException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the next token, safely.
+     *
+     * @param expected the symbol ID of the expected current token.
+     * @throws IllegalArgumentException, when the current token is not the expected token.
+     * @postcondition The next token is in currentToken.
+     */
+    private void eat(int expected)
+    {
+        if (currentToken.getSymbol() != expected)
         {
-            throw new IllegalArgumentException("Got " + currentToken + " but expected " + expected + ".");
+            throw new IllegalArgumentException(
+                    "Got " + currentToken + " but expected " + Symbol.getText(expected) + ".");
         }
+        advance();
     }
 
     /**
-     * Wraps a String into a Token before calling eat.
-     * @param expected the expected next string.
+     * Checks whether the current token is a symbol.
+     * @param symbol the symbol ID.
+     * @return true if the current token has the symbol ID, false otherwise.
      */
-    private void eat(String expected)
+    private boolean at(int symbol)
     {
-        eat(new Token(expected));
+        return currentToken.getSymbol() == symbol;
     }
 
     /**
@@ -122,57 +195,40 @@ public class Parser
             throw new IllegalArgumentException("Expected a number, but got " + currentToken);
         }
         int ret = Integer.parseInt(currentToken.getValue());
-        eat(currentToken);
+        advance();
         return new Literal(ret, Type.INT);
     }
 
     /**
-     * Parses a factor
+     * Parses a factor other than a parenthesized or negated one, which parseExpr handles.
      * @return an Expression, the parsed factor.
      */
     private Expression parseFactor()
     {
         return switch (currentToken.getType())
         {
-            case OPERATOR ->
-                switch (currentToken.getValue())
-                {
-                    case "(" -> {
-                        eat("(");
-                        Expression ret = parseExpr(maxPrecedence);
-                        eat(")");
-                        yield ret;
-                    }
-                    case "-" -> {
-                        eat("-");
-                        Expression ret = parseFactor();
-                        yield new BinOp(new Literal(0, Type.INT), ret, BinOp.SUB);
-                    }
-                    default -> throw new IllegalArgumentException("Expected Factor, but was invalid.");
-                };
             case NUMBER -> parseNumber();
-            case IDENTIFIER -> {
-                Expression ret = switch (currentToken.getValue())
+            case KEYWORD ->
+                switch (currentToken.getSymbol())
                 {
-                    case "True" -> {
-                        eat(currentToken);
+                    case Symbol.TRUE -> {
+                        advance();
                         yield new Literal(true, Type.INT);
                     }
-                    case "False" -> {
-                        eat(currentToken);
+                    case Symbol.FALSE -> {
+                        advance();
                         yield new Literal(false, Type.INT);
                     }
-                    default -> {
-                        String id = currentToken.getValue();
-                        eat(currentToken);
-                        if (currentToken.getValue().equals("("))
-                        {
-                            yield parseProcedureCall(id);
-                        }
-                        yield new Variable(id, Type.INT);
-                    }
+                    default -> throw new IllegalArgumentException("Expected Factor, but was invalid.");
                 };
-                yield ret;
+            case IDENTIFIER -> {
+                String id = currentToken.getValue();
+                advance();
+                if (at(Symbol.LPAREN))
+                {
+                    yield parseProcedureCall(id);
+                }
+                yield new Variable(id, Type.INT);
             }
             default -> throw new IllegalArgumentException("Expected Factor, but was invalid");
         };
@@ -180,31 +236,135 @@ public class Parser
 
 
     /**
-     * Parses an expression.
-     * @param precedence the operator precedence currently being parsed.
-     * @return an int, the evaluated parsed expression.
+     * Parses an expression, with a Pratt parser that keeps its operands and operators on
+     * explicit stacks instead of the Java stack.
+     * <p>
+     * Each binary operator has a binding power. Before an operator is pushed, every operator
+     * on the stack that binds at least as tightly is applied to the operands below it, so
+     * operators of equal power group to the left. An opening parenthesis is pushed like an
+     * operator, and the matching closing parenthesis applies everything above it; a unary
+     * minus is applied as soon as the factor after it is complete. Only procedure call
+     * arguments are parsed recursively.
+     *
+     * @return an Expression, the parsed expression.
      */
-    private Expression parseExpr(int precedence) {
-        if (precedence == -1) {
-            return parseFactor();
-        }
-        Expression ret = parseExpr(precedence - 1);
-        while (binaryOperators.get(precedence).containsKey(currentToken.getValue()))
+    private Expression parseExpr()
+    {
+        int operandBase = operandCount;
+        int operatorBase = operatorCount;
+        while (true)
         {
-            var operator = binaryOperators.get(precedence).get(currentToken.getValue());
-            eat(currentToken);
-            ret = new BinOp(ret, parseExpr(precedence - 1), operator);
+            // Prefixes of the next factor.
+            if (at(Symbol.LPAREN) || at(Symbol.MINUS))
+            {
+                pushOperator(at(Symbol.LPAREN) ? Symbol.LPAREN : NEGATE);
+                advance();
+                continue;
+            }
+            pushOperand(parseFactor());
+
+            // Everything that can follow a complete factor.
+            while (true)
+            {
+                while (operatorCount > operatorBase && operators[operatorCount - 1] == NEGATE)
+                {
+                    operatorCount--;
+                    pushOperand(BinOp.of(new Literal(0, Type.INT), popOperand(), BinOp.SUB));
+                }
+                if (at(Symbol.RPAREN) && hasOpenParen(operatorBase))
+                {
+                    while (operators[operatorCount - 1] != Symbol.LPAREN)
+                        reduce();
+                    operatorCount--;
+                    advance();
+                    continue;
+                }
+                break;
+            }
+
+            int symbol = currentToken.getSymbol();
+            int power = bindingPower[symbol];
+            if (power == 0)
+                break;
+            while (operatorCount > operatorBase && operators[operatorCount - 1] != Symbol.LPAREN
+                    && bindingPower[operators[operatorCount - 1]] >= power)
+                reduce();
+            pushOperator(symbol);
+            advance();
         }
+
+        if (hasOpenParen(operatorBase))
+            eat(Symbol.RPAREN);
+        while (operatorCount > operatorBase)
+            reduce();
+        Expression ret = popOperand();
+        Arrays.fill(operands, operandBase, operandCount + 1, null);
         return ret;
     }
 
+    /**
+     * Applies the binary operator on top of the operator stack to the top two operands.
+     */
+    private void reduce()
+    {
+        Expression right = popOperand();
+        Expression left = popOperand();
+        pushOperand(BinOp.of(left, right, operations[operators[--operatorCount]]));
+    }
+
+    /**
+     * Checks whether an opening parenthesis of the current expression is still open.
+     * @param operatorBase the index of the current expression's first operator
+     * @return true if there is an opening parenthesis above operatorBase, false otherwise.
+     */
+    private boolean hasOpenParen(int operatorBase)
+    {
+        for (int i = operatorCount - 1; i >= operatorBase; i--)
+        {
+            if (operators[i] == Symbol.LPAREN)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Pushes an operand.
+     * @param e the operand
+     */
+    private void pushOperand(Expression e)
+    {
+        if (operandCount == operands.length)
+            operands = Arrays.copyOf(operands, operandCount * 2);
+        operands[operandCount++] = e;
+    }
+
+    /**
+     * Pops an operand.
+     * @return the operand
+     */
+    private Expression popOperand()
+    {
+        return operands[--operandCount];
+    }
+
+    /**
+     * Pushes an operator.
+     * @param symbol the operator's symbol ID, or NEGATE
+     */
+    private void pushOperator(int symbol)
+    {
+        if (operatorCount == operators.length)
+            operators = Arrays.copyOf(operators, operatorCount * 2);
+        operators[operatorCount++] = symbol;
+    }
+
     /**
      * Parses a variable.
      * @return a Variable, the variable parsed.
      */
     private Variable parseVariable() {
         Variable v = new Variable(currentToken.getValue(), Type.INT);
-        eat(currentToken);
+        advance();
         return v;
     }
 
@@ -214,134 +374,176 @@ public class Parser
      */
     private Procedure parseProcedure() {
         String name = currentToken.getValue();
-        eat(currentToken);
-        eat("(");
+        advance();
+        eat(Symbol.LPAREN);
         List<Variable> args = new ArrayList<>();
-        boolean stop = currentToken.getValue().equals(")");
+        boolean stop = at(Symbol.RPAREN);
         while (!stop)
         {
             args.add(parseVariable());
-            stop = currentToken.getValue().equals(")");
+            stop = at(Symbol.RPAREN);
             if (!stop)
-                eat(",");
+                eat(Symbol.COMMA);
+        }
+        eat(Symbol.RPAREN);
+        eat(Symbol.SEMICOLON);
+        if (lazy != null && at(Symbol.BEGIN))
+        {
+            TokenBuffer tokens = lazy.getTokens();
+            int start = lazy.index() - 1;
+            skipBlock();
+            int end = lazy.index() - 1;
+            return new Procedure(name, args, () -> {
+                TokenCursor cursor = new TokenCursor(tokens, start, end);
+                return new Parser(cursor, cursor).parseStatement();
+            });
         }
-        eat(")");
-        eat(";");
         Statement body = parseStatement();
         return new Procedure(name, args, body);
     }
 
+    /**
+     * Skips a block without parsing it, by matching its BEGINs and ENDs in the token buffer.
+     * @throws IllegalArgumentException, when the block does not end.
+     * @postcondition The token after the block is in currentToken.
+     */
+    private void skipBlock()
+    {
+        TokenBuffer tokens = lazy.getTokens();
+        int i = lazy.index() - 1;
+        int depth = 0;
+        do
+        {
+            if (i >= lazy.getEnd())
+            {
+                lazy.seek(i);
+                advance();
+                eat(Symbol.END);
+            }
+            int symbol = tokens.getSymbol(i++);
+            if (symbol == Symbol.BEGIN)
+                depth++;
+            else if (symbol == Symbol.END)
+                depth--;
+        }
+        while (depth > 0);
+        lazy.seek(i);
+        advance();
+        eat(Symbol.SEMICOLON);
+    }
+
     private ProcedureCall parseProcedureCall(String id)
     {
-        eat("(");
+        eat(Symbol.LPAREN);
         List<Expression> args = new ArrayList<>();
-        boolean stop = currentToken.getValue().equals(")");
+        boolean stop = at(Symbol.RPAREN);
         while (!stop)
         {
-            args.add(parseExpr(maxPrecedence));
-            stop = currentToken.getValue().equals(")");
+            args.add(parseExpr());
+            stop = at(Symbol.RPAREN);
             if (!stop)
-                eat(",");
+                eat(Symbol.COMMA);
         }
-        eat(")");
+        eat(Symbol.RPAREN);
         return new ProcedureCall(id, args);
     }
 
     /**
      * Parses a statement.
+     * Package-private so that IncrementalParser can parse one top-level statement at a time.
      * @return a Statement, the statement parsed.
      */
-    private Statement parseStatement()
+    Statement parseStatement()
     {
-        return switch (currentToken.getValue())
+        return switch (currentToken.getSymbol())
         {
-            case "BEGIN" -> // TODO
+            case Symbol.BEGIN -> // TODO
             {
-                eat("BEGIN");
+                eat(Symbol.BEGIN);
                 List<Statement> ret = new ArrayList<>();
                 do
                 {
                     ret.add(parseStatement());
                 }
-                while (!currentToken.getValue().equals("END"));
-                eat("END");
-                eat(";");
+                while (!at(Symbol.END));
+                eat(Symbol.END);
+                eat(Symbol.SEMICOLON);
                 yield new Block(ret);
             }
-            case "PROCEDURE" ->
+            case Symbol.PROCEDURE ->
             {
-                eat("PROCEDURE");
+                eat(Symbol.PROCEDURE);
                 Procedure p = parseProcedure();
                 yield new ProcedureDeclaration(p);
             }
-            case "WRITELN" ->
+            case Symbol.WRITELN ->
             {
-                eat("WRITELN");
-                eat("(");
-                Expression e = parseExpr(maxPrecedence);
-                eat(")");
-                eat(";");
+                eat(Symbol.WRITELN);
+                eat(Symbol.LPAREN);
+                Expression e = parseExpr();
+                eat(Symbol.RPAREN);
+                eat(Symbol.SEMICOLON);
                 yield new WriteLn(e);
             }
-            case "READLN" ->
+            case Symbol.READLN ->
             {
-                eat("READLN");
-                eat("(");
+                eat(Symbol.READLN);
+                eat(Symbol.LPAREN);
                 Variable v = parseVariable();
-                eat(")");
-                eat(";");
+                eat(Symbol.RPAREN);
+                eat(Symbol.SEMICOLON);
                 yield new ReadLn(v);
             }
-            case "IF" ->
+            case Symbol.IF ->
             {
-                eat("IF");
-                Expression condition = parseExpr(maxPrecedence);
-                eat("THEN");
+                eat(Symbol.IF);
+                Expression condition = parseExpr();
+                eat(Symbol.THEN);
                 Statement trueBranch = parseStatement();
-                if (currentToken.getValue().equals("ELSE"))
+                if (at(Symbol.ELSE))
                 {
-                    eat("ELSE");
+                    eat(Symbol.ELSE);
                     Statement falseBranch = parseStatement();
                     yield new If(condition, trueBranch, falseBranch);
                 }
                 yield new If(condition, trueBranch);
             }
-            case "WHILE" ->
+            case Symbol.WHILE ->
             {
-                eat("WHILE");
-                Expression condition = parseExpr(maxPrecedence);
-                eat("DO");
+                eat(Symbol.WHILE);
+                Expression condition = parseExpr();
+                eat(Symbol.DO);
                 Statement body = parseStatement();
                 yield new While(condition, body);
             }
-            case "FOR" ->
+            case Symbol.FOR ->
             {
-                eat("FOR");
+                eat(Symbol.FOR);
                 Variable loopVar = parseVariable();
-                eat(":=");
-                Expression from = parseExpr(maxPrecedence);
-                eat("TO");
-                Expression to = parseExpr(maxPrecedence);
-                eat("DO");
+                eat(Symbol.ASSIGN);
+                Expression from = parseExpr();
+                eat(Symbol.TO);
+                Expression to = parseExpr();
+                eat(Symbol.DO);
                 Statement body = parseStatement();
                 yield new For(loopVar, from, to, body);
             }
             default ->
             {
                 String id = currentToken.getValue();
-                eat(currentToken);
-                yield switch (currentToken.getValue()) {
-                    case ":=" -> {
+                advance();
+                yield switch (currentToken.getSymbol()) {
+                    case Symbol.ASSIGN -> {
                         Variable lhs = new Variable(id, Type.INT);
-                        eat(":=");
-                        Expression rhs = parseExpr(maxPrecedence);
-                        eat(";");
+                        eat(Symbol.ASSIGN);
+                        Expression rhs = parseExpr();
+                        eat(Symbol.SEMICOLON);
                         yield new Assignment(lhs, rhs);
                     }
-                    case "(" ->
+                    case Symbol.LPAREN ->
                     {
                         ProcedureCall ret = parseProcedureCall(id);
-                        eat(";");
+                        eat(Symbol.SEMICOLON);
                         yield ret;
                     }
                     default -> throw new IllegalArgumentException("Illegal statement");
@@ -359,7 +561,7 @@ public class Parser
     {
         List<ProcedureDeclaration> procedures = new ArrayList<>();
 
-        while (sc.hasNext() && currentToken.getValue().equals("PROCEDURE"))
+        while (at(Symbol.PROCEDURE))
             procedures.add((ProcedureDeclaration) parseStatement());
 
         Statement run = parseStatement();
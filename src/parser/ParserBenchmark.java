@@ -0,0 +1,153 @@
+package parser;
+
+import scanner.IncrementalScanner;
+import scanner.PipelinedScanner;
+import scanner.ScanErrorException;
+import scanner.Scanner;
+import scanner.TokenBuffer;
+import scanner.TokenCursor;
+
+import java.util.Random;
+
+/**
+ * Measures how long the Parser takes to parse a large generated program, both with the
+ * scanner on the same thread and with a PipelinedScanner on its own thread, and how fast
+ * it parses a program made almost entirely of expressions.
+ *
+ * @author Agastya Ravuri
+ * @version 4.17.2024
+ */
+public class ParserBenchmark
+{
+    private static final int ITERATIONS = 10;
+
+    private static final String[] OPERATORS = {
+            "*", "/", "mod", "+", "-", "=", "<>", "<", ">", "<=", ">=", "&&", "||"
+    };
+
+    /**
+     * Runs the benchmark.
+     * @param args optionally, the number of procedures to generate (default 20000).
+     */
+    public static void main(String[] args)
+    {
+        int procedures = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        char[] source = generate(procedures).toCharArray();
+        System.out.printf("%d procedures, %.1f MB%n", procedures, source.length / 1e6);
+
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            long start = System.nanoTime();
+            new Parser(new Scanner(source, 0, source.length)).parseProgram();
+            double serial = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            try (PipelinedScanner sc = new PipelinedScanner(new Scanner(source, 0, source.length)))
+            {
+                new Parser(sc).parseProgram();
+            }
+            double pipelined = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("serial: %.1f ms, pipelined: %.1f ms%n", serial, pipelined);
+        }
+
+        // The expressions are scanned once, so that only parsing is timed.
+        String expressions = generateExpressions(procedures / 10, new Random(2024));
+        TokenBuffer tokens;
+        try
+        {
+            tokens = new IncrementalScanner(expressions).getTokens();
+        }
+        catch (ScanErrorException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        System.out.printf("expressions: %.1f MB, %d tokens%n", expressions.length() / 1e6, tokens.size());
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS * 10; i++)
+        {
+            long start = System.nanoTime();
+            new Parser(new TokenCursor(tokens, 0)).parseProgram();
+            best = Math.min(best, (System.nanoTime() - start) / 1e9);
+        }
+        System.out.printf("best: %.2f ms, %.1f M tokens/s%n", best * 1e3, tokens.size() / best / 1e6);
+    }
+
+    /**
+     * Generates a program with many procedures.
+     * @param procedures the number of procedures
+     * @return the source of the program
+     */
+    static String generate(int procedures)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < procedures; i++)
+        {
+            sb.append("PROCEDURE p").append(i).append("(a, b, c);\n")
+                    .append("BEGIN\n")
+                    .append("    x := (a + b * c - 3) / (a - -b) mod 7;\n")
+                    .append("    IF x <= a * (b + c) THEN x := x + 1; ELSE x := x - (c * 2);\n")
+                    .append("    WHILE x > 0 DO x := x - a * 2 + b;\n")
+                    .append("    FOR i := 1 TO c DO WRITELN(i * ((x + a) * (b - c)));\n")
+                    .append("    p").append(i).append(" := x + p").append(i / 2).append("(a, b, c - 1);\n")
+                    .append("END;\n");
+        }
+        sb.append("BEGIN\n    WRITELN(p0(1, 2, 3));\nEND;\n");
+        return sb.toString();
+    }
+
+    /**
+     * Generates a program that is almost all expressions: one long random expression per
+     * statement, with every operator, unary minus and nested parentheses.
+     * @param statements the number of statements
+     * @param random the random number generator
+     * @return the source of the program
+     */
+    static String generateExpressions(int statements, Random random)
+    {
+        StringBuilder sb = new StringBuilder("BEGIN\n");
+        for (int i = 0; i < statements; i++)
+        {
+            sb.append("    x := ");
+            appendExpression(sb, 6, random);
+            sb.append(";\n");
+        }
+        sb.append("END;\n");
+        return sb.toString();
+    }
+
+    /**
+     * Appends a random expression.
+     * @param sb the builder to append to
+     * @param depth the maximum depth of the expression
+     * @param random the random number generator
+     */
+    private static void appendExpression(StringBuilder sb, int depth, Random random)
+    {
+        int kind = depth == 0 ? 0 : random.nextInt(10);
+        if (kind < 2)
+        {
+            if (random.nextBoolean())
+                sb.append((char) ('a' + random.nextInt(26)));
+            else
+                sb.append(random.nextInt(1000));
+        }
+        else if (kind == 2)
+        {
+            sb.append('-');
+            appendExpression(sb, depth - 1, random);
+        }
+        else if (kind == 3)
+        {
+            sb.append('(');
+            appendExpression(sb, depth - 1, random);
+            sb.append(')');
+        }
+        else
+        {
+            appendExpression(sb, depth - 1, random);
+            sb.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            appendExpression(sb, depth - 1, random);
+        }
+    }
+}
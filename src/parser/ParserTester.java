@@ -1,8 +1,18 @@
 package parser;
 
+import ast.Optimizer;
 import ast.Program;
+import ast.Tiering;
 import emitter.Emitter;
+import emitter.IrCompiler;
+import ir.DeadStoreElimination;
+import ir.IrBuilder;
+import ir.IrInterpreter;
+import ir.IrProgram;
 import scanner.Scanner;
+import vm.BytecodeCompiler;
+import vm.JvmCompiler;
+import vm.VirtualMachine;
 
 import java.io.*;
 
@@ -19,11 +29,43 @@ public class ParserTester
 
     /**
      * Tests parser.
-     * @param args arguments from the command line
-     * @throws FileNotFoundException when the file is not found
+     * The program is also compiled to MIPS in compiled.txt.
+     * @param args arguments from the command line, in any order:
+     *             <ul>
+     *             <li>a file: the program to run (default compilertest.txt)</li>
+     *             <li>-vm: run it on the virtual machine</li>
+     *             <li>-jvm: compile it to JVM bytecode and run that</li>
+     *             <li>-tiered: interpret it, compiling hot procedures and loops</li>
+     *             <li>-ir: lower it into SSA form, then compile and interpret the IR</li>
+     *             <li>-O: optimize it first, and remove the dead stores of its IR</li>
+     *             </ul>
+     *             Only one of -ir, -jvm, -vm and -tiered is used, in that order; -O
+     *             combines with any of them.
+     * @throws IOException when the file cannot be read
      */
     public static void main(String[] args) throws IOException
     {
+        String file = ParserTester.file;
+        boolean vm = false;
+        boolean jvm = false;
+        boolean ir = false;
+        Tiering tiering = null;
+        Optimizer optimizer = null;
+        for (String arg : args)
+        {
+            if (arg.equals("-vm"))
+                vm = true;
+            else if (arg.equals("-jvm"))
+                jvm = true;
+            else if (arg.equals("-ir"))
+                ir = true;
+            else if (arg.equals("-tiered"))
+                tiering = new Tiering();
+            else if (arg.equals("-O"))
+                optimizer = new Optimizer();
+            else
+                file = arg;
+        }
         Scanner sc = new Scanner(new FileInputStream(file));
         Parser p = new Parser(sc);
 
@@ -31,7 +73,32 @@ public class ParserTester
 
         Emitter e = new Emitter("compiled.txt");
         Program par = p.parseProgram();
+        if (optimizer != null)
+        {
+            par = optimizer.optimize(par);
+            System.err.println(optimizer);
+        }
+        if (ir)
+        {
+            IrProgram lowered = new IrBuilder().lower(par);
+            if (optimizer != null)
+            {
+                DeadStoreElimination d = new DeadStoreElimination();
+                d.run(lowered);
+                System.err.println(d);
+            }
+            new IrCompiler(e).compile(lowered);
+            new IrInterpreter(lowered).run();
+            return;
+        }
         par.compile(e);
-        par.run();
+        if (jvm)
+            new JvmCompiler().compile(par).run();
+        else if (vm)
+            new VirtualMachine().run(new BytecodeCompiler().compile(par));
+        else
+            par.run(tiering);
+        if (tiering != null)
+            System.err.println(tiering);
     }
 }
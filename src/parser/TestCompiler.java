@@ -0,0 +1,45 @@
+package parser;
+
+import ast.Program;
+import emitter.Emitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * What the testers of the parsers share: compiling a program to MIPS and reading the code
+ * back, to compare two parses of the same program.
+ *
+ * @author Agastya Ravuri
+ * @version 4.19.2024
+ */
+final class TestCompiler
+{
+    /**
+     * Not used; every method is static.
+     */
+    private TestCompiler()
+    {
+    }
+
+    /**
+     * Compiles a program to MIPS in a temporary file, which is deleted afterwards.
+     * @param p the program
+     * @return the compiled program
+     * @throws IOException when the temporary file cannot be used
+     */
+    static String compile(Program p) throws IOException
+    {
+        File f = File.createTempFile("compiled", ".asm");
+        try
+        {
+            p.compile(new Emitter(f.getPath()));
+            return Files.readString(f.toPath());
+        }
+        finally
+        {
+            f.delete();
+        }
+    }
+}
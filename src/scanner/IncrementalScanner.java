@@ -0,0 +1,233 @@
+package scanner;
+
+import java.util.Arrays;
+
+/**
+ * IncrementalScanner keeps the tokens of a source text up to date as the text is edited,
+ * rescanning only the tokens around each edit.
+ * <p>
+ * After an edit, scanning restarts at the start of the last token that ends before the
+ * edit, since the scanner is between tokens there. It stops as soon as it starts a token
+ * at the same place (after the edit) as an old token did: from there on, the text and
+ * the scanner's state are the same as before, so the old tokens are still right and are
+ * only moved by the change in length.
+ * <p>
+ * Usage:
+ * IncrementalScanner sc = new IncrementalScanner(text);
+ * sc.edit(offset, removedLength, insertedText);
+ * sc.getTokens();
+ *
+ * @author Agastya Ravuri
+ * @version 4.19.2024
+ */
+public class IncrementalScanner
+{
+    private static final int BATCH_SIZE = 64;
+
+    private char[] text;
+    private int length;
+    private final TokenBuffer tokens;
+    private boolean valid;
+
+    private int damageStart;
+    private int damageOldEnd;
+    private int damageNewEnd;
+
+    /**
+     * Constructs an incremental scanner and scans the whole text.
+     * @param text the text to scan
+     * @throws ScanErrorException if the text is not valid
+     */
+    public IncrementalScanner(String text) throws ScanErrorException
+    {
+        this.text = text.toCharArray();
+        length = this.text.length;
+        tokens = new TokenBuffer(BATCH_SIZE);
+        rescanAll();
+    }
+
+    /**
+     * Replaces part of the text, and rescans the tokens that it could have changed.
+     * Afterwards, the tokens from getDamageStart() to getDamageNewEnd() are new; they
+     * replaced the tokens from getDamageStart() to getDamageOldEnd().
+     *
+     * @param offset the index of the first character to replace
+     * @param removed the number of characters to remove
+     * @param inserted the text to insert in their place
+     * @throws ScanErrorException if the new text is not valid; the next edit then rescans everything.
+     */
+    public void edit(int offset, int removed, String inserted) throws ScanErrorException
+    {
+        // The text is edited in place, with room to grow, so that an edit only moves the
+        // text after it (and not at all if its length does not change).
+        int delta = inserted.length() - removed;
+        if (length + delta > text.length)
+            text = Arrays.copyOf(text, Math.max(length + delta, text.length * 2));
+        if (delta != 0)
+            System.arraycopy(text, offset + removed, text, offset + inserted.length(), length - offset - removed);
+        inserted.getChars(0, inserted.length(), text, offset);
+        length += delta;
+
+        if (!valid)
+        {
+            rescanAll();
+            return;
+        }
+
+        // The last token that ends before the edit, which the scanner restarts at.
+        int first = lastTokenBefore(offset);
+        int restart = first < 0 ? 0 : tokens.getStart(first);
+        first = Math.max(first, 0);
+
+        int oldEditEnd = offset + removed;
+        int j = firstTokenFrom(oldEditEnd);
+
+        Scanner sc = new Scanner(text, restart, length - restart);
+        TokenBuffer batch = new TokenBuffer(BATCH_SIZE);
+        TokenBuffer rescanned = new TokenBuffer(BATCH_SIZE);
+        valid = false;
+        while (sc.nextTokens(batch) > 0)
+        {
+            for (int k = 0; k < batch.size(); k++)
+            {
+                int start = batch.getStart(k);
+                while (j < tokens.size() && tokens.getStart(j) + delta < start)
+                    j++;
+                if (j < tokens.size() && tokens.getStart(j) + delta == start)
+                {
+                    rescanned.append(batch, 0, k);
+                    replace(first, j, rescanned, delta);
+                    return;
+                }
+            }
+            rescanned.append(batch, 0, batch.size());
+        }
+        replace(first, tokens.size(), rescanned, delta);
+    }
+
+    /**
+     * Replaces a range of tokens, and records it as the damaged range.
+     * @param from the index of the first token to replace
+     * @param to the index after the last token to replace
+     * @param with the new tokens
+     * @param delta the change in the length of the text
+     */
+    private void replace(int from, int to, TokenBuffer with, int delta)
+    {
+        damageStart = from;
+        damageOldEnd = to;
+        damageNewEnd = from + with.size();
+        tokens.splice(from, to, with, delta, text);
+        valid = true;
+    }
+
+    /**
+     * Scans the whole text again.
+     * @throws ScanErrorException if the text is not valid
+     */
+    private void rescanAll() throws ScanErrorException
+    {
+        int oldSize = tokens.size();
+        tokens.clear();
+        valid = false;
+        Scanner sc = new Scanner(text, 0, length);
+        TokenBuffer batch = new TokenBuffer(BATCH_SIZE);
+        while (sc.nextTokens(batch) > 0)
+            tokens.append(batch, 0, batch.size());
+        damageStart = 0;
+        damageOldEnd = oldSize;
+        damageNewEnd = tokens.size();
+        valid = true;
+    }
+
+    /**
+     * Finds the last token that ends strictly before a position.
+     * @param offset the position
+     * @return the index of the token, or -1 if there is none.
+     */
+    private int lastTokenBefore(int offset)
+    {
+        int lo = 0;
+        int hi = tokens.size() - 1;
+        int ret = -1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (tokens.getStart(mid) + tokens.getLength(mid) < offset)
+            {
+                ret = mid;
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Finds the first token that starts at or after a position.
+     * @param offset the position
+     * @return the index of the token, or the number of tokens if there is none.
+     */
+    private int firstTokenFrom(int offset)
+    {
+        int lo = 0;
+        int hi = tokens.size();
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (tokens.getStart(mid) < offset)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Gets the current text.
+     * @return the text
+     */
+    public String getText()
+    {
+        return new String(text, 0, length);
+    }
+
+    /**
+     * Gets every token of the current text, without the EOF token.
+     * @return the tokens; they must not be modified.
+     */
+    public TokenBuffer getTokens()
+    {
+        return tokens;
+    }
+
+    /**
+     * Gets the index of the first token changed by the last edit.
+     * @return the index of the first changed token
+     */
+    public int getDamageStart()
+    {
+        return damageStart;
+    }
+
+    /**
+     * Gets the index after the last token that the last edit replaced, before the edit.
+     * @return the old end of the changed range
+     */
+    public int getDamageOldEnd()
+    {
+        return damageOldEnd;
+    }
+
+    /**
+     * Gets the index after the last token that the last edit produced.
+     * @return the new end of the changed range
+     */
+    public int getDamageNewEnd()
+    {
+        return damageNewEnd;
+    }
+}
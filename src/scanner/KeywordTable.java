@@ -0,0 +1,107 @@
+package scanner;
+
+import java.util.Set;
+
+/**
+ * A perfect hash table from keywords to their symbol IDs.
+ * <p>
+ * A keyword's hash only depends on its first character, last character and length,
+ * multiplied by a constant that build() searches for so that no two keywords collide.
+ * Looking up a scanned identifier is therefore one hash, one array lookup and at most one
+ * comparison, without turning the identifier into a String.
+ *
+ * @author Agastya Ravuri
+ * @version 4.10.2024
+ */
+public class KeywordTable
+{
+    private final int multiplier;
+    private final int shift;
+    private final char[][] keywords;
+    private final int[] symbols;
+
+    /**
+     * Constructs a keyword table. Use build() to generate one from a set of keywords.
+     */
+    private KeywordTable(int multiplier, int shift, char[][] keywords, int[] symbols)
+    {
+        this.multiplier = multiplier;
+        this.shift = shift;
+        this.keywords = keywords;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Looks up a slice of a buffer in the table.
+     * @param buf the buffer
+     * @param offset the index of the first character
+     * @param length the number of characters
+     * @return the symbol ID of the keyword, or Symbol.NONE if the slice is not a keyword.
+     */
+    public int lookup(char[] buf, int offset, int length)
+    {
+        int slot = (key(buf, offset, length) * multiplier) >>> shift;
+        char[] keyword = keywords[slot];
+        if (keyword == null || keyword.length != length)
+            return Symbol.NONE;
+        for (int i = 0; i < length; i++)
+        {
+            if (keyword[i] != buf[offset + i])
+                return Symbol.NONE;
+        }
+        return symbols[slot];
+    }
+
+    /**
+     * Computes the unscrambled hash of a slice of a buffer.
+     * @param buf the buffer
+     * @param offset the index of the first character
+     * @param length the number of characters; must be at least 1.
+     * @return the hash
+     */
+    private static int key(char[] buf, int offset, int length)
+    {
+        return (buf[offset] * 31 + buf[offset + length - 1]) * 31 + length;
+    }
+
+    /**
+     * Builds a perfect hash table for a set of keywords.
+     * @param keywords the keywords; each must have a symbol ID in Symbol.
+     * @return the keyword table
+     * @throws IllegalArgumentException if a keyword has no symbol ID, or no perfect hash is found.
+     */
+    public static KeywordTable build(Set<String> keywords)
+    {
+        int bits = 1;
+        while ((1 << bits) < keywords.size() * 2)
+            bits++;
+
+        for (; bits <= 16; bits++)
+        {
+            int size = 1 << bits;
+            for (int multiplier = 0x9E3779B1, tries = 0; tries < 10000; multiplier += 2, tries++)
+            {
+                char[][] table = new char[size][];
+                int[] symbols = new int[size];
+                boolean perfect = true;
+                for (String keyword : keywords)
+                {
+                    char[] chars = keyword.toCharArray();
+                    int slot = (key(chars, 0, chars.length) * multiplier) >>> (32 - bits);
+                    if (table[slot] != null)
+                    {
+                        perfect = false;
+                        break;
+                    }
+                    table[slot] = chars;
+                    symbols[slot] = Symbol.of(keyword);
+                    if (symbols[slot] == Symbol.NONE)
+                        throw new IllegalArgumentException("No symbol ID for keyword " + keyword);
+                }
+                if (perfect)
+                    return new KeywordTable(multiplier, 32 - bits, table, symbols);
+            }
+        }
+        throw new IllegalArgumentException("No perfect hash found for " + keywords);
+    }
+}
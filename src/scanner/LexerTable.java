@@ -0,0 +1,396 @@
+package scanner;
+
+import java.util.*;
+import scanner.Token.TokenType;
+
+/**
+ * A lexer table is a DFA compiled from the scanner's lexical rules: the set of operators,
+ * identifiers of the form [a-zA-Z][a-zA-Z0-9]*, numbers of the form [0-9]+, whitespace,
+ * line comments and (nested) block comments.
+ * <p>
+ * Characters are first mapped to a small number of character classes, and the DFA is
+ * stored as a dense int[state][charClass] transition table, so scanning a character is
+ * two array lookups. State DEAD (0) means there is no transition; the scanner then stops
+ * and accepts or rejects the token based on the last state it reached.
+ * <p>
+ * Nesting of block comments cannot be recognized by a DFA alone, so the two transitions
+ * that open and close a block comment are tagged with OPEN_NESTED and CLOSE_NESTED, and
+ * the scanner keeps a nesting depth while it runs the table.
+ *
+ * @author Agastya Ravuri
+ * @version 4.8.2024
+ */
+public class LexerTable
+{
+    /**
+     * The state with no outgoing transitions.
+     */
+    public static final int DEAD = 0;
+
+    /**
+     * The state that every token starts in.
+     */
+    public static final int START = 1;
+
+    /**
+     * Set on a transition that opens a nested block comment.
+     */
+    public static final int OPEN_NESTED = 1 << 16;
+
+    /**
+     * Set on a transition that closes a block comment; if the comment is nested,
+     * the scanner goes back to getCommentState() instead of the target state.
+     */
+    public static final int CLOSE_NESTED = 1 << 17;
+
+    /**
+     * Masks out the flags of a transition, leaving the target state.
+     */
+    public static final int STATE_MASK = 0xFFFF;
+
+    /**
+     * The character class of the end of input.
+     */
+    public static final int END = 0;
+
+    /**
+     * The character class of every character that no rule mentions.
+     */
+    public static final int OTHER = 1;
+
+    private static final int LETTER = 2;
+    private static final int DIGIT = 3;
+    private static final int WHITESPACE = 4;
+    private static final int NEWLINE = 5;
+
+    private final byte[] charClasses;
+    private final int[][] transitions;
+    private final TokenType[] tokenTypes;
+    private final boolean[] skip;
+    private final String[] errors;
+    private final int[] symbols;
+    private final int commentState;
+
+    /**
+     * Constructs a lexer table. Use build() to generate one from a set of rules.
+     */
+    private LexerTable(byte[] charClasses, int[][] transitions, TokenType[] tokenTypes,
+                       boolean[] skip, String[] errors, int[] symbols, int commentState)
+    {
+        this.charClasses = charClasses;
+        this.transitions = transitions;
+        this.tokenTypes = tokenTypes;
+        this.skip = skip;
+        this.errors = errors;
+        this.symbols = symbols;
+        this.commentState = commentState;
+    }
+
+    /**
+     * Gets the character class of a character.
+     * @param c the character
+     * @return the character class of c
+     */
+    public int classOf(char c)
+    {
+        return c < 128 ? charClasses[c] : OTHER;
+    }
+
+    /**
+     * Gets the transition out of a state on a character class.
+     * @param state the current state
+     * @param charClass the character class of the next character
+     * @return the target state, possibly tagged with OPEN_NESTED or CLOSE_NESTED
+     */
+    public int next(int state, int charClass)
+    {
+        return transitions[state][charClass];
+    }
+
+    /**
+     * Gets the type of token accepted in a state.
+     * @param state the state
+     * @return the token type, or null if no token is accepted in that state.
+     */
+    public TokenType getTokenType(int state)
+    {
+        return tokenTypes[state];
+    }
+
+    /**
+     * Checks whether a state accepts input that should be skipped (whitespace and comments).
+     * @param state the state
+     * @return true if the scanned text should be skipped, false otherwise.
+     */
+    public boolean isSkip(int state)
+    {
+        return skip[state];
+    }
+
+    /**
+     * Gets the error to report when scanning stops in a non-accepting state.
+     * @param state the state
+     * @return the error message
+     */
+    public String getError(int state)
+    {
+        return errors[state];
+    }
+
+    /**
+     * Gets the symbol ID of the operator accepted in a state.
+     * @param state the state
+     * @return the symbol ID, or Symbol.NONE if the state does not accept an operator.
+     */
+    public int getSymbol(int state)
+    {
+        return symbols[state];
+    }
+
+    /**
+     * Gets the state inside a block comment, to return to when a nested comment closes.
+     * @return the state
+     */
+    public int getCommentState()
+    {
+        return commentState;
+    }
+
+    /**
+     * Checks whether a character starts an operator.
+     * @param c the character
+     * @return true if c starts an operator, false otherwise.
+     */
+    public boolean isOperatorStart(char c)
+    {
+        int next = transitions[START][classOf(c)] & STATE_MASK;
+        return next != DEAD && (tokenTypes[next] == TokenType.OPERATOR || errors[next] != null);
+    }
+
+    /**
+     * Gets the number of states in the table.
+     * @return the number of states
+     */
+    public int getStateCount()
+    {
+        return transitions.length;
+    }
+
+    /**
+     * Compiles the lexical rules into a lexer table.
+     *
+     * @param operators the set of valid operators; they may not contain letters, digits or whitespace.
+     * @param lineComment the string that starts a comment running to the end of the line.
+     * @param blockStart the two characters that start a block comment.
+     * @param blockEnd the two characters that end a block comment.
+     * @return the lexer table
+     * @throws IllegalArgumentException if the rules are not supported.
+     */
+    public static LexerTable build(Set<String> operators, String lineComment,
+                                   String blockStart, String blockEnd)
+    {
+        if (blockStart.length() != 2 || blockEnd.length() != 2)
+            throw new IllegalArgumentException("Block comment delimiters must be two characters long");
+
+        // Character classes: one per character that appears in an operator or a comment delimiter.
+        byte[] charClasses = new byte[128];
+        Arrays.fill(charClasses, (byte) OTHER);
+        for (char c = 0; c < 128; c++)
+        {
+            if (Scanner.isLetter(c))
+                charClasses[c] = LETTER;
+            else if (Scanner.isDigit(c))
+                charClasses[c] = DIGIT;
+            else if (c == '\n')
+                charClasses[c] = NEWLINE;
+            else if (Scanner.isWhitespace(c))
+                charClasses[c] = WHITESPACE;
+        }
+        int classCount = NEWLINE + 1;
+        Set<String> delimited = new TreeSet<>(operators);
+        delimited.add(lineComment);
+        delimited.add(blockStart);
+        delimited.add(blockEnd);
+        for (String s : delimited)
+        {
+            for (char c : s.toCharArray())
+            {
+                if (c >= 128 || (charClasses[c] != OTHER && charClasses[c] <= NEWLINE))
+                {
+                    throw new IllegalArgumentException("Operators may only use ASCII punctuation: " + s);
+                }
+                if (charClasses[c] == OTHER)
+                    charClasses[c] = (byte) classCount++;
+            }
+        }
+
+        Builder b = new Builder(classCount);
+        int start = b.addState(null, false, null);
+
+        int identifier = b.addState(TokenType.IDENTIFIER, false, null);
+        b.set(start, LETTER, identifier);
+        b.set(identifier, LETTER, identifier);
+        b.set(identifier, DIGIT, identifier);
+
+        int number = b.addState(TokenType.NUMBER, false, null);
+        b.set(start, DIGIT, number);
+        b.set(number, DIGIT, number);
+
+        int whitespace = b.addState(null, true, null);
+        for (int cls : new int[] {WHITESPACE, NEWLINE})
+        {
+            b.set(start, cls, whitespace);
+            b.set(whitespace, cls, whitespace);
+        }
+
+        // Operators (and comment openers) form a trie rooted at the start state.
+        Map<String, Integer> prefixes = new HashMap<>();
+        Map<Integer, Integer> symbols = new HashMap<>();
+        prefixes.put("", start);
+        for (String s : new TreeSet<>(operators))
+        {
+            int state = b.addPrefixes(prefixes, charClasses, s);
+            b.tokenTypes.set(state, TokenType.OPERATOR);
+            b.errors.set(state, null);
+            symbols.put(state, Symbol.of(s));
+        }
+
+        // Line comments run up to and including the end of the line, or to the end of input.
+        int lineState = b.addDelimiter(prefixes, charClasses, lineComment, true, null);
+        int lineEnd = b.addState(null, true, null);
+        for (int cls = OTHER; cls < classCount; cls++)
+            b.set(lineState, cls, cls == NEWLINE ? lineEnd : lineState);
+
+        // Block comments: body, body after the first char of blockEnd, body after the
+        // first char of blockStart (which may open a nested comment), and the end.
+        String unterminated = "Unterminated block comment";
+        int body = b.addDelimiter(prefixes, charClasses, blockStart, false, unterminated);
+        int closing = b.addState(null, false, unterminated);
+        int opening = b.addState(null, false, unterminated);
+        int blockEndState = b.addState(null, true, null);
+        for (int from : new int[] {body, closing, opening})
+        {
+            for (int cls = OTHER; cls < classCount; cls++)
+                b.set(from, cls, body);
+            b.set(from, charClasses[blockEnd.charAt(0)], closing);
+            b.set(from, charClasses[blockStart.charAt(0)], opening);
+        }
+        b.set(closing, charClasses[blockEnd.charAt(1)], blockEndState | CLOSE_NESTED);
+        b.set(opening, charClasses[blockStart.charAt(1)], body | OPEN_NESTED);
+
+        int[] stateSymbols = new int[b.transitions.size()];
+        symbols.forEach((state, symbol) -> stateSymbols[state] = symbol);
+
+        return new LexerTable(charClasses, b.transitions.toArray(new int[0][]),
+                b.tokenTypes.toArray(new TokenType[0]), toArray(b.skip),
+                b.errors.toArray(new String[0]), stateSymbols, body);
+    }
+
+    /**
+     * Converts a list of booleans into an array.
+     * @param list the list
+     * @return an array with the same elements
+     */
+    private static boolean[] toArray(List<Boolean> list)
+    {
+        boolean[] ret = new boolean[list.size()];
+        for (int i = 0; i < ret.length; i++)
+            ret[i] = list.get(i);
+        return ret;
+    }
+
+    /**
+     * Accumulates the states of a lexer table while it is being built.
+     */
+    private static class Builder
+    {
+        private final int classCount;
+        private final List<int[]> transitions = new ArrayList<>();
+        private final List<TokenType> tokenTypes = new ArrayList<>();
+        private final List<Boolean> skip = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+
+        /**
+         * Constructs a builder, containing only the dead state.
+         * @param classCount the number of character classes
+         */
+        Builder(int classCount)
+        {
+            this.classCount = classCount;
+            addState(null, false, null);
+        }
+
+        /**
+         * Adds a state with no transitions.
+         * @param type the type of token accepted in the state, or null.
+         * @param skip whether the text accepted in the state is skipped.
+         * @param error the error to report when scanning stops in the state, or null.
+         * @return the new state
+         */
+        int addState(TokenType type, boolean skip, String error)
+        {
+            transitions.add(new int[classCount]);
+            tokenTypes.add(type);
+            this.skip.add(skip);
+            errors.add(error);
+            return transitions.size() - 1;
+        }
+
+        /**
+         * Sets a transition.
+         * @param from the source state
+         * @param charClass the character class
+         * @param to the target state, possibly with flags.
+         */
+        void set(int from, int charClass, int to)
+        {
+            transitions.get(from)[charClass] = to;
+        }
+
+        /**
+         * Adds a string to the operator trie, and gets the state reached after it.
+         * @param prefixes the states of the trie, by the prefix that reaches them
+         * @param charClasses the character class of every ASCII character
+         * @param s the string to add
+         * @return the state reached after s
+         */
+        int addPrefixes(Map<String, Integer> prefixes, byte[] charClasses, String s)
+        {
+            int state = prefixes.get("");
+            for (int i = 1; i <= s.length(); i++)
+            {
+                String prefix = s.substring(0, i);
+                Integer next = prefixes.get(prefix);
+                if (next == null)
+                {
+                    next = addState(null, false, "Invalid Operator");
+                    prefixes.put(prefix, next);
+                    set(state, charClasses[s.charAt(i - 1)], next);
+                }
+                state = next;
+            }
+            return state;
+        }
+
+        /**
+         * Adds a comment delimiter to the operator trie, and gets the state reached after it.
+         * @param prefixes the states of the trie, by the prefix that reaches them
+         * @param charClasses the character class of every ASCII character
+         * @param s the delimiter
+         * @param skip whether the text accepted in the final state is skipped.
+         * @param error the error to report when scanning stops in the final state, or null.
+         * @return the state reached after s
+         * @throws IllegalArgumentException if s is also an operator.
+         */
+        int addDelimiter(Map<String, Integer> prefixes, byte[] charClasses, String s,
+                         boolean skip, String error)
+        {
+            int state = addPrefixes(prefixes, charClasses, s);
+            if (tokenTypes.get(state) != null)
+                throw new IllegalArgumentException(s + " is both an operator and a comment delimiter");
+            this.skip.set(state, skip);
+            errors.set(state, error);
+            return state;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package scanner;
+
+import scanner.Token.TokenType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the lexer table of the Scanner class against a reference lexer, written out by
+ * hand below from the rules that the table is generated from: the longest operator wins,
+ * and neither the table nor the reference backs up, so a prefix of an operator that is
+ * not an operator itself (such as a lone &amp;) is an error. Every token must have the same
+ * type and text, and scanning must fail at the same token. Keywords and operators must
+ * also have the symbol ID of their text, and the keyword table must tell every keyword
+ * apart from words that share its first letter, last letter and length, which hash alike.
+ *
+ * @author Agastya Ravuri
+ * @version 4.9.2024
+ */
+public class LexerTester
+{
+    /**
+     * Sources with the tokens that they must scan to, which also check the reference.
+     */
+    private static final String[][] EXPECTED = {
+            {"x<=y", "IDENTIFIER x", "OPERATOR <=", "IDENTIFIER y", "EOF EOF"},
+            {"a:=b<>1", "IDENTIFIER a", "OPERATOR :=", "IDENTIFIER b", "OPERATOR <>", "NUMBER 1", "EOF EOF"},
+            {"12ab", "NUMBER 12", "IDENTIFIER ab", "EOF EOF"},
+            {"a&&b||c", "IDENTIFIER a", "OPERATOR &&", "IDENTIFIER b", "OPERATOR ||", "IDENTIFIER c", "EOF EOF"},
+            {"x /* a /* b */ c */ y // z", "IDENTIFIER x", "IDENTIFIER y", "EOF EOF"},
+            {"<<=", "OPERATOR <", "OPERATOR <=", "EOF EOF"},
+            {"x & y", "IDENTIFIER x", "error"},
+            {"x := 1 /* open", "IDENTIFIER x", "OPERATOR :=", "NUMBER 1", "error"},
+            {"x $ y", "IDENTIFIER x", "EOF EOF"},
+            {"BEGIN BEGINS BEGI begin", "KEYWORD BEGIN", "IDENTIFIER BEGINS", "IDENTIFIER BEGI",
+                    "IDENTIFIER begin", "EOF EOF"},
+            {"mod MOD modx TO TOO", "KEYWORD mod", "IDENTIFIER MOD", "IDENTIFIER modx", "KEYWORD TO",
+                    "IDENTIFIER TOO", "EOF EOF"},
+    };
+
+    /**
+     * Prefixes of operators and comment delimiters that are not operators, and other
+     * inputs near the edges of the rules.
+     */
+    private static final String[] NEAR_MISSES = {
+            "&", "|", ":", "&x", "x&", "& &", "|&", "&|", ": =", ":==", "&&&", "|||",
+            "<<=", "<>=", ">==", "=<", "=>", "><", "!", "!=", "#", "a.b", "1.5", "12ab",
+            "ab12", "x$y", "/", "/ /", "/ *", "*/", "/**/", "/***/", "/*/", "/* /* */",
+            "/* /* */ */ x", "/* * / */ y", "// comment", "x // comment\ny",
+            "x /* a\nb */ y", "/*", "x := 1 /* unterminated", "\t\r\n", "",
+    };
+
+    /**
+     * Tests the lexer.
+     * @param args arguments from the command line
+     * @throws IOException when a file cannot be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String[] files = {"ScannerTest.txt", "scannerTestAdvanced.txt", "fact.txt", "ParserTest.txt",
+                "parserTest4.txt", "parserTest6.txt", "parserTest7.txt", "parserTest8.txt", "parserTest8_5.txt"};
+        for (String file : files)
+            System.out.println(file + ": " + compare(Files.readString(Path.of(file))));
+
+        for (String[] c : EXPECTED)
+        {
+            List<String> expected = List.of(c).subList(1, c.length);
+            boolean right = expected.equals(scan(new Scanner(c[0]))) && expected.equals(reference(c[0]));
+            System.out.println(quote(c[0]) + ": " + (right ? "expected" : "WRONG " + scan(new Scanner(c[0]))));
+        }
+
+        List<String> operators = new ArrayList<>(Scanner.OPERATORS);
+        boolean same = true;
+        for (String a : operators)
+        {
+            same &= compare(a).equals("same");
+            for (String b : operators)
+            {
+                same &= compare(a + b).equals("same");
+                same &= compare(a + " " + b).equals("same");
+                same &= compare("x" + a + "1" + b + "y").equals("same");
+            }
+        }
+        System.out.println("operators and pairs of operators: " + (same ? "same" : "DIFFERENT"));
+
+        for (String s : NEAR_MISSES)
+            System.out.println(quote(s) + ": " + compare(s));
+
+        boolean found = true;
+        same = true;
+        for (String keyword : Scanner.KEYWORDS)
+        {
+            found &= lookup(keyword) == Symbol.of(keyword);
+            for (String word : nearKeywords(keyword))
+            {
+                found &= Scanner.KEYWORDS.contains(word) || lookup(word) == Symbol.NONE;
+                same &= compare(word).equals("same");
+                same &= compare("x " + word + " " + keyword + "(" + word + keyword + ")").equals("same");
+            }
+        }
+        System.out.println("keyword table: " + (found ? "right" : "WRONG"));
+        System.out.println("keywords and near misses: " + (same ? "same" : "DIFFERENT"));
+    }
+
+    /**
+     * Generates words that are almost a keyword: every prefix, the keyword followed by a
+     * letter or a digit, the keyword in other case, and the keyword with each letter
+     * after the first and before the last changed, which hashes like the keyword.
+     * @param keyword the keyword
+     * @return the words
+     */
+    private static List<String> nearKeywords(String keyword)
+    {
+        List<String> words = new ArrayList<>();
+        for (int i = 1; i < keyword.length(); i++)
+            words.add(keyword.substring(0, i));
+        words.add(keyword + "x");
+        words.add(keyword + "1");
+        words.add(keyword.toLowerCase());
+        words.add(keyword.toUpperCase());
+        words.add(keyword.substring(1));
+        for (int i = 1; i < keyword.length() - 1; i++)
+        {
+            char c = keyword.charAt(i);
+            words.add(keyword.substring(0, i) + (char) (c == 'z' || c == 'Z' ? c - 1 : c + 1)
+                    + keyword.substring(i + 1));
+        }
+        return words;
+    }
+
+    /**
+     * Looks up a word in the keyword table of the Scanner.
+     * @param word the word
+     * @return the symbol ID of the word, or Symbol.NONE if it is not a keyword.
+     */
+    private static int lookup(String word)
+    {
+        return Scanner.KEYWORD_TABLE.lookup(word.toCharArray(), 0, word.length());
+    }
+
+    /**
+     * Scans a source with a Scanner and with the reference lexer.
+     * @param text the source
+     * @return "same" if both produce the same tokens, or what each produced otherwise.
+     */
+    private static String compare(String text)
+    {
+        List<String> expected = reference(text);
+        List<String> actual = scan(new Scanner(text));
+        return expected.equals(actual) ? "same" : "DIFFERENT\n  expected " + expected + "\n  actual   " + actual;
+    }
+
+    /**
+     * Scans every token with a Scanner.
+     * @param sc the scanner
+     * @return the type and text of every token, then "error" if scanning failed. A token
+     *         whose symbol ID is not that of its text is followed by "wrong symbol".
+     */
+    static List<String> scan(Scanner sc)
+    {
+        List<String> tokens = new ArrayList<>();
+        try
+        {
+            Token token;
+            do
+            {
+                token = sc.nextToken();
+                tokens.add(token.getType() + " " + token.getValue());
+                boolean symbol = token.getType() == TokenType.KEYWORD || token.getType() == TokenType.OPERATOR;
+                if (token.getSymbol() != (symbol ? Symbol.of(token.getValue()) : Symbol.NONE))
+                    tokens.add("wrong symbol");
+            }
+            while (token.getType() != TokenType.EOF);
+        }
+        catch (ScanErrorException e)
+        {
+            tokens.add("error");
+        }
+        return tokens;
+    }
+
+    /**
+     * Scans every token by hand, without the lexer table.
+     * @param text the source
+     * @return the type and text of every token, then "error" if scanning failed.
+     */
+    static List<String> reference(String text)
+    {
+        List<String> tokens = new ArrayList<>();
+        int end = text.indexOf('$') < 0 ? text.length() : text.indexOf('$');
+        int i = 0;
+        while (true)
+        {
+            while (i < end && " \t\r\n".indexOf(text.charAt(i)) >= 0)
+                i++;
+            if (i == end)
+                break;
+            if (text.startsWith(Scanner.LINE_COMMENT, i))
+            {
+                int newline = text.indexOf('\n', i);
+                i = newline < 0 || newline >= end ? end : newline + 1;
+                continue;
+            }
+            if (text.startsWith(Scanner.BLOCK_COMMENT_START, i))
+            {
+                int depth = 1;
+                i += 2;
+                while (depth > 0 && i + 1 < end)
+                {
+                    if (text.startsWith(Scanner.BLOCK_COMMENT_END, i))
+                    {
+                        depth--;
+                        i += 2;
+                    }
+                    else if (text.startsWith(Scanner.BLOCK_COMMENT_START, i))
+                    {
+                        depth++;
+                        i += 2;
+                    }
+                    else
+                        i++;
+                }
+                if (depth > 0)
+                {
+                    tokens.add("error");
+                    return tokens;
+                }
+                continue;
+            }
+
+            int start = i;
+            char c = text.charAt(i);
+            TokenType type;
+            if (Character.isLetter(c) && c < 128)
+            {
+                while (i < end && Character.isLetterOrDigit(text.charAt(i)) && text.charAt(i) < 128)
+                    i++;
+                type = Scanner.KEYWORDS.contains(text.substring(start, i))
+                        ? TokenType.KEYWORD : TokenType.IDENTIFIER;
+            }
+            else if (Character.isDigit(c) && c < 128)
+            {
+                while (i < end && Character.isDigit(text.charAt(i)) && text.charAt(i) < 128)
+                    i++;
+                type = TokenType.NUMBER;
+            }
+            else
+            {
+                // Follow the longest prefix of any operator, then accept it only if it is one.
+                int length = 0;
+                for (String operator : Scanner.OPERATORS)
+                {
+                    int n = 0;
+                    while (n < operator.length() && start + n < end && operator.charAt(n) == text.charAt(start + n))
+                        n++;
+                    length = Math.max(length, n);
+                }
+                if (length == 0 || !Scanner.OPERATORS.contains(text.substring(start, start + length)))
+                {
+                    tokens.add("error");
+                    return tokens;
+                }
+                i += length;
+                type = TokenType.OPERATOR;
+            }
+            tokens.add(type + " " + text.substring(start, i));
+        }
+        tokens.add(TokenType.EOF + " EOF");
+        return tokens;
+    }
+
+    /**
+     * Quotes a source so that it can be printed on one line.
+     * @param s the source
+     * @return the source in quotes, with its line breaks and tabs escaped
+     */
+    private static String quote(String s)
+    {
+        return "\"" + s.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t") + "\"";
+    }
+}
@@ -0,0 +1,125 @@
+package scanner;
+
+import scanner.Token.TokenType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the memory-mapped input of the Scanner class against a Scanner over the same
+ * text in a String. The files are mapped a few bytes at a time, so that tokens, comments
+ * and multibyte characters are split across windows at every offset.
+ *
+ * @author Agastya Ravuri
+ * @version 4.13.2024
+ */
+public class MappedScannerTester
+{
+    /**
+     * Characters that take 2, 3 and 4 bytes in UTF-8.
+     */
+    private static final String[] MULTIBYTE = {"\u00e9", "\u20ac", "\ud834\udd1e"};
+
+    /**
+     * Tests the mapped scanner.
+     * @param args arguments from the command line
+     * @throws IOException when a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String[] files = {"ScannerTest.txt", "fact.txt", "parserTest8_5.txt", "scannerTestAdvanced.txt"};
+        for (String file : files)
+        {
+            String text = Files.readString(Path.of(file), StandardCharsets.UTF_8);
+            boolean same = true;
+            for (int window = Scanner.MIN_WINDOW; window <= 64; window++)
+                same &= compare(Path.of(file), text, window);
+            same &= compare(Path.of(file), text, Scanner.MAP_WINDOW);
+            System.out.println(file + ": " + (same ? "same" : "DIFFERENT"));
+        }
+
+        Path temp = Files.createTempFile("mapped", ".txt");
+        try
+        {
+            for (String c : MULTIBYTE)
+            {
+                boolean same = true;
+                for (int window = Scanner.MIN_WINDOW; window <= 12; window++)
+                {
+                    // The padding moves the character across every offset of two windows.
+                    for (int pad = 0; pad <= 2 * window; pad++)
+                    {
+                        String prefix = " ".repeat(pad);
+                        // Last, where the scanner reports it as an invalid character.
+                        same &= compare(temp, prefix + "x := 1;" + c, window);
+                        // In a comment, and in a long identifier carried across windows.
+                        same &= compare(temp, prefix + "/*" + c + c + "*/ abcdefghijklmnop" + c, window);
+                        same &= compare(temp, prefix + "// " + c + "\nx<=y" + c + c, window);
+                    }
+                }
+                System.out.println(c.getBytes(StandardCharsets.UTF_8).length + " bytes: "
+                        + (same ? "same" : "DIFFERENT"));
+            }
+
+            boolean invalid = false;
+            try
+            {
+                new Scanner(temp, Scanner.MIN_WINDOW - 1, StandardCharsets.UTF_8);
+            }
+            catch (IllegalArgumentException e)
+            {
+                invalid = true;
+            }
+            System.out.println("window of " + (Scanner.MIN_WINDOW - 1) + " bytes: "
+                    + (invalid ? "rejected" : "ACCEPTED"));
+        }
+        finally
+        {
+            Files.delete(temp);
+        }
+    }
+
+    /**
+     * Scans text from a file mapped a given number of bytes at a time, and from a String.
+     * @param path the file; written with the text first, unless it already holds it
+     * @param text the text of the file
+     * @param window the number of bytes to map at once
+     * @return true if both scanners produce the same tokens and the same error, if any
+     * @throws IOException when the file cannot be read or written
+     */
+    private static boolean compare(Path path, String text, int window) throws IOException
+    {
+        if (!Files.readString(path, StandardCharsets.UTF_8).equals(text))
+            Files.writeString(path, text, StandardCharsets.UTF_8);
+        return scan(new Scanner(path, window, StandardCharsets.UTF_8)).equals(scan(new Scanner(text)));
+    }
+
+    /**
+     * Scans every token.
+     * @param sc the scanner
+     * @return the type and text of every token, then the message of the scan error, if any
+     */
+    private static List<String> scan(Scanner sc)
+    {
+        List<String> tokens = new ArrayList<>();
+        try
+        {
+            Token token;
+            do
+            {
+                token = sc.nextToken();
+                tokens.add(token.getType() + " " + token.getValue());
+            }
+            while (token.getType() != TokenType.EOF);
+        }
+        catch (ScanErrorException e)
+        {
+            tokens.add(e.getMessage());
+        }
+        return tokens;
+    }
+}
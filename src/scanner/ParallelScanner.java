@@ -0,0 +1,291 @@
+package scanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * ParallelScanner scans a large buffer on several threads, producing exactly the tokens
+ * that a single Scanner would.
+ * <p>
+ * The buffer is split into chunks just after a newline, and every chunk is scanned on a
+ * ForkJoinPool as if it started between two tokens. Scanning a chunk continues past its
+ * end until the scanner is between tokens again; that position is where the next chunk
+ * really starts. Usually that is exactly where the next chunk was started, and its tokens
+ * are used as they are. Otherwise (for example, when a block comment, possibly nested,
+ * runs across the boundary) the next chunk is rescanned from the right position until it
+ * reaches a token that the speculative scan also started, since from there on the two
+ * scans are identical.
+ * <p>
+ * Usage:
+ * TokenBuffer tokens = new ParallelScanner(chars, 0, chars.length).scan();
+ *
+ * @author Agastya Ravuri
+ * @version 4.15.2024
+ */
+public class ParallelScanner
+{
+    /**
+     * The smallest number of characters that is worth scanning as a separate chunk.
+     */
+    public static final int MIN_CHUNK = 1 << 20;
+
+    private static final int BATCH_SIZE = 4096;
+
+    private static final int RESCAN_BATCH_SIZE = 16;
+
+    private final char[] buf;
+    private final int offset;
+    private final int length;
+    private final ForkJoinPool pool;
+    private final int chunkCount;
+
+    /**
+     * Constructs a parallel scanner that scans a slice of a buffer on the common pool.
+     *
+     * @param buf the buffer to scan
+     * @param offset the index of the first character to scan
+     * @param length the number of characters to scan
+     */
+    public ParallelScanner(char[] buf, int offset, int length)
+    {
+        this(buf, offset, length, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a parallel scanner that scans a slice of a buffer.
+     *
+     * @param buf the buffer to scan
+     * @param offset the index of the first character to scan
+     * @param length the number of characters to scan
+     * @param pool the pool to scan chunks on
+     */
+    public ParallelScanner(char[] buf, int offset, int length, ForkJoinPool pool)
+    {
+        this(buf, offset, length, pool,
+                Math.max(1, Math.min(pool.getParallelism() * 4, length / MIN_CHUNK)));
+    }
+
+    /**
+     * Constructs a parallel scanner that scans a slice of a buffer in a given number of chunks.
+     *
+     * @param buf the buffer to scan
+     * @param offset the index of the first character to scan
+     * @param length the number of characters to scan
+     * @param pool the pool to scan chunks on
+     * @param chunkCount the number of chunks to split the buffer into, at most
+     */
+    public ParallelScanner(char[] buf, int offset, int length, ForkJoinPool pool, int chunkCount)
+    {
+        this.buf = buf;
+        this.offset = offset;
+        this.length = length;
+        this.pool = pool;
+        this.chunkCount = chunkCount;
+    }
+
+    /**
+     * Scans every token in the buffer.
+     *
+     * @return a token buffer containing every token, in order, without the EOF token.
+     * @throws ScanErrorException if the input is not valid; the error is the one a single
+     *                            Scanner would have thrown first.
+     */
+    public TokenBuffer scan() throws ScanErrorException
+    {
+        int[] splits = split();
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i < splits.length - 1; i++)
+        {
+            int from = splits[i];
+            int limit = splits[i + 1];
+            tasks.add(() -> scanChunk(from, limit));
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (Future<Chunk> f : pool.invokeAll(tasks))
+        {
+            try
+            {
+                chunks.add(f.get());
+            }
+            catch (Exception e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return stitch(chunks);
+    }
+
+    /**
+     * Chooses the chunk boundaries: roughly equal slices, moved forward to just after a newline.
+     *
+     * @return the start of every chunk, followed by the end of the input.
+     */
+    private int[] split()
+    {
+        int end = offset + length;
+        List<Integer> splits = new ArrayList<>();
+        splits.add(offset);
+        for (int i = 1; i < chunkCount; i++)
+        {
+            int p = Math.max(offset + (int) ((long) length * i / chunkCount), splits.get(splits.size() - 1));
+            while (p < end && buf[p] != '\n')
+                p++;
+            if (p + 1 < end && p + 1 > splits.get(splits.size() - 1))
+                splits.add(p + 1);
+        }
+        splits.add(end);
+        return splits.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Scans one chunk, assuming that it starts between two tokens.
+     *
+     * @param from the index to start scanning at
+     * @param limit the index of the start of the next chunk
+     * @return the tokens of the chunk, and where scanning stopped
+     */
+    private Chunk scanChunk(int from, int limit)
+    {
+        Scanner sc = new Scanner(buf, from, offset + length - from);
+        sc.setLimit(limit);
+        Chunk chunk = new Chunk(from);
+        TokenBuffer batch = new TokenBuffer(BATCH_SIZE);
+        try
+        {
+            while (sc.nextTokens(batch) > 0)
+                chunk.tokens.append(batch, 0, batch.size());
+        }
+        catch (ScanErrorException e)
+        {
+            chunk.tokens.append(batch, 0, batch.size());
+            chunk.error = e;
+        }
+        chunk.stop = sc.hasNext() ? sc.position() : -1;
+        return chunk;
+    }
+
+    /**
+     * Joins the chunks into one token stream, rescanning the start of any chunk that was
+     * not actually started between two tokens.
+     *
+     * @param chunks the scanned chunks, in order
+     * @return every token, in order
+     * @throws ScanErrorException if the input is not valid
+     */
+    private TokenBuffer stitch(List<Chunk> chunks) throws ScanErrorException
+    {
+        Chunk first = chunks.get(0);
+        TokenBuffer ret = first.tokens;
+        int stop = first.stop;
+        ScanErrorException error = first.error;
+
+        for (int i = 1; i < chunks.size() && error == null && stop != -1; i++)
+        {
+            Chunk c = chunks.get(i);
+            if (stop == c.from)
+            {
+                ret.append(c.tokens, 0, c.tokens.size());
+                stop = c.stop;
+                error = c.error;
+                continue;
+            }
+
+            // c was not started between two tokens, so rescan it from where the last chunk stopped.
+            int limit = i + 1 < chunks.size() ? chunks.get(i + 1).from : offset + length;
+            Chunk fixed = rescan(c, stop, limit);
+            ret.append(fixed.tokens, 0, fixed.tokens.size());
+            if (fixed.match >= 0)
+            {
+                ret.append(c.tokens, fixed.match, c.tokens.size());
+                stop = c.stop;
+                error = c.error;
+            }
+            else
+            {
+                stop = fixed.stop;
+                error = fixed.error;
+            }
+        }
+
+        if (error != null)
+            throw error;
+        return ret;
+    }
+
+    /**
+     * Rescans a chunk from the position where the previous chunk actually stopped, until
+     * a token starts at the same position as one of the tokens of the speculative scan.
+     *
+     * @param c the speculatively scanned chunk
+     * @param from the index to start scanning at
+     * @param limit the index of the start of the next chunk
+     * @return the tokens before the first token that lined up, and the index of that token in
+     *         c.tokens, or -1 if no token lined up (then the chunk's stop and error are set).
+     */
+    private Chunk rescan(Chunk c, int from, int limit)
+    {
+        Scanner sc = new Scanner(buf, from, offset + length - from);
+        sc.setLimit(limit);
+        Chunk fixed = new Chunk(from);
+        TokenBuffer batch = new TokenBuffer(RESCAN_BATCH_SIZE);
+        int j = 0;
+        while (true)
+        {
+            try
+            {
+                sc.nextTokens(batch);
+            }
+            catch (ScanErrorException e)
+            {
+                fixed.error = e;
+            }
+
+            for (int k = 0; k < batch.size(); k++)
+            {
+                int start = batch.getStart(k);
+                while (j < c.tokens.size() && c.tokens.getStart(j) < start)
+                    j++;
+                if (j < c.tokens.size() && c.tokens.getStart(j) == start)
+                {
+                    fixed.tokens.append(batch, 0, k);
+                    fixed.match = j;
+                    fixed.error = null;
+                    return fixed;
+                }
+            }
+            fixed.tokens.append(batch, 0, batch.size());
+
+            if (fixed.error != null || batch.size() == 0)
+            {
+                fixed.stop = sc.hasNext() ? sc.position() : -1;
+                return fixed;
+            }
+        }
+    }
+
+    /**
+     * The result of scanning one chunk.
+     */
+    private static class Chunk
+    {
+        private final int from;
+        private final TokenBuffer tokens = new TokenBuffer(BATCH_SIZE);
+        private int stop;
+        private ScanErrorException error;
+        private int match = -1;
+
+        /**
+         * Constructs an empty chunk.
+         * @param from the index the chunk was scanned from
+         */
+        Chunk(int from)
+        {
+            this.from = from;
+        }
+    }
+}
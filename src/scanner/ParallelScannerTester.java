@@ -0,0 +1,116 @@
+package scanner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests the ParallelScanner class against a single Scanner, and measures how it scales.
+ *
+ * @author Agastya Ravuri
+ * @version 4.15.2024
+ */
+public class ParallelScannerTester
+{
+    /**
+     * Source that is repeated to generate a large file. Block comments run across lines,
+     * and are nested, so that chunk boundaries often fall inside them.
+     */
+    private static final String UNIT =
+            "PROCEDURE fact(n);\n" +
+            "BEGIN\n" +
+            "    IF n = 0 THEN /* base\n" +
+            "       case /* nested\n" +
+            "       */ still a comment */\n" +
+            "        fact := 1;\n" +
+            "    ELSE\n" +
+            "        fact := fact(n - 1) * n; // recurse\n" +
+            "\n" +
+            "\n" +
+            "    WRITELN(fact);\n" +
+            "END;\n";
+
+    /**
+     * Tests the parallel scanner.
+     * @param args the files to compare; the size in MB of a generated file is optional last.
+     * @throws IOException when a file cannot be read
+     * @throws ScanErrorException when there is a scanning error
+     */
+    public static void main(String[] args) throws IOException, ScanErrorException
+    {
+        String[] files = {"ScannerTest.txt", "fact.txt", "parserTest8_5.txt", "scannerTestAdvanced.txt"};
+        for (String file : files)
+        {
+            char[] chars = Files.readString(Path.of(file)).toCharArray();
+            boolean same = true;
+            for (int chunks = 1; chunks <= chars.length && chunks <= 64; chunks++)
+            {
+                TokenBuffer parallel = new ParallelScanner(chars, 0, chars.length,
+                        ForkJoinPool.commonPool(), chunks).scan();
+                same &= sameTokens(serial(chars), parallel);
+            }
+            System.out.println(file + ": " + (same ? "same" : "DIFFERENT"));
+        }
+
+        int megabytes = args.length > 0 ? Integer.parseInt(args[args.length - 1]) : 64;
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < megabytes * 1_000_000)
+            sb.append(UNIT);
+        char[] chars = sb.toString().toCharArray();
+
+        long start = System.nanoTime();
+        TokenBuffer expected = serial(chars);
+        double serialSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("serial: %d tokens, %.1f MB/s%n",
+                expected.size(), chars.length / serialSeconds / 1e6);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2)
+        {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            start = System.nanoTime();
+            TokenBuffer actual = new ParallelScanner(chars, 0, chars.length, pool).scan();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d threads: %s, %.1f MB/s, %.2fx serial%n", threads,
+                    sameTokens(expected, actual) ? "same" : "DIFFERENT",
+                    chars.length / seconds / 1e6, serialSeconds / seconds);
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Scans a buffer with a single scanner.
+     * @param chars the buffer
+     * @return every token in the buffer
+     * @throws ScanErrorException when there is a scanning error
+     */
+    private static TokenBuffer serial(char[] chars) throws ScanErrorException
+    {
+        Scanner sc = new Scanner(chars, 0, chars.length);
+        TokenBuffer ret = new TokenBuffer(1024);
+        TokenBuffer batch = new TokenBuffer(1024);
+        while (sc.nextTokens(batch) > 0)
+            ret.append(batch, 0, batch.size());
+        return ret;
+    }
+
+    /**
+     * Checks whether two token buffers contain the same tokens.
+     * @param a the first buffer
+     * @param b the second buffer
+     * @return true if every token has the same type, position, length and symbol, false otherwise.
+     */
+    private static boolean sameTokens(TokenBuffer a, TokenBuffer b)
+    {
+        if (a.size() != b.size())
+            return false;
+        for (int i = 0; i < a.size(); i++)
+        {
+            if (a.getType(i) != b.getType(i) || a.getStart(i) != b.getStart(i)
+                    || a.getLength(i) != b.getLength(i) || a.getSymbol(i) != b.getSymbol(i))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package scanner;
+
+import java.util.concurrent.locks.LockSupport;
+import scanner.Token.TokenType;
+
+/**
+ * PipelinedScanner runs a Scanner on its own thread, so that scanning overlaps with
+ * whatever consumes the tokens (usually the Parser).
+ * <p>
+ * Tokens are passed through a TokenRing. When the ring is full the scanner thread waits
+ * for the consumer to catch up, and when it is empty the consumer waits for the scanner.
+ * A ScanErrorException, RuntimeException or Error on the scanner thread is rethrown by
+ * nextToken() once the consumer has taken every token before it.
+ * <p>
+ * The scanner thread only stops on its own once it reaches the end of the input, so a
+ * PipelinedScanner must be closed when parsing ends, even if it ends early:
+ * <pre>
+ * try (PipelinedScanner sc = new PipelinedScanner(new Scanner(inStream)))
+ * {
+ *     Program program = new Parser(sc).parseProgram();
+ * }
+ * </pre>
+ *
+ * @author Agastya Ravuri
+ * @version 4.17.2024
+ */
+public class PipelinedScanner implements TokenSource
+{
+    /**
+     * The default number of tokens that the scanner may get ahead of the consumer.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 12;
+
+    private static final int SPINS = 100;
+    private static final int YIELDS = 200;
+    private static final long PARK_NANOS = 10_000;
+
+    private final TokenRing ring;
+    private final Thread producer;
+
+    private volatile boolean done;
+    private volatile boolean closed;
+    private volatile Throwable error;
+
+    private Token eofToken;
+
+    /**
+     * Constructs a pipelined scanner and starts scanning.
+     * @param sc the scanner to run on a separate thread
+     */
+    public PipelinedScanner(Scanner sc)
+    {
+        this(sc, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a pipelined scanner and starts scanning.
+     * @param sc the scanner to run on a separate thread
+     * @param capacity the number of tokens that the scanner may get ahead; a power of two.
+     */
+    public PipelinedScanner(Scanner sc, int capacity)
+    {
+        ring = new TokenRing(capacity);
+        producer = new Thread(() -> produce(sc), "scanner");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /**
+     * Scans every token into the ring. Runs on the scanner thread.
+     * @param sc the scanner
+     */
+    private void produce(Scanner sc)
+    {
+        try
+        {
+            Token token;
+            do
+            {
+                if (closed)
+                    return;
+                token = sc.nextToken();
+                int idle = 0;
+                while (!ring.offer(token))
+                {
+                    if (closed)
+                        return;
+                    idle = idle(idle);
+                }
+            }
+            while (token.getType() != TokenType.EOF);
+        }
+        catch (ScanErrorException | RuntimeException | Error e)
+        {
+            error = e;
+        }
+        finally
+        {
+            done = true;
+        }
+    }
+
+    /**
+     * Gets the next token, waiting for the scanner thread if it has not been scanned yet.
+     *
+     * @return the next token.
+     * @throws ScanErrorException if the scanner thread found an invalid token.
+     * @throws RuntimeException if the scanner thread failed with one.
+     * @throws Error if the scanner thread failed with one.
+     */
+    @Override
+    public Token nextToken() throws ScanErrorException
+    {
+        if (eofToken != null)
+            return eofToken;
+
+        int idle = 0;
+        while (true)
+        {
+            Token token = ring.poll();
+            if (token != null)
+            {
+                if (token.getType() == TokenType.EOF)
+                    eofToken = token;
+                return token;
+            }
+            if (done)
+            {
+                // The scanner may have published its last tokens just before finishing.
+                token = ring.poll();
+                if (token != null)
+                {
+                    if (token.getType() == TokenType.EOF)
+                        eofToken = token;
+                    return token;
+                }
+                Throwable e = error;
+                if (e instanceof ScanErrorException)
+                {
+                    ScanErrorException rethrown = new ScanErrorException(e.getMessage());
+                    rethrown.initCause(e);
+                    throw rethrown;
+                }
+                if (e instanceof RuntimeException)
+                    throw (RuntimeException) e;
+                if (e instanceof Error)
+                    throw (Error) e;
+                eofToken = new Token(TokenType.EOF, "EOF");
+                return eofToken;
+            }
+            idle = idle(idle);
+        }
+    }
+
+    /**
+     * Stops the scanner thread, if it is still running. Tokens that have not been consumed
+     * are discarded. The thread stops after the token that it is scanning, if any; it is
+     * not interrupted, since that would close a file channel that it is reading.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        LockSupport.unpark(producer);
+    }
+
+    /**
+     * Gets the scanner thread, so that testers can check that it stops.
+     * @return the scanner thread
+     */
+    Thread getThread()
+    {
+        return producer;
+    }
+
+    /**
+     * Waits a little while for the other thread: first by spinning, then by yielding,
+     * then by parking.
+     * @param idle the number of times this thread has already waited
+     * @return the new number of times this thread has waited
+     */
+    private static int idle(int idle)
+    {
+        if (idle < SPINS)
+            Thread.onSpinWait();
+        else if (idle < YIELDS)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(PARK_NANOS);
+        return idle + 1;
+    }
+}
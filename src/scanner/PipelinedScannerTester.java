@@ -0,0 +1,162 @@
+package scanner;
+
+import parser.Parser;
+import scanner.Token.TokenType;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests the PipelinedScanner class against a single Scanner, with a ring of 2 tokens, so
+ * that the scanner thread is almost always waiting on a full ring, and with the default
+ * ring. Also checks that errors on the scanner thread reach the consumer, and that closing
+ * a PipelinedScanner stops its thread, even while it is mapping a file, without closing
+ * the file.
+ *
+ * @author Agastya Ravuri
+ * @version 4.17.2024
+ */
+public class PipelinedScannerTester
+{
+    private static final long JOIN_MILLIS = 5000;
+    private static final int CLOSES = 20;
+
+    /**
+     * Tests the pipelined scanner.
+     * @param args arguments from the command line
+     * @throws IOException when a file cannot be read
+     * @throws ScanErrorException when there is a scanning error
+     * @throws InterruptedException when interrupted while waiting for a scanner thread
+     */
+    public static void main(String[] args) throws IOException, ScanErrorException, InterruptedException
+    {
+        String[] files = {"ScannerTest.txt", "fact.txt", "parserTest8_5.txt", "scannerTestAdvanced.txt"};
+        for (String file : files)
+            System.out.println(file + ": " + compare(Files.readString(Path.of(file))));
+        System.out.println("empty: " + compare(""));
+
+        String bad = "x := 1;\ny := 2 # 3;\n";
+        for (int capacity : new int[] {2, PipelinedScanner.DEFAULT_CAPACITY})
+        {
+            String result;
+            try (PipelinedScanner sc = new PipelinedScanner(new Scanner(bad), capacity))
+            {
+                int tokens = 0;
+                while (sc.nextToken().getType() != TokenType.EOF)
+                    tokens++;
+                result = "no error after " + tokens + " tokens";
+            }
+            catch (ScanErrorException e)
+            {
+                result = e.getMessage();
+            }
+            System.out.println("scan error, capacity " + capacity + ": " + result);
+        }
+
+        Scanner failing = new Scanner(bad)
+        {
+            @Override
+            public Token nextToken() throws ScanErrorException
+            {
+                Token token = super.nextToken();
+                if (token.getValue().equals("y"))
+                    throw new IllegalStateException("failed at y");
+                return token;
+            }
+        };
+        try (PipelinedScanner sc = new PipelinedScanner(failing, 2))
+        {
+            while (sc.nextToken().getType() != TokenType.EOF);
+            System.out.println("runtime error: not rethrown");
+        }
+        catch (IllegalStateException e)
+        {
+            System.out.println("runtime error: " + e.getMessage());
+        }
+
+        // The main statement ends the program, so the parser leaves the remaining
+        // statements in the ring, and the scanner thread waits on the full ring.
+        StringBuilder sb = new StringBuilder("WRITELN(1);\n");
+        for (int i = 0; i < 10000; i++)
+            sb.append("x := x + 1;\n");
+        PipelinedScanner abandoned = new PipelinedScanner(new Scanner(sb.toString()), 2);
+        try (abandoned)
+        {
+            new Parser(abandoned).parseProgram();
+        }
+        abandoned.getThread().join(JOIN_MILLIS);
+        System.out.println("abandoned parse: scanner thread "
+                + (abandoned.getThread().isAlive() ? "STILL RUNNING" : "stopped"));
+
+        PipelinedScanner unread = new PipelinedScanner(new Scanner(sb.toString()), 2);
+        unread.close();
+        unread.getThread().join(JOIN_MILLIS);
+        System.out.println("closed before reading: scanner thread "
+                + (unread.getThread().isAlive() ? "STILL RUNNING" : "stopped"));
+
+        // With a tiny window, the scanner thread is almost always mapping the file when
+        // it is closed.
+        Path temp = Files.createTempFile("pipelined", ".txt");
+        try
+        {
+            Files.writeString(temp, sb.toString().repeat(20), StandardCharsets.US_ASCII);
+            boolean open = true;
+            boolean stopped = true;
+            for (int i = 0; i < CLOSES; i++)
+            {
+                try (FileChannel channel = FileChannel.open(temp))
+                {
+                    PipelinedScanner mapped = new PipelinedScanner(
+                            new Scanner(channel, Scanner.MIN_WINDOW, StandardCharsets.US_ASCII), 1 << 20);
+                    mapped.nextToken();
+                    Thread.sleep(5);
+                    mapped.close();
+                    mapped.getThread().join(JOIN_MILLIS);
+                    stopped &= !mapped.getThread().isAlive();
+                    open &= channel.isOpen();
+                }
+            }
+            System.out.println("closed while mapping: scanner thread "
+                    + (stopped ? "stopped" : "STILL RUNNING") + ", channel "
+                    + (open ? "open" : "CLOSED"));
+        }
+        finally
+        {
+            Files.delete(temp);
+        }
+    }
+
+    /**
+     * Scans a source with a single scanner and with pipelined scanners of different
+     * capacities, and compares the tokens.
+     * @param text the source
+     * @return "same" if every scan produces the same tokens, or "DIFFERENT" otherwise.
+     * @throws ScanErrorException when there is a scanning error
+     */
+    private static String compare(String text) throws ScanErrorException
+    {
+        boolean same = true;
+        for (int capacity : new int[] {2, PipelinedScanner.DEFAULT_CAPACITY})
+        {
+            Scanner expected = new Scanner(text);
+            try (PipelinedScanner actual = new PipelinedScanner(new Scanner(text), capacity))
+            {
+                Token token;
+                do
+                {
+                    token = expected.nextToken();
+                    Token other = actual.nextToken();
+                    same &= token.getType() == other.getType()
+                            && token.getValue().equals(other.getValue());
+                }
+                while (token.getType() != TokenType.EOF);
+                // Every call after the end returns EOF again.
+                same &= actual.nextToken().getType() == TokenType.EOF;
+            }
+        }
+        return same ? "same" : "DIFFERENT";
+    }
+}
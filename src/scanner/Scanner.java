@@ -1,7 +1,15 @@
 package scanner;
 
 import java.io.*;
-import java.util.HashSet;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Set;
 import scanner.Token.TokenType;
 
@@ -14,14 +22,44 @@ import scanner.Token.TokenType;
  * Usage:
  * Use nextToken() to progressively get the next scanned token.
  */
-public class Scanner
+public class Scanner implements TokenSource
 {
-    private final BufferedReader in;
+    private char[] buf;
+    private int end;
+    private int pos;
+    private int mark;
     private char currentChar;
     private boolean eof;
 
+    private TokenType tokenType;
+    private int tokenStart;
+    private int tokenLength;
+    private int tokenSymbol;
+    private boolean pending;
+    private int limit = Integer.MAX_VALUE;
+
+    private FileChannel channel;
+    private boolean ownsChannel;
+    private long channelPos;
+    private long channelEnd;
+    private int window;
+    private Charset charset;
+    private CharsetDecoder decoder;
+
+    /**
+     * The number of bytes of a file that are mapped into memory at once, by default.
+     */
+    static final int MAP_WINDOW = 1 << 22;
+
+    /**
+     * The smallest window: a window must hold the longest character, 4 bytes in UTF-8, so
+     * that a character split across windows is always decoded from the next one.
+     */
+    static final int MIN_WINDOW = 4;
+
     /**
      * A set of all valid operators.
+     * To add an operator, add it here; the lexer table is generated from this set.
      */
     public static final Set<String> OPERATORS = Set.of(
             "=",
@@ -34,21 +72,64 @@ public class Scanner
             ")",
             "<",
             ">",
-            "//",
-            "/*",
             "<=",
             ">=",
             "<>",
             ":=",
             ";",
             ",",
-            "."
+            ".",
+            "&&",
+            "||"
+    );
+
+    /**
+     * A set of all reserved words. Identifiers with this text are scanned as keywords.
+     */
+    public static final Set<String> KEYWORDS = Set.of(
+            "BEGIN",
+            "END",
+            "PROCEDURE",
+            "WRITELN",
+            "READLN",
+            "IF",
+            "THEN",
+            "ELSE",
+            "WHILE",
+            "DO",
+            "FOR",
+            "TO",
+            "mod",
+            "True",
+            "False"
     );
 
     /**
-     * Defines a decision tree for scanning an operator.
+     * Starts a comment that runs to the end of the line.
      */
-    public static final Tree<String> OPERATOR_TREE = toScanTree(OPERATORS);
+    public static final String LINE_COMMENT = "//";
+
+    /**
+     * Starts a block comment. Block comments may be nested.
+     */
+    public static final String BLOCK_COMMENT_START = "/*";
+
+    /**
+     * Ends a block comment.
+     */
+    public static final String BLOCK_COMMENT_END = "*/";
+
+    /**
+     * The DFA that recognizes tokens, generated from the rules above.
+     */
+    public static final LexerTable TABLE =
+            LexerTable.build(OPERATORS, LINE_COMMENT, BLOCK_COMMENT_START, BLOCK_COMMENT_END);
+
+    /**
+     * The perfect hash table used to recognize keywords.
+     */
+    public static final KeywordTable KEYWORD_TABLE = KeywordTable.build(KEYWORDS);
+
 
     /**
      * Scanner constructor for construction of a scanner that
@@ -61,11 +142,109 @@ public class Scanner
      */
     public Scanner(InputStream inStream)
     {
-        in = new BufferedReader(new InputStreamReader(inStream));
+        if (inStream instanceof FileInputStream file)
+        {
+            try
+            {
+                openChannel(file.getChannel(), false, MAP_WINDOW, Charset.defaultCharset());
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+
+        char[] chars = new char[0];
+        int length = 0;
+        try
+        {
+            Reader in = new InputStreamReader(inStream);
+            chars = new char[8192];
+            int read;
+            while ((read = in.read(chars, length, chars.length - length)) != -1)
+            {
+                length += read;
+                if (length == chars.length)
+                    chars = Arrays.copyOf(chars, chars.length * 2);
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        buf = chars;
+        end = length;
+        pos = -1;
+        mark = -1;
         eof = false;
         getNextChar();
     }
 
+    /**
+     * Scanner constructor for constructing a scanner that memory-maps a file.
+     * The file is mapped MAP_WINDOW bytes at a time, so files larger than 2 GB are supported.
+     * The channel is closed once the whole file has been scanned.
+     * Usage: Scanner lex = new Scanner(Path.of(<file name>));
+     *
+     * @param path the file to scan
+     * @throws IOException if the file cannot be opened
+     */
+    public Scanner(Path path) throws IOException
+    {
+        this(path, MAP_WINDOW, Charset.defaultCharset());
+    }
+
+    /**
+     * Scanner constructor for constructing a scanner that memory-maps a file a given
+     * number of bytes at a time, in a given charset, so that testers can cross many
+     * windows in a small file whatever the platform charset is.
+     * The channel is closed once the whole file has been scanned.
+     *
+     * @param path the file to scan
+     * @param window the number of bytes to map at once; at least MIN_WINDOW
+     * @param charset the charset of the file
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if the window is smaller than MIN_WINDOW
+     */
+    Scanner(Path path, int window, Charset charset) throws IOException
+    {
+        checkWindow(window);
+        openChannel(FileChannel.open(path, StandardOpenOption.READ), true, window, charset);
+    }
+
+    /**
+     * Scanner constructor for constructing a scanner that memory-maps a file channel a
+     * given number of bytes at a time, in a given charset, starting at its current
+     * position. The channel is not closed by the scanner.
+     *
+     * @param channel the channel to scan
+     * @param window the number of bytes to map at once; at least MIN_WINDOW
+     * @param charset the charset of the channel
+     * @throws IOException if the channel cannot be read
+     * @throws IllegalArgumentException if the window is smaller than MIN_WINDOW
+     */
+    Scanner(FileChannel channel, int window, Charset charset) throws IOException
+    {
+        checkWindow(window);
+        openChannel(channel, false, window, charset);
+    }
+
+    /**
+     * Scanner constructor for constructing a scanner that memory-maps a file channel,
+     * starting at its current position. The channel is not closed by the scanner.
+     * Usage: Scanner lex = new Scanner(FileChannel.open(<path>));
+     *
+     * @param channel the channel to scan
+     * @throws IOException if the channel cannot be read
+     */
+    public Scanner(FileChannel channel) throws IOException
+    {
+        openChannel(channel, false, MAP_WINDOW, Charset.defaultCharset());
+    }
+
     /**
      * Scanner constructor for constructing a scanner that
      * scans a given input string.  It sets the end-of-file flag and then reads
@@ -76,50 +255,171 @@ public class Scanner
      */
     public Scanner(String inString)
     {
-        in = new BufferedReader(new StringReader(inString));
+        this(inString.toCharArray(), 0, inString.length());
+    }
+
+    /**
+     * Scanner constructor for constructing a scanner that scans a slice of a char buffer
+     * in place. Tokens returned by this scanner refer back to the buffer, so it must not
+     * be modified while they are in use.
+     * Usage: Scanner lex = new Scanner(chars, 0, chars.length);
+     *
+     * @param buf the buffer to scan
+     * @param offset the index of the first character to scan
+     * @param length the number of characters to scan
+     */
+    public Scanner(char[] buf, int offset, int length)
+    {
+        this.buf = buf;
+        this.end = offset + length;
+        pos = offset - 1;
+        mark = -1;
         eof = false;
         getNextChar();
     }
 
     /**
-     * Gets the next char.
+     * Checks the size of a window.
      *
-     * @postcondition the next char is in currentChar. if there is no next char, eof=true.
+     * @param window the number of bytes to map at once
+     * @throws IllegalArgumentException if the window is smaller than MIN_WINDOW
      */
-    private void getNextChar()
+    private static void checkWindow(int window)
     {
-        try
+        if (window < MIN_WINDOW)
+            throw new IllegalArgumentException(
+                    "Window must be at least " + MIN_WINDOW + " bytes: " + window);
+    }
+
+    /**
+     * Sets up the scanner to read from a file channel, then reads the first character.
+     *
+     * @param channel the channel to scan
+     * @param owned whether the scanner should close the channel when it is exhausted
+     * @param window the number of bytes to map at once
+     * @param charset the charset of the channel
+     * @throws IOException if the channel cannot be read
+     */
+    private void openChannel(FileChannel channel, boolean owned, int window, Charset charset)
+            throws IOException
+    {
+        this.channel = channel;
+        ownsChannel = owned;
+        this.window = window;
+        this.charset = charset;
+        channelPos = channel.position();
+        channelEnd = channel.size();
+        buf = new char[0];
+        end = 0;
+        pos = -1;
+        mark = -1;
+        eof = false;
+        getNextChar();
+    }
+
+    /**
+     * Maps the next window of the file and decodes it into a new buffer.
+     * Any token that is being scanned (from mark onwards) is carried over to the start of
+     * the new buffer. A new buffer is used for every window so that earlier tokens,
+     * which refer to the old buffer, stay valid.
+     *
+     * @throws IOException if the channel cannot be read
+     * @postcondition if there was more input, pos is the index of the first new character.
+     */
+    private void refill() throws IOException
+    {
+        int keep = mark < 0 ? 0 : end - mark;
+        while (channelPos < channelEnd)
         {
-            int c = in.read();
-            if (c == -1 || c == '$')
+            long size = Math.min(window, channelEnd - channelPos);
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, channelPos, size);
+            char[] next = new char[keep + (int) size];
+            System.arraycopy(buf, end - keep, next, 0, keep);
+            int length = decode(bytes, next, keep, channelPos + size == channelEnd);
+            channelPos += bytes.position();
+            if (length > keep)
             {
-                eof = true;
-                currentChar = '$';
+                buf = next;
+                pos = keep;
+                end = length;
+                if (mark >= 0)
+                    mark = 0;
                 return;
             }
-            currentChar = (char) c;
         }
-        catch (IOException e)
+        if (ownsChannel)
+            channel.close();
+        channel = null;
+    }
+
+    /**
+     * Decodes mapped bytes into chars. Bytes are copied directly while they are ASCII;
+     * from the first non-ASCII byte onwards the charset of the file is used. Bytes of a
+     * character that is split across windows are left in the buffer, unconsumed.
+     *
+     * @param bytes the bytes to decode
+     * @param dst the buffer to decode into
+     * @param offset the index in dst of the first decoded char
+     * @param endOfInput whether these are the last bytes of the file
+     * @return the index in dst after the last decoded char
+     */
+    private int decode(MappedByteBuffer bytes, char[] dst, int offset, boolean endOfInput)
+    {
+        int limit = bytes.limit();
+        int n = offset;
+        int i = 0;
+        while (i < limit)
         {
-            e.printStackTrace();
-            System.exit(1);
+            byte b = bytes.get(i);
+            if (b < 0)
+                break;
+            dst[n++] = (char) b;
+            i++;
         }
+        bytes.position(i);
+        if (i == limit)
+            return n;
+
+        if (decoder == null)
+            decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        decoder.reset();
+        CharBuffer out = CharBuffer.wrap(dst, n, dst.length - n);
+        decoder.decode(bytes, out, endOfInput);
+        if (endOfInput)
+            decoder.flush(out);
+        return out.position();
     }
 
     /**
-     * Gets the next char, safely.
+     * Gets the next char.
      *
-     * @throws ScanErrorException, when the expected character is not the current char.
      * @postcondition the next char is in currentChar. if there is no next char, eof=true.
+     * @throws UncheckedIOException if the next window of a file cannot be read.
      */
-    private void eat(char expected) throws ScanErrorException
+    private void getNextChar()
     {
-        if (expected != currentChar)
-            throw new ScanErrorException(
-                    "Illegal character; expected " + currentChar + " and got " + expected
-            );
-
-        getNextChar();
+        if (pos < end)
+            pos++;
+        if (pos == end && channel != null)
+        {
+            try
+            {
+                refill();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (pos == end || buf[pos] == '$')
+        {
+            eof = true;
+            currentChar = '$';
+            return;
+        }
+        currentChar = buf[pos];
     }
 
     /**
@@ -129,171 +429,152 @@ public class Scanner
      */
     public boolean hasNext()
     {
-        return !eof;
+        return !eof || pending;
     }
 
     /**
      * Gets the next token.
      *
      * @return the next token.
+     * @throws ScanErrorException if the input is not a valid token.
      */
+    @Override
     public Token nextToken() throws ScanErrorException
     {
-        while (isWhitespace(currentChar))
-        {
-            eat(currentChar);
-        }
-
-        if (eof)
+        if (!scan())
             return new Token(TokenType.EOF, "EOF");
-
-        if (isOperator(currentChar))
-        {
-            Token token = scanOperator();
-            if (token.getValue().equals("//"))
-            {
-                handleInlineComment();
-                return nextToken();
-            }
-            else if (token.getValue().equals("/*"))
-            {
-                handleBlockComment();
-                return nextToken();
-            }
-            return token;
-        }
-        else if (isDigit(currentChar))
-        {
-            return scanNumber();
-        }
-        else if (isLetter(currentChar))
-        {
-            return scanIdentifier();
-        }
-
-        throw new ScanErrorException("Invalid character: '" + currentChar + "'");
+        return new Token(tokenType, buf, tokenStart, tokenLength, tokenSymbol);
     }
 
     /**
-     * Skips over an inline comment.
+     * Scans up to tokens.capacity() tokens into a token buffer, without allocating a Token
+     * for each of them. All tokens in one batch are slices of the same source buffer; when
+     * a memory-mapped file moves on to its next window, the batch ends early.
      *
-     * @postcondition currentChar is the character after the inline comment.
-     * @throws ScanErrorException if there is an illegal character.
+     * @param tokens the buffer to fill; its previous contents are discarded.
+     * @return the number of tokens scanned, which is 0 once there are no more tokens.
+     * @throws ScanErrorException if the input is not a valid token.
      */
-    private void handleInlineComment() throws ScanErrorException
+    public int nextTokens(TokenBuffer tokens) throws ScanErrorException
     {
-        do
+        tokens.clear();
+        while (tokens.size() < tokens.capacity() && scan())
         {
-            eat(currentChar);
+            if (tokens.size() > 0 && buf != tokens.getSource())
+            {
+                pending = true;
+                break;
+            }
+            tokens.add(buf, (byte) tokenType.ordinal(), tokenStart, tokenLength, tokenSymbol);
         }
-        while (currentChar != '\n');
-        eat(currentChar);
+        return tokens.size();
     }
 
     /**
-     * Skips over a block comment during scanning.
+     * Scans the next token into tokenType, tokenStart, tokenLength and tokenSymbol.
+     * Runs the lexer table from its start state until there is no transition on the
+     * current character, then accepts the longest match. Whitespace and comments are
+     * skipped, and identifiers are looked up in KEYWORD_TABLE.
      *
-     * @postcondition currentChar is the character after the block comment.
-     * @throws ScanErrorException if there is an illegal character.
+     * @return true if a token was scanned, false at the end of the input.
+     * @throws ScanErrorException if the input is not a valid token.
      */
-    private void handleBlockComment() throws ScanErrorException
+    private boolean scan() throws ScanErrorException
     {
-        do
+        if (pending)
         {
-            do
-            {
-                eat(currentChar);
+            pending = false;
+            return true;
+        }
+        while (true)
+        {
+            if (eof || pos >= limit)
+                return false;
 
-                if (currentChar == '/')
+            mark = pos;
+            int state = LexerTable.START;
+            int depth = 0;
+            while (true)
+            {
+                int next = TABLE.next(state, currentClass());
+                if (next == LexerTable.DEAD)
+                    break;
+                if ((next & LexerTable.OPEN_NESTED) != 0)
+                {
+                    depth++;
+                }
+                else if ((next & LexerTable.CLOSE_NESTED) != 0 && depth > 0)
                 {
-                    eat(currentChar);
-                    if (currentChar == '*') handleBlockComment();
+                    depth--;
+                    next = TABLE.getCommentState();
                 }
+                state = next & LexerTable.STATE_MASK;
+                getNextChar();
+            }
 
+            if (state == LexerTable.START)
+            {
+                mark = -1;
+                if (pos == end)
+                    return false;
+                throw new ScanErrorException("Invalid character: '" + currentChar + "'");
+            }
+            if (TABLE.isSkip(state))
+            {
+                mark = -1;
+                continue;
             }
-            while (currentChar != '*');
-            eat(currentChar);
+            TokenType type = TABLE.getTokenType(state);
+            if (type == null)
+                throw new ScanErrorException(TABLE.getError(state));
+
+            int length = pos - mark;
+            int symbol = TABLE.getSymbol(state);
+            if (type == TokenType.IDENTIFIER)
+            {
+                symbol = KEYWORD_TABLE.lookup(buf, mark, length);
+                if (symbol != Symbol.NONE)
+                    type = TokenType.KEYWORD;
+            }
+            tokenType = type;
+            tokenStart = mark;
+            tokenLength = length;
+            tokenSymbol = symbol;
+            mark = -1;
+            return true;
         }
-        while (currentChar != '/');
-        eat(currentChar);
     }
 
     /**
-     * Scans a number of the form [0-9]*.
+     * Makes the scanner stop as if at the end of the input once it is between tokens at or
+     * after a position. Used by ParallelScanner to scan one chunk of a buffer.
      *
-     * @postcondition currentChar is the character after the number.
-     * @return A String, the scanned number.
-     * @throws ScanErrorException if there is an illegal character.
+     * @param limit the index in the buffer to stop at
      */
-    private Token scanNumber() throws ScanErrorException
+    void setLimit(int limit)
     {
-        String ret = "";
-
-        while (isDigit(currentChar))
-        {
-            ret += currentChar;
-            eat(currentChar);
-        }
-
-        if (ret.length() == 0)
-            throw new ScanErrorException("Invalid number");
-
-        return new Token(TokenType.NUMBER, ret);
+        this.limit = limit;
     }
 
     /**
-     * Scans an identifier of the form [a-zA-Z][a-zA-z0-9]*.
+     * Gets the position of the scanner in its buffer. Between tokens, this is the index
+     * that the next token or skipped whitespace starts at.
      *
-     * @postcondition currentChar is the character after the identifier.
-     * @return a String, the scanned identifier.
-     * @throws ScanErrorException if there is an illegal character.
+     * @return the index of currentChar in the buffer
      */
-    private Token scanIdentifier() throws ScanErrorException
+    int position()
     {
-        String ret = "";
-
-        if (isLetter(currentChar))
-        {
-            ret += currentChar;
-            eat(currentChar);
-        }
-        while (isLetter(currentChar) || isDigit(currentChar))
-        {
-            ret += currentChar;
-            eat(currentChar);
-        }
-
-        if (ret.length() == 0)
-            throw new ScanErrorException("Invalid identifier");
-
-        return new Token(TokenType.IDENTIFIER, ret);
+        return pos;
     }
 
     /**
-     * Scans an operator (the set of operators is defined above)
+     * Gets the character class of the current character.
      *
-     * @postcondition currentChar is the character after the operator.
-     * @return a String, the scanned operator.
-     * @throws ScanErrorException if there is an illegal character.
+     * @return LexerTable.END at the end of the input, otherwise the class of currentChar.
      */
-    private Token scanOperator() throws ScanErrorException
+    private int currentClass()
     {
-        String ret = "";
-
-        Tree<String> valid = OPERATOR_TREE;
-        while (valid.contains(currentChar + ""))
-        {
-            ret += currentChar;
-            valid = valid.get(currentChar + "");
-            eat(currentChar);
-        }
-
-        if (!valid.contains(""))
-        {
-            throw new ScanErrorException("Invalid Operator");
-        }
-
-        return new Token(TokenType.OPERATOR, ret);
+        return pos == end ? LexerTable.END : TABLE.classOf(currentChar);
     }
 
     /**
@@ -326,7 +607,7 @@ public class Scanner
      */
     public static boolean isOperator(char c)
     {
-        return OPERATOR_TREE.contains("" + c);
+        return TABLE.isOperatorStart(c);
     }
 
     /**
@@ -339,59 +620,4 @@ public class Scanner
     {
         return c == ' ' || c == '\n' || c == '\t' || c == '\r';
     }
-
-    /**
-     * Takes in a set of valid strings and returns a character decision tree
-     *     to check if a given string is valid.
-     * For example, if the valid strings were "<", "<=", ":=", and "+",
-     *  it would output the following tree:
-     *
-     *  null: {
-     *      "<": {
-     *          "=": {
-     *              "": {}
-     *          },
-     *          ""
-     *      },
-     *      ":": {
-     *          "=": {
-     *              "": {}
-     *          }
-     *      },
-     *      "+": {
-     *          "": {}
-     *      }
-     *  }
-     *
-     * , such that any DFS ending with an empty string is considered a valid operator.
-     * The root node will have a null value.
-     *
-     * @param set the set of valid strings.
-     * @return a character decision tree to check if a string is valid.
-     */
-    public static Tree<String> toScanTree(Set<String> set)
-    {
-        Tree<String> ret = new Tree<>(null, new HashSet<>());
-
-        for (String s : set)
-        {
-            Tree<String> current = ret;
-            for (char c : s.toCharArray())
-            {
-                if (current.contains(c + ""))
-                {
-                    current = current.get(c + "");
-                }
-                else
-                {
-                    Tree<String> toAdd = new Tree<>(c + "", new HashSet<>());
-                    current.add(toAdd);
-                    current = toAdd;
-                }
-            }
-            current.add(Tree.of(""));
-        }
-
-        return ret;
-    }
 }
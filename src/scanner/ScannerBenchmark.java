@@ -0,0 +1,206 @@
+package scanner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import scanner.Token.TokenType;
+
+/**
+ * Measures the throughput of the Scanner in bytes per second.
+ *
+ * Four passes are timed over the same source. The concat pass is the baseline: it builds
+ * every lexeme the way the Scanner did before tokens became slices of the source buffer,
+ * with one String per character, and looks up every operator character as a String of
+ * its own. The spans pass only scans tokens. The strings pass also converts every token
+ * to a String with getValue(), which allocates one String per token rather than one per
+ * character. The batch pass scans batches of tokens into a TokenBuffer without
+ * allocating a Token per token.
+ * Each pass is repeated so that later iterations show the throughput after JIT warmup.
+ *
+ * @author Agastya Ravuri
+ * @version 4.2.2024
+ */
+public class ScannerBenchmark
+{
+    /**
+     * A procedure that is repeated to generate a synthetic source file.
+     */
+    private static final String UNIT =
+            "PROCEDURE fact(n);\n" +
+            "BEGIN\n" +
+            "    IF n = 0 THEN\n" +
+            "        fact := 1;\n" +
+            "    ELSE\n" +
+            "        fact := fact(n - 1) * n; // recurse\n" +
+            "    /* print the result */\n" +
+            "    WRITELN(fact);\n" +
+            "END;\n";
+
+    private static final int ITERATIONS = 10;
+
+    private static final int BATCH_SIZE = 4096;
+
+    /**
+     * Every prefix of an operator, which the concat pass looks up one character at a time.
+     */
+    private static final Set<String> OPERATOR_PREFIXES = new HashSet<>();
+
+    static
+    {
+        for (String operator : Scanner.OPERATORS)
+        {
+            for (int i = 1; i <= operator.length(); i++)
+                OPERATOR_PREFIXES.add(operator.substring(0, i));
+        }
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args optionally, the file to scan; otherwise an 8 MB source is generated.
+     * @throws IOException when the file cannot be read
+     * @throws ScanErrorException when there is a scanning error
+     */
+    public static void main(String[] args) throws IOException, ScanErrorException
+    {
+        String source;
+        if (args.length > 0)
+        {
+            source = Files.readString(Path.of(args[0]));
+        }
+        else
+        {
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() < 8_000_000)
+                sb.append(UNIT);
+            source = sb.toString();
+        }
+        char[] chars = source.toCharArray();
+
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            reportConcat("concat ", chars);
+            report("spans  ", chars, false);
+            report("strings", chars, true);
+            reportBatch("batch  ", chars);
+        }
+    }
+
+    /**
+     * Scans the whole source once and prints the throughput.
+     * @param label the name of the pass
+     * @param chars the source to scan
+     * @param materialize whether to call getValue() on every token
+     * @throws ScanErrorException when there is a scanning error
+     */
+    private static void report(String label, char[] chars, boolean materialize) throws ScanErrorException
+    {
+        long start = System.nanoTime();
+        Scanner sc = new Scanner(chars, 0, chars.length);
+        int tokens = 0;
+        int sink = 0;
+        while (sc.hasNext())
+        {
+            Token t = sc.nextToken();
+            sink += materialize ? t.getValue().length() : t.getLength();
+            tokens++;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s: %d tokens (%d chars), %.1f MB/s%n",
+                label, tokens, sink, chars.length / seconds / 1e6);
+    }
+
+    /**
+     * Scans the whole source once by concatenating every lexeme a character at a time, as
+     * the Scanner did before tokens became spans, and prints the throughput. Whitespace
+     * and comments are skipped without allocating, as they were then.
+     * @param label the name of the pass
+     * @param chars the source to scan
+     * @throws ScanErrorException when there is an invalid character
+     */
+    private static void reportConcat(String label, char[] chars) throws ScanErrorException
+    {
+        long start = System.nanoTime();
+        int tokens = 0;
+        int sink = 0;
+        int i = 0;
+        while (i < chars.length)
+        {
+            char c = chars[i];
+            if (Scanner.isWhitespace(c))
+            {
+                i++;
+                continue;
+            }
+            if (c == '/' && i + 1 < chars.length && chars[i + 1] == '/')
+            {
+                while (i < chars.length && chars[i] != '\n')
+                    i++;
+                continue;
+            }
+            if (c == '/' && i + 1 < chars.length && chars[i + 1] == '*')
+            {
+                int depth = 0;
+                do
+                {
+                    if (chars[i] == '/' && chars[i + 1] == '*')
+                        depth++;
+                    else if (chars[i] == '*' && chars[i + 1] == '/')
+                        depth--;
+                    i += depth == 0 ? 2 : 1;
+                }
+                while (depth > 0);
+                continue;
+            }
+
+            String ret = "";
+            TokenType type;
+            if (Scanner.isLetter(c) || Scanner.isDigit(c))
+            {
+                boolean number = Scanner.isDigit(c);
+                while (i < chars.length && (Scanner.isDigit(chars[i]) || !number && Scanner.isLetter(chars[i])))
+                    ret += chars[i++];
+                type = number ? TokenType.NUMBER : TokenType.IDENTIFIER;
+            }
+            else
+            {
+                while (i < chars.length && OPERATOR_PREFIXES.contains(ret + (chars[i] + "")))
+                    ret += chars[i++];
+                if (ret.isEmpty())
+                    throw new ScanErrorException("Invalid character: '" + c + "'");
+                type = TokenType.OPERATOR;
+            }
+            sink += new Token(type, ret).getValue().length();
+            tokens++;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s: %d tokens (%d chars), %.1f MB/s%n",
+                label, tokens, sink, chars.length / seconds / 1e6);
+    }
+
+    /**
+     * Scans the whole source once in batches with nextTokens() and prints the throughput.
+     * @param label the name of the pass
+     * @param chars the source to scan
+     * @throws ScanErrorException when there is a scanning error
+     */
+    private static void reportBatch(String label, char[] chars) throws ScanErrorException
+    {
+        long start = System.nanoTime();
+        Scanner sc = new Scanner(chars, 0, chars.length);
+        TokenBuffer buffer = new TokenBuffer(BATCH_SIZE);
+        int tokens = 0;
+        int sink = 0;
+        int n;
+        while ((n = sc.nextTokens(buffer)) > 0)
+        {
+            for (int i = 0; i < n; i++)
+                sink += buffer.getLength(i);
+            tokens += n;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s: %d tokens (%d chars), %.1f MB/s%n",
+                label, tokens, sink, chars.length / seconds / 1e6);
+    }
+}
@@ -0,0 +1,106 @@
+package scanner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interned IDs for every operator and keyword, so that tokens can be compared and
+ * dispatched on as ints instead of Strings.
+ * Identifiers, numbers and the end of file have the symbol NONE.
+ *
+ * @author Agastya Ravuri
+ * @version 4.10.2024
+ */
+public final class Symbol
+{
+    public static final int NONE = 0;
+
+    // Operators
+    public static final int EQ = 1;
+    public static final int PLUS = 2;
+    public static final int MINUS = 3;
+    public static final int STAR = 4;
+    public static final int SLASH = 5;
+    public static final int PERCENT = 6;
+    public static final int LPAREN = 7;
+    public static final int RPAREN = 8;
+    public static final int LT = 9;
+    public static final int GT = 10;
+    public static final int LEQ = 11;
+    public static final int GEQ = 12;
+    public static final int NEQ = 13;
+    public static final int ASSIGN = 14;
+    public static final int SEMICOLON = 15;
+    public static final int COMMA = 16;
+    public static final int PERIOD = 17;
+    public static final int AND = 18;
+    public static final int OR = 19;
+
+    // Keywords
+    public static final int BEGIN = 20;
+    public static final int END = 21;
+    public static final int PROCEDURE = 22;
+    public static final int WRITELN = 23;
+    public static final int READLN = 24;
+    public static final int IF = 25;
+    public static final int THEN = 26;
+    public static final int ELSE = 27;
+    public static final int WHILE = 28;
+    public static final int DO = 29;
+    public static final int FOR = 30;
+    public static final int TO = 31;
+    public static final int MOD = 32;
+    public static final int TRUE = 33;
+    public static final int FALSE = 34;
+
+    /**
+     * The text of every symbol, indexed by ID.
+     */
+    private static final String[] TEXT = {
+            null,
+            "=", "+", "-", "*", "/", "%", "(", ")", "<", ">",
+            "<=", ">=", "<>", ":=", ";", ",", ".", "&&", "||",
+            "BEGIN", "END", "PROCEDURE", "WRITELN", "READLN", "IF", "THEN", "ELSE",
+            "WHILE", "DO", "FOR", "TO", "mod", "True", "False"
+    };
+
+    /**
+     * The number of symbol IDs, including NONE.
+     */
+    public static final int COUNT = TEXT.length;
+
+    private static final Map<String, Integer> IDS = new HashMap<>();
+
+    static
+    {
+        for (int i = 1; i < TEXT.length; i++)
+            IDS.put(TEXT[i], i);
+    }
+
+    /**
+     * Prevents instantiation.
+     */
+    private Symbol()
+    {
+    }
+
+    /**
+     * Gets the ID of a symbol.
+     * @param text the text of the symbol
+     * @return the ID of the symbol, or NONE if text is not an operator or keyword.
+     */
+    public static int of(String text)
+    {
+        return IDS.getOrDefault(text, NONE);
+    }
+
+    /**
+     * Gets the text of a symbol.
+     * @param id the ID of the symbol
+     * @return the text of the symbol, or null for NONE.
+     */
+    public static String getText(int id)
+    {
+        return TEXT[id];
+    }
+}
@@ -16,12 +16,17 @@ public class Token
 {
     public enum TokenType
     {
-        IDENTIFIER, NUMBER, OPERATOR, EOF
+        IDENTIFIER, KEYWORD, NUMBER, OPERATOR, EOF
     }
 
     private final TokenType type;
 
-    private final String value;
+    private final char[] source;
+    private final int offset;
+    private final int length;
+    private final int symbol;
+
+    private String value;
 
     /**
      * Contructs a token
@@ -32,6 +37,28 @@ public class Token
     {
         this.type = type;
         this.value = value;
+        this.source = null;
+        this.offset = 0;
+        this.length = value.length();
+        this.symbol = Symbol.of(value);
+    }
+
+    /**
+     * Constructs a token that refers to a slice of a source buffer.
+     * The value is only converted to a String when getValue() is called.
+     * @param type the type of the token
+     * @param source the buffer containing the token
+     * @param offset the index of the first character of the token in source
+     * @param length the number of characters in the token
+     * @param symbol the symbol ID of the token, or Symbol.NONE if it is not an operator or keyword
+     */
+    public Token(TokenType type, char[] source, int offset, int length, int symbol)
+    {
+        this.type = type;
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+        this.symbol = symbol;
     }
 
     /**
@@ -40,8 +67,7 @@ public class Token
      */
     public Token(String value)
     {
-        this.type = null;
-        this.value = value;
+        this(null, value);
     }
 
     /**
@@ -59,9 +85,57 @@ public class Token
      */
     public String getValue()
     {
+        if (value == null)
+            value = new String(source, offset, length);
         return value;
     }
 
+    /**
+     * Gets the symbol ID of the token
+     * @return the symbol ID, or Symbol.NONE if the token is not an operator or keyword
+     */
+    public int getSymbol()
+    {
+        return symbol;
+    }
+
+    /**
+     * Gets the offset of the token in the buffer it was scanned from
+     * @return the index of the first character of the token
+     */
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Gets the length of the token
+     * @return the number of characters in the token
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Checks whether the text of the token is s, without converting the token to a String.
+     * @param s the string to compare against
+     * @return true if the token's text is s, false otherwise
+     */
+    public boolean contentEquals(String s)
+    {
+        if (value != null)
+            return value.equals(s);
+        if (s == null || s.length() != length)
+            return false;
+        for (int i = 0; i < length; i++)
+        {
+            if (source[offset + i] != s.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
     /**
      * Converts a token to a string.
      * @return a string, of the token
@@ -69,7 +143,7 @@ public class Token
     @Override
     public String toString()
     {
-        return "{" + value + ", type: " + type + "}";
+        return "{" + getValue() + ", type: " + type + "}";
     }
 
     @Override
@@ -78,13 +152,15 @@ public class Token
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Token token = (Token) o;
-        return (type == null || token.type == null || type == token.type) && Objects.equals(value, token.value);
+        if (symbol != Symbol.NONE || token.symbol != Symbol.NONE)
+            return (type == null || token.type == null || type == token.type) && symbol == token.symbol;
+        return (type == null || token.type == null || type == token.type) && token.contentEquals(getValue());
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(type, value);
+        return Objects.hash(type, getValue());
     }
 }
 
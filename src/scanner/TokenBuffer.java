@@ -0,0 +1,231 @@
+package scanner;
+
+import java.util.Arrays;
+import scanner.Token.TokenType;
+
+/**
+ * A batch of scanned tokens, stored as parallel primitive arrays instead of Token objects.
+ * Filled by Scanner.nextTokens(); one buffer can be reused for every batch of a file.
+ * Every token in a batch is a slice of getSource(). ParallelScanner also uses a token buffer,
+ * grown as needed, to hold every token of a file.
+ *
+ * @author Agastya Ravuri
+ * @version 4.12.2024
+ */
+public class TokenBuffer
+{
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private byte[] type;
+    private int[] start;
+    private int[] length;
+    private int[] symbolId;
+    private char[] source;
+    private int size;
+
+    /**
+     * Constructs a token buffer.
+     * @param capacity the maximum number of tokens in one batch.
+     */
+    public TokenBuffer(int capacity)
+    {
+        type = new byte[capacity];
+        start = new int[capacity];
+        length = new int[capacity];
+        symbolId = new int[capacity];
+    }
+
+    /**
+     * Removes every token from the buffer.
+     */
+    void clear()
+    {
+        size = 0;
+        source = null;
+    }
+
+    /**
+     * Adds a range of tokens from another buffer to the end of this buffer,
+     * growing it if necessary.
+     * @param other the buffer to copy from
+     * @param from the index of the first token to copy
+     * @param to the index after the last token to copy
+     */
+    void append(TokenBuffer other, int from, int to)
+    {
+        int count = to - from;
+        if (count <= 0)
+            return;
+        if (size + count > type.length)
+        {
+            int capacity = Math.max(size + count, type.length * 2);
+            type = Arrays.copyOf(type, capacity);
+            start = Arrays.copyOf(start, capacity);
+            length = Arrays.copyOf(length, capacity);
+            symbolId = Arrays.copyOf(symbolId, capacity);
+        }
+        System.arraycopy(other.type, from, type, size, count);
+        System.arraycopy(other.start, from, start, size, count);
+        System.arraycopy(other.length, from, length, size, count);
+        System.arraycopy(other.symbolId, from, symbolId, size, count);
+        source = other.source;
+        size += count;
+    }
+
+    /**
+     * Replaces a range of tokens with the tokens of another buffer, and moves every token
+     * after the range by a number of characters. Used by IncrementalScanner after an edit.
+     * @param from the index of the first token to replace
+     * @param to the index after the last token to replace
+     * @param with the tokens to put in their place
+     * @param shift the number of characters to add to the start of every token after the range
+     * @param source the buffer that every token is now a slice of
+     */
+    void splice(int from, int to, TokenBuffer with, int shift, char[] source)
+    {
+        int tail = size - to;
+        int newSize = from + with.size + tail;
+        if (newSize > type.length)
+        {
+            int capacity = Math.max(newSize, type.length * 2);
+            type = Arrays.copyOf(type, capacity);
+            start = Arrays.copyOf(start, capacity);
+            length = Arrays.copyOf(length, capacity);
+            symbolId = Arrays.copyOf(symbolId, capacity);
+        }
+        int newTo = from + with.size;
+        if (newTo != to)
+        {
+            System.arraycopy(type, to, type, newTo, tail);
+            System.arraycopy(start, to, start, newTo, tail);
+            System.arraycopy(length, to, length, newTo, tail);
+            System.arraycopy(symbolId, to, symbolId, newTo, tail);
+        }
+        System.arraycopy(with.type, 0, type, from, with.size);
+        System.arraycopy(with.start, 0, start, from, with.size);
+        System.arraycopy(with.length, 0, length, from, with.size);
+        System.arraycopy(with.symbolId, 0, symbolId, from, with.size);
+        if (shift != 0)
+        {
+            for (int i = newTo; i < newSize; i++)
+                start[i] += shift;
+        }
+        this.source = source;
+        size = newSize;
+    }
+
+    /**
+     * Adds a token to the end of the buffer.
+     * @param source the buffer the token was scanned from
+     * @param type the ordinal of the token's type
+     * @param start the index of the first character of the token in source
+     * @param length the number of characters in the token
+     * @param symbolId the symbol ID of the token
+     */
+    void add(char[] source, byte type, int start, int length, int symbolId)
+    {
+        this.source = source;
+        this.type[size] = type;
+        this.start[size] = start;
+        this.length[size] = length;
+        this.symbolId[size] = symbolId;
+        size++;
+    }
+
+    /**
+     * Gets the number of tokens in the buffer.
+     * @return the number of tokens
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the maximum number of tokens in the buffer.
+     * @return the capacity
+     */
+    public int capacity()
+    {
+        return type.length;
+    }
+
+    /**
+     * Gets the buffer that every token in this batch is a slice of.
+     * @return the source buffer
+     */
+    public char[] getSource()
+    {
+        return source;
+    }
+
+    /**
+     * Gets the type of a token, as the ordinal of its TokenType.
+     * @param i the index of the token
+     * @return the ordinal of the token's type
+     */
+    public byte getType(int i)
+    {
+        return type[i];
+    }
+
+    /**
+     * Gets the type of a token.
+     * @param i the index of the token
+     * @return the token's type
+     */
+    public TokenType getTokenType(int i)
+    {
+        return TYPES[type[i]];
+    }
+
+    /**
+     * Gets the offset of a token in the source buffer.
+     * @param i the index of the token
+     * @return the index of the first character of the token
+     */
+    public int getStart(int i)
+    {
+        return start[i];
+    }
+
+    /**
+     * Gets the length of a token.
+     * @param i the index of the token
+     * @return the number of characters in the token
+     */
+    public int getLength(int i)
+    {
+        return length[i];
+    }
+
+    /**
+     * Gets the symbol ID of a token.
+     * @param i the index of the token
+     * @return the symbol ID, or Symbol.NONE if the token is not an operator or keyword
+     */
+    public int getSymbol(int i)
+    {
+        return symbolId[i];
+    }
+
+    /**
+     * Gets the text of a token. This allocates a String.
+     * @param i the index of the token
+     * @return the text of the token
+     */
+    public String getValue(int i)
+    {
+        return new String(source, start[i], length[i]);
+    }
+
+    /**
+     * Converts a token to a Token object.
+     * @param i the index of the token
+     * @return the token
+     */
+    public Token toToken(int i)
+    {
+        return new Token(TYPES[type[i]], source, start[i], length[i], symbolId[i]);
+    }
+}
@@ -0,0 +1,86 @@
+package scanner;
+
+import scanner.Token.TokenType;
+
+/**
+ * A token source that reads tokens that have already been scanned into a TokenBuffer,
+ * starting from any index. Reading past the last token gives EOF tokens.
+ *
+ * @author Agastya Ravuri
+ * @version 4.19.2024
+ */
+public class TokenCursor implements TokenSource
+{
+    private final TokenBuffer tokens;
+    private final int end;
+    private int index;
+
+    /**
+     * Constructs a token cursor over every token from an index onwards.
+     * @param tokens the tokens to read
+     * @param index the index of the first token to read
+     */
+    public TokenCursor(TokenBuffer tokens, int index)
+    {
+        this(tokens, index, tokens.size());
+    }
+
+    /**
+     * Constructs a token cursor over a range of tokens.
+     * @param tokens the tokens to read
+     * @param index the index of the first token to read
+     * @param end the index after the last token to read
+     */
+    public TokenCursor(TokenBuffer tokens, int index, int end)
+    {
+        this.tokens = tokens;
+        this.index = index;
+        this.end = end;
+    }
+
+    @Override
+    public Token nextToken()
+    {
+        int i = index++;
+        if (i >= end)
+            return new Token(TokenType.EOF, "EOF");
+        return tokens.toToken(i);
+    }
+
+    /**
+     * Gets the tokens that this cursor reads.
+     * @return the token buffer
+     */
+    public TokenBuffer getTokens()
+    {
+        return tokens;
+    }
+
+    /**
+     * Gets the end of the range of tokens that this cursor reads.
+     * @return the index after the last token to read
+     */
+    public int getEnd()
+    {
+        return end;
+    }
+
+    /**
+     * Moves the cursor, so that the next call to nextToken() returns a given token.
+     * @param index the index of the token
+     */
+    public void seek(int index)
+    {
+        this.index = index;
+    }
+
+    /**
+     * Gets the index of the next token that nextToken() will return. Every call to
+     * nextToken() moves the index forward by one, including calls that return EOF.
+     * @return the index of the next token
+     */
+    public int index()
+    {
+        return index;
+    }
+}
@@ -0,0 +1,78 @@
+package scanner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free ring buffer of tokens for exactly one producer thread and one
+ * consumer thread.
+ * <p>
+ * The producer only writes tail and the consumer only writes head, so neither needs a
+ * lock or a compare-and-set; each publishes its index with a release store (lazySet).
+ * Each side also caches the other side's last index, so it only reads the other side's
+ * cache line when the ring looks full (or empty).
+ *
+ * @author Agastya Ravuri
+ * @version 4.17.2024
+ */
+public class TokenRing
+{
+    private final Token[] slots;
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private long cachedHead;
+    private long cachedTail;
+
+    /**
+     * Constructs a token ring.
+     * @param capacity the maximum number of tokens in the ring; must be a power of two.
+     */
+    public TokenRing(int capacity)
+    {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        slots = new Token[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a token to the ring. Must only be called by the producer thread.
+     * @param token the token to add
+     * @return true if the token was added, false if the ring is full.
+     */
+    public boolean offer(Token token)
+    {
+        long t = tail.get();
+        if (t - cachedHead == slots.length)
+        {
+            cachedHead = head.get();
+            if (t - cachedHead == slots.length)
+                return false;
+        }
+        slots[(int) t & mask] = token;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Removes the oldest token from the ring. Must only be called by the consumer thread.
+     * @return the token, or null if the ring is empty.
+     */
+    public Token poll()
+    {
+        long h = head.get();
+        if (h == cachedTail)
+        {
+            cachedTail = tail.get();
+            if (h == cachedTail)
+                return null;
+        }
+        int slot = (int) h & mask;
+        Token token = slots[slot];
+        slots[slot] = null;
+        head.lazySet(h + 1);
+        return token;
+    }
+}
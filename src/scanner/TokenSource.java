@@ -0,0 +1,28 @@
+package scanner;
+
+/**
+ * Anything that the parser can pull tokens from. A source that holds resources, such as
+ * the thread of a PipelinedScanner, releases them when it is closed.
+ *
+ * @author Agastya Ravuri
+ * @version 4.17.2024
+ */
+public interface TokenSource extends AutoCloseable
+{
+    /**
+     * Gets the next token. Once the input is exhausted, every call returns an EOF token.
+     *
+     * @return the next token.
+     * @throws ScanErrorException if the input is not a valid token.
+     */
+    Token nextToken() throws ScanErrorException;
+
+    /**
+     * Releases anything that this source holds. Tokens that have not been taken are
+     * discarded. Does nothing by default.
+     */
+    @Override
+    default void close()
+    {
+    }
+}
@@ -0,0 +1,145 @@
+package vm;
+
+/**
+ * The instructions of the register bytecode that BytecodeCompiler produces and
+ * VirtualMachine runs.
+ * <p>
+ * An instruction is an opcode followed by its operands, all in one int[]. Registers are
+ * numbered within the frame of the procedure that is running: first its variables, then
+ * its constants, then the temporaries of its expressions. Each value is a long encoded by
+ * environment.Value. Reading a variable register that is still empty sets it to 0, as
+ * reading a variable does in the interpreter.
+ * <p>
+ * FORMATS gives the operands of every instruction, one character each:
+ * d, a register that is written; r, a register that is read; i, an int; t, the index of
+ * an instruction to jump to; n, the index of a variable name; p, the index of a procedure;
+ * a, a number of registers that are read, followed by those registers.
+ *
+ * @author Agastya Ravuri
+ * @version 4.27.2024
+ */
+public final class Bytecode
+{
+    /** Stops the program. */
+    public static final int HALT = 0;
+    /** d := r */
+    public static final int MOVE = 1;
+    /** d := r + r */
+    public static final int ADD = 2;
+    /** d := r - r */
+    public static final int SUB = 3;
+    /** d := r * r */
+    public static final int MUL = 4;
+    /** d := r / r */
+    public static final int DIV = 5;
+    /** d := r mod r */
+    public static final int MOD = 6;
+    /** d := r + i */
+    public static final int ADDI = 7;
+    /** d := r = r, comparing any two values */
+    public static final int EQ = 8;
+    /** d := r &lt;&gt; r, comparing any two values */
+    public static final int NEQ = 9;
+    /** d := r &lt; r */
+    public static final int LT = 10;
+    /** d := r &gt; r */
+    public static final int GT = 11;
+    /** d := r &lt;= r */
+    public static final int LEQ = 12;
+    /** d := r &gt;= r */
+    public static final int GEQ = 13;
+    /** d := r &amp;&amp; r, both of which have been evaluated */
+    public static final int AND = 14;
+    /** d := r || r, both of which have been evaluated */
+    public static final int OR = 15;
+    /** Jumps to t. */
+    public static final int JUMP = 16;
+    /** Jumps to t if the boolean in r is true. */
+    public static final int JUMP_IF_TRUE = 17;
+    /** Jumps to t if the boolean in r is false. */
+    public static final int JUMP_IF_FALSE = 18;
+    /** Jumps to t if r = r. */
+    public static final int BEQ = 19;
+    /** Jumps to t if r &lt;&gt; r. */
+    public static final int BNE = 20;
+    /** Jumps to t if r &lt; r. */
+    public static final int BLT = 21;
+    /** Jumps to t if r &gt; r. */
+    public static final int BGT = 22;
+    /** Jumps to t if r &lt;= r. */
+    public static final int BLE = 23;
+    /** Jumps to t if r &gt;= r. */
+    public static final int BGE = 24;
+    /** d := the variable named n, looked up in the caller's frames if it is not here. */
+    public static final int LOAD_NAME = 25;
+    /** The variable named n, looked up like LOAD_NAME, := r. */
+    public static final int STORE_NAME = 26;
+    /** d := procedure p called with the a arguments that follow. */
+    public static final int CALL = 27;
+    /** Returns the result of the procedure to its caller. */
+    public static final int RETURN = 28;
+    /** Prints r on its own line. */
+    public static final int WRITE = 29;
+    /** d := an int read from the standard input. */
+    public static final int READ = 30;
+
+    /**
+     * The operands of every instruction, indexed by opcode.
+     */
+    static final String[] FORMATS = {
+            "", "dr", "drr", "drr", "drr", "drr", "drr", "dri", "drr", "drr", "drr", "drr",
+            "drr", "drr", "drr", "drr", "t", "rt", "rt", "rrt", "rrt", "rrt", "rrt", "rrt",
+            "rrt", "dn", "nr", "dpa", "", "r", "d"
+    };
+
+    /**
+     * The name of every instruction, indexed by opcode.
+     */
+    static final String[] NAMES = {
+            "HALT", "MOVE", "ADD", "SUB", "MUL", "DIV", "MOD", "ADDI", "EQ", "NEQ", "LT", "GT",
+            "LEQ", "GEQ", "AND", "OR", "JUMP", "JUMP_IF_TRUE", "JUMP_IF_FALSE", "BEQ", "BNE",
+            "BLT", "BGT", "BLE", "BGE", "LOAD_NAME", "STORE_NAME", "CALL", "RETURN", "WRITE",
+            "READ"
+    };
+
+    /**
+     * Not constructed.
+     */
+    private Bytecode()
+    {
+    }
+
+    /**
+     * Gets the length of an instruction.
+     * @param code the code that contains the instruction.
+     * @param pc the index of its opcode.
+     * @return the number of ints that the instruction takes, including its opcode.
+     */
+    static int length(int[] code, int pc)
+    {
+        String format = FORMATS[code[pc]];
+        int length = 1 + format.length();
+        if (format.endsWith("a"))
+            length += code[pc + format.length()];
+        return length;
+    }
+
+    /**
+     * Writes code in a readable form, one instruction per line.
+     * @param code the code.
+     * @return the instructions, with their indices.
+     */
+    public static String disassemble(int[] code)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc += length(code, pc))
+        {
+            sb.append(String.format("%5d  %-13s", pc, NAMES[code[pc]]));
+            int length = length(code, pc);
+            for (int i = 1; i < length; i++)
+                sb.append(' ').append(code[pc + i]);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
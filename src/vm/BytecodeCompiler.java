@@ -0,0 +1,550 @@
+package vm;
+
+import ast.Procedure;
+import ast.Program;
+import ast.Statement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles a Program into register bytecode for the VirtualMachine. Like the Emitter, it
+ * is driven by the nodes of the program: each node compiles itself by calling the
+ * methods here, which emit instructions into the function being compiled.
+ * <p>
+ * While a function is compiled, registers are numbered by kind (variable, constant or
+ * temporary) and jumps go to label numbers; when it is finished, the registers are laid
+ * out in that order and the labels are replaced by the instructions they mark.
+ * <p>
+ * Variables follow the interpreter's dynamic scoping. Every variable of the main program,
+ * and the result of a procedure and the arguments that every call passes it, are read and
+ * written directly in their registers. Any other variable of a procedure is looked up by
+ * name at run time, in the frame of the procedure and then in the frames of its callers.
+ * An argument that a call leaves out stays empty, so that it is found in the callers.
+ * <p>
+ * Usage:
+ * BytecodeProgram p = new BytecodeCompiler().compile(program);
+ *
+ * @author Agastya Ravuri
+ * @version 4.27.2024
+ */
+public class BytecodeCompiler
+{
+    private static final int INDEX = (1 << 24) - 1;
+    private static final int VARIABLE = 0;
+    private static final int CONSTANT = 1 << 24;
+    private static final int TEMPORARY = 2 << 24;
+    private static final int KIND = 3 << 24;
+
+    private final Map<String, Integer> names = new LinkedHashMap<>();
+    private final Map<String, Integer> procedureIndices = new LinkedHashMap<>();
+    private final List<Procedure> procedures = new ArrayList<>();
+    private final Map<String, Integer> fewest = new HashMap<>();
+    private Statement main;
+
+    private Unit unit;
+    private int[] code;
+    private int size;
+    private int temporaries;
+    private int statementStart;
+    private int lastInstruction = -1;
+    private int[] labels;
+    private int labelCount;
+
+    /**
+     * A function while it is compiled.
+     */
+    private static final class Unit
+    {
+        private final String name;
+        private final Set<String> locals;
+        private final Map<String, Integer> variables = new LinkedHashMap<>();
+        private final Map<Long, Integer> constants = new LinkedHashMap<>();
+        private int maxTemporaries;
+        private int[] code;
+        private int[] argRegisters;
+        private int resultRegister = -1;
+        private int passed;
+
+        /**
+         * Constructor for a unit.
+         * @param name the name of the procedure, or null for the main program.
+         * @param locals the variables that are read directly, or null if every one is.
+         */
+        Unit(String name, Set<String> locals)
+        {
+            this.name = name;
+            this.locals = locals;
+        }
+    }
+
+    /**
+     * Compiles a program.
+     * @param program the program.
+     * @return the compiled program.
+     * @throws IllegalArgumentException if the program declares a procedure inside a
+     *                                  statement, which the VirtualMachine does not support.
+     */
+    public BytecodeProgram compile(Program program)
+    {
+        program.compile(this);
+        return compileDeclared();
+    }
+
+    /**
+     * Compiles a statement as the main program, with procedures that have already been
+     * declared, such as a loop of a running program and the procedures it was linked to.
+     * @param procedures the procedures, by name.
+     * @param run the main statement.
+     * @return the compiled program.
+     * @throws IllegalArgumentException if a procedure is declared inside a statement,
+     *                                  which the VirtualMachine does not support.
+     */
+    public BytecodeProgram compile(Map<String, Procedure> procedures, Statement run)
+    {
+        for (Procedure p : procedures.values())
+            declareProcedure(p);
+        setMain(run);
+        return compileDeclared();
+    }
+
+    /**
+     * Compiles the main statement and the procedures that have been declared.
+     * @return the compiled program.
+     * @throws IllegalArgumentException if a procedure is declared inside a statement.
+     */
+    private BytecodeProgram compileDeclared()
+    {
+        begin(null, null);
+        main.compile(this);
+        emit(Bytecode.HALT);
+        Unit mainUnit = finish();
+
+        // Compiling a body can add procedures that are called but never declared, and
+        // calls with fewer arguments, after which the procedures they call are compiled
+        // again.
+        Unit[] procedureUnits = new Unit[0];
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            procedureUnits = Arrays.copyOf(procedureUnits, procedures.size());
+            for (int i = 0; i < procedureUnits.length; i++)
+            {
+                Procedure p = procedures.get(i);
+                if (p == null)
+                    continue;
+                int passed = Math.min(p.getArgs().size(),
+                        fewest.getOrDefault(p.getName(), Integer.MAX_VALUE));
+                if (procedureUnits[i] != null && procedureUnits[i].passed == passed)
+                    continue;
+                procedureUnits[i] = compileProcedure(p, passed);
+                changed = true;
+            }
+        }
+
+        BytecodeFunction[] functions = new BytecodeFunction[procedures.size()];
+        for (int i = 0; i < procedureUnits.length; i++)
+            if (procedureUnits[i] != null)
+                functions[i] = build(procedureUnits[i]);
+        return new BytecodeProgram(build(mainUnit), functions,
+                procedureIndices.keySet().toArray(new String[0]), names.keySet().toArray(new String[0]));
+    }
+
+    /**
+     * Compiles a procedure.
+     * @param p the procedure.
+     * @param passed the number of arguments that every call passes it.
+     * @return the unit.
+     * @throws IllegalArgumentException if a procedure is declared inside its body.
+     */
+    private Unit compileProcedure(Procedure p, int passed)
+    {
+        Set<String> locals = new HashSet<>();
+        for (int j = 0; j < passed; j++)
+            locals.add(p.getArgs().get(j).getName());
+        locals.add(p.getName());
+        begin(p.getName(), locals);
+        unit.passed = passed;
+
+        // Arguments get the first registers, then the result, as in the interpreter.
+        int[] args = new int[p.getArgs().size()];
+        for (int j = 0; j < args.length; j++)
+            args[j] = declare(p.getArgs().get(j).getName());
+        unit.argRegisters = args;
+        unit.resultRegister = declare(p.getName());
+
+        p.getBody().compile(this);
+        emit(Bytecode.RETURN);
+        return finish();
+    }
+
+    /**
+     * Declares a procedure of the main program. A procedure declared again with the same
+     * name replaces the first one, as in the interpreter.
+     * @param p the procedure.
+     */
+    public void declareProcedure(Procedure p)
+    {
+        procedures.set(procedureIndex(p.getName()), p);
+    }
+
+    /**
+     * Sets the main statement of the program.
+     * @param run the main statement.
+     */
+    public void setMain(Statement run)
+    {
+        main = run;
+    }
+
+    /**
+     * Gets the register to read a variable from. A variable that is looked up by name is
+     * loaded into a new temporary.
+     * @param name the name of the variable.
+     * @return the register.
+     */
+    public int variable(String name)
+    {
+        int register = declare(name);
+        if (isLocal(name))
+            return register;
+        int d = temporary();
+        emit(Bytecode.LOAD_NAME, d, nameIndex(name));
+        return d;
+    }
+
+    /**
+     * Gets a new variable register that no variable of the program can refer to, for a
+     * value that must last across statements, like the bound of a FOR loop. Its name
+     * starts with $, which no name in a program can.
+     * @return the register.
+     */
+    public int hidden()
+    {
+        return declare("$" + unit.variables.size());
+    }
+
+    /**
+     * Assigns a register to a variable. If the register was just written by the last
+     * instruction, that instruction writes the variable instead.
+     * @param name the name of the variable.
+     * @param register the register that holds the value.
+     */
+    public void assign(String name, int register)
+    {
+        int variable = declare(name);
+        if (!isLocal(name))
+            emit(Bytecode.STORE_NAME, nameIndex(name), register);
+        else if ((register & KIND) == TEMPORARY && lastInstruction >= statementStart
+                && Bytecode.FORMATS[code[lastInstruction]].startsWith("d")
+                && code[lastInstruction + 1] == register)
+            code[lastInstruction + 1] = variable;
+        else
+            emit(Bytecode.MOVE, variable, register);
+    }
+
+    /**
+     * Gets the register that holds a constant.
+     * @param value the constant, encoded by environment.Value.
+     * @return the register.
+     */
+    public int constant(long value)
+    {
+        Integer index = unit.constants.get(value);
+        if (index == null)
+        {
+            index = unit.constants.size();
+            unit.constants.put(value, index);
+        }
+        return CONSTANT | index;
+    }
+
+    /**
+     * Gets a new temporary register, which lasts until the end of the statement.
+     * @return the register.
+     */
+    public int temporary()
+    {
+        int t = temporaries++;
+        unit.maxTemporaries = Math.max(unit.maxTemporaries, temporaries);
+        return TEMPORARY | t;
+    }
+
+    /**
+     * Emits an instruction that computes a value into a new temporary.
+     * @param opcode the instruction, whose format is "drr" or "dri".
+     * @param a its first operand.
+     * @param b its second operand.
+     * @return the temporary.
+     */
+    public int compute(int opcode, int a, int b)
+    {
+        int d = temporary();
+        emit(opcode, d, a, b);
+        return d;
+    }
+
+    /**
+     * Gets the current position in the code of the function, so that stable() can later
+     * protect a register read before it.
+     * @return the position.
+     */
+    public int mark()
+    {
+        return size;
+    }
+
+    /**
+     * Makes sure that the value a variable register had at a mark is still the value used,
+     * even though a procedure called after the mark may change the variable (or, if it was
+     * empty, not see it). If a CALL was emitted since the mark, the variable is copied into
+     * a new temporary at the mark.
+     * @param register a register that was read before the mark.
+     * @param mark the mark.
+     * @return the register to use instead.
+     */
+    public int stable(int register, int mark)
+    {
+        if ((register & KIND) != VARIABLE)
+            return register;
+        boolean calls = false;
+        for (int pc = mark; pc < size && !calls; pc += Bytecode.length(code, pc))
+            calls = code[pc] == Bytecode.CALL;
+        if (!calls)
+            return register;
+
+        int t = temporary();
+        ensureCapacity(3);
+        System.arraycopy(code, mark, code, mark + 3, size - mark);
+        code[mark] = Bytecode.MOVE;
+        code[mark + 1] = t;
+        code[mark + 2] = register;
+        size += 3;
+        lastInstruction += 3;
+        for (int i = 0; i < labelCount; i++)
+            if (labels[i] > mark)
+                labels[i] += 3;
+        return t;
+    }
+
+    /**
+     * Emits a call to a procedure.
+     * @param name the name of the procedure.
+     * @param args the registers of the arguments.
+     * @return the register of the result.
+     */
+    public int call(String name, int[] args)
+    {
+        fewest.merge(name, args.length, Math::min);
+        int d = temporary();
+        int[] operands = new int[3 + args.length];
+        operands[0] = d;
+        operands[1] = procedureIndex(name);
+        operands[2] = args.length;
+        System.arraycopy(args, 0, operands, 3, args.length);
+        emit(Bytecode.CALL, operands);
+        return d;
+    }
+
+    /**
+     * Creates a label, which jumps can go to before it is bound.
+     * @return the label.
+     */
+    public int newLabel()
+    {
+        if (labelCount == labels.length)
+            labels = Arrays.copyOf(labels, labelCount * 2);
+        labels[labelCount] = -1;
+        return labelCount++;
+    }
+
+    /**
+     * Binds a label to the next instruction.
+     * @param label the label.
+     */
+    public void bind(int label)
+    {
+        labels[label] = size;
+    }
+
+    /**
+     * Emits an instruction.
+     * @param opcode the instruction.
+     * @param operands its operands; registers as returned by this compiler, and labels
+     *                 where it jumps.
+     */
+    public void emit(int opcode, int... operands)
+    {
+        ensureCapacity(1 + operands.length);
+        lastInstruction = size;
+        code[size++] = opcode;
+        for (int operand : operands)
+            code[size++] = operand;
+    }
+
+    /**
+     * Ends a statement: every temporary is free again.
+     */
+    public void endStatement()
+    {
+        temporaries = 0;
+        statementStart = size;
+    }
+
+    /**
+     * Starts compiling a function.
+     * @param name the name of the procedure, or null for the main program.
+     * @param locals the variables that are read directly, or null if every one is.
+     */
+    private void begin(String name, Set<String> locals)
+    {
+        unit = new Unit(name, locals);
+        code = new int[64];
+        size = 0;
+        temporaries = 0;
+        statementStart = 0;
+        lastInstruction = -1;
+        labels = new int[16];
+        labelCount = 0;
+    }
+
+    /**
+     * Finishes the function being compiled: lays out its registers and replaces its labels.
+     * @return the unit.
+     */
+    private Unit finish()
+    {
+        int variables = unit.variables.size();
+        int constants = unit.constants.size();
+        int[] c = Arrays.copyOf(code, size);
+        for (int pc = 0; pc < size; pc += Bytecode.length(c, pc))
+        {
+            String format = Bytecode.FORMATS[c[pc]];
+            for (int i = 0; i < format.length(); i++)
+            {
+                int at = pc + 1 + i;
+                switch (format.charAt(i))
+                {
+                    case 'd', 'r' -> c[at] = layout(c[at], variables, constants);
+                    case 't' -> c[at] = labels[c[at]];
+                    case 'a' -> {
+                        for (int j = 1; j <= c[at]; j++)
+                            c[at + j] = layout(c[at + j], variables, constants);
+                    }
+                    default -> { }
+                }
+            }
+        }
+        unit.code = c;
+        return unit;
+    }
+
+    /**
+     * Gets the register that a register of a given kind has in the frame.
+     * @param register the register, numbered by kind.
+     * @param variables the number of variables.
+     * @param constants the number of constants.
+     * @return the register in the frame.
+     */
+    private static int layout(int register, int variables, int constants)
+    {
+        return switch (register & KIND)
+        {
+            case VARIABLE -> register;
+            case CONSTANT -> variables + (register & INDEX);
+            default -> variables + constants + (register & INDEX);
+        };
+    }
+
+    /**
+     * Builds the function of a finished unit, once the names of all variables are known.
+     * @param u the unit.
+     * @return the function.
+     */
+    private BytecodeFunction build(Unit u)
+    {
+        int[] nameRegisters = new int[names.size()];
+        Arrays.fill(nameRegisters, -1);
+        for (Map.Entry<String, Integer> v : u.variables.entrySet())
+            nameRegisters[names.get(v.getKey())] = v.getValue();
+        long[] constants = new long[u.constants.size()];
+        for (Map.Entry<Long, Integer> k : u.constants.entrySet())
+            constants[k.getValue()] = k.getKey();
+        int variables = u.variables.size();
+        return new BytecodeFunction(u.name, u.code, variables + constants.length + u.maxTemporaries,
+                variables, constants, u.argRegisters == null ? new int[0] : u.argRegisters,
+                u.resultRegister, nameRegisters);
+    }
+
+    /**
+     * Gets the register of a variable in the function being compiled, giving it one if it
+     * has none yet.
+     * @param name the name of the variable.
+     * @return the register.
+     */
+    private int declare(String name)
+    {
+        nameIndex(name);
+        Integer register = unit.variables.get(name);
+        if (register == null)
+        {
+            register = unit.variables.size();
+            unit.variables.put(name, register);
+        }
+        return register;
+    }
+
+    /**
+     * Checks whether a variable is read and written directly in its register.
+     * @param name the name of the variable.
+     * @return true if it is, false if it is looked up by name.
+     */
+    private boolean isLocal(String name)
+    {
+        return unit.locals == null || unit.locals.contains(name);
+    }
+
+    /**
+     * Gets the index of a variable name, giving it one if it has none yet.
+     * @param name the name.
+     * @return the index.
+     */
+    private int nameIndex(String name)
+    {
+        return names.computeIfAbsent(name, n -> names.size());
+    }
+
+    /**
+     * Gets the index of a procedure, giving it one if it has none yet.
+     * @param name the name of the procedure.
+     * @return the index.
+     */
+    private int procedureIndex(String name)
+    {
+        Integer index = procedureIndices.get(name);
+        if (index == null)
+        {
+            index = procedures.size();
+            procedureIndices.put(name, index);
+            procedures.add(null);
+        }
+        return index;
+    }
+
+    /**
+     * Makes room for more code.
+     * @param n the number of ints to make room for.
+     */
+    private void ensureCapacity(int n)
+    {
+        if (size + n > code.length)
+            code = Arrays.copyOf(code, Math.max(size + n, code.length * 2));
+    }
+}
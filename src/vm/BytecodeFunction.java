@@ -0,0 +1,126 @@
+package vm;
+
+/**
+ * The bytecode of one procedure, or of the main program, and the layout of its frame.
+ * <p>
+ * A frame holds the procedure's variables, then its constants, then its temporaries.
+ * The variables are empty when the frame is entered, and the constants are copied in.
+ *
+ * @author Agastya Ravuri
+ * @version 4.27.2024
+ */
+public final class BytecodeFunction
+{
+    private final String name;
+    private final int[] code;
+    private final int size;
+    private final int variables;
+    private final long[] constants;
+    private final int[] argRegisters;
+    private final int resultRegister;
+    private final int[] nameRegisters;
+
+    /**
+     * Constructor for a function.
+     * @param name the name of the procedure, or null for the main program.
+     * @param code the bytecode.
+     * @param size the number of registers in a frame.
+     * @param variables the number of variable registers, which come first.
+     * @param constants the values of the constant registers, which follow the variables.
+     * @param argRegisters the register of each argument.
+     * @param resultRegister the register of the result, or -1 for the main program.
+     * @param nameRegisters the register of every variable name in the program, by the
+     *                      index of the name, or -1 if the function has no such variable.
+     */
+    BytecodeFunction(String name, int[] code, int size, int variables, long[] constants,
+                     int[] argRegisters, int resultRegister, int[] nameRegisters)
+    {
+        this.name = name;
+        this.code = code;
+        this.size = size;
+        this.variables = variables;
+        this.constants = constants;
+        this.argRegisters = argRegisters;
+        this.resultRegister = resultRegister;
+        this.nameRegisters = nameRegisters;
+    }
+
+    /**
+     * Gets the name of the procedure.
+     * @return the name, or null for the main program.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Gets the bytecode.
+     * @return the instructions.
+     */
+    public int[] getCode()
+    {
+        return code;
+    }
+
+    /**
+     * Gets the number of registers in a frame.
+     * @return the size of a frame.
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the number of variable registers.
+     * @return the number of variables.
+     */
+    int getVariables()
+    {
+        return variables;
+    }
+
+    /**
+     * Gets the values of the constant registers.
+     * @return the constants, which follow the variables in a frame.
+     */
+    long[] getConstants()
+    {
+        return constants;
+    }
+
+    /**
+     * Gets the registers of the arguments.
+     * @return the register of each argument.
+     */
+    int[] getArgRegisters()
+    {
+        return argRegisters;
+    }
+
+    /**
+     * Gets the register of the result.
+     * @return the register, or -1 for the main program.
+     */
+    int getResultRegister()
+    {
+        return resultRegister;
+    }
+
+    /**
+     * Gets the register of a variable.
+     * @param name the index of the variable's name.
+     * @return the register, or -1 if the function has no such variable.
+     */
+    int getNameRegister(int name)
+    {
+        return nameRegisters[name];
+    }
+
+    @Override
+    public String toString()
+    {
+        return (name == null ? "main" : name) + ":\n" + Bytecode.disassemble(code);
+    }
+}
@@ -0,0 +1,100 @@
+package vm;
+
+/**
+ * A program compiled by BytecodeCompiler: the main program and every procedure it
+ * declares.
+ *
+ * @author Agastya Ravuri
+ * @version 4.27.2024
+ */
+public final class BytecodeProgram
+{
+    private final BytecodeFunction main;
+    private final BytecodeFunction[] procedures;
+    private final String[] procedureNames;
+    private final String[] names;
+
+    /**
+     * Constructor for a program.
+     * @param main the main program.
+     * @param procedures the procedures, by index; null where a procedure is called but
+     *                   never declared.
+     * @param procedureNames the name of every procedure, by index.
+     * @param names the name of every variable, by index.
+     */
+    BytecodeProgram(BytecodeFunction main, BytecodeFunction[] procedures,
+                    String[] procedureNames, String[] names)
+    {
+        this.main = main;
+        this.procedures = procedures;
+        this.procedureNames = procedureNames;
+        this.names = names;
+    }
+
+    /**
+     * Gets the main program.
+     * @return the main program.
+     */
+    public BytecodeFunction getMain()
+    {
+        return main;
+    }
+
+    /**
+     * Gets a procedure.
+     * @param index the index of the procedure.
+     * @return the procedure, or null if it was never declared.
+     */
+    BytecodeFunction getProcedure(int index)
+    {
+        return procedures[index];
+    }
+
+    /**
+     * Gets the number of procedures, including those that are called but never declared.
+     * @return the number of procedures.
+     */
+    int getProcedureCount()
+    {
+        return procedures.length;
+    }
+
+    /**
+     * Gets the name of a procedure.
+     * @param index the index of the procedure.
+     * @return the name.
+     */
+    String getProcedureName(int index)
+    {
+        return procedureNames[index];
+    }
+
+    /**
+     * Gets the name of a variable.
+     * @param index the index of the name.
+     * @return the name.
+     */
+    String getName(int index)
+    {
+        return names[index];
+    }
+
+    /**
+     * Gets the number of variable names in the program.
+     * @return the number of names.
+     */
+    int getNameCount()
+    {
+        return names.length;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(main.toString());
+        for (BytecodeFunction f : procedures)
+            if (f != null)
+                sb.append(f);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,551 @@
+package vm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a JVM class file: just enough of the format for JvmCompiler, which needs a class
+ * of static methods whose locals and operand stack hold only ints.
+ * <p>
+ * Every method is written with a StackMapTable, so that it passes the type-checking
+ * verifier. Since every local is an int from the start of the method, except for int[]
+ * arguments that come first, each frame is just the number of ints on the operand stack.
+ * <p>
+ * Usage:
+ * ClassWriter w = new ClassWriter("vm/Compiled");
+ * ClassWriter.Code c = w.new Code(maxLocals, 0);
+ * ... c.op(...) ...
+ * w.addMethod("f", "(I)I", c);
+ * byte[] bytes = w.toByteArray();
+ *
+ * @author Agastya Ravuri
+ * @version 4.28.2024
+ */
+final class ClassWriter
+{
+    static final int ICONST_0 = 3;
+    static final int BIPUSH = 16;
+    static final int SIPUSH = 17;
+    static final int LDC = 18;
+    static final int LDC_W = 19;
+    static final int ILOAD = 21;
+    static final int ALOAD = 25;
+    static final int IALOAD = 46;
+    static final int ISTORE = 54;
+    static final int IASTORE = 79;
+    static final int IADD = 96;
+    static final int ISUB = 100;
+    static final int IMUL = 104;
+    static final int IDIV = 108;
+    static final int IREM = 112;
+    static final int IAND = 126;
+    static final int IOR = 128;
+    static final int IINC = 132;
+    static final int IFEQ = 153;
+    static final int IFNE = 154;
+    static final int IF_ICMPEQ = 159;
+    static final int IF_ICMPNE = 160;
+    static final int IF_ICMPLT = 161;
+    static final int IF_ICMPGE = 162;
+    static final int IF_ICMPGT = 163;
+    static final int IF_ICMPLE = 164;
+    static final int GOTO = 167;
+    static final int IRETURN = 172;
+    static final int RETURN = 177;
+    static final int GETSTATIC = 178;
+    static final int INVOKEVIRTUAL = 182;
+    static final int INVOKESTATIC = 184;
+    static final int WIDE = 196;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int VERSION = 52;
+    private static final int MAX_CODE = 65535;
+
+    private final Bytes pool = new Bytes();
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int poolCount = 1;
+    private final Bytes methods = new Bytes();
+    private int methodCount;
+    private final int thisClass;
+    private final int superClass;
+
+    /**
+     * Constructor for a class writer.
+     * @param name the internal name of the class, such as "vm/Compiled".
+     */
+    ClassWriter(String name)
+    {
+        thisClass = classConstant(name);
+        superClass = classConstant("java/lang/Object");
+    }
+
+    /**
+     * Gets the constant for this class, for calls to its own methods.
+     * @return the index of the constant.
+     */
+    int thisClass()
+    {
+        return thisClass;
+    }
+
+    /**
+     * Adds a UTF-8 string to the constant pool, if it is not already there.
+     * @param s the string, which must not contain a NUL or a character outside the BMP.
+     * @return the index of the constant.
+     */
+    int utf8(String s)
+    {
+        return constant("U" + s, () -> {
+            pool.u1(1);
+            pool.u2(s.length());
+            for (int i = 0; i < s.length(); i++)
+                pool.u1(s.charAt(i));
+        });
+    }
+
+    /**
+     * Adds a class to the constant pool, if it is not already there.
+     * @param name the internal name of the class.
+     * @return the index of the constant.
+     */
+    int classConstant(String name)
+    {
+        int n = utf8(name);
+        return constant("C" + name, () -> {
+            pool.u1(7);
+            pool.u2(n);
+        });
+    }
+
+    /**
+     * Adds a method to the constant pool, if it is not already there.
+     * @param owner the index of the class constant of the class that declares the method.
+     * @param name the name of the method.
+     * @param descriptor the descriptor of the method.
+     * @return the index of the constant.
+     */
+    int methodConstant(int owner, String name, String descriptor)
+    {
+        return member(10, owner, name, descriptor);
+    }
+
+    /**
+     * Adds a field to the constant pool, if it is not already there.
+     * @param owner the index of the class constant of the class that declares the field.
+     * @param name the name of the field.
+     * @param descriptor the descriptor of the field.
+     * @return the index of the constant.
+     */
+    int fieldConstant(int owner, String name, String descriptor)
+    {
+        return member(9, owner, name, descriptor);
+    }
+
+    /**
+     * Adds an int to the constant pool, if it is not already there.
+     * @param value the int.
+     * @return the index of the constant.
+     */
+    int intConstant(int value)
+    {
+        return constant("I" + value, () -> {
+            pool.u1(3);
+            pool.u4(value);
+        });
+    }
+
+    /**
+     * Adds a field or method reference to the constant pool.
+     * @param tag the tag of the reference.
+     * @param owner the index of the class constant of the class that declares the member.
+     * @param name the name of the member.
+     * @param descriptor the descriptor of the member.
+     * @return the index of the constant.
+     */
+    private int member(int tag, int owner, String name, String descriptor)
+    {
+        int n = utf8(name);
+        int d = utf8(descriptor);
+        int nameAndType = constant("N" + name + ' ' + descriptor, () -> {
+            pool.u1(12);
+            pool.u2(n);
+            pool.u2(d);
+        });
+        return constant("M" + tag + ' ' + owner + ' ' + nameAndType, () -> {
+            pool.u1(tag);
+            pool.u2(owner);
+            pool.u2(nameAndType);
+        });
+    }
+
+    /**
+     * Adds a constant to the pool, unless an equal one is already there.
+     * @param key a key that identifies the constant.
+     * @param write writes the constant to the pool.
+     * @return the index of the constant.
+     */
+    private int constant(String key, Runnable write)
+    {
+        Integer index = constants.get(key);
+        if (index != null)
+            return index;
+        if (poolCount == 0xFFFF)
+            throw new IllegalArgumentException("Too many constants for a class file");
+        write.run();
+        index = poolCount;
+        poolCount++;
+        constants.put(key, index);
+        return index;
+    }
+
+    /**
+     * Adds a public static method.
+     * @param name the name of the method.
+     * @param descriptor the descriptor of the method.
+     * @param code the code of the method.
+     * @throws IllegalArgumentException if the code is too long for a method.
+     */
+    void addMethod(String name, String descriptor, Code code)
+    {
+        byte[] attribute = code.toAttribute();
+        methods.u2(ACC_PUBLIC | ACC_STATIC);
+        methods.u2(utf8(name));
+        methods.u2(utf8(descriptor));
+        methods.u2(1);
+        methods.u2(utf8("Code"));
+        methods.u4(attribute.length);
+        methods.bytes(attribute, attribute.length);
+        methodCount++;
+    }
+
+    /**
+     * Writes the class file.
+     * @return the bytes of the class file.
+     */
+    byte[] toByteArray()
+    {
+        Bytes out = new Bytes();
+        out.u4(0xCAFEBABE);
+        out.u2(0);
+        out.u2(VERSION);
+        out.u2(poolCount);
+        out.bytes(pool.buf, pool.size);
+        out.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.u2(thisClass);
+        out.u2(superClass);
+        out.u2(0);
+        out.u2(0);
+        out.u2(methodCount);
+        out.bytes(methods.buf, methods.size);
+        out.u2(0);
+        return Arrays.copyOf(out.buf, out.size);
+    }
+
+    /**
+     * A growable array of bytes, written big-endian.
+     */
+    private static final class Bytes
+    {
+        private byte[] buf = new byte[256];
+        private int size;
+
+        /**
+         * Writes a byte.
+         * @param b the byte.
+         */
+        void u1(int b)
+        {
+            if (size == buf.length)
+                buf = Arrays.copyOf(buf, size * 2);
+            buf[size++] = (byte) b;
+        }
+
+        /**
+         * Writes two bytes.
+         * @param v the value.
+         */
+        void u2(int v)
+        {
+            u1(v >>> 8);
+            u1(v);
+        }
+
+        /**
+         * Writes four bytes.
+         * @param v the value.
+         */
+        void u4(int v)
+        {
+            u2(v >>> 16);
+            u2(v);
+        }
+
+        /**
+         * Writes bytes.
+         * @param b the bytes.
+         * @param length the number of bytes to write.
+         */
+        void bytes(byte[] b, int length)
+        {
+            for (int i = 0; i < length; i++)
+                u1(b[i]);
+        }
+    }
+
+    /**
+     * The code of a method whose locals are all ints, but for some int[] arguments. Jumps
+     * go to labels, which are bound to the next instruction along with the number of ints
+     * on the stack there.
+     */
+    final class Code
+    {
+        private final Bytes code = new Bytes();
+        private final int maxLocals;
+        private final int arrays;
+        private int maxStack;
+        private int[] labels = new int[16];
+        private int[] depths = new int[16];
+        private int labelCount;
+        private int[] jumps = new int[16];
+        private int jumpCount;
+
+        /**
+         * Constructor for the code of a method.
+         * @param maxLocals the number of locals, including the arguments.
+         * @param arrays the number of locals, from the first, that hold an int[]; every
+         *               other local holds an int.
+         */
+        Code(int maxLocals, int arrays)
+        {
+            this.maxLocals = maxLocals;
+            this.arrays = arrays;
+        }
+
+        /**
+         * Makes sure the operand stack is big enough.
+         * @param depth the number of ints the stack must hold.
+         */
+        void stack(int depth)
+        {
+            maxStack = Math.max(maxStack, depth);
+        }
+
+        /**
+         * Emits an instruction without operands.
+         * @param opcode the instruction.
+         */
+        void op(int opcode)
+        {
+            code.u1(opcode);
+        }
+
+        /**
+         * Emits an instruction with a two-byte operand, such as a constant pool index.
+         * @param opcode the instruction.
+         * @param operand the operand.
+         */
+        void op2(int opcode, int operand)
+        {
+            code.u1(opcode);
+            code.u2(operand);
+        }
+
+        /**
+         * Emits an instruction that pushes an int.
+         * @param value the int.
+         */
+        void push(int value)
+        {
+            if (value >= -1 && value <= 5)
+                op(ICONST_0 + value);
+            else if (value == (byte) value)
+            {
+                op(BIPUSH);
+                code.u1(value);
+            }
+            else if (value == (short) value)
+                op2(SIPUSH, value);
+            else
+            {
+                int index = intConstant(value);
+                if (index < 256)
+                {
+                    op(LDC);
+                    code.u1(index);
+                }
+                else
+                    op2(LDC_W, index);
+            }
+        }
+
+        /**
+         * Emits an instruction that loads or stores a local.
+         * @param opcode ILOAD, ALOAD or ISTORE.
+         * @param local the local.
+         */
+        void local(int opcode, int local)
+        {
+            if (local < 4)
+                op(opcode < ISTORE ? 26 + (opcode - ILOAD) * 4 + local
+                        : 59 + (opcode - ISTORE) * 4 + local);
+            else if (local < 256)
+            {
+                op(opcode);
+                code.u1(local);
+            }
+            else
+            {
+                op(WIDE);
+                op2(opcode, local);
+            }
+        }
+
+        /**
+         * Emits an instruction that adds a constant to a local.
+         * @param local the local.
+         * @param value the constant, from -32768 to 32767.
+         */
+        void increment(int local, int value)
+        {
+            if (local < 256 && value == (byte) value)
+            {
+                op(IINC);
+                code.u1(local);
+                code.u1(value);
+            }
+            else
+            {
+                op(WIDE);
+                op2(IINC, local);
+                code.u2(value);
+            }
+        }
+
+        /**
+         * Creates a label.
+         * @return the label.
+         */
+        int newLabel()
+        {
+            if (labelCount == labels.length)
+            {
+                labels = Arrays.copyOf(labels, labelCount * 2);
+                depths = Arrays.copyOf(depths, labelCount * 2);
+            }
+            labels[labelCount] = -1;
+            return labelCount++;
+        }
+
+        /**
+         * Binds a label to the next instruction.
+         * @param label the label.
+         * @param depth the number of ints on the operand stack there.
+         */
+        void bind(int label, int depth)
+        {
+            labels[label] = code.size;
+            depths[label] = depth;
+        }
+
+        /**
+         * Emits a jump to a label.
+         * @param opcode the jump instruction.
+         * @param label the label.
+         */
+        void jump(int opcode, int label)
+        {
+            if (jumpCount + 2 > jumps.length)
+                jumps = Arrays.copyOf(jumps, jumps.length * 2);
+            jumps[jumpCount++] = code.size;
+            jumps[jumpCount++] = label;
+            op2(opcode, 0);
+        }
+
+        /**
+         * Gets the offset of the next instruction.
+         * @return the offset.
+         */
+        int offset()
+        {
+            return code.size;
+        }
+
+        /**
+         * Resolves the jumps and writes the Code attribute, with its StackMapTable.
+         * @return the attribute, after its name and length.
+         * @throws IllegalArgumentException if the code is too long for a method.
+         */
+        byte[] toAttribute()
+        {
+            if (code.size > MAX_CODE)
+                throw new IllegalArgumentException("Too much code for a method");
+            for (int i = 0; i < jumpCount; i += 2)
+            {
+                int at = jumps[i];
+                int delta = labels[jumps[i + 1]] - at;
+                if (delta != (short) delta)
+                    throw new IllegalArgumentException("Jump too long for a method");
+                code.buf[at + 1] = (byte) (delta >>> 8);
+                code.buf[at + 2] = (byte) delta;
+            }
+
+            // One full frame per distinct bound label, in order of offset.
+            long[] frames = new long[labelCount];
+            int frameCount = 0;
+            for (int i = 0; i < labelCount; i++)
+                if (labels[i] >= 0)
+                    frames[frameCount++] = (long) labels[i] << 32 | depths[i];
+            Arrays.sort(frames, 0, frameCount);
+            Bytes table = new Bytes();
+            int entries = 0;
+            int previous = -1;
+            for (int i = 0; i < frameCount; i++)
+            {
+                int offset = (int) (frames[i] >>> 32);
+                if (offset == previous)
+                    continue;
+                int depth = (int) frames[i];
+                table.u1(255);
+                table.u2(previous < 0 ? offset : offset - previous - 1);
+                table.u2(maxLocals);
+                for (int j = 0; j < maxLocals; j++)
+                {
+                    if (j < arrays)
+                    {
+                        table.u1(7);
+                        table.u2(classConstant("[I"));
+                    }
+                    else
+                        table.u1(1);
+                }
+                table.u2(depth);
+                for (int j = 0; j < depth; j++)
+                    table.u1(1);
+                previous = offset;
+                entries++;
+            }
+
+            Bytes out = new Bytes();
+            out.u2(maxStack);
+            out.u2(maxLocals);
+            out.u4(code.size);
+            out.bytes(code.buf, code.size);
+            out.u2(0);
+            if (entries == 0)
+                out.u2(0);
+            else
+            {
+                out.u2(1);
+                out.u2(utf8("StackMapTable"));
+                out.u4(2 + table.size);
+                out.u2(entries);
+                out.bytes(table.buf, table.size);
+            }
+            return Arrays.copyOf(out.buf, out.size);
+        }
+    }
+}
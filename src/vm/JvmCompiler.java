@@ -0,0 +1,515 @@
+package vm;
+
+import ast.Block;
+import ast.Procedure;
+import ast.Program;
+import ast.Statement;
+import environment.Value;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Compiles a program to JVM bytecode, so that HotSpot compiles its hot loops to machine
+ * code. The program is first compiled by BytecodeCompiler, and each of its functions
+ * becomes a static method of a hidden class: the main program takes no arguments, and a
+ * procedure takes an int per argument and returns an int. Every register becomes an int
+ * local, holding either an int or a boolean as 0 or 1.
+ * <p>
+ * That only works for programs whose types are known before they run, so a program is
+ * compiled only if:
+ * no procedure looks up a variable of its caller by name;
+ * every variable only ever holds ints;
+ * every operator gets the types it expects;
+ * every call is to a declared procedure with the right number of arguments.
+ * A procedure or loop compiled for a running program must also call no procedure that may
+ * recurse: compiled calls nest on the Java stack, while the interpreter hands calls that
+ * are nested too deeply over to the HeapInterpreter.
+ * Any other program makes compile throw an IllegalArgumentException, and should be run by
+ * the interpreter or the VirtualMachine instead.
+ * <p>
+ * Usage:
+ * new JvmCompiler().compile(program).run();
+ *
+ * @author Agastya Ravuri
+ * @version 4.28.2024
+ */
+public class JvmCompiler
+{
+    private static final int INT = 1;
+    private static final int BOOLEAN = 2;
+
+    // The JVM instructions for ADD to MOD, and for EQ to GEQ and BEQ to BGE.
+    private static final int[] ARITHMETIC = {
+            ClassWriter.IADD, ClassWriter.ISUB, ClassWriter.IMUL, ClassWriter.IDIV,
+            ClassWriter.IREM
+    };
+
+    private static final int[] BRANCHES = {
+            ClassWriter.IF_ICMPEQ, ClassWriter.IF_ICMPNE, ClassWriter.IF_ICMPLT,
+            ClassWriter.IF_ICMPGT, ClassWriter.IF_ICMPLE, ClassWriter.IF_ICMPGE
+    };
+
+    private static final String NAME = "vm/CompiledProgram";
+    private static final String MAIN = "$main";
+
+    private BytecodeProgram program;
+    private ClassWriter writer;
+    private boolean[] queued;
+    private List<Set<Integer>> calls;
+    private int compiling;
+    private final Queue<Integer> queue = new ArrayDeque<>();
+
+    /**
+     * Compiles a program to a hidden class.
+     * @param p the program.
+     * @return the compiled program.
+     * @throws IllegalArgumentException if the program cannot be compiled to JVM bytecode.
+     */
+    public JvmProgram compile(Program p)
+    {
+        return compile(new BytecodeCompiler().compile(p));
+    }
+
+    /**
+     * Compiles a program to a hidden class.
+     * @param bytecode the program, compiled by BytecodeCompiler.
+     * @return the compiled program.
+     * @throws IllegalArgumentException if the program cannot be compiled to JVM bytecode.
+     */
+    public JvmProgram compile(BytecodeProgram bytecode)
+    {
+        Lookup lookup = define(bytecode, -1, false);
+        return new JvmProgram(findStatic(lookup, MAIN, MethodType.methodType(void.class)),
+                lookup.lookupClass());
+    }
+
+    /**
+     * Compiles a procedure, and the procedures it calls, to a hidden class.
+     * @param procedures the procedures, by name, as linked by a running program.
+     * @param name the name of the procedure.
+     * @return the method of the procedure, which takes its arguments in an int[] and
+     *         returns its result.
+     * @throws IllegalArgumentException if the procedure cannot be compiled to JVM bytecode,
+     *                                  or it or a procedure it calls may recurse.
+     */
+    public MethodHandle compileProcedure(Map<String, Procedure> procedures, String name)
+    {
+        BytecodeProgram bytecode = new BytecodeCompiler().compile(procedures, new Block());
+        int index = 0;
+        while (!name.equals(bytecode.getProcedureName(index)))
+            index++;
+        int argc = bytecode.getProcedure(index).getArgRegisters().length;
+        Lookup lookup = define(bytecode, index, false);
+        return findStatic(lookup, name, MethodType.genericMethodType(0)
+                .changeReturnType(int.class).appendParameterTypes(ints(argc)))
+                .asSpreader(int[].class, argc);
+    }
+
+    /**
+     * Compiles a loop of the main program, and the procedures it calls, to a hidden class,
+     * so that a running program can go on with the loop in compiled code.
+     * @param loop the loop.
+     * @param procedures the procedures, by name, as linked by the running program.
+     * @return the compiled loop.
+     * @throws IllegalArgumentException if the loop cannot be compiled to JVM bytecode, or a
+     *                                  procedure it calls may recurse.
+     */
+    public JvmLoop compileLoop(Statement loop, Map<String, Procedure> procedures)
+    {
+        BytecodeProgram bytecode = new BytecodeCompiler().compile(procedures, loop);
+        BytecodeFunction main = bytecode.getMain();
+        String[] names = new String[main.getVariables()];
+        for (int i = 0; i < bytecode.getNameCount(); i++)
+            if (main.getNameRegister(i) >= 0)
+                names[main.getNameRegister(i)] = bytecode.getName(i);
+        Lookup lookup = define(bytecode, -1, true);
+        return new JvmLoop(names, findStatic(lookup, MAIN,
+                MethodType.methodType(void.class, int[].class)));
+    }
+
+    /**
+     * Compiles the main program, a procedure if any, and every procedure they call, to a
+     * hidden class.
+     * @param bytecode the program, compiled by BytecodeCompiler.
+     * @param root the index of the procedure, or -1 for none.
+     * @param loop true if the main program is a loop that gets the values of its
+     *             variables in an int[], and puts them back there when it ends.
+     * @return the lookup of the hidden class.
+     * @throws IllegalArgumentException if the program cannot be compiled to JVM bytecode,
+     *                                  or if it is a procedure or loop of a running program
+     *                                  that calls a procedure that may recurse.
+     */
+    private Lookup define(BytecodeProgram bytecode, int root, boolean loop)
+    {
+        program = bytecode;
+        writer = new ClassWriter(NAME);
+        queued = new boolean[bytecode.getProcedureCount()];
+        calls = new ArrayList<>();
+        for (int i = 0; i < queued.length; i++)
+            calls.add(new HashSet<>());
+        compiling = -1;
+        compile(bytecode.getMain(), loop);
+        if (root >= 0)
+            queue.add(root);
+        while (!queue.isEmpty())
+        {
+            int index = queue.remove();
+            if (!queued[index])
+            {
+                queued[index] = true;
+                compiling = index;
+                compile(bytecode.getProcedure(index), false);
+            }
+        }
+        if ((root >= 0 || loop) && recurses())
+            throw new IllegalArgumentException("Procedures that may recurse are not compiled "
+                    + "for a running program");
+        try
+        {
+            return MethodHandles.lookup().defineHiddenClass(writer.toByteArray(), true);
+        }
+        catch (IllegalAccessException | LinkageError e)
+        {
+            throw new IllegalStateException("Could not load compiled program", e);
+        }
+    }
+
+    /**
+     * Checks whether a procedure that was compiled may call itself, directly or through
+     * other procedures.
+     * @return true if the calls between the compiled procedures have a cycle.
+     */
+    private boolean recurses()
+    {
+        // 0: not visited, 1: on the current path, 2: done.
+        int[] state = new int[calls.size()];
+        for (int i = 0; i < state.length; i++)
+            if (state[i] == 0 && recurses(i, state))
+                return true;
+        return false;
+    }
+
+    /**
+     * Checks whether the calls from a procedure lead back to a procedure on the current
+     * path of the search.
+     * @param index the index of the procedure.
+     * @param state the state of each procedure in the search.
+     * @return true if they do.
+     */
+    private boolean recurses(int index, int[] state)
+    {
+        state[index] = 1;
+        for (int callee : calls.get(index))
+            if (state[callee] == 1 || (state[callee] == 0 && recurses(callee, state)))
+                return true;
+        state[index] = 2;
+        return false;
+    }
+
+    /**
+     * Finds a static method of a hidden class.
+     * @param lookup the lookup of the hidden class.
+     * @param name the name of the method.
+     * @param type the type of the method.
+     * @return the method.
+     */
+    private static MethodHandle findStatic(Lookup lookup, String name, MethodType type)
+    {
+        try
+        {
+            return lookup.findStatic(lookup.lookupClass(), name, type);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Compiled program has no method " + name, e);
+        }
+    }
+
+    /**
+     * Makes an array of int classes, for the type of a method.
+     * @param n the length of the array.
+     * @return the array.
+     */
+    private static Class<?>[] ints(int n)
+    {
+        Class<?>[] types = new Class<?>[n];
+        Arrays.fill(types, int.class);
+        return types;
+    }
+
+    /**
+     * Gets the descriptor of the method for a procedure.
+     * @param argc the number of arguments of the procedure.
+     * @return the descriptor.
+     */
+    private static String descriptor(int argc)
+    {
+        return "(" + "I".repeat(argc) + ")I";
+    }
+
+    /**
+     * Compiles a function to a static method, and queues the procedures it calls.
+     * @param f the function.
+     * @param loop true if the function is a loop that gets the values of its variables in
+     *             an int[], and puts them back there when it ends.
+     * @throws IllegalArgumentException if the function cannot be compiled to JVM bytecode.
+     */
+    private void compile(BytecodeFunction f, boolean loop)
+    {
+        int[] code = f.getCode();
+        // A temporary is always written before it is read, and the code of an expression
+        // has no jumps, so the last instruction before a read that wrote a register gave it
+        // its type. A variable may be read anywhere, so it must always hold an int.
+        int[] types = entryTypes(f);
+        int argc = f.getName() == null ? 0 : f.getArgRegisters().length;
+        if (argc > 255)
+            throw new IllegalArgumentException("Too many arguments to " + f.getName());
+        int base = loop ? 1 : argc;
+        ClassWriter.Code c = writer.new Code(base + f.getSize(), loop ? 1 : 0);
+        c.stack(3);
+
+        // Every local must be an int before the first jump, for the verifier.
+        long[] constants = f.getConstants();
+        for (int r = 0; r < f.getSize(); r++)
+        {
+            int k = r - f.getVariables();
+            c.push(k >= 0 && k < constants.length ? (int) constants[k] : 0);
+            c.local(ClassWriter.ISTORE, base + r);
+        }
+        if (f.getName() != null)
+        {
+            int[] argRegisters = f.getArgRegisters();
+            for (int i = 0; i < argc; i++)
+            {
+                c.local(ClassWriter.ILOAD, i);
+                c.local(ClassWriter.ISTORE, base + argRegisters[i]);
+            }
+            c.push(0);
+            c.local(ClassWriter.ISTORE, base + f.getResultRegister());
+        }
+        for (int r = 0; loop && r < f.getVariables(); r++)
+        {
+            c.local(ClassWriter.ALOAD, 0);
+            c.push(r);
+            c.op(ClassWriter.IALOAD);
+            c.local(ClassWriter.ISTORE, base + r);
+        }
+
+        // A label for every instruction, bound only if something jumps there or it follows
+        // an instruction that never falls through.
+        int[] labels = new int[code.length];
+        boolean[] targets = new boolean[code.length];
+        for (int pc = 0; pc < code.length; pc += Bytecode.length(code, pc))
+        {
+            labels[pc] = c.newLabel();
+            int t = Bytecode.FORMATS[code[pc]].indexOf('t');
+            if (t >= 0)
+                targets[code[pc + 1 + t]] = true;
+        }
+        boolean reachable = true;
+        for (int pc = 0; pc < code.length; pc += Bytecode.length(code, pc))
+        {
+            int op = code[pc];
+            if (!reachable || targets[pc])
+                c.bind(labels[pc], 0);
+            reachable = op != Bytecode.JUMP && op != Bytecode.RETURN && op != Bytecode.HALT;
+            int d = pc + 1 < code.length ? code[pc + 1] : 0;
+            int a = pc + 2 < code.length ? code[pc + 2] : 0;
+            int b = pc + 3 < code.length ? code[pc + 3] : 0;
+            switch (op)
+            {
+                case Bytecode.HALT -> {
+                    for (int r = 0; loop && r < f.getVariables(); r++)
+                    {
+                        c.local(ClassWriter.ALOAD, 0);
+                        c.push(r);
+                        c.local(ClassWriter.ILOAD, base + r);
+                        c.op(ClassWriter.IASTORE);
+                    }
+                    c.op(ClassWriter.RETURN);
+                }
+                case Bytecode.MOVE -> {
+                    c.local(ClassWriter.ILOAD, base + a);
+                    c.local(ClassWriter.ISTORE, base + d);
+                }
+                case Bytecode.ADD, Bytecode.SUB, Bytecode.MUL, Bytecode.DIV, Bytecode.MOD -> {
+                    expect(types, INT, f, a, b);
+                    c.local(ClassWriter.ILOAD, base + a);
+                    c.local(ClassWriter.ILOAD, base + b);
+                    c.op(ARITHMETIC[op - Bytecode.ADD]);
+                    c.local(ClassWriter.ISTORE, base + d);
+                }
+                case Bytecode.ADDI -> {
+                    expect(types, INT, f, a);
+                    if (d == a && b == (short) b)
+                        c.increment(base + d, b);
+                    else
+                    {
+                        c.local(ClassWriter.ILOAD, base + a);
+                        c.push(b);
+                        c.op(ClassWriter.IADD);
+                        c.local(ClassWriter.ISTORE, base + d);
+                    }
+                }
+                case Bytecode.AND, Bytecode.OR -> {
+                    expect(types, BOOLEAN, f, a, b);
+                    c.local(ClassWriter.ILOAD, base + a);
+                    c.local(ClassWriter.ILOAD, base + b);
+                    c.op(op == Bytecode.AND ? ClassWriter.IAND : ClassWriter.IOR);
+                    c.local(ClassWriter.ISTORE, base + d);
+                }
+                case Bytecode.EQ, Bytecode.NEQ, Bytecode.LT, Bytecode.GT, Bytecode.LEQ,
+                        Bytecode.GEQ -> {
+                    if (op <= Bytecode.NEQ && types[a] != types[b])
+                        c.push(op == Bytecode.EQ ? 0 : 1);
+                    else
+                    {
+                        if (op > Bytecode.NEQ)
+                            expect(types, INT, f, a, b);
+                        int yes = c.newLabel();
+                        int done = c.newLabel();
+                        c.local(ClassWriter.ILOAD, base + a);
+                        c.local(ClassWriter.ILOAD, base + b);
+                        c.jump(BRANCHES[op - Bytecode.EQ], yes);
+                        c.push(0);
+                        c.jump(ClassWriter.GOTO, done);
+                        c.bind(yes, 0);
+                        c.push(1);
+                        c.bind(done, 1);
+                    }
+                    c.local(ClassWriter.ISTORE, base + d);
+                }
+                case Bytecode.JUMP -> c.jump(ClassWriter.GOTO, labels[d]);
+                case Bytecode.JUMP_IF_TRUE, Bytecode.JUMP_IF_FALSE -> {
+                    expect(types, BOOLEAN, f, d);
+                    c.local(ClassWriter.ILOAD, base + d);
+                    c.jump(op == Bytecode.JUMP_IF_TRUE ? ClassWriter.IFNE : ClassWriter.IFEQ,
+                            labels[a]);
+                }
+                case Bytecode.BEQ, Bytecode.BNE, Bytecode.BLT, Bytecode.BGT, Bytecode.BLE,
+                        Bytecode.BGE -> {
+                    if (op <= Bytecode.BNE && types[d] != types[a])
+                    {
+                        // An int never equals a boolean.
+                        if (op == Bytecode.BNE)
+                        {
+                            c.jump(ClassWriter.GOTO, labels[b]);
+                            reachable = false;
+                        }
+                    }
+                    else
+                    {
+                        if (op > Bytecode.BNE)
+                            expect(types, INT, f, d, a);
+                        c.local(ClassWriter.ILOAD, base + d);
+                        c.local(ClassWriter.ILOAD, base + a);
+                        c.jump(BRANCHES[op - Bytecode.BEQ], labels[b]);
+                    }
+                }
+                case Bytecode.CALL -> {
+                    BytecodeFunction callee = program.getProcedure(a);
+                    int n = code[pc + 3];
+                    if (callee == null)
+                        throw new IllegalArgumentException("No procedure named "
+                                + program.getProcedureName(a));
+                    if (n != callee.getArgRegisters().length)
+                        throw new IllegalArgumentException("Wrong number of arguments to "
+                                + callee.getName());
+                    if (!queued[a])
+                        queue.add(a);
+                    if (compiling >= 0)
+                        calls.get(compiling).add(a);
+                    c.stack(n);
+                    for (int i = 0; i < n; i++)
+                    {
+                        expect(types, INT, f, code[pc + 4 + i]);
+                        c.local(ClassWriter.ILOAD, base + code[pc + 4 + i]);
+                    }
+                    c.op2(ClassWriter.INVOKESTATIC, writer.methodConstant(writer.thisClass(),
+                            callee.getName(), descriptor(n)));
+                    c.local(ClassWriter.ISTORE, base + d);
+                }
+                case Bytecode.RETURN -> {
+                    c.local(ClassWriter.ILOAD, base + f.getResultRegister());
+                    c.op(ClassWriter.IRETURN);
+                }
+                case Bytecode.WRITE -> {
+                    c.op2(ClassWriter.GETSTATIC, writer.fieldConstant(
+                            writer.classConstant("java/lang/System"), "out",
+                            "Ljava/io/PrintStream;"));
+                    c.local(ClassWriter.ILOAD, base + d);
+                    c.op2(ClassWriter.INVOKEVIRTUAL, writer.methodConstant(
+                            writer.classConstant("java/io/PrintStream"), "println",
+                            types[d] == BOOLEAN ? "(Z)V" : "(I)V"));
+                }
+                case Bytecode.READ -> {
+                    c.op2(ClassWriter.INVOKESTATIC, writer.methodConstant(
+                            writer.classConstant("vm/JvmProgram"), "readInt", "()I"));
+                    c.local(ClassWriter.ISTORE, base + d);
+                }
+                default -> throw new IllegalArgumentException("Variables looked up by name "
+                        + "are not supported by the JVM backend");
+            }
+            if (Bytecode.FORMATS[op].startsWith("d"))
+            {
+                int type = op == Bytecode.MOVE ? types[a]
+                        : op >= Bytecode.EQ && op <= Bytecode.OR ? BOOLEAN : INT;
+                if (d < f.getVariables() && type != INT)
+                    throw new IllegalArgumentException("Only int variables are supported by "
+                            + "the JVM backend");
+                types[d] = type;
+            }
+        }
+
+        if (loop)
+            writer.addMethod(MAIN, "([I)V", c);
+        else if (f.getName() == null)
+            writer.addMethod(MAIN, "()V", c);
+        else
+            writer.addMethod(f.getName(), descriptor(argc), c);
+    }
+
+    /**
+     * Gets the type of each register when a function is entered: the constants hold their
+     * values, and every other register holds the int 0, since an empty variable reads as 0.
+     * @param f the function.
+     * @return the type of each register: INT or BOOLEAN.
+     */
+    private static int[] entryTypes(BytecodeFunction f)
+    {
+        int[] types = new int[f.getSize()];
+        Arrays.fill(types, INT);
+        long[] constants = f.getConstants();
+        for (int k = 0; k < constants.length; k++)
+            if (Value.isBoolean(constants[k]))
+                types[f.getVariables() + k] = BOOLEAN;
+        return types;
+    }
+
+    /**
+     * Checks that registers hold the type an instruction expects.
+     * @param types the type of each register.
+     * @param type the expected type.
+     * @param f the function that contains the instruction.
+     * @param registers the registers.
+     * @throws IllegalArgumentException if a register holds another type.
+     */
+    private static void expect(int[] types, int type, BytecodeFunction f, int... registers)
+    {
+        for (int r : registers)
+            if (types[r] != type)
+                throw new IllegalArgumentException("Expected " + (type == INT ? "an int"
+                        : "a boolean") + " in " + (f.getName() == null ? "main" : f.getName()));
+    }
+}
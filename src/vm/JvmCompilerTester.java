@@ -0,0 +1,119 @@
+package vm;
+
+import ast.Program;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests the JvmCompiler against the interpreter: every program it compiles must print
+ * the same output and end with the same exception, if any, and every program it rejects
+ * is reported. Then times both on a few programs.
+ *
+ * @author Agastya Ravuri
+ * @version 4.28.2024
+ */
+public class JvmCompilerTester
+{
+    private static final String[] FILES = {
+            "ParserTest.txt", "fact.txt", "parserTest4.txt", "parserTest6.txt", "parserTest7.txt",
+            "parserTest8.txt", "parserTest8_5.txt"
+    };
+
+    private static final String[] CASES = {
+            // Booleans, comparisons of every kind and loops.
+            "BEGIN\n    x := 0;\n    WHILE x < 5 && x <> 3 DO x := x + 1;\n    WRITELN(x);\n"
+                    + "    WRITELN(x = 3);\n    WRITELN((x = x) || (x >= 4));\n"
+                    + "    IF x <= 2 THEN WRITELN(1); ELSE WRITELN(2);\n    FOR i := 1 TO 3 DO WRITELN(i * -i mod 4);\n"
+                    + "    WRITELN(100000 = 100000);\n    WRITELN(x = (x = x));\n"
+                    + "    IF x <> (x = 1) THEN WRITELN(x > 1000000);\nEND;\n",
+            // A variable that is never assigned reads as 0; so does a procedure's result.
+            "PROCEDURE nothing(a);\n    a := a;\nBEGIN\n    WRITELN(y + 1);\n"
+                    + "    WRITELN(nothing(5));\nEND;\n",
+            // A procedure whose argument has its own name, and one with two of the same.
+            "PROCEDURE f(f);\n    f := f + 1;\nPROCEDURE g(a, a);\n    g := a * 10;\n"
+                    + "BEGIN\n    WRITELN(f(5));\n    WRITELN(g(1, 2));\nEND;\n",
+            // Recursion, and a callee's argument with the same name as its caller's.
+            "PROCEDURE fib(n);\nBEGIN\n    IF n < 2 THEN fib := n;\n"
+                    + "    ELSE fib := fib(n - 1) + fib(n - 2);\nEND;\n"
+                    + "PROCEDURE twice(n);\n    twice := fib(n) + fib(n);\n"
+                    + "BEGIN\n    WRITELN(twice(10));\nEND;\n",
+            // Overflow wraps, and constants of every size.
+            "BEGIN\n    x := 2147483647;\n    WRITELN(x + 1);\n    WRITELN(x - 40000 + 200);\n"
+                    + "    x := 7;\n    x := x + 300;\n    WRITELN(x);\nEND;\n",
+            // Errors.
+            "BEGIN\n    WRITELN(1 / 0);\nEND;\n",
+            // Programs that are rejected.
+            "BEGIN\n    IF 1 THEN WRITELN(1);\nEND;\n",
+            "BEGIN\n    x := 1 < 2;\n    WRITELN(x);\nEND;\n",
+            "PROCEDURE h(a);\n    y := y + a;\nBEGIN\n    WRITELN(y + h(3));\nEND;\n",
+    };
+
+    private static final String[] TIMED = {
+            "BEGIN\n    x := 0;\n    sum := 0;\n    WHILE x < 3000000 DO\n    BEGIN\n"
+                    + "        sum := sum + x * 3 - (x mod 7);\n        x := x + 1;\n    END;\n"
+                    + "    WRITELN(sum);\nEND;\n",
+            "PROCEDURE fib(n);\nBEGIN\n    IF n < 2 THEN fib := n;\n"
+                    + "    ELSE fib := fib(n - 1) + fib(n - 2);\nEND;\n"
+                    + "BEGIN\n    WRITELN(fib(25));\nEND;\n",
+    };
+
+    /**
+     * Tests the JVM compiler.
+     * @param args not used
+     * @throws IOException when a file cannot be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        for (String file : FILES)
+            System.out.println(file + ": " + compare(Files.readString(Path.of(file))));
+        for (int i = 0; i < CASES.length; i++)
+            System.out.println("case " + i + ": " + compare(CASES[i]));
+
+        for (String source : TIMED)
+        {
+            Program p = TestHarness.parse(source);
+            double interpreted = Double.MAX_VALUE;
+            double compiled = Double.MAX_VALUE;
+            long start = System.nanoTime();
+            JvmProgram jvm = new JvmCompiler().compile(p);
+            double compiling = (System.nanoTime() - start) / 1e6;
+            for (int i = 0; i < 10; i++)
+            {
+                start = System.nanoTime();
+                TestHarness.capture(p::run);
+                interpreted = Math.min(interpreted, (System.nanoTime() - start) / 1e6);
+                start = System.nanoTime();
+                TestHarness.capture(jvm::run);
+                compiled = Math.min(compiled, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("interpreter: %.1f ms, jvm: %.2f ms (compiled in %.1f ms)%n",
+                    interpreted, compiled, compiling);
+        }
+    }
+
+    /**
+     * Runs a program with the interpreter and, if it compiles, as JVM bytecode.
+     * @param source the source of the program
+     * @return "same" if both printed the same output, the reason if the program was
+     *         rejected, or else both outputs
+     */
+    private static String compare(String source)
+    {
+        Program p = TestHarness.parse(source);
+        JvmProgram jvm;
+        try
+        {
+            jvm = new JvmCompiler().compile(p);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return "rejected (" + e.getMessage() + ")";
+        }
+        String interpreted = TestHarness.capture(p::run);
+        String compiled = TestHarness.capture(jvm::run);
+        return interpreted.equals(compiled) ? "same" : "DIFFERENT\n--- interpreter:\n"
+                + interpreted + "\n--- jvm:\n" + compiled;
+    }
+}
@@ -0,0 +1,59 @@
+package vm;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * A loop of the main program compiled by JvmCompiler, which a running program can jump
+ * into in the middle: it takes the values of the loop's variables, runs the loop from its
+ * condition until it ends, and gives back the values the variables end with.
+ *
+ * @author Agastya Ravuri
+ * @version 4.29.2024
+ */
+public final class JvmLoop
+{
+    private final String[] variables;
+    private final MethodHandle run;
+
+    /**
+     * Constructor for a compiled loop.
+     * @param variables the name of every variable of the loop, by register.
+     * @param run the static method for the loop, which takes the values of the variables.
+     */
+    JvmLoop(String[] variables, MethodHandle run)
+    {
+        this.variables = variables;
+        this.run = run;
+    }
+
+    /**
+     * Gets the variables of the loop.
+     * @return the name of every variable, in the order of their values.
+     */
+    public String[] getVariables()
+    {
+        return variables.clone();
+    }
+
+    /**
+     * Runs the loop from its condition until it ends.
+     * @param values the value of every variable; replaced by the values they end with.
+     * @throws ArithmeticException if the loop divides by zero, in which case the values
+     *                             are left as they were.
+     */
+    public void run(int[] values)
+    {
+        try
+        {
+            run.invokeExact(values);
+        }
+        catch (RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch (Throwable t)
+        {
+            throw new IllegalStateException(t);
+        }
+    }
+}
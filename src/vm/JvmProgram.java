@@ -0,0 +1,70 @@
+package vm;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Scanner;
+
+/**
+ * A program compiled by JvmCompiler to a hidden class, ready to run.
+ *
+ * @author Agastya Ravuri
+ * @version 4.28.2024
+ */
+public final class JvmProgram
+{
+    private static Scanner in;
+
+    private final MethodHandle main;
+    private final Class<?> compiled;
+
+    /**
+     * Constructor for a compiled program.
+     * @param main the static method for the main program.
+     * @param compiled the hidden class.
+     */
+    JvmProgram(MethodHandle main, Class<?> compiled)
+    {
+        this.main = main;
+        this.compiled = compiled;
+    }
+
+    /**
+     * Runs the program.
+     * @throws ArithmeticException if the program divides by zero.
+     * @throws StackOverflowError if the program recurses too deeply.
+     */
+    public void run()
+    {
+        try
+        {
+            main.invokeExact();
+        }
+        catch (RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch (Throwable t)
+        {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Gets the hidden class the program was compiled to.
+     * @return the class.
+     */
+    public Class<?> getCompiledClass()
+    {
+        return compiled;
+    }
+
+    /**
+     * Reads an int from standard input. Called by compiled programs for READLN.
+     * @return the int.
+     */
+    public static int readInt()
+    {
+        if (in == null)
+            in = new Scanner(System.in);
+        return in.nextInt();
+    }
+}
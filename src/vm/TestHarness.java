@@ -0,0 +1,61 @@
+package vm;
+
+import ast.Program;
+import parser.Parser;
+import scanner.Scanner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * What the testers of the interpreter, the virtual machine, the JVM backend and the IR
+ * share: parsing a program, and running one while capturing what it prints.
+ *
+ * @author Agastya Ravuri
+ * @version 4.28.2024
+ */
+public final class TestHarness
+{
+    /**
+     * Not used; every method is static.
+     */
+    private TestHarness()
+    {
+    }
+
+    /**
+     * Parses a program.
+     * @param source the source of the program
+     * @return the program
+     */
+    public static Program parse(String source)
+    {
+        return new Parser(new Scanner(source)).parseProgram();
+    }
+
+    /**
+     * Runs a program and captures what it prints.
+     * @param program runs the program
+     * @return the output, followed by the class of the exception it ended with, if any
+     */
+    public static String capture(Runnable program)
+    {
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes));
+        String error = "";
+        try
+        {
+            program.run();
+        }
+        catch (RuntimeException | StackOverflowError e)
+        {
+            error = e.getClass().getSimpleName();
+        }
+        finally
+        {
+            System.setOut(out);
+        }
+        return (bytes.toString().trim().replace("\r", "") + " " + error).trim();
+    }
+}
@@ -0,0 +1,285 @@
+package vm;
+
+import environment.Value;
+
+import java.util.Arrays;
+import java.util.Scanner;
+
+/**
+ * Runs a BytecodeProgram in a single dispatch loop.
+ * <p>
+ * The registers of every frame live in one long[] stack, each frame right after its
+ * caller's, and the call stack is kept in arrays, so a deep recursion in the program is
+ * not a deep recursion in Java. A frame's caller is also where its variables are looked
+ * up by name, which gives the same dynamic scoping as the interpreter.
+ * <p>
+ * Usage:
+ * new VirtualMachine().run(new BytecodeCompiler().compile(program));
+ *
+ * @author Agastya Ravuri
+ * @version 4.27.2024
+ */
+public class VirtualMachine
+{
+    private long[] stack = new long[256];
+    private BytecodeFunction[] functions = new BytecodeFunction[16];
+    private int[] bases = new int[16];
+    private int[] returns = new int[16];
+    private int[] targets = new int[16];
+    private Scanner in;
+
+    /**
+     * Runs a program.
+     * @param program the program.
+     * @throws ClassCastException if an int is used as a boolean, or a boolean as an int.
+     * @throws ArithmeticException if the program divides by zero.
+     * @throws IllegalArgumentException if the program calls a procedure that was never
+     *                                  declared, or passes it too many arguments.
+     */
+    public void run(BytecodeProgram program)
+    {
+        BytecodeFunction f = program.getMain();
+        int depth = 0;
+        int base = 0;
+        enter(f, base, depth);
+        long[] s = stack;
+        int[] code = f.getCode();
+        int pc = 0;
+
+        while (true)
+        {
+            switch (code[pc])
+            {
+                case Bytecode.HALT -> {
+                    return;
+                }
+                case Bytecode.MOVE -> {
+                    s[base + code[pc + 1]] = valueAt(s, base + code[pc + 2]);
+                    pc += 3;
+                }
+                case Bytecode.ADD -> {
+                    s[base + code[pc + 1]] = Value.ofInt(intAt(s, base + code[pc + 2]) + intAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.SUB -> {
+                    s[base + code[pc + 1]] = Value.ofInt(intAt(s, base + code[pc + 2]) - intAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.MUL -> {
+                    s[base + code[pc + 1]] = Value.ofInt(intAt(s, base + code[pc + 2]) * intAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.DIV -> {
+                    s[base + code[pc + 1]] = Value.ofInt(intAt(s, base + code[pc + 2]) / intAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.MOD -> {
+                    s[base + code[pc + 1]] = Value.ofInt(intAt(s, base + code[pc + 2]) % intAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.ADDI -> {
+                    s[base + code[pc + 1]] = Value.ofInt(intAt(s, base + code[pc + 2]) + code[pc + 3]);
+                    pc += 4;
+                }
+                case Bytecode.EQ -> {
+                    s[base + code[pc + 1]] = Value.ofBoolean(valueAt(s, base + code[pc + 2]) == valueAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.NEQ -> {
+                    s[base + code[pc + 1]] = Value.ofBoolean(valueAt(s, base + code[pc + 2]) != valueAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.LT -> {
+                    s[base + code[pc + 1]] = Value.ofBoolean(intAt(s, base + code[pc + 2]) < intAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.GT -> {
+                    s[base + code[pc + 1]] = Value.ofBoolean(intAt(s, base + code[pc + 2]) > intAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.LEQ -> {
+                    s[base + code[pc + 1]] = Value.ofBoolean(intAt(s, base + code[pc + 2]) <= intAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.GEQ -> {
+                    s[base + code[pc + 1]] = Value.ofBoolean(intAt(s, base + code[pc + 2]) >= intAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.AND -> {
+                    s[base + code[pc + 1]] = Value.ofBoolean(booleanAt(s, base + code[pc + 2]) & booleanAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.OR -> {
+                    s[base + code[pc + 1]] = Value.ofBoolean(booleanAt(s, base + code[pc + 2]) | booleanAt(s, base + code[pc + 3]));
+                    pc += 4;
+                }
+                case Bytecode.JUMP -> pc = code[pc + 1];
+                case Bytecode.JUMP_IF_TRUE -> pc = booleanAt(s, base + code[pc + 1]) ? code[pc + 2] : pc + 3;
+                case Bytecode.JUMP_IF_FALSE -> pc = booleanAt(s, base + code[pc + 1]) ? pc + 3 : code[pc + 2];
+                case Bytecode.BEQ -> pc = valueAt(s, base + code[pc + 1]) == valueAt(s, base + code[pc + 2]) ? code[pc + 3] : pc + 4;
+                case Bytecode.BNE -> pc = valueAt(s, base + code[pc + 1]) != valueAt(s, base + code[pc + 2]) ? code[pc + 3] : pc + 4;
+                case Bytecode.BLT -> pc = intAt(s, base + code[pc + 1]) < intAt(s, base + code[pc + 2]) ? code[pc + 3] : pc + 4;
+                case Bytecode.BGT -> pc = intAt(s, base + code[pc + 1]) > intAt(s, base + code[pc + 2]) ? code[pc + 3] : pc + 4;
+                case Bytecode.BLE -> pc = intAt(s, base + code[pc + 1]) <= intAt(s, base + code[pc + 2]) ? code[pc + 3] : pc + 4;
+                case Bytecode.BGE -> pc = intAt(s, base + code[pc + 1]) >= intAt(s, base + code[pc + 2]) ? code[pc + 3] : pc + 4;
+                case Bytecode.LOAD_NAME -> {
+                    int at = find(s, code[pc + 2], depth);
+                    if (at < 0)
+                    {
+                        at = base + f.getNameRegister(code[pc + 2]);
+                        s[at] = Value.ofInt(0);
+                    }
+                    s[base + code[pc + 1]] = s[at];
+                    pc += 3;
+                }
+                case Bytecode.STORE_NAME -> {
+                    long value = valueAt(s, base + code[pc + 2]);
+                    int at = find(s, code[pc + 1], depth);
+                    s[at < 0 ? base + f.getNameRegister(code[pc + 1]) : at] = value;
+                    pc += 3;
+                }
+                case Bytecode.CALL -> {
+                    BytecodeFunction callee = program.getProcedure(code[pc + 2]);
+                    int argc = code[pc + 3];
+                    if (callee == null)
+                        throw new IllegalArgumentException("No procedure named " + program.getProcedureName(code[pc + 2]));
+                    int[] argRegisters = callee.getArgRegisters();
+                    if (argc > argRegisters.length)
+                        throw new IllegalArgumentException("Too many arguments to " + callee.getName());
+
+                    int calleeBase = base + f.getSize();
+                    returns[depth] = pc + 4 + argc;
+                    targets[depth] = code[pc + 1];
+                    enter(callee, calleeBase, depth + 1);
+                    s = stack;
+                    for (int i = 0; i < argc; i++)
+                        s[calleeBase + argRegisters[i]] = valueAt(s, base + code[pc + 4 + i]);
+                    s[calleeBase + callee.getResultRegister()] = Value.ofInt(0);
+
+                    depth++;
+                    f = callee;
+                    base = calleeBase;
+                    code = f.getCode();
+                    pc = 0;
+                }
+                case Bytecode.RETURN -> {
+                    long result = s[base + f.getResultRegister()];
+                    depth--;
+                    f = functions[depth];
+                    base = bases[depth];
+                    code = f.getCode();
+                    s[base + targets[depth]] = result;
+                    pc = returns[depth];
+                }
+                case Bytecode.WRITE -> {
+                    long value = valueAt(s, base + code[pc + 1]);
+                    if (Value.isInt(value))
+                        System.out.println(Value.toInt(value));
+                    else
+                        System.out.println(Value.box(value));
+                    pc += 2;
+                }
+                case Bytecode.READ -> {
+                    if (in == null)
+                        in = new Scanner(System.in);
+                    s[base + code[pc + 1]] = Value.ofInt(in.nextInt());
+                    pc += 2;
+                }
+                default -> throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc);
+            }
+        }
+    }
+
+    /**
+     * Sets up the frame of a function: makes room for it on the stack and the call stack,
+     * empties its variables and copies in its constants.
+     * @param f the function.
+     * @param base the first register of the frame on the stack.
+     * @param depth the depth of the frame on the call stack.
+     */
+    private void enter(BytecodeFunction f, int base, int depth)
+    {
+        if (base + f.getSize() > stack.length)
+            stack = Arrays.copyOf(stack, Math.max(base + f.getSize(), stack.length * 2));
+        if (depth == functions.length)
+        {
+            functions = Arrays.copyOf(functions, depth * 2);
+            bases = Arrays.copyOf(bases, depth * 2);
+            returns = Arrays.copyOf(returns, depth * 2);
+            targets = Arrays.copyOf(targets, depth * 2);
+        }
+        functions[depth] = f;
+        bases[depth] = base;
+
+        int variables = f.getVariables();
+        Arrays.fill(stack, base, base + variables, Value.EMPTY);
+        long[] constants = f.getConstants();
+        System.arraycopy(constants, 0, stack, base + variables, constants.length);
+    }
+
+    /**
+     * Finds a variable by name: in the frame on top of the call stack, or else in the
+     * frame of its caller, and so on.
+     * @param s the stack.
+     * @param name the index of the name.
+     * @param depth the depth of the frame on top of the call stack.
+     * @return the index of the variable on the stack, or -1 if no frame has it.
+     */
+    private int find(long[] s, int name, int depth)
+    {
+        for (int d = depth; d >= 0; d--)
+        {
+            int register = functions[d].getNameRegister(name);
+            if (register >= 0 && s[bases[d] + register] != Value.EMPTY)
+                return bases[d] + register;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a register. A variable that is still empty is set to 0 first.
+     * @param s the stack.
+     * @param at the index of the register on the stack.
+     * @return the value, encoded by Value.
+     */
+    private static long valueAt(long[] s, int at)
+    {
+        long value = s[at];
+        if (value == Value.EMPTY)
+        {
+            value = Value.ofInt(0);
+            s[at] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Reads an int from a register. A variable that is still empty is set to 0 first.
+     * @param s the stack.
+     * @param at the index of the register on the stack.
+     * @return the int.
+     * @throws ClassCastException if the register holds a boolean.
+     */
+    private static int intAt(long[] s, int at)
+    {
+        long value = s[at];
+        if (Value.isInt(value))
+            return (int) value;
+        return Value.toInt(valueAt(s, at));
+    }
+
+    /**
+     * Reads a boolean from a register. A variable that is still empty is set to 0 first.
+     * @param s the stack.
+     * @param at the index of the register on the stack.
+     * @return the boolean.
+     * @throws ClassCastException if the register holds an int.
+     */
+    private static boolean booleanAt(long[] s, int at)
+    {
+        long value = s[at];
+        if (Value.isBoolean(value))
+            return (int) value != 0;
+        return Value.toBoolean(valueAt(s, at));
+    }
+}
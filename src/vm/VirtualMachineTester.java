@@ -0,0 +1,124 @@
+package vm;
+
+import ast.Program;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests the VirtualMachine against the interpreter: every program must print the same
+ * output and end with the same exception, if any. Then times both on a few programs, and
+ * runs a recursion too deep for the interpreter.
+ *
+ * @author Agastya Ravuri
+ * @version 4.27.2024
+ */
+public class VirtualMachineTester
+{
+    private static final String[] FILES = {
+            "ParserTest.txt", "fact.txt", "parserTest4.txt", "parserTest6.txt", "parserTest7.txt",
+            "parserTest8.txt", "parserTest8_5.txt"
+    };
+
+    private static final String[] CASES = {
+            // A procedure sees the variables of its callers, and creates its own otherwise.
+            "PROCEDURE f(a);\nBEGIN\n    t := t + a;\n    u := u + 1;\n    f := u;\nEND;\n"
+                    + "BEGIN\n    t := 10;\n    WRITELN(f(1));\n    WRITELN(f(2));\n    WRITELN(t);\n"
+                    + "    WRITELN(u);\nEND;\n",
+            // A callee changes an argument of its caller; its caller read it before the call.
+            "PROCEDURE g(b);\n    a := a + b;\nPROCEDURE f(a);\n    f := a + g(5) + a;\n"
+                    + "BEGIN\n    WRITELN(f(1));\n    x := 1;\n    WRITELN(x + g(2) * x);\nEND;\n",
+            // An empty variable is read as 0, and becomes visible to procedures when read.
+            "PROCEDURE h(a);\n    y := y + a;\nBEGIN\n    WRITELN(y + h(3));\n    WRITELN(y);\nEND;\n",
+            // Booleans, comparisons of every kind and loops.
+            "BEGIN\n    x := 0;\n    WHILE x < 5 && x <> 3 DO x := x + 1;\n    WRITELN(x);\n"
+                    + "    WRITELN(x = 3);\n    WRITELN(TRUE || (x >= 4));\n    IF x <= 2 THEN WRITELN(1);"
+                    + " ELSE WRITELN(2);\n    FOR i := 1 TO 3 DO WRITELN(i * -i mod 4);\n"
+                    + "    WRITELN(100000 = 100000);\nEND;\n",
+            // A procedure whose argument has its own name, and one called with too few.
+            "PROCEDURE f(f);\n    f := f + 1;\nPROCEDURE g(a, b);\n    g := a + b;\n"
+                    + "BEGIN\n    WRITELN(f(5));\n    WRITELN(g(1));\nEND;\n",
+            // An argument that is not passed is the variable of the caller, in callees too.
+            "PROCEDURE foo(y);\nBEGIN\n    WRITELN(y);\n    ignore := bar();\n    y := y + 1;\nEND;\n"
+                    + "PROCEDURE bar();\n    WRITELN(y + 2);\n"
+                    + "BEGIN\n    y := 5;\n    ignore := foo();\n    WRITELN(y);\nEND;\n",
+            // Errors.
+            "BEGIN\n    WRITELN(1 / 0);\nEND;\n",
+            "BEGIN\n    IF 1 THEN WRITELN(1);\nEND;\n",
+            "BEGIN\n    WRITELN(1 + TRUE);\nEND;\n",
+    };
+
+    private static final String RECURSION =
+            "PROCEDURE down(n);\nBEGIN\n    IF n > 0 THEN down := down(n - 1) + 1;\nEND;\n"
+                    + "BEGIN\n    WRITELN(down(1000000));\nEND;\n";
+
+    private static final String[] TIMED = {
+            "BEGIN\n    x := 0;\n    sum := 0;\n    WHILE x < 3000000 DO\n    BEGIN\n"
+                    + "        sum := sum + x * 3 - (x mod 7);\n        x := x + 1;\n    END;\n"
+                    + "    WRITELN(sum);\nEND;\n",
+            "PROCEDURE fib(n);\nBEGIN\n    IF n < 2 THEN fib := n;\n"
+                    + "    ELSE fib := fib(n - 1) + fib(n - 2);\nEND;\n"
+                    + "BEGIN\n    WRITELN(fib(25));\nEND;\n",
+    };
+
+    /**
+     * Tests the virtual machine.
+     * @param args not used
+     * @throws IOException when a file cannot be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        for (String file : FILES)
+            System.out.println(file + ": " + compare(Files.readString(Path.of(file))));
+        for (int i = 0; i < CASES.length; i++)
+            System.out.println("case " + i + ": " + compare(CASES[i]));
+
+        System.out.println("recursion: " + capture(TestHarness.parse(RECURSION), true));
+
+        for (String source : TIMED)
+        {
+            Program p = TestHarness.parse(source);
+            double interpreted = Double.MAX_VALUE;
+            double vm = Double.MAX_VALUE;
+            for (int i = 0; i < 10; i++)
+            {
+                long start = System.nanoTime();
+                capture(p, false);
+                interpreted = Math.min(interpreted, (System.nanoTime() - start) / 1e6);
+                start = System.nanoTime();
+                capture(p, true);
+                vm = Math.min(vm, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("interpreter: %.1f ms, vm: %.1f ms%n", interpreted, vm);
+        }
+    }
+
+    /**
+     * Runs a program with the interpreter and with the virtual machine.
+     * @param source the source of the program
+     * @return "same" if both printed the same output, or else both outputs
+     */
+    private static String compare(String source)
+    {
+        Program p = TestHarness.parse(source);
+        String interpreted = capture(p, false);
+        String vm = capture(p, true);
+        return interpreted.equals(vm) ? "same" : "DIFFERENT\n--- interpreter:\n" + interpreted
+                + "\n--- vm:\n" + vm;
+    }
+
+    /**
+     * Runs a program and captures what it prints.
+     * @param p the program
+     * @param vm true to run it on the virtual machine, false to interpret it
+     * @return the output, followed by the class of the exception it ended with, if any
+     */
+    private static String capture(Program p, boolean vm)
+    {
+        if (vm)
+            return TestHarness.capture(() ->
+                    new VirtualMachine().run(new BytecodeCompiler().compile(p)));
+        return TestHarness.capture(p::run);
+    }
+}